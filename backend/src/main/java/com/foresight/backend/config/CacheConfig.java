@@ -0,0 +1,55 @@
+package com.foresight.backend.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+
+/**
+ * Hibernate second-level cache for rarely changing reference rows (stocks, users, accounts).
+ *
+ * Regions live in-process (Ehcache via JCache) and are sized in ehcache.xml. Entity writes made through
+ * Hibernate keep the regions up to date; anything written with native SQL must evict the affected region.
+ */
+@Configuration
+public class CacheConfig {
+
+    public static final String STOCK_REGION = "stocks";
+    public static final String STOCK_SYMBOL_REGION = "stocks-by-symbol";
+    public static final String USER_REGION = "users";
+    public static final String USER_QUERY_REGION = "user-queries";
+    public static final String ACCOUNT_REGION = "accounts";
+    public static final String ACCOUNT_USER_REGION = "accounts-by-user";
+
+    @Value("${foresight.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${foresight.cache.statistics:true}")
+    private boolean statistics;
+
+    @Value("${foresight.cache.config:classpath:ehcache.xml}")
+    private String configUri;
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(ResourceLoader resourceLoader) throws IOException {
+        // Hibernate expects a real URI, so resolve classpath: locations up front
+        String cacheUri = resourceLoader.getResource(configUri).getURI().toString();
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, enabled);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, enabled);
+            properties.put(AvailableSettings.GENERATE_STATISTICS, statistics);
+            // Statistics are read from /api/cache/stats; don't also log metrics for every session
+            properties.put(AvailableSettings.LOG_SESSION_METRICS, false);
+            if (enabled) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+                properties.put("hibernate.javax.cache.provider", "org.ehcache.jsr107.EhcacheCachingProvider");
+                properties.put("hibernate.javax.cache.uri", cacheUri);
+                properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            }
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.foresight.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.SimpleAsyncTaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Executors for @Scheduled jobs and request fan-out (e.g. parallel quote lookups).
+ *
+ * With spring.threads.virtual.enabled=true (Java 21+) both run on virtual threads and Spring Boot moves Tomcat
+ * request handling onto virtual threads too, so requests blocked on Finnhub no longer hold a platform thread.
+ * The WebSocket broker registers its own scheduler and executors, so these are declared explicitly rather than
+ * relying on the auto-configured ones.
+ */
+@Configuration
+public class ExecutionConfig {
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${foresight.fan-out.pool-size:16}")
+    private int fanOutPoolSize;
+
+    @Value("${foresight.fan-out.concurrency-limit:256}")
+    private int fanOutConcurrencyLimit;
+
+    @Value("${foresight.upstream.pool-size:64}")
+    private int upstreamPoolSize;
+
+    @Value("${foresight.hedge.pool-size:64}")
+    private int hedgePoolSize;
+
+    @Value("${export.threads:4}")
+    private int exportThreads;
+
+    @Value("${portfolio.stream.send-threads:8}")
+    private int streamSendThreads;
+
+    @Value("${import.threads:2}")
+    private int importThreads;
+
+    @Bean(name = "taskScheduler")
+    public TaskScheduler taskScheduler() {
+        if (virtualThreads) {
+            SimpleAsyncTaskScheduler scheduler = new SimpleAsyncTaskScheduler();
+            scheduler.setThreadNamePrefix("scheduling-");
+            scheduler.setVirtualThreads(true);
+            return scheduler;
+        }
+
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("scheduling-");
+        scheduler.setPoolSize(4);
+        scheduler.initialize();
+        return scheduler;
+    }
+
+    @Bean(name = "fanOutExecutor")
+    public AsyncTaskExecutor fanOutExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("fan-out-");
+            executor.setVirtualThreads(true);
+            // Virtual threads are cheap, but the upstream API isn't - bound how many calls can be in flight
+            executor.setConcurrencyLimit(fanOutConcurrencyLimit);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("fan-out-");
+        executor.setCorePoolSize(fanOutPoolSize);
+        executor.setMaxPoolSize(fanOutPoolSize);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs background quote revalidation. Kept apart from the fan-out pool, whose tasks wait on these calls, so a
+     * busy fan-out can never starve the requests it is waiting for. The pool has no queue: when every thread is
+     * busy a submission is rejected and the caller does the work inline (on virtual threads it waits for a slot
+     * instead).
+     */
+    @Bean(name = "upstreamExecutor")
+    public AsyncTaskExecutor upstreamExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("upstream-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(upstreamPoolSize);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("upstream-");
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(upstreamPoolSize);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs the two HTTP legs of a hedged Finnhub call. A revalidation on the upstream pool waits on them, so they
+     * can't share that pool: once it was full the legs would wait for slots their own callers hold (virtual
+     * threads), or be rejected and run inline with no hedge (platform threads). The legs themselves wait on
+     * nothing but the network. Same no-queue policy as the upstream pool.
+     */
+    @Bean(name = "hedgeExecutor")
+    public AsyncTaskExecutor hedgeExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("hedge-");
+            executor.setVirtualThreads(true);
+            executor.setConcurrencyLimit(hedgePoolSize);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("hedge-");
+        executor.setCorePoolSize(0);
+        executor.setMaxPoolSize(hedgePoolSize);
+        executor.setQueueCapacity(0);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Writes bulk export partitions. Each partition holds a database cursor for its whole run, so exports get a
+     * small pool of their own rather than occupying the fan-out threads requests are waiting on.
+     */
+    @Bean(name = "exportExecutor")
+    public AsyncTaskExecutor exportExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("export-");
+        executor.setCorePoolSize(exportThreads);
+        executor.setMaxPoolSize(exportThreads);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs bulk imports. An import holds its thread for the whole file and waits on the ledger replay it hands to
+     * the fan-out pool, so it must not run on that pool itself.
+     */
+    @Bean(name = "importExecutor")
+    public AsyncTaskExecutor importExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("import-");
+        executor.setCorePoolSize(importThreads);
+        executor.setMaxPoolSize(importThreads);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Writes to portfolio SSE streams. A send blocks for as long as the client takes to read, so slow clients
+     * wait here instead of on the fan-out pool; PortfolioStreamService drops a client whose send outlasts
+     * portfolio.stream.send-timeout-ms.
+     */
+    @Bean(name = "streamExecutor")
+    public AsyncTaskExecutor streamExecutor() {
+        if (virtualThreads) {
+            SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("stream-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("stream-");
+        executor.setCorePoolSize(streamSendThreads);
+        executor.setMaxPoolSize(streamSendThreads);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,23 @@
+package com.foresight.backend.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Flyway runs the versioned scripts in db/migration on startup; Hibernate no longer generates DDL.
+ *
+ * Databases that were created by Hibernate before migrations existed already match V1, so they are
+ * baselined at V1 and only receive the later scripts.
+ */
+@Configuration
+public class MigrationConfig {
+
+    @Bean
+    public FlywayConfigurationCustomizer baselineExistingSchema() {
+        return configuration -> configuration
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .baselineDescription("Schema generated by Hibernate");
+    }
+}
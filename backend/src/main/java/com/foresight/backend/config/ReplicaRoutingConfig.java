@@ -0,0 +1,154 @@
+package com.foresight.backend.config;
+
+import com.foresight.backend.service.ReadYourWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.PhysicalConnectionHandlingMode;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayDataSource;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read replicas, enabled by listing their JDBC URLs in datasource.replica.urls (comma separated).
+ *
+ * spring.datasource.* stays the primary, which Flyway migrates and all writes go to. Replicas get their own pools
+ * (datasource.replica.pool-size) and the primary's credentials unless datasource.replica.username/password are set.
+ * See ReplicaRoutingDataSource for which work goes where. Without replica URLs none of this is created and the
+ * application uses the single auto-configured pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.urls")
+public class ReplicaRoutingConfig implements WebMvcConfigurer {
+
+    @Value("${datasource.replica.urls}")
+    private String replicaUrls;
+
+    @Value("${datasource.replica.username:}")
+    private String replicaUsername;
+
+    @Value("${datasource.replica.password:}")
+    private String replicaPassword;
+
+    @Value("${datasource.replica.pool-size:10}")
+    private int replicaPoolSize;
+
+    @Value("${datasource.replica.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Bean
+    @FlywayDataSource
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                                             DataSourceProperties properties,
+                                                             ReadYourWrites readYourWrites) {
+        String username = replicaUsername.isBlank() ? properties.determineUsername() : replicaUsername;
+        String password = replicaUsername.isBlank() ? properties.determinePassword() : replicaPassword;
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        String[] urls = replicaUrls.split(",");
+        for (int i = 0; i < urls.length; i++) {
+            if (urls[i].isBlank()) {
+                continue;
+            }
+            HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class)
+                    .url(urls[i].trim()).username(username).password(password).build();
+            replica.setPoolName("replica-" + i);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            replicas.put("replica-" + i, replica);
+        }
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, replicas, readYourWrites, maxLagMs);
+        return routingDataSource;
+    }
+
+    /**
+     * The DataSource JPA and JdbcTemplate use: a connection is only taken from a pool when the first statement
+     * runs, after the transaction has declared whether it is read-only
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * With open-in-view a session would otherwise hold its first connection, replica or primary, for the whole
+     * request; releasing it after each transaction lets every transaction be routed on its own
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionAfterTransaction() {
+        return properties -> properties.put(AvailableSettings.CONNECTION_HANDLING,
+                PhysicalConnectionHandlingMode.DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION);
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.heartbeat-ms:1000}")
+    public void heartbeat() {
+        if (routingDataSource != null) {
+            routingDataSource.heartbeat();
+        }
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                boolean reads = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+                ReplicaRoutingDataSource.bindRequest(requestUserId(request), reads);
+                return true;
+            }
+
+            @Override
+            public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                        Exception ex) {
+                ReplicaRoutingDataSource.clearRequest();
+            }
+        });
+    }
+
+    // The {userId} path variable, or a userId query parameter
+    @SuppressWarnings("unchecked")
+    private static Long requestUserId(HttpServletRequest request) {
+        Map<String, String> variables =
+                (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String value = variables != null ? variables.get("userId") : null;
+        if (value == null) {
+            value = request.getParameter("userId");
+        }
+        try {
+            return value != null ? Long.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.foresight.backend.config;
+
+import com.foresight.backend.service.ReadYourWrites;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Picks the primary or a read replica for each new connection.
+ *
+ * A replica is used for read-only transactions started while serving a GET request, when it is reachable, no more
+ * than datasource.replica.max-lag-ms behind, and already holds the requesting user's last write. Everything else
+ * (writes, mutating requests and scheduled jobs, which read and then write) stays on the primary, so no code acts
+ * on a lagging copy. Lag is measured with a heartbeat: the primary's replication_heartbeat row is stamped with the
+ * time, and the stamp a replica has replicated tells how far behind it is and which commits it has. Replicas are
+ * taken in turn.
+ *
+ * The decision is made when the connection is first used (the pool is wrapped in a LazyConnectionDataSourceProxy),
+ * by which point the transaction's read-only flag is known.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+
+    private static final String STAMP_SQL = "UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1";
+    private static final String BEAT_SQL = "SELECT beat_at FROM replication_heartbeat WHERE id = 1";
+
+    private static final ThreadLocal<Request> REQUEST = new ThreadLocal<>();
+
+    private final JdbcTemplate primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReadYourWrites readYourWrites;
+    private final long maxLagMs;
+
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong heartbeatFailures = new AtomicLong();
+
+    private static final class Request {
+        private final Long userId;
+        private final boolean reads;
+
+        Request(Long userId, boolean reads) {
+            this.userId = userId;
+            this.reads = reads;
+        }
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        // Primary heartbeat stamp seen on the replica, epoch millis
+        private volatile long replayedUpTo;
+        private volatile long lagMs = -1;
+        private volatile boolean reachable;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+            this.jdbcTemplate.setQueryTimeout(2);
+        }
+    }
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    ReadYourWrites readYourWrites, long maxLagMs) {
+        this.primary = new JdbcTemplate(primary);
+        this.readYourWrites = readYourWrites;
+        this.maxLagMs = maxLagMs;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach((name, dataSource) -> {
+            this.replicas.add(new Replica(name, dataSource));
+            targets.put(name, dataSource);
+        });
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * Binds the request being served to this thread
+     *
+     * @param userId user whose data it reads, if known
+     * @param reads  whether it only reads (GET); other requests never use a replica
+     */
+    public static void bindRequest(Long userId, boolean reads) {
+        REQUEST.set(new Request(userId, reads));
+    }
+
+    public static void clearRequest() {
+        REQUEST.remove();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        Request request = REQUEST.get();
+        if (request == null || !request.reads) {
+            return PRIMARY;
+        }
+
+        long writtenAt = request.userId != null ? readYourWrites.getLastWrite(request.userId) : 0;
+        int count = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), count);
+        for (int i = 0; i < count; i++) {
+            Replica replica = replicas.get((start + i) % count);
+            // Strictly newer: a stamp from the same millisecond may have been taken before the write committed
+            if (replica.reachable && replica.lagMs <= maxLagMs && replica.replayedUpTo > writtenAt) {
+                replicaReads.incrementAndGet();
+                return replica.name;
+            }
+        }
+        primaryReads.incrementAndGet();
+        return PRIMARY;
+    }
+
+    /**
+     * Stamps the heartbeat on the primary, then reads each replica's copy of it
+     */
+    public void heartbeat() {
+        try {
+            primary.update(STAMP_SQL, System.currentTimeMillis());
+        } catch (DataAccessException e) {
+            heartbeatFailures.incrementAndGet();
+            System.err.println("Replication heartbeat failed on the primary: " + e.getMessage());
+        }
+
+        for (Replica replica : replicas) {
+            try {
+                Long beat = replica.jdbcTemplate.queryForObject(BEAT_SQL, Long.class);
+                long seen = beat != null ? beat : 0;
+                replica.replayedUpTo = seen;
+                replica.lagMs = Math.max(0, System.currentTimeMillis() - seen);
+                if (!replica.reachable) {
+                    System.out.println("Read replica " + replica.name + " is reachable");
+                }
+                replica.reachable = true;
+            } catch (DataAccessException e) {
+                if (replica.reachable) {
+                    System.err.println("Read replica " + replica.name + " is unreachable: " + e.getMessage());
+                }
+                replica.reachable = false;
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        List<Map<String, Object>> replicaStats = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("name", replica.name);
+            entry.put("reachable", replica.reachable);
+            entry.put("lagMs", replica.lagMs);
+            entry.put("usable", replica.reachable && replica.lagMs <= maxLagMs);
+            replicaStats.add(entry);
+        }
+        stats.put("replicas", replicaStats);
+        stats.put("maxLagMs", maxLagMs);
+        stats.put("replicaReads", replicaReads.get());
+        stats.put("readsKeptOnPrimary", primaryReads.get());
+        stats.put("heartbeatFailures", heartbeatFailures.get());
+        stats.put("usersAwaitingReplication", readYourWrites.getTrackedUsers());
+        return stats;
+    }
+
+    /**
+     * Closes the replica pools; the primary pool is a bean of its own
+     */
+    public void close() throws IOException {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
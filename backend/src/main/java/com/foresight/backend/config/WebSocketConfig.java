@@ -12,8 +12,8 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        // Enable a simple in-memory message broker for broadcasting
-        config.enableSimpleBroker("/topic");
+        // Enable a simple in-memory message broker: /topic for broadcasts, /queue for per-user messages
+        config.enableSimpleBroker("/topic", "/queue");
         // Prefix for messages from clients
         config.setApplicationDestinationPrefixes("/app");
     }
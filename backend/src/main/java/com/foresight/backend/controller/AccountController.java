@@ -1,28 +1,51 @@
 package com.foresight.backend.controller;
 
-import com.foresight.backend.dto.AccountResponse;
+import com.foresight.backend.dto.ActivityItem;
+import com.foresight.backend.dto.DepositItem;
 import com.foresight.backend.dto.DepositRequest;
+import com.foresight.backend.dto.HistoryPage;
+import com.foresight.backend.dto.PerformanceResponse;
+import com.foresight.backend.dto.SnapshotRunResponse;
 import com.foresight.backend.model.Account;
 import com.foresight.backend.model.Deposit;
 import com.foresight.backend.service.AccountService;
+import com.foresight.backend.service.ActivityService;
+import com.foresight.backend.service.PortfolioSnapshotService;
+import com.foresight.backend.service.ReadModelCache;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
+import java.time.LocalDate;
 
 @RestController
 @RequestMapping("/api/account")
 @CrossOrigin(origins = "*")
 public class AccountController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     private AccountService accountService;
 
+    @Autowired
+    private PortfolioSnapshotService portfolioSnapshotService;
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
     @GetMapping("/{userId}")
-    public ResponseEntity<AccountResponse> getAccountInfo(@PathVariable Long userId) {
-        AccountResponse accountInfo = accountService.getAccountInfo(userId);
-        return ResponseEntity.ok(accountInfo);
+    public ResponseEntity<byte[]> getAccountInfo(@PathVariable Long userId, @RequestHeader HttpHeaders headers) {
+        return ConditionalGet.respond(readModelCache, "account", userId, headers,
+                () -> accountService.getAccountInfo(userId), null);
     }
 
     @PostMapping("/deposit")
@@ -35,9 +58,82 @@ public class AccountController {
         return ResponseEntity.ok(deposit);
     }
 
+    /**
+     * Sets the currency account and portfolio totals are converted into, e.g. ?code=EUR
+     */
+    @PutMapping("/{userId}/currency")
+    public ResponseEntity<Void> setBaseCurrency(@PathVariable Long userId, @RequestParam String code) {
+        try {
+            accountService.setBaseCurrency(userId, code);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Deposits newest first, a page at a time; pass the previous page's nextCursor to continue
+     */
     @GetMapping("/{userId}/deposits")
-    public ResponseEntity<List<Deposit>> getDeposits(@PathVariable Long userId) {
-        List<Deposit> deposits = accountService.getUserDeposits(userId);
-        return ResponseEntity.ok(deposits);
+    public ResponseEntity<HistoryPage<DepositItem>> getDeposits(@PathVariable Long userId,
+                                                                @RequestParam(defaultValue = "50") int limit,
+                                                                @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(activityService.getDeposits(userId, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Every deposit as newline-delimited JSON, streamed
+     */
+    @GetMapping(value = "/{userId}/deposits/export", produces = NDJSON)
+    public void exportDeposits(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        activityService.exportDeposits(userId, response.getOutputStream());
+    }
+
+    /**
+     * Deposits and trades merged, newest first, a page at a time
+     */
+    @GetMapping("/{userId}/activity")
+    public ResponseEntity<HistoryPage<ActivityItem>> getActivity(@PathVariable Long userId,
+                                                                 @RequestParam(defaultValue = "50") int limit,
+                                                                 @RequestParam(required = false) String cursor) {
+        try {
+            return ResponseEntity.ok(activityService.getActivity(userId, limit, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/{userId}/activity/export", produces = NDJSON)
+    public void exportActivity(@PathVariable Long userId, HttpServletResponse response) throws IOException {
+        response.setContentType(NDJSON);
+        activityService.exportActivity(userId, response.getOutputStream());
+    }
+
+    @GetMapping("/{userId}/performance")
+    public ResponseEntity<PerformanceResponse> getPerformance(@PathVariable Long userId,
+                                                              @RequestParam(defaultValue = "1Y") String range) {
+        try {
+            return ResponseEntity.ok(portfolioSnapshotService.getPerformance(userId, range));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Runs the end-of-day snapshot now, e.g. to backfill a day the scheduled run missed
+     */
+    @PostMapping("/snapshots")
+    public ResponseEntity<SnapshotRunResponse> takeSnapshots(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        try {
+            return ResponseEntity.ok(portfolioSnapshotService.takeSnapshots(date));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
     }
 }
@@ -0,0 +1,44 @@
+package com.foresight.backend.controller;
+
+import com.foresight.backend.dto.PriceAlertItem;
+import com.foresight.backend.dto.PriceAlertRequest;
+import com.foresight.backend.service.PriceAlertService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/alerts")
+@CrossOrigin(origins = "*")
+public class AlertController {
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    /**
+     * Creates a price or P&L alert; firings arrive on /queue/alerts/{userId}
+     */
+    @PostMapping
+    public ResponseEntity<PriceAlertItem> createAlert(@RequestBody PriceAlertRequest request) {
+        try {
+            return ResponseEntity.ok(priceAlertService.createAlert(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{userId}")
+    public ResponseEntity<List<PriceAlertItem>> getAlerts(@PathVariable Long userId) {
+        return ResponseEntity.ok(priceAlertService.getAlerts(userId));
+    }
+
+    @DeleteMapping("/{alertId}")
+    public ResponseEntity<Void> deleteAlert(@PathVariable Long alertId, @RequestParam Long userId) {
+        if (!priceAlertService.deleteAlert(userId, alertId)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,82 @@
+package com.foresight.backend.controller;
+
+import com.foresight.backend.service.ReadModelCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Serves a {@link ReadModelCache} view with ETag / If-None-Match handling and gzip for large bodies
+ */
+final class ConditionalGet {
+
+    private static final String GZIP_SUFFIX = "-gzip\"";
+
+    private ConditionalGet() {
+    }
+
+    static <T> ResponseEntity<byte[]> respond(ReadModelCache cache, String view, Long userId, HttpHeaders request,
+                                              Supplier<T> model, Predicate<T> cacheable) {
+        // Answered from the version alone, before anything is loaded
+        String current = cache.currentEtag(userId);
+        if (matches(request.getFirst(HttpHeaders.IF_NONE_MATCH), current)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(current)
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+
+        ReadModelCache.View rendered = cache.render(view, userId, model, cacheable);
+        boolean gzip = rendered.isCompressible() && acceptsGzip(request.getFirst(HttpHeaders.ACCEPT_ENCODING));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (rendered.getEtag() != null) {
+            // A strong ETag names one representation, so the gzipped body gets its own
+            String etag = rendered.getEtag();
+            response.eTag(gzip ? etag.substring(0, etag.length() - 1) + GZIP_SUFFIX : etag);
+        }
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(rendered.getGzipped());
+        }
+        return response.body(rendered.getJson());
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.endsWith(GZIP_SUFFIX)) {
+                tag = tag.substring(0, tag.length() - GZIP_SUFFIX.length()) + "\"";
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,60 @@
+package com.foresight.backend.controller;
+
+import com.foresight.backend.dto.DashboardResponse;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.service.DashboardService;
+import com.foresight.backend.service.ReadModelCache;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/dashboard")
+@CrossOrigin(origins = "*")
+public class DashboardController {
+
+    @Autowired
+    private DashboardService dashboardService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    /**
+     * Account summary, valued portfolio, dividend income and upcoming events in one response
+     *
+     * @param fields comma separated widgets to include (account, portfolio, dividends, events); all when absent
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<byte[]> getDashboard(@PathVariable Long userId,
+                                               @RequestParam(required = false) List<String> fields,
+                                               @RequestHeader HttpHeaders headers) {
+        List<String> selected;
+        try {
+            selected = DashboardService.selectFields(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // One cached view per selection, all sharing the user's version
+        return ConditionalGet.respond(readModelCache, "dashboard/" + String.join(",", selected), userId, headers, () -> {
+            DashboardResponse dashboard = dashboardService.getDashboard(userId, selected);
+            if (dashboard.getPortfolio() != null) {
+                readModelCache.trackSymbols(userId, symbols(dashboard.getPortfolio().getHoldings()));
+            }
+            return dashboard;
+        }, dashboard -> dashboard.getPortfolio() == null || dashboard.getPortfolio().getStaleSymbols().isEmpty());
+    }
+
+    private static Set<String> symbols(List<PortfolioHolding> holdings) {
+        Set<String> symbols = new HashSet<>();
+        for (PortfolioHolding holding : holdings) {
+            symbols.add(holding.getStock().getSymbol());
+        }
+        return symbols;
+    }
+}
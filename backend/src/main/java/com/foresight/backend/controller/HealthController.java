@@ -1,5 +1,11 @@
 package com.foresight.backend.controller;
 
+import com.foresight.backend.config.ReplicaRoutingDataSource;
+import com.foresight.backend.service.FinnhubService;
+import com.foresight.backend.service.FxRateService;
+import com.foresight.backend.service.MarketDataStreamService;
+import com.foresight.backend.service.PortfolioStateEngine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -11,6 +17,22 @@ import java.util.Map;
 @RequestMapping("/api")
 public class HealthController {
 
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Autowired
+    private MarketDataStreamService marketDataStreamService;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    // Only present when read replicas are configured
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
     @GetMapping("/health")
     public Map<String, String> health() {
         Map<String, String> response = new HashMap<>();
@@ -20,6 +42,51 @@ public class HealthController {
         return response;
     }
 
+    /**
+     * Finnhub circuit states plus retry, hedge and stale-quote counters
+     */
+    @GetMapping("/health/upstream")
+    public Map<String, Object> upstreamHealth() {
+        return finnhubService.getResilienceStats();
+    }
+
+    /**
+     * Streaming provider, connection state and trade counters
+     */
+    @GetMapping("/health/stream")
+    public Map<String, Object> streamHealth() {
+        return marketDataStreamService.getStats();
+    }
+
+    /**
+     * Portfolio state engine shards, queue depth and write-behind counters
+     */
+    @GetMapping("/health/engine")
+    public Map<String, Object> engineHealth() {
+        return portfolioStateEngine.getStats();
+    }
+
+    /**
+     * FX source, number of currencies and when the rates were last updated
+     */
+    @GetMapping("/health/fx")
+    public Map<String, Object> fxHealth() {
+        return fxRateService.getStats();
+    }
+
+    /**
+     * Read replica lag and how many read-only transactions each side served
+     */
+    @GetMapping("/health/datasource")
+    public Map<String, Object> datasourceHealth() {
+        if (replicaRoutingDataSource == null) {
+            Map<String, Object> response = new HashMap<>();
+            response.put("replicas", "none configured");
+            return response;
+        }
+        return replicaRoutingDataSource.getStats();
+    }
+
     @GetMapping("/")
     public Map<String, String> welcome() {
         Map<String, String> response = new HashMap<>();
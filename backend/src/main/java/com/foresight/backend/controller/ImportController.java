@@ -0,0 +1,49 @@
+package com.foresight.backend.controller;
+
+import com.foresight.backend.dto.ImportJob;
+import com.foresight.backend.service.ImportService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/imports")
+@CrossOrigin(origins = "*")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    /**
+     * The file is sent as the raw request body (not multipart) so it streams straight to disk whatever its size
+     */
+    @PostMapping
+    public ResponseEntity<ImportJob> startImport(@RequestParam Long userId,
+                                                 @RequestParam(required = false) String format,
+                                                 @RequestParam(required = false) String fileName,
+                                                 HttpServletRequest request) throws IOException {
+        try {
+            ImportJob job = importService.startImport(userId, fileName, format, request.getInputStream());
+            return ResponseEntity.accepted().body(job);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Rejected import: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            System.err.println("Rejected import: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJob> getImportJob(@PathVariable String jobId) {
+        ImportJob job = importService.getJob(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job);
+    }
+}
@@ -1,14 +1,34 @@
 package com.foresight.backend.controller;
 
 import com.foresight.backend.dto.AddStockRequest;
+import com.foresight.backend.dto.DividendIncomeResponse;
+import com.foresight.backend.dto.LedgerRebuildResponse;
 import com.foresight.backend.dto.PortfolioResponse;
+import com.foresight.backend.dto.ProjectionResponse;
+import com.foresight.backend.dto.RiskResponse;
+import com.foresight.backend.dto.SellStockRequest;
+import com.foresight.backend.dto.TradeImportRequest;
+import com.foresight.backend.dto.TradeImportResponse;
 import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Trade;
+import com.foresight.backend.service.DividendIncomeService;
+import com.foresight.backend.service.LedgerService;
+import com.foresight.backend.service.MonteCarloService;
 import com.foresight.backend.service.PortfolioService;
+import com.foresight.backend.service.PortfolioStreamService;
+import com.foresight.backend.service.ReadModelCache;
+import com.foresight.backend.service.RiskService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/portfolio")
@@ -18,10 +38,31 @@ public class PortfolioController {
     @Autowired
     private PortfolioService portfolioService;
 
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private RiskService riskService;
+
+    @Autowired
+    private MonteCarloService monteCarloService;
+
+    @Autowired
+    private PortfolioStreamService portfolioStreamService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
     @GetMapping("/{userId}")
-    public ResponseEntity<List<PortfolioHolding>> getUserPortfolio(@PathVariable Long userId) {
-        List<PortfolioHolding> portfolio = portfolioService.getUserPortfolio(userId);
-        return ResponseEntity.ok(portfolio);
+    public ResponseEntity<byte[]> getUserPortfolio(@PathVariable Long userId, @RequestHeader HttpHeaders headers) {
+        return ConditionalGet.respond(readModelCache, "portfolio", userId, headers, () -> {
+            List<PortfolioHolding> portfolio = portfolioService.getUserPortfolio(userId);
+            readModelCache.trackSymbols(userId, symbols(portfolio));
+            return portfolio;
+        }, null);
     }
 
     @PostMapping
@@ -47,10 +88,87 @@ public class PortfolioController {
         }
     }
 
+    @PostMapping("/import")
+    public ResponseEntity<TradeImportResponse> importTrades(@RequestBody TradeImportRequest request) {
+        try {
+            TradeImportResponse response = portfolioService.importTrades(request);
+            return ResponseEntity.ok(response);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Rejected trade import: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            System.err.println("Rejected trade import: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/sell")
+    public ResponseEntity<PortfolioHolding> sellStock(@RequestBody SellStockRequest request) {
+        try {
+            PortfolioHolding holding = portfolioService.sellStock(
+                    request.getUserId(),
+                    request.getSymbol(),
+                    request.getQuantity(),
+                    request.getSellPrice()
+            );
+            return ResponseEntity.ok(holding);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Rejected sell: " + e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/trades/{userId}")
+    public ResponseEntity<List<Trade>> getTrades(@PathVariable Long userId,
+                                                 @RequestParam(defaultValue = "100") int limit) {
+        if (limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(ledgerService.getRecentTrades(userId, limit));
+    }
+
+    @PostMapping("/ledger/{userId}/rebuild")
+    public ResponseEntity<LedgerRebuildResponse> rebuildLedger(@PathVariable Long userId) {
+        return ResponseEntity.ok(ledgerService.rebuildUser(userId));
+    }
+
     @GetMapping("/analysis/{userId}")
-    public ResponseEntity<PortfolioResponse> getPortfolioAnalysis(@PathVariable Long userId) {
-        PortfolioResponse analysis = portfolioService.getPortfolioAnalysis(userId);
-        return ResponseEntity.ok(analysis);
+    public ResponseEntity<byte[]> getPortfolioAnalysis(@PathVariable Long userId, @RequestHeader HttpHeaders headers) {
+        return ConditionalGet.respond(readModelCache, "analysis", userId, headers, () -> {
+            PortfolioResponse analysis = portfolioService.getPortfolioAnalysis(userId);
+            readModelCache.trackSymbols(userId, symbols(analysis.getHoldings()));
+            return analysis;
+        }, analysis -> analysis.getStaleSymbols().isEmpty()); // Don't pin a view valued from stale prices
+    }
+
+    @GetMapping(value = "/stream/{userId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPortfolio(@PathVariable Long userId) {
+        return portfolioStreamService.subscribe(userId);
+    }
+
+    @GetMapping("/dividends/{userId}")
+    public ResponseEntity<DividendIncomeResponse> getDividendIncome(@PathVariable Long userId) {
+        DividendIncomeResponse dividendIncome = dividendIncomeService.getDividendIncome(userId);
+        return ResponseEntity.ok(dividendIncome);
+    }
+
+    @GetMapping("/risk/{userId}")
+    public ResponseEntity<RiskResponse> getPortfolioRisk(@PathVariable Long userId) {
+        RiskResponse risk = riskService.getPortfolioRisk(userId);
+        return ResponseEntity.ok(risk);
+    }
+
+    @GetMapping("/projection/{userId}")
+    public ResponseEntity<ProjectionResponse> getPortfolioProjection(
+            @PathVariable Long userId,
+            @RequestParam(defaultValue = "252") int horizonDays,
+            @RequestParam(defaultValue = "20000") int paths) {
+        if (horizonDays < 1 || horizonDays > MonteCarloService.MAX_HORIZON_DAYS
+                || paths < 100 || paths > MonteCarloService.MAX_PATHS) {
+            return ResponseEntity.badRequest().build();
+        }
+        ProjectionResponse projection = monteCarloService.getProjection(userId, horizonDays, paths);
+        return ResponseEntity.ok(projection);
     }
 
     @DeleteMapping("/{holdingId}")
@@ -58,4 +176,12 @@ public class PortfolioController {
         portfolioService.removeStock(holdingId);
         return ResponseEntity.noContent().build();
     }
+
+    private static Set<String> symbols(List<PortfolioHolding> holdings) {
+        Set<String> symbols = new HashSet<>();
+        for (PortfolioHolding holding : holdings) {
+            symbols.add(holding.getStock().getSymbol());
+        }
+        return symbols;
+    }
 }
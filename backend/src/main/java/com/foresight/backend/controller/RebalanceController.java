@@ -0,0 +1,63 @@
+package com.foresight.backend.controller;
+
+import com.foresight.backend.dto.AllocationTarget;
+import com.foresight.backend.dto.RebalancePlan;
+import com.foresight.backend.dto.RebalanceRunResponse;
+import com.foresight.backend.service.RebalanceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/rebalance")
+@CrossOrigin(origins = "*")
+public class RebalanceController {
+
+    @Autowired
+    private RebalanceService rebalanceService;
+
+    @GetMapping("/{userId}/targets")
+    public ResponseEntity<List<AllocationTarget>> getTargets(@PathVariable Long userId) {
+        return ResponseEntity.ok(rebalanceService.getTargets(userId));
+    }
+
+    /**
+     * Replaces the user's target allocations; an empty list clears them
+     */
+    @PutMapping("/{userId}/targets")
+    public ResponseEntity<List<AllocationTarget>> setTargets(@PathVariable Long userId,
+                                                             @RequestBody List<AllocationTarget> targets) {
+        try {
+            return ResponseEntity.ok(rebalanceService.setTargets(userId, targets));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Trades that bring the portfolio back within tolerance of its targets at current quotes
+     */
+    @GetMapping("/{userId}")
+    public ResponseEntity<RebalancePlan> getPlan(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(rebalanceService.getPlan(userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Evaluates every user with targets now, as the scheduled run after the close does
+     */
+    @PostMapping("/run")
+    public ResponseEntity<RebalanceRunResponse> runAll() {
+        try {
+            return ResponseEntity.ok(rebalanceService.runAll());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package com.foresight.backend.controller;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.foresight.backend.dto.CandleResponse;
 import com.foresight.backend.dto.StockPriceUpdate;
 import com.foresight.backend.model.Stock;
+import com.foresight.backend.service.CandleCacheService;
 import com.foresight.backend.service.FinnhubService;
 import com.foresight.backend.service.StockPriceService;
 import com.foresight.backend.repository.StockRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -29,12 +34,38 @@ public class StockController {
     @Autowired
     private StockRepository stockRepository;
 
+    @Autowired
+    private CandleCacheService candleCacheService;
+
     @GetMapping("/{symbol}/quote")
     public ResponseEntity<StockPriceUpdate> getStockQuote(@PathVariable String symbol) {
         StockPriceUpdate quote = stockPriceService.fetchAndBroadcastStockPrice(symbol);
         return ResponseEntity.ok(quote);
     }
 
+    @GetMapping("/{symbol}/candles")
+    public ResponseEntity<List<CandleResponse>> getCandles(
+            @PathVariable String symbol,
+            @RequestParam(defaultValue = "D") String resolution,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (!CandleCacheService.RESOLUTIONS.contains(resolution)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        // Default to the last year of data
+        LocalDate toDate = to != null ? to : LocalDate.now(ZoneOffset.UTC);
+        LocalDate fromDate = from != null ? from : toDate.minusYears(1);
+
+        List<CandleResponse> candles = candleCacheService.getCandles(
+                symbol,
+                resolution,
+                fromDate.atStartOfDay(ZoneOffset.UTC).toEpochSecond(),
+                toDate.plusDays(1).atStartOfDay(ZoneOffset.UTC).toEpochSecond() - 1
+        );
+        return ResponseEntity.ok(candles);
+    }
+
     @GetMapping("/{symbol}")
     public ResponseEntity<Stock> getStockInfo(@PathVariable String symbol) {
         Stock stock = stockRepository.findBySymbol(symbol)
@@ -15,4 +15,5 @@ public class AccountResponse {
     private BigDecimal totalProfitLossPercentage;
     private BigDecimal dailyProfitLoss;
     private BigDecimal dailyProfitLossPercentage;
+    private String currency;
 }
@@ -0,0 +1,27 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One deposit or trade in a user's account activity
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityItem {
+    // DEPOSIT, BUY or SELL
+    private String type;
+    private Long id;
+    private LocalDateTime date;
+    private BigDecimal amount;
+    // Trades only
+    private String symbol;
+    private Integer quantity;
+    // Deposits only
+    private String description;
+}
@@ -0,0 +1,20 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertNotification {
+    private Long alertId;
+    private String symbol;
+    private String kind;
+    private BigDecimal threshold;
+    private BigDecimal price;
+    private LocalDateTime triggeredAt;
+}
@@ -0,0 +1,20 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AllocationDrift {
+    private String type;
+    private String key;
+    private BigDecimal targetPct;
+    private BigDecimal tolerancePct;
+    private BigDecimal currentPct;
+    // Weight once the plan's trades are made
+    private BigDecimal plannedPct;
+}
@@ -0,0 +1,19 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AllocationTarget {
+    // SYMBOL or SECTOR
+    private String type;
+    private String key;
+    private BigDecimal weightPct;
+    // Drift allowed before the target is traded back; defaults to rebalance.tolerance-pct
+    private BigDecimal tolerancePct;
+}
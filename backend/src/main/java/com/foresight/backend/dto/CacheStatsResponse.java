@@ -0,0 +1,22 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsResponse {
+    private boolean statisticsEnabled;
+    private List<CacheRegionStats> regions;
+    private long queryCacheHits;
+    private long queryCacheMisses;
+    private long naturalIdCacheHits;
+    private long naturalIdCacheMisses;
+    private long entityLoads;
+    private long queryExecutions;
+    private LocalDateTime statisticsSince;
+}
@@ -0,0 +1,17 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandleResponse {
+    private long timestamp;
+    private double open;
+    private double high;
+    private double low;
+    private double close;
+    private long volume;
+}
@@ -0,0 +1,21 @@
+package com.foresight.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+// Widgets left out of the requested fields are omitted rather than sent as null
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class DashboardResponse {
+    private Long userId;
+    private AccountResponse account;
+    private PortfolioResponse portfolio;
+    private DividendIncomeResponse dividends;
+    private List<UpcomingEvent> events;
+}
@@ -0,0 +1,18 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DepositItem {
+    private Long id;
+    private BigDecimal amount;
+    private LocalDateTime depositDate;
+    private String description;
+}
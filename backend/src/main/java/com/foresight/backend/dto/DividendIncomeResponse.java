@@ -0,0 +1,24 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DividendIncomeResponse {
+    private Long userId;
+    // Base currency all the amounts are in
+    private String currency;
+    private BigDecimal totalMarketValue;
+    private BigDecimal valueWeightedYield;
+    private BigDecimal annualIncome;
+    private BigDecimal monthlyIncome;
+    private BigDecimal dailyIncome;
+    private List<MonthlyDividendProjection> projections;
+    private LocalDateTime lastUpdated;
+}
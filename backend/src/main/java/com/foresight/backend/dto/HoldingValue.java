@@ -0,0 +1,19 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HoldingValue {
+    private Long holdingId;
+    private String symbol;
+    private Integer quantity;
+    private BigDecimal currentPrice;
+    private BigDecimal currentValue;
+    private BigDecimal profitLoss;
+    private BigDecimal profitLossPercentage;
+}
@@ -0,0 +1,33 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportJob {
+    private String jobId;
+    private Long userId;
+    private String fileName;
+    private String format;
+    private String status;
+    // UPLOADED, PARSING, ENRICHING, RECORDING, REBUILDING, DONE (ROLLED_BACK when a failed import was undone)
+    private String phase;
+    private long rowsRead;
+    private long buysRecorded;
+    private long depositsWritten;
+    private long sellsRecorded;
+    private long rowsRejected;
+    private int symbols;
+    private int symbolsCreated;
+    private int symbolsEnriched;
+    private int holdingsUpserted;
+    private List<String> errors;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
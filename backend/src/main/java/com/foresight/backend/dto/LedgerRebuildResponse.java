@@ -0,0 +1,17 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LedgerRebuildResponse {
+    private Long userId;
+    private long tradesReplayed;
+    private int positions;
+    private int holdingsWritten;
+    private String costBasisMethod;
+    private long elapsedMs;
+}
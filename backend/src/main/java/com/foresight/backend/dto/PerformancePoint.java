@@ -0,0 +1,18 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PerformancePoint {
+    private LocalDate date;
+    private BigDecimal marketValue;
+    private BigDecimal costBasis;
+    // Time-weighted return since the start of the range, in percent
+    private BigDecimal cumulativeReturn;
+}
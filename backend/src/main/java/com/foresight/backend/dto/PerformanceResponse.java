@@ -0,0 +1,28 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PerformanceResponse {
+    private Long userId;
+    private String range;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private BigDecimal startValue;
+    private BigDecimal endValue;
+    // Money put in (buys) minus money taken out (sell proceeds) over the range
+    private BigDecimal netFlows;
+    // Value change not explained by flows
+    private BigDecimal investmentGain;
+    // Percentages; the annualized figure is only set for ranges longer than a year
+    private BigDecimal timeWeightedReturn;
+    private BigDecimal annualizedReturn;
+    private List<PerformancePoint> points;
+}
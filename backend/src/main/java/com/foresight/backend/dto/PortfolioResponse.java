@@ -17,4 +17,8 @@ public class PortfolioResponse {
     private BigDecimal totalProfitLoss;
     private BigDecimal totalProfitLossPercentage;
     private BigDecimal averageDividendYield;
+    // Symbols valued at their last known price because a live quote wasn't available
+    private List<String> staleSymbols;
+    // Currency of the totals; holdings stay in their stock's currency
+    private String baseCurrency;
 }
@@ -0,0 +1,16 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioStreamEvent {
+    private List<HoldingValue> holdings;
+    private PortfolioTotals totals;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,16 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PortfolioTotals {
+    private BigDecimal totalInvested;
+    private BigDecimal totalCurrentValue;
+    private BigDecimal totalProfitLoss;
+    private BigDecimal totalProfitLossPercentage;
+}
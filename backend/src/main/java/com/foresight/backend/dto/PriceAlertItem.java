@@ -0,0 +1,23 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceAlertItem {
+    private Long id;
+    private String symbol;
+    private String kind;
+    private BigDecimal threshold;
+    private BigDecimal hysteresisPct;
+    private boolean armed;
+    private LocalDateTime lastTriggeredAt;
+    private BigDecimal lastTriggeredPrice;
+    private LocalDateTime createdAt;
+}
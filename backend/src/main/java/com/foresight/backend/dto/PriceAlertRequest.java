@@ -0,0 +1,21 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceAlertRequest {
+    private Long userId;
+    private String symbol;
+    // PRICE_ABOVE, PRICE_BELOW, PNL_ABOVE or PNL_BELOW
+    private String kind;
+    // A price, or for PNL_* the holding's P&L in percent
+    private BigDecimal threshold;
+    // Optional, defaults to alerts.hysteresis-pct
+    private BigDecimal hysteresisPct;
+}
@@ -0,0 +1,23 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectionResponse {
+    private Long userId;
+    // Base currency all the amounts are in
+    private String currency;
+    private int horizonDays;
+    private int paths;
+    private BigDecimal initialValue;
+    private List<ProjectionBand> bands;
+    private List<String> excludedSymbols;
+    private LocalDate asOf;
+}
@@ -0,0 +1,25 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebalancePlan {
+    private Long userId;
+    private String baseCurrency;
+    // Holdings plus cash, in the base currency
+    private BigDecimal totalValue;
+    private BigDecimal cashAvailable;
+    private BigDecimal cashAfter;
+    // Whether every target ends up within its tolerance
+    private boolean withinTolerance;
+    private List<RebalanceTrade> trades;
+    private List<AllocationDrift> allocations;
+    private List<String> warnings;
+}
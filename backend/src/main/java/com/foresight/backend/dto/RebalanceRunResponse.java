@@ -0,0 +1,16 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebalanceRunResponse {
+    private int usersEvaluated;
+    private int usersNeedingTrades;
+    private long tradesProposed;
+    private int quotesFetched;
+    private long elapsedMs;
+}
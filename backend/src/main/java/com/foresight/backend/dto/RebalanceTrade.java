@@ -0,0 +1,22 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebalanceTrade {
+    private String symbol;
+    // BUY or SELL
+    private String side;
+    private int quantity;
+    // In the stock's currency
+    private BigDecimal price;
+    private String currency;
+    // In the user's base currency
+    private BigDecimal value;
+}
@@ -0,0 +1,22 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Where a symbol's price refresh schedule stood, carried across restarts in the warm-state snapshot
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RefreshSnapshot {
+    private String symbol;
+    private long lastRefreshMs;
+    private BigDecimal lastPrice;
+    private BigDecimal previousClose;
+    // NaN until the symbol has moved at least once
+    private double move;
+}
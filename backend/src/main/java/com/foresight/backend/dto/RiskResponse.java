@@ -0,0 +1,27 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RiskResponse {
+    private Long userId;
+    // Base currency all the amounts are in
+    private String currency;
+    private BigDecimal portfolioValue;
+    private BigDecimal dailyVolatility;
+    private BigDecimal annualizedVolatility;
+    private BigDecimal beta;
+    private BigDecimal parametricVar95;
+    private BigDecimal parametricVar99;
+    private BigDecimal historicalVar95;
+    private int observations;
+    private LocalDate asOf;
+    private List<String> excludedSymbols;
+}
@@ -0,0 +1,16 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotRunResponse {
+    private LocalDate snapshotDate;
+    private long snapshotsWritten;
+    private long batches;
+    private long elapsedMs;
+}
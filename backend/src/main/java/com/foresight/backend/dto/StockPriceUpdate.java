@@ -15,4 +15,6 @@ public class StockPriceUpdate {
     private BigDecimal change;
     private BigDecimal changePercent;
     private LocalDateTime timestamp;
+    // Last known price served because Finnhub could not answer in time
+    private boolean stale;
 }
@@ -0,0 +1,16 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeImportRequest {
+    private Long userId;
+    private List<TradeImportRow> trades;
+    // Optional; a second request with the same key is refused instead of importing the trades again
+    private String idempotencyKey;
+}
@@ -0,0 +1,19 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeImportResponse {
+    private Long userId;
+    private int tradesReceived;
+    private int tradesApplied;
+    private int holdingsUpserted;
+    private int stocksCreated;
+    private List<String> rejected;
+    private long elapsedMs;
+}
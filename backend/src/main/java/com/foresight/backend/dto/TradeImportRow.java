@@ -0,0 +1,15 @@
+package com.foresight.backend.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TradeImportRow {
+    private String symbol;
+    private Integer quantity;
+    private BigDecimal price;
+}
@@ -0,0 +1,17 @@
+package com.foresight.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpcomingEvent {
+    // dividend or earnings
+    private String type;
+    private String symbol;
+    private LocalDateTime date;
+}
@@ -1,6 +1,11 @@
 package com.foresight.backend.model;
 
+import com.foresight.backend.config.CacheConfig;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -9,6 +14,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "accounts")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.ACCOUNT_REGION)
+@NaturalIdCache(region = CacheConfig.ACCOUNT_USER_REGION)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,6 +25,7 @@ public class Account {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @OneToOne
     @JoinColumn(name = "user_id", nullable = false, unique = true)
     private User user;
@@ -8,7 +8,10 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "deposits")
+@Table(
+        name = "deposits",
+        indexes = @Index(name = "idx_deposits_user_date", columnList = "user_id, deposit_date, id")
+)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
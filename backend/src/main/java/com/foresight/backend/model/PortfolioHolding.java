@@ -8,7 +8,11 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "portfolio_holdings")
+@Table(
+        name = "portfolio_holdings",
+        uniqueConstraints = @UniqueConstraint(name = "uk_portfolio_holdings_user_stock", columnNames = {"user_id", "stock_id"}),
+        indexes = @Index(name = "idx_portfolio_holdings_stock_id", columnList = "stock_id")
+)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -44,12 +48,24 @@ public class PortfolioHolding {
     @Column(precision = 10, scale = 4)
     private BigDecimal profitLossPercentage;
 
+    // Gains locked in by sells; kept when the position is sold down to zero
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal realizedProfitLoss = BigDecimal.ZERO;
+
+    // Id of the last ledger trade this row reflects
+    @Column(nullable = false)
+    private Long ledgerSequence = 0L;
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
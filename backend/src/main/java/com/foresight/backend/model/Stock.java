@@ -1,6 +1,11 @@
 package com.foresight.backend.model;
 
+import com.foresight.backend.config.CacheConfig;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -9,6 +14,8 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "stocks")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.STOCK_REGION)
+@NaturalIdCache(region = CacheConfig.STOCK_SYMBOL_REGION)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -18,6 +25,7 @@ public class Stock {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    @NaturalId
     @Column(unique = true, nullable = false)
     private String symbol;
 
@@ -27,6 +35,14 @@ public class Stock {
     @Column(precision = 10, scale = 2)
     private BigDecimal currentPrice;
 
+    // Currency currentPrice is quoted in
+    @Column(nullable = false, length = 3)
+    private String currency = "USD";
+
+    // Industry from the company profile; groups positions for sector allocation targets
+    @Column(length = 100)
+    private String sector;
+
     @Column(precision = 10, scale = 4)
     private BigDecimal dividendYield;
 
@@ -0,0 +1,61 @@
+package com.foresight.backend.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One entry of the append-only trade ledger. Holdings are derived from these; rows are never updated.
+ */
+@Entity
+@Table(
+        name = "trades",
+        indexes = {
+                @Index(name = "idx_trades_user_stock", columnList = "user_id, stock_id, id"),
+                @Index(name = "idx_trades_user_date", columnList = "user_id, trade_date, id")
+        }
+)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Trade {
+
+    public enum Side { BUY, SELL }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @ManyToOne
+    @JoinColumn(name = "stock_id", nullable = false)
+    private Stock stock;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 4)
+    private Side side;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    // Total cost of a buy or proceeds of a sell
+    @Column(nullable = false, precision = 15, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private LocalDateTime tradeDate;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
@@ -1,6 +1,9 @@
 package com.foresight.backend.model;
 
+import com.foresight.backend.config.CacheConfig;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -8,6 +11,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfig.USER_REGION)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -29,6 +33,10 @@ public class User {
     @Column(nullable = false)
     private String lastName;
 
+    // Currency portfolio and account totals are converted into
+    @Column(nullable = false, length = 3)
+    private String baseCurrency = "USD";
+
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
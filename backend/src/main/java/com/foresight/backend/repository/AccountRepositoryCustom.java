@@ -0,0 +1,12 @@
+package com.foresight.backend.repository;
+
+import com.foresight.backend.model.Account;
+import java.util.Optional;
+
+public interface AccountRepositoryCustom {
+
+    /**
+     * Account lookup through the natural-id cache (user -> account); only a miss goes to the database
+     */
+    Optional<Account> findByUserId(Long userId);
+}
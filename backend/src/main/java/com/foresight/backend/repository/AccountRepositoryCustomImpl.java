@@ -0,0 +1,23 @@
+package com.foresight.backend.repository;
+
+import com.foresight.backend.model.Account;
+import com.foresight.backend.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Optional;
+
+public class AccountRepositoryCustomImpl implements AccountRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Account> findByUserId(Long userId) {
+        Session session = entityManager.unwrap(Session.class);
+        return session.bySimpleNaturalId(Account.class)
+                .loadOptional(session.getReference(User.class, userId));
+    }
+}
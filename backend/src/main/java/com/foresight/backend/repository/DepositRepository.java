@@ -12,6 +12,8 @@ public interface DepositRepository extends JpaRepository<Deposit, Long> {
 
     List<Deposit> findByUser(User user);
 
+    // Explicit query so the filter is on deposits.user_id and the (user_id, deposit_date, id) index serves the order
+    @Query("SELECT d FROM Deposit d WHERE d.user.id = :userId ORDER BY d.depositDate DESC, d.id DESC")
     List<Deposit> findByUserIdOrderByDepositDateDesc(Long userId);
 
     @Query("SELECT SUM(d.amount) FROM Deposit d WHERE d.user.id = :userId")
@@ -3,9 +3,14 @@ package com.foresight.backend.repository;
 import com.foresight.backend.model.PortfolioHolding;
 import com.foresight.backend.model.User;
 import com.foresight.backend.model.Stock;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,8 +19,30 @@ public interface PortfolioHoldingRepository extends JpaRepository<PortfolioHoldi
 
     List<PortfolioHolding> findByUser(User user);
 
+    // Explicit query: the derived version joins users and filters on users.id, which can't use the holdings index.
+    // Positions sold down to zero stay in the table for their realized gains but aren't current holdings.
+    @Query("SELECT ph FROM PortfolioHolding ph WHERE ph.user.id = :userId AND ph.quantity > 0")
     List<PortfolioHolding> findByUserId(Long userId);
 
+    // Users with current holdings, a page at a time in id order
+    @Query("SELECT DISTINCT ph.user.id FROM PortfolioHolding ph WHERE ph.user.id > :afterUserId AND ph.quantity > 0 ORDER BY ph.user.id")
+    List<Long> findUserIdsAfter(Long afterUserId, Pageable page);
+
+    @Query("SELECT ph FROM PortfolioHolding ph JOIN FETCH ph.stock WHERE ph.user.id IN :userIds AND ph.quantity > 0")
+    List<PortfolioHolding> findByUserIdIn(Collection<Long> userIds);
+
+    // Row locks for the projection write fallback (databases without ON CONFLICT). Query methods are read-only
+    // by default, which may route them to a replica; locking reads are writes and must run on the primary.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Transactional
+    @Query("SELECT ph FROM PortfolioHolding ph WHERE ph.user.id = :userId")
+    List<PortfolioHolding> findByUserIdForUpdate(Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Transactional
+    @Query("SELECT ph FROM PortfolioHolding ph WHERE ph.user.id = :userId AND ph.stock.id = :stockId")
+    Optional<PortfolioHolding> findByUserIdAndStockIdForUpdate(Long userId, Long stockId);
+
     Optional<PortfolioHolding> findByUserAndStock(User user, Stock stock);
 
     @Query("SELECT SUM(ph.totalInvested) FROM PortfolioHolding ph WHERE ph.user.id = :userId")
@@ -0,0 +1,12 @@
+package com.foresight.backend.repository;
+
+import com.foresight.backend.model.Stock;
+import java.util.Optional;
+
+public interface StockRepositoryCustom {
+
+    /**
+     * Symbol lookup through the natural-id cache; only a miss goes to the database
+     */
+    Optional<Stock> findBySymbol(String symbol);
+}
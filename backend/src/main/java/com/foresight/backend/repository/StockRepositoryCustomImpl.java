@@ -0,0 +1,22 @@
+package com.foresight.backend.repository;
+
+import com.foresight.backend.model.Stock;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.Optional;
+
+public class StockRepositoryCustomImpl implements StockRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Stock> findBySymbol(String symbol) {
+        return entityManager.unwrap(Session.class)
+                .bySimpleNaturalId(Stock.class)
+                .loadOptional(symbol);
+    }
+}
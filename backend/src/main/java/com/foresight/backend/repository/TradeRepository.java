@@ -0,0 +1,23 @@
+package com.foresight.backend.repository;
+
+import com.foresight.backend.model.Trade;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
+
+@Repository
+public interface TradeRepository extends JpaRepository<Trade, Long> {
+
+    @Query("SELECT t FROM Trade t WHERE t.user.id = :userId ORDER BY t.id DESC")
+    List<Trade> findRecentByUserId(Long userId, Pageable page);
+
+    // Only for removing a position outright; sells are appended, never edited in
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Trade t WHERE t.user.id = :userId AND t.stock.id = :stockId")
+    int deleteByUserIdAndStockId(Long userId, Long stockId);
+}
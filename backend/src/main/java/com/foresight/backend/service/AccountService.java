@@ -6,7 +6,6 @@ import com.foresight.backend.model.Deposit;
 import com.foresight.backend.model.User;
 import com.foresight.backend.repository.AccountRepository;
 import com.foresight.backend.repository.DepositRepository;
-import com.foresight.backend.repository.PortfolioHoldingRepository;
 import com.foresight.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -15,7 +14,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDateTime;
-import java.util.List;
 
 @Service
 public class AccountService {
@@ -30,43 +28,49 @@ public class AccountService {
     private DepositRepository depositRepository;
 
     @Autowired
-    private PortfolioHoldingRepository portfolioHoldingRepository;
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
 
     public AccountResponse getAccountInfo(Long userId) {
         Account account = accountRepository.findByUserId(userId)
                 .orElseGet(() -> createAccountForUser(userId));
 
-        // Calculate current portfolio value
-        Double currentValueDouble = portfolioHoldingRepository.getTotalCurrentValueByUserId(userId);
-        BigDecimal currentValue = currentValueDouble != null
-                ? BigDecimal.valueOf(currentValueDouble)
-                : BigDecimal.ZERO;
-
-        // Calculate total deposits
-        Double totalDepositsDouble = depositRepository.getTotalDepositsByUserId(userId);
-        BigDecimal totalDeposits = totalDepositsDouble != null
-                ? BigDecimal.valueOf(totalDepositsDouble)
-                : BigDecimal.ZERO;
+        // Values come from the in-memory state; the engine writes them back to the account row
+        PortfolioStateEngine.PortfolioState state = portfolioStateEngine.getState(userId);
+        return summarize(state.getTotalCurrentValue(), state.getTotalDeposits(), account.getDailyProfitLoss(),
+                state.getBaseCurrency());
+    }
 
+    /**
+     * The account figures for a value and deposits the caller already has, both in the given currency
+     */
+    static AccountResponse summarize(BigDecimal currentValue, BigDecimal totalDeposits, BigDecimal dailyProfitLoss,
+                                     String currency) {
         // Calculate P&L
         BigDecimal totalProfitLoss = currentValue.subtract(totalDeposits);
         BigDecimal totalProfitLossPercentage = totalDeposits.compareTo(BigDecimal.ZERO) > 0
                 ? totalProfitLoss.divide(totalDeposits, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
                 : BigDecimal.ZERO;
 
-        // Update account entity
-        account.setCurrentValue(currentValue);
-        account.setTotalDeposits(totalDeposits);
-        account.setTotalProfitLoss(totalProfitLoss);
-        accountRepository.save(account);
-
         return new AccountResponse(
                 currentValue,
                 totalDeposits,
                 totalProfitLoss,
                 totalProfitLossPercentage,
-                account.getDailyProfitLoss(),
-                BigDecimal.ZERO // Daily P&L percentage - can be calculated if needed
+                dailyProfitLoss,
+                BigDecimal.ZERO, // Daily P&L percentage - can be calculated if needed
+                currency
         );
     }
 
@@ -81,11 +85,32 @@ public class AccountService {
         deposit.setDescription(description);
         deposit.setDepositDate(LocalDateTime.now());
 
-        return depositRepository.save(deposit);
+        Deposit saved = depositRepository.save(deposit);
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
+        portfolioStateEngine.onDeposit(userId, amount);
+        return saved;
     }
 
-    public List<Deposit> getUserDeposits(Long userId) {
-        return depositRepository.findByUserIdOrderByDepositDateDesc(userId);
+    /**
+     * Sets the currency the user's totals are reported in
+     *
+     * @throws IllegalArgumentException for a currency without an exchange rate
+     */
+    @Transactional
+    public void setBaseCurrency(Long userId, String currency) {
+        String code = FxRateService.normalize(currency);
+        if (!fxRateService.isKnown(code)) {
+            throw new IllegalArgumentException("No exchange rate for " + currency);
+        }
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        user.setBaseCurrency(code);
+        userRepository.save(user);
+        portfolioStateEngine.reload(userId);
+        dividendIncomeService.refreshUser(userId);
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
     }
 
     private Account createAccountForUser(Long userId) {
@@ -100,6 +125,9 @@ public class AccountService {
         account.setDailyProfitLoss(BigDecimal.ZERO);
         account.setLastUpdated(LocalDateTime.now());
 
-        return accountRepository.save(account);
+        Account saved = accountRepository.save(account);
+        // Created on a read, which a lagging replica must not answer with "no account" again
+        readYourWrites.onUserWrite(userId);
+        return saved;
     }
 }
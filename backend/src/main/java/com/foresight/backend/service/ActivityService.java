@@ -0,0 +1,214 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foresight.backend.dto.ActivityItem;
+import com.foresight.backend.dto.DepositItem;
+import com.foresight.backend.dto.HistoryPage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Deposit and account activity history, newest first.
+ *
+ * Pages are keyset (seek) paginated on (date, id): the cursor is the position of the last row returned and the
+ * next page starts right after it, so every page costs the same index range scan however far back it is. Rows come
+ * straight from JDBC into slim DTOs, without loading entities or their users. Full exports are written as NDJSON
+ * from a cursor with a bounded fetch size, so memory stays flat however much history a user has.
+ *
+ * Activity merges deposits and trades. At the same instant deposits sort before trades, and the cursor records
+ * which kind it stopped on so the seek condition for each source can be set accordingly.
+ */
+@Service
+public class ActivityService {
+
+    private static final int DEPOSIT_RANK = 0;
+    private static final int TRADE_RANK = 1;
+    // Cursor of the first page: later than any stored row
+    private static final LocalDateTime OPEN_END = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private static final String DEPOSITS_SQL =
+            "SELECT id, amount, deposit_date, description FROM deposits " +
+            "WHERE user_id = ? AND (deposit_date, id) < (?, ?) " +
+            "ORDER BY deposit_date DESC, id DESC LIMIT ?";
+
+    // Each branch walks its own (user_id, date, id) index and stops at the limit; the outer query merges them
+    private static final String ACTIVITY_SQL =
+            "SELECT activity_type, id, activity_date, amount, symbol, quantity, description, sort_rank FROM (" +
+            "(SELECT 'DEPOSIT' AS activity_type, d.id, d.deposit_date AS activity_date, d.amount, " +
+            "CAST(NULL AS VARCHAR(255)) AS symbol, CAST(NULL AS INTEGER) AS quantity, d.description, " +
+            DEPOSIT_RANK + " AS sort_rank " +
+            "FROM deposits d WHERE d.user_id = ? AND (d.deposit_date, d.id) < (?, ?) " +
+            "ORDER BY d.deposit_date DESC, d.id DESC LIMIT ?) " +
+            "UNION ALL " +
+            "(SELECT t.side, t.id, t.trade_date, t.amount, s.symbol, t.quantity, NULL, " + TRADE_RANK + " " +
+            "FROM trades t JOIN stocks s ON s.id = t.stock_id WHERE t.user_id = ? AND (t.trade_date, t.id) < (?, ?) " +
+            "ORDER BY t.trade_date DESC, t.id DESC LIMIT ?)" +
+            ") a ORDER BY activity_date DESC, sort_rank, id DESC LIMIT ?";
+
+    private static final RowMapper<DepositItem> DEPOSIT_MAPPER = (rs, row) -> new DepositItem(
+            rs.getLong(1), rs.getBigDecimal(2), rs.getTimestamp(3).toLocalDateTime(), rs.getString(4));
+
+    private static final RowMapper<ActivityItem> ACTIVITY_MAPPER = (rs, row) -> new ActivityItem(
+            rs.getString(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(), rs.getBigDecimal(4),
+            rs.getString(5), (Integer) rs.getObject(6), rs.getString(7));
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${history.page.max-limit:500}")
+    private int maxLimit;
+
+    @Value("${history.export.fetch-size:1000}")
+    private int fetchSize;
+
+    // Position of the last row of a page
+    private static class Cursor {
+        private final LocalDateTime date;
+        private final int rank;
+        private final long id;
+
+        Cursor(LocalDateTime date, int rank, long id) {
+            this.date = date;
+            this.rank = rank;
+            this.id = id;
+        }
+
+        static Cursor decode(String cursor) {
+            if (cursor == null || cursor.isBlank()) {
+                return new Cursor(OPEN_END, DEPOSIT_RANK, Long.MAX_VALUE);
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                return new Cursor(LocalDateTime.parse(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+
+        String encode() {
+            String raw = date + "|" + rank + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public HistoryPage<DepositItem> getDeposits(Long userId, int limit, String cursor) {
+        checkLimit(limit);
+        Cursor after = Cursor.decode(cursor);
+        // One extra row tells whether there is another page
+        List<DepositItem> items = jdbcTemplate.query(DEPOSITS_SQL, DEPOSIT_MAPPER,
+                userId, Timestamp.valueOf(after.date), after.id, limit + 1);
+        String next = null;
+        if (items.size() > limit) {
+            items = new ArrayList<>(items.subList(0, limit));
+            DepositItem last = items.get(limit - 1);
+            next = new Cursor(last.getDepositDate(), DEPOSIT_RANK, last.getId()).encode();
+        }
+        return new HistoryPage<>(items, next);
+    }
+
+    @Transactional(readOnly = true)
+    public HistoryPage<ActivityItem> getActivity(Long userId, int limit, String cursor) {
+        checkLimit(limit);
+        List<ActivityItem> items = new ArrayList<>(limit + 1);
+        int[] ranks = new int[limit + 1];
+        jdbcTemplate.query(ACTIVITY_SQL, rs -> {
+            ranks[items.size()] = rs.getInt(8);
+            items.add(ACTIVITY_MAPPER.mapRow(rs, items.size()));
+        }, activityArgs(userId, Cursor.decode(cursor), limit + 1));
+        String next = null;
+        if (items.size() > limit) {
+            items.remove(limit);
+            ActivityItem last = items.get(limit - 1);
+            next = new Cursor(last.getDate(), ranks[limit - 1], last.getId()).encode();
+        }
+        return new HistoryPage<>(items, next);
+    }
+
+    /**
+     * Writes every deposit of the user as one JSON object per line
+     */
+    public void exportDeposits(Long userId, OutputStream out) {
+        Cursor start = Cursor.decode(null);
+        stream(DEPOSITS_SQL, new Object[] { userId, Timestamp.valueOf(start.date), start.id, Long.MAX_VALUE },
+                DEPOSIT_MAPPER, out);
+    }
+
+    /**
+     * Writes the user's whole activity as one JSON object per line
+     */
+    public void exportActivity(Long userId, OutputStream out) {
+        stream(ACTIVITY_SQL, activityArgs(userId, Cursor.decode(null), Long.MAX_VALUE), ACTIVITY_MAPPER, out);
+    }
+
+    private static Object[] activityArgs(Long userId, Cursor after, long limit) {
+        Timestamp date = Timestamp.valueOf(after.date);
+        // Rows at the cursor's own instant: deposits (ranked first) are behind us once the cursor is on a trade,
+        // trades are all still ahead while it is on a deposit
+        long depositBound = after.rank == DEPOSIT_RANK ? after.id : Long.MIN_VALUE;
+        long tradeBound = after.rank == TRADE_RANK ? after.id : Long.MAX_VALUE;
+        return new Object[] { userId, date, depositBound, limit, userId, date, tradeBound, limit, limit };
+    }
+
+    private void checkLimit(int limit) {
+        if (limit < 1 || limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+    }
+
+    private <T> void stream(String sql, Object[] args, RowMapper<T> mapper, OutputStream out) {
+        BufferedOutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        transaction.executeWithoutResult(status -> {
+            // Inside a transaction so PostgreSQL honours the fetch size and streams the rows
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql);
+                statement.setFetchSize(fetchSize);
+                new ArgumentPreparedStatementSetter(args).setValues(statement);
+                return statement;
+            }, (RowCallbackHandler) rs -> writeLine(buffered, mapper.mapRow(rs, 0)));
+        });
+        try {
+            buffered.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLine(OutputStream out, Object item) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(item));
+            out.write('\n');
+        } catch (IOException e) {
+            // Usually the client going away; abandons the query
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.foresight.backend.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Price alerts on one symbol, kept so that a tick finds the alerts it triggers in O(log n + k).
+ *
+ * Every alert waits either for the price to rise to a level or to fall to one. An armed "above" alert waits to rise
+ * to its level and fires; once fired it waits to fall back to its rearm level (the level less the hysteresis), so
+ * a price hovering around the level fires it only once. "Below" alerts mirror that. The two kinds of waiting are
+ * two sorted primitive arrays, ordered so that the entries a tick reaches are always at the end of the array: a
+ * binary search finds where they start, and they are taken off by shortening the array. Each is then re-inserted
+ * into the other array at its new level, as one merge of the sorted batch.
+ *
+ * Removal looks the alert's slot up by id and marks it; a marked entry is dropped when a tick reaches it, or when
+ * marked entries make up half the index and both arrays are compacted, so a removal is O(1) amortized.
+ *
+ * Not thread-safe: callers synchronize on the index.
+ */
+public final class AlertIndex {
+
+    public interface Listener {
+        void onFired(long alertId, double price);
+
+        void onRearmed(long alertId);
+    }
+
+    // Alert pool, addressed by slot
+    private long[] ids = new long[16];
+    private double[] levels = new double[16];
+    private double[] rearmLevels = new double[16];
+    private boolean[] above = new boolean[16];
+    private boolean[] removed = new boolean[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private int removedCount;
+    private final Map<Long, Integer> slotsById = new HashMap<>();
+
+    // Waiting for the price to rise: keys descending, so reached entries (key <= price) are at the end
+    private final Side rising = new Side(true);
+    // Waiting for the price to fall: keys ascending, so reached entries (key >= price) are at the end
+    private final Side falling = new Side(false);
+
+    private double lastPrice = Double.NaN;
+
+    private static final class Side {
+        private final boolean descending;
+        private double[] keys = new double[16];
+        private int[] slots = new int[16];
+        private int size;
+
+        Side(boolean descending) {
+            this.descending = descending;
+        }
+
+        // First index whose entry the price reaches
+        int reachedFrom(double price) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                boolean reached = descending ? keys[mid] <= price : keys[mid] >= price;
+                if (reached) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        // Whether a sorts before b
+        boolean before(double a, double b) {
+            return descending ? a > b : a < b;
+        }
+
+        /**
+         * Merges count entries, already sorted in this side's order, in from the back
+         */
+        void insertSorted(double[] batchKeys, int[] batchSlots, int count) {
+            if (count == 0) {
+                return;
+            }
+            if (size + count > keys.length) {
+                int capacity = Math.max(size + count, keys.length * 2);
+                keys = Arrays.copyOf(keys, capacity);
+                slots = Arrays.copyOf(slots, capacity);
+            }
+            int i = size - 1;
+            int j = count - 1;
+            int k = size + count - 1;
+            while (j >= 0) {
+                if (i >= 0 && before(batchKeys[j], keys[i])) {
+                    keys[k] = keys[i];
+                    slots[k--] = slots[i--];
+                } else {
+                    keys[k] = batchKeys[j];
+                    slots[k--] = batchSlots[j--];
+                }
+            }
+            size += count;
+        }
+
+        /**
+         * Drops the entries whose slots are marked removed, keeping the rest in order
+         */
+        int purge(boolean[] removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed[slots[i]]) {
+                    keys[kept] = keys[i];
+                    slots[kept++] = slots[i];
+                }
+            }
+            int dropped = size - kept;
+            size = kept;
+            return dropped;
+        }
+    }
+
+    // Added since the last tick, not yet in order
+    private double[] pendingRisingKeys = new double[16];
+    private int[] pendingRisingSlots = new int[16];
+    private int pendingRising;
+    private double[] pendingFallingKeys = new double[16];
+    private int[] pendingFallingSlots = new int[16];
+    private int pendingFalling;
+
+    // Scratch for entries moving between the sides
+    private double[] toFallingKeys = new double[16];
+    private int[] toFallingSlots = new int[16];
+    private double[] toRisingKeys = new double[16];
+    private int[] toRisingSlots = new int[16];
+
+    /**
+     * @param level       price that fires the alert
+     * @param rearmLevel  price the alert has to return to before it can fire again
+     * @param whenAbove   fires when the price rises to the level rather than falls to it
+     * @param armed       false when the price is already past the level
+     */
+    public void add(long alertId, double level, double rearmLevel, boolean whenAbove, boolean armed) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (slotCount == ids.length) {
+                int capacity = ids.length * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                levels = Arrays.copyOf(levels, capacity);
+                rearmLevels = Arrays.copyOf(rearmLevels, capacity);
+                above = Arrays.copyOf(above, capacity);
+                removed = Arrays.copyOf(removed, capacity);
+            }
+            slot = slotCount++;
+        }
+        ids[slot] = alertId;
+        levels[slot] = level;
+        rearmLevels[slot] = rearmLevel;
+        above[slot] = whenAbove;
+        slotsById.put(alertId, slot);
+
+        // Armed above alerts and disarmed below alerts both wait for a rise; placed in order on the next tick
+        boolean waitsToRise = whenAbove == armed;
+        double key = armed ? level : rearmLevel;
+        if (waitsToRise) {
+            ensurePending(pendingRising + 1);
+            pendingRisingKeys[pendingRising] = key;
+            pendingRisingSlots[pendingRising++] = slot;
+        } else {
+            ensurePending(pendingFalling + 1);
+            pendingFallingKeys[pendingFalling] = key;
+            pendingFallingSlots[pendingFalling++] = slot;
+        }
+    }
+
+    /**
+     * @return whether the alert was in the index
+     */
+    public boolean remove(long alertId) {
+        Integer slot = slotsById.remove(alertId);
+        if (slot == null) {
+            return false;
+        }
+        removed[slot] = true;
+        removedCount++;
+        if (removedCount > 16 && removedCount * 2 > slotCount - freeCount) {
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Fires every armed alert the price has reached and rearms every fired alert it has returned past
+     *
+     * @return number of alerts fired
+     */
+    public int onPrice(double price, Listener listener) {
+        settle();
+        lastPrice = price;
+        int fired = 0;
+        int toFalling = 0;
+        int toRising = 0;
+
+        // Rising side, from the end backwards: keys ascend, so the batch for the falling side comes out ascending
+        int from = rising.reachedFrom(price);
+        ensureScratch(rising.size - from);
+        for (int i = rising.size - 1; i >= from; i--) {
+            int slot = rising.slots[i];
+            if (removed[slot]) {
+                free(slot);
+                continue;
+            }
+            if (above[slot]) {
+                listener.onFired(ids[slot], price);
+                fired++;
+                toFallingKeys[toFalling] = rearmLevels[slot];
+            } else {
+                listener.onRearmed(ids[slot]);
+                toFallingKeys[toFalling] = levels[slot];
+            }
+            toFallingSlots[toFalling++] = slot;
+        }
+        rising.size = from;
+
+        from = falling.reachedFrom(price);
+        ensureScratch(falling.size - from);
+        for (int i = falling.size - 1; i >= from; i--) {
+            int slot = falling.slots[i];
+            if (removed[slot]) {
+                free(slot);
+                continue;
+            }
+            if (above[slot]) {
+                listener.onRearmed(ids[slot]);
+                toRisingKeys[toRising] = levels[slot];
+            } else {
+                listener.onFired(ids[slot], price);
+                fired++;
+                toRisingKeys[toRising] = rearmLevels[slot];
+            }
+            toRisingSlots[toRising++] = slot;
+        }
+        falling.size = from;
+
+        // Rearm levels are a per-alert distance from the level, so the batches are only nearly sorted
+        sort(toFallingKeys, toFallingSlots, 0, toFalling - 1, false);
+        sort(toRisingKeys, toRisingSlots, 0, toRising - 1, true);
+        falling.insertSorted(toFallingKeys, toFallingSlots, toFalling);
+        rising.insertSorted(toRisingKeys, toRisingSlots, toRising);
+        return fired;
+    }
+
+    public int size() {
+        return rising.size + falling.size + pendingRising + pendingFalling - removedCount;
+    }
+
+    /**
+     * Last price seen by {@link #onPrice}, or NaN before the first tick
+     */
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    private void free(int slot) {
+        removed[slot] = false;
+        removedCount--;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // Takes every removed entry out of both sides and returns its slot to the pool
+    private void compact() {
+        settle();
+        rising.purge(removed);
+        falling.purge(removed);
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (removed[slot]) {
+                free(slot);
+            }
+        }
+    }
+
+    private void ensureScratch(int count) {
+        if (count > toFallingKeys.length) {
+            int capacity = Math.max(count, toFallingKeys.length * 2);
+            toFallingKeys = Arrays.copyOf(toFallingKeys, capacity);
+            toFallingSlots = Arrays.copyOf(toFallingSlots, capacity);
+            toRisingKeys = Arrays.copyOf(toRisingKeys, capacity);
+            toRisingSlots = Arrays.copyOf(toRisingSlots, capacity);
+        }
+    }
+
+    // Sorts the pending additions and merges them in, so loading n alerts costs O(n log n) rather than O(n^2)
+    private void settle() {
+        if (pendingRising > 0) {
+            sort(pendingRisingKeys, pendingRisingSlots, 0, pendingRising - 1, true);
+            rising.insertSorted(pendingRisingKeys, pendingRisingSlots, pendingRising);
+            pendingRising = 0;
+        }
+        if (pendingFalling > 0) {
+            sort(pendingFallingKeys, pendingFallingSlots, 0, pendingFalling - 1, false);
+            falling.insertSorted(pendingFallingKeys, pendingFallingSlots, pendingFalling);
+            pendingFalling = 0;
+        }
+    }
+
+    private void ensurePending(int count) {
+        if (count > pendingRisingKeys.length || count > pendingFallingKeys.length) {
+            int capacity = Math.max(count, Math.max(pendingRisingKeys.length, pendingFallingKeys.length) * 2);
+            pendingRisingKeys = Arrays.copyOf(pendingRisingKeys, capacity);
+            pendingRisingSlots = Arrays.copyOf(pendingRisingSlots, capacity);
+            pendingFallingKeys = Arrays.copyOf(pendingFallingKeys, capacity);
+            pendingFallingSlots = Arrays.copyOf(pendingFallingSlots, capacity);
+        }
+    }
+
+    // Quicksort of the keys with their slots, insertion sort for short ranges (and nearly sorted batches)
+    private static void sort(double[] keys, int[] slots, int low, int high, boolean descending) {
+        while (high - low > 16) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (descending ? keys[i] > pivot : keys[i] < pivot) {
+                    i++;
+                }
+                while (descending ? keys[j] < pivot : keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    int slot = slots[i];
+                    slots[i] = slots[j];
+                    slots[j] = slot;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller part, loop on the larger
+            if (j - low < high - i) {
+                sort(keys, slots, low, j, descending);
+                low = i;
+            } else {
+                sort(keys, slots, i, high, descending);
+                high = j;
+            }
+        }
+        for (int i = low + 1; i <= high; i++) {
+            double key = keys[i];
+            int slot = slots[i];
+            int j = i - 1;
+            while (j >= low && (descending ? keys[j] < key : keys[j] > key)) {
+                keys[j + 1] = keys[j];
+                slots[j + 1] = slots[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            slots[j + 1] = slot;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.CacheRegionStats;
+import com.foresight.backend.dto.CacheStatsResponse;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hit/miss figures for the Hibernate second-level cache regions, used to tune the sizes in ehcache.xml
+ */
+@Service
+public class CacheStatsService {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    public CacheStatsResponse getStats() {
+        Statistics statistics = sessionFactory().getStatistics();
+
+        String[] regionNames = statistics.getSecondLevelCacheRegionNames();
+        Arrays.sort(regionNames);
+        List<CacheRegionStats> regions = new ArrayList<>();
+        for (String regionName : regionNames) {
+            CacheRegionStatistics region = statistics.getCacheRegionStatistics(regionName);
+            if (region == null) {
+                continue;
+            }
+            long lookups = region.getHitCount() + region.getMissCount();
+            regions.add(new CacheRegionStats(
+                    regionName,
+                    region.getHitCount(),
+                    region.getMissCount(),
+                    region.getPutCount(),
+                    // Not every provider tracks entry counts (JCache doesn't)
+                    region.getElementCountInMemory() >= 0 ? region.getElementCountInMemory() : null,
+                    lookups > 0 ? (double) region.getHitCount() / lookups : 0.0
+            ));
+        }
+
+        return new CacheStatsResponse(
+                statistics.isStatisticsEnabled(),
+                regions,
+                statistics.getQueryCacheHitCount(),
+                statistics.getQueryCacheMissCount(),
+                statistics.getNaturalIdCacheHitCount(),
+                statistics.getNaturalIdCacheMissCount(),
+                statistics.getEntityLoadCount(),
+                statistics.getQueryExecutionCount(),
+                LocalDateTime.ofInstant(statistics.getStart(), ZoneId.systemDefault())
+        );
+    }
+
+    public void resetStats() {
+        sessionFactory().getStatistics().clear();
+    }
+
+    /**
+     * Drops every cached entity of the given type - needed after writes that bypass Hibernate (native SQL, JDBC)
+     */
+    public void evictEntity(Class<?> entityClass) {
+        sessionFactory().getCache().evictEntityData(entityClass);
+        sessionFactory().getCache().evictNaturalIdData(entityClass);
+    }
+
+    /**
+     * Evicts one cached row, leaving the rest of the region and the natural-id mappings cached
+     */
+    public void evictEntity(Class<?> entityClass, Object id) {
+        sessionFactory().getCache().evictEntityData(entityClass, id);
+    }
+
+    public void evictAll() {
+        sessionFactory().getCache().evictAllRegions();
+    }
+
+    private SessionFactory sessionFactory() {
+        return entityManagerFactory.unwrap(SessionFactory.class);
+    }
+}
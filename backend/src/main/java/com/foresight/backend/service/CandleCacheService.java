@@ -0,0 +1,315 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.foresight.backend.dto.CandleResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent OHLC cache backed by one segment file per symbol and resolution.
+ *
+ * Segment layout (little endian):
+ *   header  - magic (int), version (int), coveredFrom (long), coveredTo (long), reserved (long)
+ *   records - timestamp (long), open, high, low, close (double), volume (long), sorted by timestamp
+ *
+ * Only completed bars are cached, so once a range is covered it never needs to be fetched again.
+ * Reads go through a read-only memory mapping of the segment.
+ */
+@Service
+public class CandleCacheService {
+
+    public static final Set<String> RESOLUTIONS = Set.of("1", "5", "15", "30", "60", "D", "W", "M");
+
+    private static final int MAGIC = 0x4F484C43; // "OHLC"
+    // 2: week and month bars end on calendar boundaries; version 1 segments may hold a partial bar as covered
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 32;
+    public static final int RECORD_SIZE = 48;
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Value("${candles.cache.dir:data/candles}")
+    private String cacheDir;
+
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+
+    public List<CandleResponse> getCandles(String symbol, String resolution, long fromEpochSecond, long toEpochSecond) {
+        ByteBuffer segment = getSegment(symbol, resolution, fromEpochSecond, toEpochSecond);
+        List<CandleResponse> candles = new ArrayList<>(segment.remaining() / RECORD_SIZE);
+
+        for (int position = 0; position < segment.limit(); position += RECORD_SIZE) {
+            candles.add(new CandleResponse(
+                    segment.getLong(position),
+                    segment.getDouble(position + 8),
+                    segment.getDouble(position + 16),
+                    segment.getDouble(position + 24),
+                    segment.getDouble(position + 32),
+                    segment.getLong(position + 40)
+            ));
+        }
+        return candles;
+    }
+
+    /**
+     * Closing prices for the range, read straight out of the mapped segment
+     */
+    public double[] getCloses(String symbol, String resolution, long fromEpochSecond, long toEpochSecond) {
+        ByteBuffer segment = getSegment(symbol, resolution, fromEpochSecond, toEpochSecond);
+        double[] closes = new double[segment.limit() / RECORD_SIZE];
+        for (int i = 0; i < closes.length; i++) {
+            closes[i] = segment.getDouble(i * RECORD_SIZE + 32);
+        }
+        return closes;
+    }
+
+    /**
+     * Read-only view over the records in [from, to]. The buffer shares memory with the mapped file.
+     * Missing ranges are fetched from Finnhub and appended to the segment first.
+     */
+    public ByteBuffer getSegment(String symbol, String resolution, long fromEpochSecond, long toEpochSecond) {
+        if (!RESOLUTIONS.contains(resolution)) {
+            throw new IllegalArgumentException("Unsupported resolution: " + resolution);
+        }
+
+        long cacheableTo = Math.min(toEpochSecond, lastCompletedBar(resolution, MarketCalendar.forSymbol(symbol).getZone()));
+        String key = symbol + "/" + resolution;
+        Path file = segmentPath(symbol, resolution);
+
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            fillMissingRanges(key, file, symbol, resolution, fromEpochSecond, cacheableTo);
+            MappedByteBuffer mapping = mappings.get(key);
+            if (mapping == null) {
+                if (!Files.exists(file)) {
+                    return ByteBuffer.allocate(0);
+                }
+                mapping = map(file);
+                mappings.put(key, mapping);
+            }
+            return slice(mapping, fromEpochSecond, toEpochSecond);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read candle cache for " + key, e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void fillMissingRanges(String key, Path file, String symbol, String resolution, long from, long to) throws IOException {
+        if (from > to) {
+            return;
+        }
+
+        if (!Files.exists(file)) {
+            List<long[]> fetched = new ArrayList<>();
+            List<double[]> prices = new ArrayList<>();
+            fetch(symbol, resolution, from, to, fetched, prices);
+            writeSegment(key, file, from, to, fetched, prices, null);
+            return;
+        }
+
+        long coveredFrom;
+        long coveredTo;
+        boolean stale;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) > VERSION) {
+                throw new IOException("Corrupt candle segment: " + file);
+            }
+            coveredFrom = header.getLong(8);
+            coveredTo = header.getLong(16);
+            stale = header.getInt(4) < VERSION;
+        }
+        if (stale) {
+            // It's only a cache: drop a segment written under older rules and fetch the range afresh
+            System.out.println("Discarding candle segment from an older version: " + file);
+            mappings.remove(key);
+            Files.delete(file);
+            fillMissingRanges(key, file, symbol, resolution, from, to);
+            return;
+        }
+
+        if (from < coveredFrom) {
+            // Prepending means rewriting the segment: new records followed by the existing ones
+            List<long[]> fetched = new ArrayList<>();
+            List<double[]> prices = new ArrayList<>();
+            fetch(symbol, resolution, from, coveredFrom - 1, fetched, prices);
+            writeSegment(key, file, from, coveredTo, fetched, prices, file);
+            coveredFrom = from;
+        }
+
+        if (to > coveredTo) {
+            List<long[]> fetched = new ArrayList<>();
+            List<double[]> prices = new ArrayList<>();
+            fetch(symbol, resolution, coveredTo + 1, to, fetched, prices);
+            appendToSegment(key, file, coveredFrom, to, fetched, prices);
+        }
+    }
+
+    private void fetch(String symbol, String resolution, long from, long to, List<long[]> fetched, List<double[]> prices) {
+        JsonNode json = finnhubService.getCandles(symbol, resolution, from, to);
+        if (json == null || !"ok".equals(json.path("s").asText())) {
+            // "no_data" is a valid answer (weekends, holidays, before listing) and still counts as covered
+            return;
+        }
+
+        JsonNode t = json.get("t");
+        for (int i = 0; i < t.size(); i++) {
+            fetched.add(new long[] { t.get(i).asLong(), json.get("v").get(i).asLong() });
+            prices.add(new double[] {
+                    json.get("o").get(i).asDouble(),
+                    json.get("h").get(i).asDouble(),
+                    json.get("l").get(i).asDouble(),
+                    json.get("c").get(i).asDouble()
+            });
+        }
+    }
+
+    private void writeSegment(String key, Path file, long coveredFrom, long coveredTo,
+                              List<long[]> fetched, List<double[]> prices, Path existing) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(header(coveredFrom, coveredTo));
+            out.write(records(fetched, prices, Long.MIN_VALUE));
+            if (existing != null) {
+                try (FileChannel in = FileChannel.open(existing, StandardOpenOption.READ)) {
+                    in.transferTo(HEADER_SIZE, in.size() - HEADER_SIZE, out);
+                }
+            }
+            out.force(false);
+        }
+
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mappings.remove(key);
+    }
+
+    private void appendToSegment(String key, Path file, long coveredFrom, long coveredTo,
+                                 List<long[]> fetched, List<double[]> prices) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long lastTimestamp = Long.MIN_VALUE;
+            if (channel.size() > HEADER_SIZE) {
+                ByteBuffer last = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(last, channel.size() - RECORD_SIZE);
+                lastTimestamp = last.getLong(0);
+            }
+
+            // Records first, then the header, so a crash never claims coverage for data that isn't there
+            channel.write(records(fetched, prices, lastTimestamp), channel.size());
+            channel.force(false);
+            channel.write(header(coveredFrom, coveredTo), 0);
+            channel.force(false);
+        }
+        mappings.remove(key);
+    }
+
+    private ByteBuffer header(long coveredFrom, long coveredTo) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(coveredFrom).putLong(coveredTo).putLong(0L);
+        return header.flip();
+    }
+
+    private ByteBuffer records(List<long[]> fetched, List<double[]> prices, long after) {
+        ByteBuffer buffer = ByteBuffer.allocate(fetched.size() * RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < fetched.size(); i++) {
+            long[] timeAndVolume = fetched.get(i);
+            if (timeAndVolume[0] <= after) {
+                continue;
+            }
+            double[] ohlc = prices.get(i);
+            buffer.putLong(timeAndVolume[0])
+                    .putDouble(ohlc[0])
+                    .putDouble(ohlc[1])
+                    .putDouble(ohlc[2])
+                    .putDouble(ohlc[3])
+                    .putLong(timeAndVolume[1]);
+        }
+        return buffer.flip();
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            return mapping;
+        }
+    }
+
+    private ByteBuffer slice(MappedByteBuffer mapping, long from, long to) {
+        int count = (mapping.capacity() - HEADER_SIZE) / RECORD_SIZE;
+        int start = lowerBound(mapping, count, from);
+        int end = lowerBound(mapping, count, to == Long.MAX_VALUE ? to : to + 1);
+
+        return mapping.slice(HEADER_SIZE + start * RECORD_SIZE, (end - start) * RECORD_SIZE)
+                .asReadOnlyBuffer()
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Index of the first record with timestamp >= target
+    private int lowerBound(ByteBuffer mapping, int count, long target) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mapping.getLong(HEADER_SIZE + mid * RECORD_SIZE) < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // A second before the bar in progress starts. Day, week and month bars follow the exchange's calendar:
+    // they start at midnight in its zone, weeks on a Monday and months on the 1st.
+    private static long lastCompletedBar(String resolution, ZoneId zone) {
+        Instant now = Instant.now();
+        LocalDate today = now.atZone(zone).toLocalDate();
+        LocalDate barStart = switch (resolution) {
+            case "D" -> today;
+            case "W" -> today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case "M" -> today.with(TemporalAdjusters.firstDayOfMonth());
+            default -> null;
+        };
+        if (barStart != null) {
+            return barStart.atStartOfDay(zone).toEpochSecond() - 1;
+        }
+        long period = Long.parseLong(resolution) * 60L;
+        return (now.getEpochSecond() / period) * period - 1;
+    }
+
+    private Path segmentPath(String symbol, String resolution) {
+        String safeSymbol = symbol.toUpperCase().replaceAll("[^A-Z0-9._-]", "_");
+        if (safeSymbol.startsWith(".")) {
+            safeSymbol = "_" + safeSymbol;
+        }
+        return Paths.get(cacheDir, safeSymbol, resolution + ".ohlc");
+    }
+}
@@ -0,0 +1,68 @@
+package com.foresight.backend.service;
+
+/**
+ * Consecutive-failure circuit breaker for one upstream endpoint.
+ *
+ * CLOSED lets every call through. After {@code failureThreshold} failures in a row it turns OPEN and rejects calls
+ * for {@code openMs}. Then one caller is let through as a probe (HALF_OPEN): success closes the circuit, failure
+ * opens it for another period. Callers report the outcome of a logical call (after its retries), not each attempt.
+ */
+public final class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMs;
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean probing;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMs = openMs;
+    }
+
+    /**
+     * Whether a call may go upstream now; a true answer in HALF_OPEN makes the caller the probe
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openMs) {
+            state = State.HALF_OPEN;
+            probing = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probing) {
+                return false;
+            }
+            probing = true;
+            return true;
+        }
+        return state == State.CLOSED;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("Finnhub " + name + " circuit closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    public synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            System.err.println("Finnhub " + name + " circuit opened after " + failures + " failures");
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probing = false;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,262 @@
+package com.foresight.backend.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Brokerage CSV exports. Columns are located by header name (common broker spellings are accepted), fields are
+ * read one character at a time with RFC 4180 quoting, and each row is emitted before the next is read.
+ */
+public class CsvImportParser implements ImportParser {
+
+    private static final String[][] COLUMN_ALIASES = {
+            { "date", "date", "trade date", "transaction date", "run date", "settlement date", "activity date" },
+            { "type", "type", "action", "transaction type", "activity", "trans code" },
+            { "symbol", "symbol", "ticker", "instrument" },
+            { "quantity", "quantity", "shares", "qty", "units" },
+            { "price", "price", "unit price", "price per share", "share price" },
+            { "amount", "amount", "net amount", "total", "value", "amount ($)" },
+            { "description", "description", "memo", "details" }
+    };
+
+    private static final DateTimeFormatter US_DATE = DateTimeFormatter.ofPattern("M/d/yyyy");
+    private static final DateTimeFormatter US_SHORT_DATE = DateTimeFormatter.ofPattern("M/d/yy");
+    private static final DateTimeFormatter EU_DATE = DateTimeFormatter.ofPattern("d.M.yyyy");
+    private static final DateTimeFormatter COMPACT_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Override
+    public void parse(InputStream input, Handler handler) throws IOException {
+        Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), 64 * 1024);
+        List<String> fields = new ArrayList<>();
+        long line = 0;
+
+        // Skip any preamble (account name, blank lines) until a row that looks like a header
+        Map<String, Integer> columns = null;
+        while (columns == null) {
+            if (!readRow(reader, fields)) {
+                return;
+            }
+            line++;
+            columns = headerColumns(fields);
+        }
+        if (!columns.containsKey("symbol") && !columns.containsKey("amount")) {
+            throw new IOException("CSV header has neither a symbol nor an amount column");
+        }
+
+        while (readRow(reader, fields)) {
+            line++;
+            if (fields.size() == 1 && fields.get(0).isBlank()) {
+                continue;
+            }
+            ImportRecord record;
+            try {
+                record = toRecord(line, fields, columns);
+            } catch (RuntimeException e) {
+                handler.onError(line, e.getMessage());
+                continue;
+            }
+            // Outside the try: a failing handler (e.g. a database error) must abort the import, not skip the row
+            handler.onRecord(record);
+        }
+    }
+
+    private ImportRecord toRecord(long line, List<String> fields, Map<String, Integer> columns) {
+        String symbol = field(fields, columns, "symbol");
+        BigDecimal quantity = number(field(fields, columns, "quantity"));
+        BigDecimal price = number(field(fields, columns, "price"));
+        BigDecimal amount = number(field(fields, columns, "amount"));
+        String description = field(fields, columns, "description");
+        LocalDateTime date = date(field(fields, columns, "date"));
+
+        ImportRecord.Type type = type(field(fields, columns, "type"), symbol, quantity, amount);
+        if (type == ImportRecord.Type.OTHER) {
+            return new ImportRecord(line, type, date, symbol, null, null, description);
+        }
+
+        if (type == ImportRecord.Type.DEPOSIT) {
+            if (amount == null || amount.signum() == 0) {
+                throw new IllegalArgumentException("deposit without an amount");
+            }
+            return new ImportRecord(line, type, date, null, null, amount.abs(), description);
+        }
+
+        if (symbol == null) {
+            throw new IllegalArgumentException("trade without a symbol");
+        }
+        if (quantity == null || quantity.signum() == 0) {
+            throw new IllegalArgumentException("trade without a quantity");
+        }
+        quantity = quantity.abs();
+        // Prefer the cash amount (includes fees); fall back to quantity x price
+        BigDecimal value = amount != null && amount.signum() != 0
+                ? amount.abs()
+                : price != null ? price.abs().multiply(quantity).setScale(2, RoundingMode.HALF_UP) : null;
+        if (value == null) {
+            throw new IllegalArgumentException("trade without a price or amount");
+        }
+        return new ImportRecord(line, type, date, symbol.toUpperCase(Locale.ROOT), quantity, value, description);
+    }
+
+    private ImportRecord.Type type(String action, String symbol, BigDecimal quantity, BigDecimal amount) {
+        if (action == null) {
+            // No action column: rows with a symbol are buys, the rest are cash movements
+            if (symbol != null && quantity != null) {
+                return quantity.signum() < 0 ? ImportRecord.Type.SELL : ImportRecord.Type.BUY;
+            }
+            return amount != null && amount.signum() > 0 ? ImportRecord.Type.DEPOSIT : ImportRecord.Type.OTHER;
+        }
+
+        String normalized = action.toUpperCase(Locale.ROOT);
+        if (normalized.contains("REINVEST")) {
+            return ImportRecord.Type.BUY;
+        }
+        if (normalized.contains("BUY") || normalized.contains("BOUGHT") || normalized.contains("PURCHASE")) {
+            return ImportRecord.Type.BUY;
+        }
+        if (normalized.contains("SELL") || normalized.contains("SOLD")) {
+            return ImportRecord.Type.SELL;
+        }
+        if (normalized.contains("DEPOSIT") || normalized.contains("CONTRIBUTION") || normalized.contains("TRANSFER IN")
+                || (normalized.contains("TRANSFER") && normalized.contains("RECEIVED"))
+                || normalized.equals("ACH") || normalized.equals("CREDIT")) {
+            return ImportRecord.Type.DEPOSIT;
+        }
+        return ImportRecord.Type.OTHER;
+    }
+
+    private Map<String, Integer> headerColumns(List<String> fields) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).trim().toLowerCase(Locale.ROOT);
+            for (String[] aliases : COLUMN_ALIASES) {
+                for (int a = 1; a < aliases.length; a++) {
+                    if (aliases[a].equals(name)) {
+                        columns.putIfAbsent(aliases[0], i);
+                    }
+                }
+            }
+        }
+        return columns.containsKey("symbol") || columns.containsKey("amount") ? columns : null;
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String column) {
+        Integer index = columns.get(column);
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    static BigDecimal number(String value) {
+        if (value == null) {
+            return null;
+        }
+        String cleaned = value.replace("$", "").replace(",", "").replace(" ", "");
+        boolean negative = cleaned.startsWith("(") && cleaned.endsWith(")");
+        if (negative) {
+            cleaned = cleaned.substring(1, cleaned.length() - 1);
+        }
+        if (cleaned.isEmpty() || cleaned.equals("-")) {
+            return null;
+        }
+        try {
+            BigDecimal number = new BigDecimal(cleaned);
+            return negative ? number.negate() : number;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + value);
+        }
+    }
+
+    private static LocalDateTime date(String value) {
+        if (value == null) {
+            return null;
+        }
+        // Some brokers append "as of" dates or times; the first token is the trade date
+        String token = value.split("\\s+")[0];
+        if (token.length() > 10 && token.charAt(10) == 'T') {
+            token = token.substring(0, 10);
+        }
+        // Pick the format from the separator instead of trying each one (exceptions are slow at 100k rows)
+        DateTimeFormatter format;
+        if (token.indexOf('-') > 0) {
+            format = DateTimeFormatter.ISO_LOCAL_DATE;
+        } else if (token.indexOf('/') > 0) {
+            format = token.length() - token.lastIndexOf('/') > 3 ? US_DATE : US_SHORT_DATE;
+        } else if (token.indexOf('.') > 0) {
+            format = EU_DATE;
+        } else {
+            format = COMPACT_DATE;
+        }
+        try {
+            return LocalDate.parse(token, format).atStartOfDay();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("unrecognised date: " + value);
+        }
+    }
+
+    /**
+     * Reads one CSV record into {@code fields}, handling quoted separators, escaped quotes and quoted line breaks.
+     *
+     * @return false at end of input
+     */
+    private static boolean readRow(Reader reader, List<String> fields) throws IOException {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+
+        int c = reader.read();
+        if (c == 0xFEFF) {
+            c = reader.read();
+        }
+        while (c != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+
+        if (!any) {
+            return false;
+        }
+        fields.add(field.toString());
+        return true;
+    }
+}
@@ -0,0 +1,143 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.AccountResponse;
+import com.foresight.backend.dto.DashboardResponse;
+import com.foresight.backend.dto.DividendIncomeResponse;
+import com.foresight.backend.dto.PortfolioResponse;
+import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.dto.UpcomingEvent;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Everything the dashboard shows in one payload, from one read of the user's data.
+ *
+ * The holdings and their stocks are loaded once and each symbol is quoted once; the widgets are then built from that
+ * snapshot at the same time. The account summary comes from the same snapshot and the user's in-memory deposits, the
+ * dividend summary from the cache its service already keeps. Widgets that weren't asked for are neither loaded nor
+ * built.
+ */
+@Service
+public class DashboardService {
+
+    public static final String ACCOUNT = "account";
+    public static final String PORTFOLIO = "portfolio";
+    public static final String DIVIDENDS = "dividends";
+    public static final String EVENTS = "events";
+    public static final List<String> FIELDS = List.of(ACCOUNT, PORTFOLIO, DIVIDENDS, EVENTS);
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor fanOutExecutor;
+
+    @Value("${dashboard.events.limit:5}")
+    private int eventLimit;
+
+    /**
+     * The requested widgets in FIELDS order, so equal selections compare equal
+     *
+     * @param fields widget names; null or empty for all of them
+     * @throws IllegalArgumentException for a field that isn't a widget
+     */
+    public static List<String> selectFields(Collection<String> fields) {
+        if (fields == null || fields.isEmpty()) {
+            return FIELDS;
+        }
+        for (String field : fields) {
+            if (!FIELDS.contains(field)) {
+                throw new IllegalArgumentException("Unknown dashboard field: " + field);
+            }
+        }
+        List<String> selected = new ArrayList<>(FIELDS);
+        selected.retainAll(fields);
+        return selected;
+    }
+
+    /**
+     * @param fields widgets to include; null or empty for all of them
+     * @throws IllegalArgumentException for a field that isn't a widget
+     */
+    public DashboardResponse getDashboard(Long userId, Collection<String> fields) {
+        List<String> selected = selectFields(fields);
+
+        // Loaded so the prices fetched below reach this user's state, and it holds the deposits the account widget shows
+        PortfolioStateEngine.PortfolioState state = portfolioStateEngine.getState(userId);
+        String baseCurrency = state.getBaseCurrency();
+
+        // The one holdings query every widget but the account shares, and the one quote per symbol
+        boolean needsHoldings = selected.contains(PORTFOLIO) || selected.contains(DIVIDENDS) || selected.contains(EVENTS);
+        List<PortfolioHolding> holdings = needsHoldings ? portfolioHoldingRepository.findByUserId(userId) : List.of();
+        Map<String, CompletableFuture<StockPriceUpdate>> quotes = selected.contains(PORTFOLIO)
+                ? portfolioService.fetchQuotes(holdings) : Map.of();
+
+        CompletableFuture<DividendIncomeResponse> dividends = selected.contains(DIVIDENDS)
+                ? CompletableFuture.supplyAsync(() -> dividendIncomeService.getDividendIncome(userId, holdings), fanOutExecutor)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<List<UpcomingEvent>> events = selected.contains(EVENTS)
+                ? CompletableFuture.supplyAsync(() -> upcomingEvents(holdings), fanOutExecutor)
+                : CompletableFuture.completedFuture(null);
+
+        // Built here meanwhile: it mostly waits on the quotes, so it needn't hold a fan-out thread doing so
+        PortfolioResponse portfolio = selected.contains(PORTFOLIO)
+                ? portfolioService.analyze(holdings, quotes, baseCurrency) : null;
+        AccountResponse account = selected.contains(ACCOUNT) ? account(state, portfolio) : null;
+
+        try {
+            return new DashboardResponse(userId, account, portfolio, dividends.join(), events.join());
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    // Valued like the portfolio widget beside it when that was built, otherwise at the state's prices
+    private AccountResponse account(PortfolioStateEngine.PortfolioState state, PortfolioResponse portfolio) {
+        BigDecimal currentValue = portfolio != null ? portfolio.getTotalCurrentValue() : state.getTotalCurrentValue();
+        // Nothing maintains a daily figure yet; the account row only ever holds zero
+        return AccountService.summarize(currentValue, state.getTotalDeposits(), BigDecimal.ZERO, state.getBaseCurrency());
+    }
+
+    // Next dividend and earnings dates still ahead, soonest first
+    private List<UpcomingEvent> upcomingEvents(List<PortfolioHolding> holdings) {
+        LocalDateTime now = LocalDateTime.now();
+        List<UpcomingEvent> events = new ArrayList<>();
+        for (PortfolioHolding holding : holdings) {
+            Stock stock = holding.getStock();
+            if (stock.getNextDividendDate() != null && !stock.getNextDividendDate().isBefore(now)) {
+                events.add(new UpcomingEvent("dividend", stock.getSymbol(), stock.getNextDividendDate()));
+            }
+            if (stock.getNextEarningsDate() != null && !stock.getNextEarningsDate().isBefore(now)) {
+                events.add(new UpcomingEvent("earnings", stock.getSymbol(), stock.getNextEarningsDate()));
+            }
+        }
+        events.sort(Comparator.comparing(UpcomingEvent::getDate));
+        return events.size() > eventLimit ? new ArrayList<>(events.subList(0, eventLimit)) : events;
+    }
+}
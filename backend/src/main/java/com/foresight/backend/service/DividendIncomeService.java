@@ -0,0 +1,323 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.DividendIncomeResponse;
+import com.foresight.backend.dto.MonthlyDividendProjection;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-side projected dividend income per user.
+ * Summaries are cached and kept up to date incrementally as holdings and prices change,
+ * so the dashboard only ever does a map lookup. Amounts are in the user's base currency; when a rate moves, the
+ * cached users exposed to it are recalculated.
+ */
+@Service
+public class DividendIncomeService {
+
+    private static final int PROJECTION_MONTHS = 12;
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor fanOutExecutor;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Value("${dividends.recompute.page-size:500}")
+    private int pageSize;
+
+    private final Map<Long, DividendIncomeResponse> summaries = new ConcurrentHashMap<>();
+    private final Map<Long, List<DividendPosition>> positionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> usersBySymbol = new ConcurrentHashMap<>();
+    private final Map<Long, String> baseCurrencies = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        fxRateService.addListener(currencies -> {
+            for (Long userId : positionsByUser.keySet()) {
+                positionsByUser.computeIfPresent(userId, (id, positions) ->
+                        isExposedTo(id, positions, currencies) ? index(id, positions, positions) : positions);
+            }
+        });
+    }
+
+    public DividendIncomeResponse getDividendIncome(Long userId) {
+        DividendIncomeResponse summary = summaries.get(userId);
+        return summary != null ? summary : refreshUser(userId);
+    }
+
+    /**
+     * The cached summary, or one built from holdings the caller has already loaded rather than querying them again
+     */
+    public DividendIncomeResponse getDividendIncome(Long userId, List<PortfolioHolding> holdings) {
+        DividendIncomeResponse summary = summaries.get(userId);
+        if (summary != null) {
+            return summary;
+        }
+        List<DividendPosition> positions = new ArrayList<>(holdings.size());
+        for (PortfolioHolding holding : holdings) {
+            positions.add(DividendPosition.from(holding));
+        }
+        return store(userId, baseCurrency(userId, holdings), positions);
+    }
+
+    /**
+     * Rebuilds a single user's summary from their holdings. Called whenever a holding is added or removed.
+     */
+    public DividendIncomeResponse refreshUser(Long userId) {
+        List<PortfolioHolding> holdings = portfolioHoldingRepository.findByUserId(userId);
+        List<DividendPosition> positions = new ArrayList<>();
+        for (PortfolioHolding holding : holdings) {
+            positions.add(DividendPosition.from(holding));
+        }
+        return store(userId, baseCurrency(userId, holdings), positions);
+    }
+
+    /**
+     * Applies a price tick to every cached user holding the symbol, without touching the database
+     */
+    public void onPriceUpdate(String symbol, BigDecimal price) {
+        Set<Long> userIds = usersBySymbol.get(symbol);
+        if (userIds == null || price == null) {
+            return;
+        }
+
+        for (Long userId : userIds) {
+            // Applied to whatever positions the user has by then, so a concurrent refresh isn't overwritten
+            positionsByUser.computeIfPresent(userId, (id, positions) -> {
+                List<DividendPosition> updated = new ArrayList<>(positions.size());
+                for (DividendPosition position : positions) {
+                    updated.add(position.symbol.equals(symbol) ? position.withPrice(price) : position);
+                }
+                return index(id, positions, updated);
+            });
+        }
+    }
+
+    /**
+     * Recomputes every user's summary nightly, a page of users at a time. Each page is summarized on the fan-out
+     * pool while the next one loads, so at most two pages are held in memory.
+     */
+    @Scheduled(cron = "0 0 2 * * *")
+    public void recomputeAllUsers() {
+        Set<Long> seen = new HashSet<>();
+        CompletableFuture<Void> previous = CompletableFuture.completedFuture(null);
+        long afterUserId = 0;
+        while (true) {
+            List<Long> userIds = portfolioHoldingRepository.findUserIdsAfter(afterUserId, PageRequest.of(0, pageSize));
+            if (userIds.isEmpty()) {
+                break;
+            }
+            afterUserId = userIds.get(userIds.size() - 1);
+            seen.addAll(userIds);
+
+            Map<Long, List<DividendPosition>> grouped = new HashMap<>();
+            Map<Long, String> bases = new HashMap<>();
+            for (PortfolioHolding holding : portfolioHoldingRepository.findByUserIdIn(userIds)) {
+                grouped.computeIfAbsent(holding.getUser().getId(), id -> new ArrayList<>())
+                        .add(DividendPosition.from(holding));
+                bases.put(holding.getUser().getId(), holding.getUser().getBaseCurrency());
+            }
+            previous.join();
+            previous = CompletableFuture.runAsync(() -> grouped.forEach(
+                    (userId, positions) -> store(userId, bases.get(userId), positions)), fanOutExecutor);
+        }
+        previous.join();
+
+        // Drop users whose holdings have all been removed since the last run
+        for (Long userId : new ArrayList<>(positionsByUser.keySet())) {
+            if (!seen.contains(userId)) {
+                positionsByUser.computeIfPresent(userId, (id, positions) -> {
+                    index(id, positions, List.of());
+                    summaries.remove(id);
+                    baseCurrencies.remove(id);
+                    return null;
+                });
+            }
+        }
+        System.out.println("Recomputed dividend income for " + seen.size() + " users");
+    }
+
+    private DividendIncomeResponse store(Long userId, String baseCurrency, List<DividendPosition> positions) {
+        positionsByUser.compute(userId, (id, previous) -> {
+            baseCurrencies.put(id, baseCurrency);
+            return index(id, previous, positions);
+        });
+        return summaries.get(userId);
+    }
+
+    // Without holdings to read it from, keep the one already known
+    private String baseCurrency(Long userId, List<PortfolioHolding> holdings) {
+        return !holdings.isEmpty() ? holdings.get(0).getUser().getBaseCurrency()
+                : baseCurrencies.getOrDefault(userId, "USD");
+    }
+
+    private boolean isExposedTo(Long userId, List<DividendPosition> positions, Set<String> currencies) {
+        if (currencies.contains(baseCurrencies.get(userId))) {
+            return true;
+        }
+        for (DividendPosition position : positions) {
+            if (currencies.contains(position.currency)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the user's symbol index and summary from the previous positions to the new ones. Only called inside a
+     * positionsByUser compute, which serializes it per user, so a refresh and a tick can't undo each other's index.
+     */
+    private List<DividendPosition> index(Long userId, List<DividendPosition> previous, List<DividendPosition> positions) {
+        Set<String> symbols = new HashSet<>();
+        for (DividendPosition position : positions) {
+            symbols.add(position.symbol);
+            usersBySymbol.computeIfAbsent(position.symbol, s -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+        if (previous != null) {
+            for (DividendPosition position : previous) {
+                Set<Long> holders = usersBySymbol.get(position.symbol);
+                if (holders != null && !symbols.contains(position.symbol)) {
+                    holders.remove(userId);
+                }
+            }
+        }
+
+        summaries.put(userId, calculate(userId, baseCurrencies.getOrDefault(userId, "USD"), positions));
+        return positions;
+    }
+
+    private DividendIncomeResponse calculate(Long userId, String baseCurrency, List<DividendPosition> positions) {
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        int base = rates.index(baseCurrency);
+        BigDecimal marketValue = BigDecimal.ZERO;
+        BigDecimal annualIncome = BigDecimal.ZERO;
+        BigDecimal[] monthly = new BigDecimal[PROJECTION_MONTHS];
+        Arrays.fill(monthly, BigDecimal.ZERO);
+
+        YearMonth firstMonth = YearMonth.now();
+
+        for (DividendPosition position : positions) {
+            int currency = rates.index(position.currency);
+            BigDecimal quantity = BigDecimal.valueOf(position.quantity);
+            if (position.price != null) {
+                marketValue = marketValue.add(rates.convert(position.price.multiply(quantity), currency, base));
+            }
+            if (position.annualDividend == null || position.annualDividend.compareTo(BigDecimal.ZERO) <= 0) {
+                continue;
+            }
+
+            BigDecimal positionIncome = rates.convert(position.annualDividend.multiply(quantity), currency, base);
+            annualIncome = annualIncome.add(positionIncome);
+
+            if (position.nextDividendDate == null) {
+                // No calendar data - spread the income evenly across the year
+                BigDecimal perMonth = positionIncome.divide(BigDecimal.valueOf(PROJECTION_MONTHS), 4, RoundingMode.HALF_UP);
+                for (int i = 0; i < PROJECTION_MONTHS; i++) {
+                    monthly[i] = monthly[i].add(perMonth);
+                }
+                continue;
+            }
+
+            // Assume quarterly payments anchored on the next expected dividend date
+            BigDecimal perPayment = positionIncome.divide(BigDecimal.valueOf(4), 4, RoundingMode.HALF_UP);
+            YearMonth payment = YearMonth.from(position.nextDividendDate);
+            while (payment.isBefore(firstMonth)) {
+                payment = payment.plusMonths(3);
+            }
+            while (payment.minusMonths(3).compareTo(firstMonth) >= 0) {
+                payment = payment.minusMonths(3);
+            }
+            for (; payment.isBefore(firstMonth.plusMonths(PROJECTION_MONTHS)); payment = payment.plusMonths(3)) {
+                int index = (payment.getYear() - firstMonth.getYear()) * 12 + payment.getMonthValue() - firstMonth.getMonthValue();
+                monthly[index] = monthly[index].add(perPayment);
+            }
+        }
+
+        List<MonthlyDividendProjection> projections = new ArrayList<>(PROJECTION_MONTHS);
+        for (int i = 0; i < PROJECTION_MONTHS; i++) {
+            projections.add(new MonthlyDividendProjection(
+                    firstMonth.plusMonths(i).toString(),
+                    monthly[i].setScale(2, RoundingMode.HALF_UP)
+            ));
+        }
+
+        // Value-weighted yield: total income over total market value, rather than a plain mean of per-stock yields
+        BigDecimal valueWeightedYield = marketValue.compareTo(BigDecimal.ZERO) > 0
+                ? annualIncome.divide(marketValue, 6, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100)).setScale(4, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO;
+
+        return new DividendIncomeResponse(
+                userId,
+                baseCurrency,
+                marketValue.setScale(2, RoundingMode.HALF_UP),
+                valueWeightedYield,
+                annualIncome.setScale(2, RoundingMode.HALF_UP),
+                annualIncome.divide(BigDecimal.valueOf(12), 2, RoundingMode.HALF_UP),
+                annualIncome.divide(BigDecimal.valueOf(365), 2, RoundingMode.HALF_UP),
+                projections,
+                LocalDateTime.now()
+        );
+    }
+
+    private static final class DividendPosition {
+        private final String symbol;
+        private final String currency;
+        private final int quantity;
+        private final BigDecimal annualDividend;
+        private final BigDecimal price;
+        private final LocalDateTime nextDividendDate;
+
+        private DividendPosition(String symbol, String currency, int quantity, BigDecimal annualDividend, BigDecimal price,
+                                 LocalDateTime nextDividendDate) {
+            this.symbol = symbol;
+            this.currency = currency;
+            this.quantity = quantity;
+            this.annualDividend = annualDividend;
+            this.price = price;
+            this.nextDividendDate = nextDividendDate;
+        }
+
+        private static DividendPosition from(PortfolioHolding holding) {
+            Stock stock = holding.getStock();
+            return new DividendPosition(
+                    stock.getSymbol(),
+                    stock.getCurrency(),
+                    holding.getQuantity(),
+                    stock.getAnnualDividend(),
+                    stock.getCurrentPrice(),
+                    stock.getNextDividendDate()
+            );
+        }
+
+        private DividendPosition withPrice(BigDecimal newPrice) {
+            return new DividendPosition(symbol, currency, quantity, annualDividend, newPrice, nextDividendDate);
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.ExportJob;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.StockRepository;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.TimeStampSecVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bulk export of holdings, deposits and daily price history as Arrow IPC files for the analytics module.
+ *
+ * Each dataset is split into partitions that are written in parallel on the export executor. Holdings and deposits
+ * are partitioned by contiguous user id ranges, so each partition reads its slice through the user_id indexes.
+ * Rows are streamed from a JDBC cursor into a fixed-size record batch, so memory use is bounded by batch size x
+ * partitions, not by table size. Holdings carry their quote currency and, converted through the current rate
+ * matrix, their values in the user's base currency, so they can be summed per user as they are.
+ */
+@Service
+public class ExportService {
+
+    private static final String HOLDINGS_SQL =
+            "SELECT h.id, h.user_id, s.symbol, h.quantity, h.average_buy_price, h.total_invested, h.current_value, h.updated_at, " +
+            "s.currency, u.base_currency " +
+            "FROM portfolio_holdings h JOIN stocks s ON s.id = h.stock_id JOIN users u ON u.id = h.user_id " +
+            "WHERE h.user_id BETWEEN ? AND ?";
+
+    private static final String DEPOSITS_SQL =
+            "SELECT d.id, d.user_id, d.amount, d.deposit_date, d.description " +
+            "FROM deposits d WHERE d.user_id BETWEEN ? AND ?";
+
+    private static final String USER_ID_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM users";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private CandleCacheService candleCacheService;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    @Qualifier("exportExecutor")
+    private AsyncTaskExecutor executor;
+
+    @Value("${export.dir:data/exports}")
+    private String exportDir;
+
+    @Value("${export.partitions:4}")
+    private int partitions;
+
+    @Value("${export.batch-size:65536}")
+    private int batchSize;
+
+    @Value("${export.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${export.price-history-years:5}")
+    private int priceHistoryYears;
+
+    // Finished jobs and their files stay available this long
+    @Value("${export.job-ttl-ms:3600000}")
+    private long jobTtlMs;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    public ExportJob startExport() {
+        String jobId = UUID.randomUUID().toString();
+        ExportJob job = new ExportJob(
+                jobId,
+                "RUNNING",
+                LocalDateTime.now(),
+                null,
+                Collections.synchronizedList(new ArrayList<>()),
+                new ConcurrentHashMap<>(),
+                null
+        );
+        jobs.put(jobId, job);
+
+        runExport(job);
+        return job;
+    }
+
+    public ExportJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public Path getExportFile(String jobId, String fileName) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null || !job.getFiles().contains(fileName)) {
+            return null;
+        }
+        return Paths.get(exportDir, jobId, fileName);
+    }
+
+    /**
+     * Forgets finished jobs once they are older than export.job-ttl-ms and deletes their files, along with any
+     * export directory of that age no job knows about (left by an earlier run of the application)
+     */
+    @Scheduled(fixedDelayString = "${export.job-ttl-ms:3600000}")
+    public void pruneJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(jobTtlMs));
+        for (ExportJob job : jobs.values()) {
+            if (job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff)) {
+                // Forgotten first, so no new download starts on files being deleted
+                jobs.remove(job.getJobId());
+                deleteJobDir(Paths.get(exportDir, job.getJobId()));
+            }
+        }
+
+        Path root = Paths.get(exportDir);
+        if (!Files.isDirectory(root)) {
+            return;
+        }
+        long cutoffMs = System.currentTimeMillis() - jobTtlMs;
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.filter(dir -> !jobs.containsKey(dir.getFileName().toString()))
+                    .filter(dir -> Files.isDirectory(dir) && lastModified(dir) < cutoffMs)
+                    .forEach(this::deleteJobDir);
+        } catch (IOException e) {
+            System.err.println("Failed to list " + root + ": " + e.getMessage());
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    // Job directories only hold the partition files
+    private void deleteJobDir(Path jobDir) {
+        if (!Files.isDirectory(jobDir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(jobDir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(jobDir);
+        } catch (IOException e) {
+            System.err.println("Failed to delete " + jobDir + ": " + e.getMessage());
+        }
+    }
+
+    // Nothing here waits on the pool it submits to: the job is finished by a callback once every partition is
+    private void runExport(ExportJob job) {
+        Path jobDir = Paths.get(exportDir, job.getJobId());
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                Files.createDirectories(jobDir);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create " + jobDir, e);
+            }
+            return new RootAllocator();
+        }, executor).thenCompose(allocator -> exportPartitions(job, jobDir, allocator).whenComplete((done, failure) -> {
+            try {
+                allocator.close();
+            } catch (RuntimeException e) {
+                System.err.println("Export " + job.getJobId() + " leaked Arrow memory: " + e.getMessage());
+            }
+        })).whenComplete((done, failure) -> {
+            if (failure == null) {
+                job.setStatus("COMPLETED");
+            } else {
+                // Errors (e.g. a missing --add-opens for Arrow) must not leave the job looking like it's still running
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                System.err.println("Export " + job.getJobId() + " failed: " + cause);
+                job.setStatus("FAILED");
+                job.setError(String.valueOf(cause.getMessage()));
+            }
+            job.setFinishedAt(LocalDateTime.now());
+        });
+    }
+
+    private CompletableFuture<Void> exportPartitions(ExportJob job, Path jobDir, BufferAllocator allocator) {
+        List<Stock> stocks = stockRepository.findAll();
+        long[][] userRanges = userRanges();
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            int p = partition;
+            long[] range = userRanges[p];
+            tasks.add(CompletableFuture.runAsync(() -> exportHoldings(job, jobDir, allocator, p, range), executor));
+            tasks.add(CompletableFuture.runAsync(() -> exportDeposits(job, jobDir, allocator, p, range), executor));
+            tasks.add(CompletableFuture.runAsync(() -> exportPrices(job, jobDir, allocator, stocks, p), executor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+    }
+
+    /**
+     * Splits the user ids into one contiguous [from, to] range per partition
+     */
+    private long[][] userRanges() {
+        long[] bounds = new JdbcTemplate(dataSource).queryForObject(USER_ID_RANGE_SQL,
+                (rs, row) -> new long[] { rs.getLong(1), rs.getLong(2) });
+        long min = bounds[0];
+        long max = Math.max(bounds[1], min);
+        long width = (max - min) / partitions + 1;
+        long[][] ranges = new long[partitions][];
+        for (int p = 0; p < partitions; p++) {
+            long from = min + p * width;
+            // The last range is open-ended, so users created during the export land somewhere
+            ranges[p] = new long[] { from, p == partitions - 1 ? Long.MAX_VALUE : from + width - 1 };
+        }
+        return ranges;
+    }
+
+    private void exportHoldings(ExportJob job, Path jobDir, BufferAllocator parent, int partition, long[] userRange) {
+        Schema schema = new Schema(List.of(
+                field("id", new ArrowType.Int(64, true)),
+                field("user_id", new ArrowType.Int(64, true)),
+                field("symbol", ArrowType.Utf8.INSTANCE),
+                field("quantity", new ArrowType.Int(32, true)),
+                field("average_buy_price", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("total_invested", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("current_value", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("updated_at", new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)),
+                field("currency", ArrowType.Utf8.INSTANCE),
+                field("base_currency", ArrowType.Utf8.INSTANCE),
+                field("total_invested_base", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("current_value_base", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE))
+        ));
+
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        exportQuery(job, jobDir, parent, "holdings", partition, userRange, schema, HOLDINGS_SQL, (rs, root, row) -> {
+            ((BigIntVector) root.getVector(0)).setSafe(row, rs.getLong(1));
+            ((BigIntVector) root.getVector(1)).setSafe(row, rs.getLong(2));
+            setString(root.getVector(2), row, rs.getString(3));
+            ((IntVector) root.getVector(3)).setSafe(row, rs.getInt(4));
+            setDecimal(root.getVector(4), row, rs.getBigDecimal(5));
+            setDecimal(root.getVector(5), row, rs.getBigDecimal(6));
+            setDecimal(root.getVector(6), row, rs.getBigDecimal(7));
+            setTimestamp(root.getVector(7), row, rs.getTimestamp(8));
+            int currency = rates.index(rs.getString(9));
+            int base = rates.index(rs.getString(10));
+            setString(root.getVector(8), row, rs.getString(9));
+            setString(root.getVector(9), row, rs.getString(10));
+            setDecimal(root.getVector(10), row, rates.convert(rs.getBigDecimal(6), currency, base));
+            setDecimal(root.getVector(11), row, rates.convert(rs.getBigDecimal(7), currency, base));
+        });
+    }
+
+    private void exportDeposits(ExportJob job, Path jobDir, BufferAllocator parent, int partition, long[] userRange) {
+        Schema schema = new Schema(List.of(
+                field("id", new ArrowType.Int(64, true)),
+                field("user_id", new ArrowType.Int(64, true)),
+                field("amount", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("deposit_date", new ArrowType.Timestamp(TimeUnit.MILLISECOND, null)),
+                field("description", ArrowType.Utf8.INSTANCE)
+        ));
+
+        exportQuery(job, jobDir, parent, "deposits", partition, userRange, schema, DEPOSITS_SQL, (rs, root, row) -> {
+            ((BigIntVector) root.getVector(0)).setSafe(row, rs.getLong(1));
+            ((BigIntVector) root.getVector(1)).setSafe(row, rs.getLong(2));
+            setDecimal(root.getVector(2), row, rs.getBigDecimal(3));
+            setTimestamp(root.getVector(3), row, rs.getTimestamp(4));
+            setString(root.getVector(4), row, rs.getString(5));
+        });
+    }
+
+    private void exportPrices(ExportJob job, Path jobDir, BufferAllocator parent, List<Stock> stocks, int partition) {
+        Schema schema = new Schema(List.of(
+                field("symbol", ArrowType.Utf8.INSTANCE),
+                field("timestamp", new ArrowType.Timestamp(TimeUnit.SECOND, null)),
+                field("open", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("high", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("low", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("close", new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+                field("volume", new ArrowType.Int(64, true))
+        ));
+
+        long to = System.currentTimeMillis() / 1000;
+        long from = LocalDateTime.now().minusYears(priceHistoryYears).toEpochSecond(ZoneOffset.UTC);
+
+        try (PartitionWriter writer = new PartitionWriter(job, jobDir, parent, "prices", partition, schema)) {
+            for (int i = partition; i < stocks.size(); i += partitions) {
+                String symbol = stocks.get(i).getSymbol();
+                ByteBuffer segment;
+                try {
+                    segment = candleCacheService.getSegment(symbol, "D", from, to);
+                } catch (Exception e) {
+                    System.err.println("Warning: Skipping price history for " + symbol + ": " + e.getMessage());
+                    continue;
+                }
+
+                // Copy straight from the mapped candle segment into the Arrow vectors
+                byte[] symbolBytes = symbol.getBytes(StandardCharsets.UTF_8);
+                for (int position = 0; position < segment.limit(); position += CandleCacheService.RECORD_SIZE) {
+                    int row = writer.nextRow();
+                    VectorSchemaRoot root = writer.root;
+                    ((VarCharVector) root.getVector(0)).setSafe(row, symbolBytes);
+                    ((TimeStampSecVector) root.getVector(1)).setSafe(row, segment.getLong(position));
+                    ((Float8Vector) root.getVector(2)).setSafe(row, segment.getDouble(position + 8));
+                    ((Float8Vector) root.getVector(3)).setSafe(row, segment.getDouble(position + 16));
+                    ((Float8Vector) root.getVector(4)).setSafe(row, segment.getDouble(position + 24));
+                    ((Float8Vector) root.getVector(5)).setSafe(row, segment.getDouble(position + 32));
+                    ((BigIntVector) root.getVector(6)).setSafe(row, segment.getLong(position + 40));
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export price history partition " + partition, e);
+        }
+    }
+
+    private void exportQuery(ExportJob job, Path jobDir, BufferAllocator parent, String dataset, int partition,
+                             long[] userRange, Schema schema, String sql, RowWriter rowWriter) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setFetchSize(fetchSize);
+
+        // PostgreSQL only streams with a cursor inside a transaction
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+
+        try (PartitionWriter writer = new PartitionWriter(job, jobDir, parent, dataset, partition, schema)) {
+            transactionTemplate.executeWithoutResult(status ->
+                    jdbcTemplate.query(sql, rs -> {
+                        try {
+                            rowWriter.write(rs, writer.root, writer.nextRow());
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }, userRange[0], userRange[1])
+            );
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to export " + dataset + " partition " + partition, e);
+        }
+    }
+
+    private static Field field(String name, ArrowType type) {
+        return new Field(name, FieldType.nullable(type), null);
+    }
+
+    private static void setString(FieldVector vector, int row, String value) {
+        if (value == null) {
+            vector.setNull(row);
+        } else {
+            ((VarCharVector) vector).setSafe(row, value.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void setDecimal(FieldVector vector, int row, BigDecimal value) {
+        if (value == null) {
+            vector.setNull(row);
+        } else {
+            ((Float8Vector) vector).setSafe(row, value.doubleValue());
+        }
+    }
+
+    private static void setTimestamp(FieldVector vector, int row, Timestamp value) {
+        if (value == null) {
+            vector.setNull(row);
+        } else {
+            ((TimeStampMilliVector) vector).setSafe(row, value.toLocalDateTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(ResultSet rs, VectorSchemaRoot root, int row) throws SQLException, IOException;
+    }
+
+    /**
+     * Writes one partition file, flushing a record batch every batchSize rows and reusing the vectors
+     */
+    private final class PartitionWriter implements AutoCloseable {
+        private final ExportJob job;
+        private final String dataset;
+        private final String fileName;
+        private final BufferAllocator allocator;
+        private final VectorSchemaRoot root;
+        private final FileChannel channel;
+        private final ArrowFileWriter writer;
+        private int rowsInBatch = 0;
+        private long totalRows = 0;
+
+        private PartitionWriter(ExportJob job, Path jobDir, BufferAllocator parent, String dataset, int partition, Schema schema) throws IOException {
+            this.job = job;
+            this.dataset = dataset;
+            this.fileName = dataset + "-part-" + partition + ".arrow";
+            this.allocator = parent.newChildAllocator(fileName, 0, Long.MAX_VALUE);
+            this.root = VectorSchemaRoot.create(schema, allocator);
+            this.channel = FileChannel.open(jobDir.resolve(fileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.writer = new ArrowFileWriter(root, null, channel);
+            root.allocateNew();
+            writer.start();
+        }
+
+        private int nextRow() throws IOException {
+            if (rowsInBatch == batchSize) {
+                flush();
+            }
+            totalRows++;
+            return rowsInBatch++;
+        }
+
+        private void flush() throws IOException {
+            if (rowsInBatch == 0) {
+                return;
+            }
+            root.setRowCount(rowsInBatch);
+            writer.writeBatch();
+            root.allocateNew();
+            rowsInBatch = 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+                writer.end();
+            } finally {
+                writer.close();
+                channel.close();
+                root.close();
+                allocator.close();
+            }
+            job.getFiles().add(fileName);
+            job.getRowCounts().merge(dataset, totalRows, Long::sum);
+        }
+    }
+}
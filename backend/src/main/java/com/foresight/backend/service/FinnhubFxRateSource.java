@@ -0,0 +1,40 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Rates from Finnhub's forex endpoint (a paid feature), through the usual rate limiter and circuit breaker
+ */
+@Component
+public class FinnhubFxRateSource implements FxRateSource {
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Override
+    public String getName() {
+        return "finnhub";
+    }
+
+    @Override
+    public Map<String, Double> getRatesPerUsd() {
+        JsonNode quote = finnhubService.getForexRates("USD").path("quote");
+        Map<String, Double> rates = new HashMap<>();
+        for (Iterator<Map.Entry<String, JsonNode>> fields = quote.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNumber() && field.getValue().asDouble() > 0) {
+                rates.put(field.getKey(), field.getValue().asDouble());
+            }
+        }
+        if (rates.isEmpty()) {
+            throw new RuntimeException("Finnhub returned no forex rates");
+        }
+        return rates;
+    }
+}
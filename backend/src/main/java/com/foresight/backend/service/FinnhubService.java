@@ -3,16 +3,46 @@ package com.foresight.backend.service;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Finnhub REST client.
+ *
+ * Every call goes through a circuit breaker for its endpoint, so an upstream outage costs one fast rejection per
+ * call instead of a timeout. Transient failures (I/O errors, 5xx, 429) are retried a bounded number of times with
+ * jittered exponential backoff, and only while the shared rate limiter has a permit to spare. Quote calls are
+ * hedged: if the first request hasn't answered within the hedge delay a second one is sent and whichever answers
+ * first wins, which trims the tail without doubling the load.
+ */
 @Service
-public class FinnhubService {
+public class FinnhubService implements MarketDataProvider {
 
     @Value("${finnhub.api.key}")
     private String apiKey;
@@ -22,27 +52,350 @@ public class FinnhubService {
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
-    private int apiCallCount = 0;
-    private long lastResetTime = System.currentTimeMillis();
+    // Shared call budget for bulk callers (imports); sized to the plan's per-minute limit
+    private final RateLimiter rateLimiter;
+    // Lock-free counters: calls come from many request threads at once (virtual threads included)
+    private final AtomicInteger apiCallCount = new AtomicInteger();
+    private final AtomicLong lastResetTime = new AtomicLong(System.currentTimeMillis());
 
-    public FinnhubService() {
-        this.restTemplate = new RestTemplate();
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    private AsyncTaskExecutor upstreamExecutor;
+
+    // Hedged legs get their own pool: the revalidation waiting on them already holds an upstream thread
+    @Autowired
+    @Qualifier("hedgeExecutor")
+    private AsyncTaskExecutor hedgeExecutor;
+
+    @Value("${finnhub.resilience.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${finnhub.resilience.open-ms:30000}")
+    private long openMs;
+
+    @Value("${finnhub.resilience.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${finnhub.resilience.backoff-ms:200}")
+    private long backoffMs;
+
+    @Value("${finnhub.resilience.hedge-delay-ms:400}")
+    private long hedgeDelayMs;
+
+    // A quote this recent is served without asking upstream
+    @Value("${finnhub.quote.fresh-ms:5000}")
+    private long quoteFreshMs;
+
+    // Longest a reader waits for upstream before getting the last known price
+    @Value("${finnhub.quote.budget-ms:1500}")
+    private long quoteBudgetMs;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, CachedQuote> lastQuotes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<StockPriceUpdate>> refreshes = new ConcurrentHashMap<>();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+
+    private static class CachedQuote {
+        private final StockPriceUpdate quote;
+        private final long fetchedAt;
+        // Carried over from the previous run by the warm-state snapshot
+        private final boolean restored;
+
+        CachedQuote(StockPriceUpdate quote, long fetchedAt) {
+            this(quote, fetchedAt, false);
+        }
+
+        CachedQuote(StockPriceUpdate quote, long fetchedAt, boolean restored) {
+            this.quote = quote;
+            this.fetchedAt = fetchedAt;
+            this.restored = restored;
+        }
+    }
+
+    public FinnhubService(@Value("${finnhub.api.connect-timeout-ms:3000}") int connectTimeoutMs,
+                          @Value("${finnhub.api.read-timeout-ms:5000}") int readTimeoutMs,
+                          @Value("${finnhub.api.calls-per-minute:60}") int callsPerMinute) {
+        // Bounded timeouts so a slow upstream can't hold request threads indefinitely
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(connectTimeoutMs);
+        requestFactory.setReadTimeout(readTimeoutMs);
+        this.restTemplate = new RestTemplate(requestFactory);
         this.objectMapper = new ObjectMapper();
+        this.rateLimiter = new RateLimiter(callsPerMinute, Math.max(1, callsPerMinute / 2));
+    }
+
+    @Override
+    public String getName() {
+        return "finnhub-rest";
+    }
+
+    @Override
+    public StockPriceUpdate getQuote(String symbol) {
+        return getStockQuote(symbol);
+    }
+
+    /**
+     * Takes a price pushed by the trade stream as the symbol's latest quote, so reads don't go upstream for it
+     */
+    public void onStreamQuote(StockPriceUpdate quote) {
+        lastQuotes.put(quote.getSymbol(), new CachedQuote(quote, System.currentTimeMillis()));
+    }
+
+    /**
+     * Latest quote of every symbol in the cache, for the warm-state snapshot
+     */
+    public Map<String, StockPriceUpdate> getCachedQuotes() {
+        Map<String, StockPriceUpdate> quotes = new HashMap<>();
+        lastQuotes.forEach((symbol, cached) -> quotes.put(symbol, cached.quote));
+        return quotes;
+    }
+
+    /**
+     * The cached quote if it is still within the freshness window, otherwise null; never goes upstream
+     */
+    public StockPriceUpdate getFreshQuote(String symbol) {
+        CachedQuote cached = lastQuotes.get(symbol);
+        return cached != null && System.currentTimeMillis() - cached.fetchedAt < quoteFreshMs ? cached.quote : null;
+    }
+
+    /**
+     * Seeds the cache with a quote from an earlier run. It is served as stale straight away while the first read
+     * refreshes it in the background, and never replaces a quote fetched by this run.
+     */
+    public void restoreQuote(StockPriceUpdate quote) {
+        lastQuotes.putIfAbsent(quote.getSymbol(), new CachedQuote(quote, 0, true));
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Circuit states and resilience counters, for monitoring
+     */
+    public Map<String, Object> getResilienceStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, String> circuits = new LinkedHashMap<>();
+        breakers.forEach((endpoint, breaker) -> circuits.put(endpoint, breaker.getState().name()));
+        stats.put("circuits", circuits);
+        stats.put("retries", retries.get());
+        stats.put("hedges", hedges.get());
+        stats.put("staleQuotesServed", staleServed.get());
+        return stats;
+    }
+
+    /**
+     * GET through the endpoint's circuit breaker with bounded, budgeted retries (and a hedge if asked)
+     */
+    private String get(String endpoint, String url, boolean hedge) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint,
+                e -> new CircuitBreaker(e, failureThreshold, openMs));
+        if (!breaker.allowRequest()) {
+            throw new RuntimeException("Finnhub " + endpoint + " is unavailable (circuit open)");
+        }
+
+        RestClientException failure = null;
+        for (int attempt = 1; attempt <= Math.max(1, maxAttempts); attempt++) {
+            if (attempt > 1) {
+                // Full jitter keeps callers that failed together from retrying together
+                long ceiling = backoffMs << Math.min(attempt - 2, 10);
+                try {
+                    Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                // A retry is extra load; never let it eat into quota other callers have not used yet
+                if (!rateLimiter.tryAcquire()) {
+                    break;
+                }
+                retries.incrementAndGet();
+                logApiCall(endpoint);
+            }
+            try {
+                String response = hedge ? hedged(endpoint, url) : restTemplate.getForObject(url, String.class);
+                breaker.onSuccess();
+                return response;
+            } catch (HttpClientErrorException e) {
+                if (e.getStatusCode().value() != 429) {
+                    // A bad symbol or key is our problem, not an upstream failure: don't retry or trip the circuit
+                    breaker.onSuccess();
+                    throw e;
+                }
+                failure = e;
+            } catch (RestClientException e) {
+                failure = e;
+            }
+        }
+        breaker.onFailure();
+        throw failure != null ? failure : new RestClientException("Finnhub " + endpoint + " call abandoned");
+    }
+
+    private String hedged(String endpoint, String url) {
+        CompletableFuture<String> primary;
+        try {
+            primary = CompletableFuture.supplyAsync(() -> restTemplate.getForObject(url, String.class), hedgeExecutor);
+        } catch (TaskRejectedException e) {
+            return restTemplate.getForObject(url, String.class);
+        }
+
+        try {
+            return primary.get(hedgeDelayMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Slow answer: fall through and race a second request against it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestClientException("Interrupted calling Finnhub " + endpoint, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+
+        CompletableFuture<String> backup = null;
+        if (rateLimiter.tryAcquire()) {
+            try {
+                backup = CompletableFuture.supplyAsync(() -> restTemplate.getForObject(url, String.class), hedgeExecutor);
+                hedges.incrementAndGet();
+                logApiCall(endpoint);
+            } catch (TaskRejectedException e) {
+                // No spare thread: just keep waiting on the first request
+            }
+        }
+        try {
+            return backup == null ? primary.get() : firstSuccess(primary, backup).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RestClientException("Interrupted calling Finnhub " + endpoint, e);
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    // Completes with the first result, or with the last failure if both fail
+    private static CompletableFuture<String> firstSuccess(CompletableFuture<String> a, CompletableFuture<String> b) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        AtomicInteger failed = new AtomicInteger();
+        for (CompletableFuture<String> future : List.of(a, b)) {
+            future.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else if (failed.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            });
+        }
+        return result;
+    }
+
+    private static RestClientException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RestClientException
+                ? (RestClientException) cause
+                : new RestClientException("Finnhub call failed", cause);
     }
 
     private void logApiCall(String endpoint) {
-        apiCallCount++;
+        int calls = apiCallCount.incrementAndGet();
         long currentTime = System.currentTimeMillis();
-        long elapsedMinutes = (currentTime - lastResetTime) / 60000;
+        long resetTime = lastResetTime.get();
+        long elapsedMinutes = (currentTime - resetTime) / 60000;
 
-        if (elapsedMinutes >= 1) {
-            System.out.println("Finnhub API Usage: " + apiCallCount + " calls in the last minute");
-            apiCallCount = 0;
-            lastResetTime = currentTime;
+        if (elapsedMinutes >= 1 && lastResetTime.compareAndSet(resetTime, currentTime)) {
+            System.out.println("Finnhub API Usage: " + calls + " calls in the last minute");
+            apiCallCount.set(0);
         }
     }
 
+    /**
+     * Latest quote, stale-while-revalidate: a quote younger than the freshness window is reused as is; otherwise a
+     * refresh starts and is waited for at most the quote budget, after which the last known price (in memory, else
+     * the stored stock price) is returned flagged as stale while the refresh carries on in the background. Only a
+     * symbol with no known price at all waits for the upstream outcome and may throw.
+     */
     public StockPriceUpdate getStockQuote(String symbol) {
+        CachedQuote cached = lastQuotes.get(symbol);
+        if (cached != null && System.currentTimeMillis() - cached.fetchedAt < quoteFreshMs) {
+            return cached.quote;
+        }
+
+        CompletableFuture<StockPriceUpdate> refresh = revalidate(symbol);
+        if (cached != null && cached.restored) {
+            // Warm start: answer from the snapshot now rather than wait on the first round trip
+            staleServed.incrementAndGet();
+            return stale(cached.quote);
+        }
+        StockPriceUpdate fallback = cached != null ? cached.quote : storedQuote(symbol);
+        try {
+            if (fallback == null) {
+                return refresh.get();
+            }
+            return refresh.get(quoteBudgetMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted fetching stock quote for " + symbol, e);
+        } catch (ExecutionException | TimeoutException e) {
+            if (fallback == null) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                        : new RuntimeException("Failed to fetch stock quote for " + symbol, e.getCause());
+            }
+            staleServed.incrementAndGet();
+            return stale(fallback);
+        }
+    }
+
+    private static StockPriceUpdate stale(StockPriceUpdate quote) {
+        return new StockPriceUpdate(quote.getSymbol(), quote.getCurrentPrice(), quote.getChange(),
+                quote.getChangePercent(), quote.getTimestamp(), true);
+    }
+
+    // One upstream refresh per symbol at a time; concurrent readers share it
+    private CompletableFuture<StockPriceUpdate> revalidate(String symbol) {
+        CompletableFuture<StockPriceUpdate> created = new CompletableFuture<>();
+        CompletableFuture<StockPriceUpdate> existing = refreshes.putIfAbsent(symbol, created);
+        if (existing != null) {
+            return existing;
+        }
+        Runnable task = () -> {
+            StockPriceUpdate quote = null;
+            Throwable failure = null;
+            try {
+                quote = fetchQuote(symbol);
+                lastQuotes.put(symbol, new CachedQuote(quote, System.currentTimeMillis()));
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // Unregister before completing, so a caller reacting to this outcome starts a new refresh
+            refreshes.remove(symbol, created);
+            if (failure == null) {
+                created.complete(quote);
+            } else {
+                created.completeExceptionally(failure);
+            }
+        };
+        try {
+            upstreamExecutor.execute(task);
+        } catch (TaskRejectedException e) {
+            task.run();
+        }
+        return created;
+    }
+
+    private StockPriceUpdate storedQuote(String symbol) {
+        return stockRepository.findBySymbol(symbol)
+                .filter(stock -> stock.getCurrentPrice() != null)
+                .map(stock -> new StockPriceUpdate(symbol, stock.getCurrentPrice(), BigDecimal.ZERO, BigDecimal.ZERO,
+                        stock.getLastUpdated(), true))
+                .orElse(null);
+    }
+
+    private StockPriceUpdate fetchQuote(String symbol) {
         try {
             logApiCall("quote");
             String url = UriComponentsBuilder.fromHttpUrl(baseUrl + "/quote")
@@ -50,7 +403,7 @@ public class FinnhubService {
                     .queryParam("token", apiKey)
                     .toUriString();
 
-            String response = restTemplate.getForObject(url, String.class);
+            String response = get("quote", url, true);
             JsonNode json = objectMapper.readTree(response);
 
             BigDecimal currentPrice = BigDecimal.valueOf(json.get("c").asDouble());
@@ -69,7 +422,8 @@ public class FinnhubService {
                     currentPrice,
                     change,
                     changePercent,
-                    LocalDateTime.now()
+                    LocalDateTime.now(),
+                    false
             );
         } catch (Exception e) {
             throw new RuntimeException("Failed to fetch stock quote for " + symbol, e);
@@ -84,13 +438,31 @@ public class FinnhubService {
                     .queryParam("token", apiKey)
                     .toUriString();
 
-            String response = restTemplate.getForObject(url, String.class);
+            String response = get("profile", url, false);
             return objectMapper.readTree(response);
         } catch (Exception e) {
             throw new RuntimeException("Failed to fetch company profile for " + symbol, e);
         }
     }
 
+    /**
+     * Units of each currency per unit of {@code base}, as {@code {"base": "USD", "quote": {"EUR": 0.92, ...}}}
+     */
+    public JsonNode getForexRates(String base) {
+        try {
+            logApiCall("forex");
+            String url = UriComponentsBuilder.fromHttpUrl(baseUrl + "/forex/rates")
+                    .queryParam("base", base)
+                    .queryParam("token", apiKey)
+                    .toUriString();
+
+            String response = get("forex", url, false);
+            return objectMapper.readTree(response);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch forex rates for " + base, e);
+        }
+    }
+
     public JsonNode getDividends(String symbol) {
         try {
             logApiCall("dividend");
@@ -105,7 +477,7 @@ public class FinnhubService {
                     .queryParam("token", apiKey)
                     .toUriString();
 
-            String response = restTemplate.getForObject(url, String.class);
+            String response = get("dividend", url, false);
             return objectMapper.readTree(response);
         } catch (Exception e) {
             System.err.println("Warning: Failed to fetch dividends for " + symbol + ": " + e.getMessage());
@@ -121,7 +493,7 @@ public class FinnhubService {
                     .queryParam("token", apiKey)
                     .toUriString();
 
-            String response = restTemplate.getForObject(url, String.class);
+            String response = get("earnings", url, false);
             return objectMapper.readTree(response);
         } catch (Exception e) {
             System.err.println("Warning: Failed to fetch earnings calendar for " + symbol + ": " + e.getMessage());
@@ -129,6 +501,24 @@ public class FinnhubService {
         }
     }
 
+    public JsonNode getCandles(String symbol, String resolution, long fromEpochSecond, long toEpochSecond) {
+        try {
+            logApiCall("candle");
+            String url = UriComponentsBuilder.fromHttpUrl(baseUrl + "/stock/candle")
+                    .queryParam("symbol", symbol)
+                    .queryParam("resolution", resolution)
+                    .queryParam("from", fromEpochSecond)
+                    .queryParam("to", toEpochSecond)
+                    .queryParam("token", apiKey)
+                    .toUriString();
+
+            String response = get("candle", url, false);
+            return objectMapper.readTree(response);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch candles for " + symbol, e);
+        }
+    }
+
     public JsonNode searchSymbols(String query) {
         try {
             logApiCall("search");
@@ -137,7 +527,7 @@ public class FinnhubService {
                     .queryParam("token", apiKey)
                     .toUriString();
 
-            String response = restTemplate.getForObject(url, String.class);
+            String response = get("search", url, false);
             return objectMapper.readTree(response);
         } catch (Exception e) {
             System.err.println("Warning: Failed to search symbols for query: " + query + ": " + e.getMessage());
@@ -0,0 +1,197 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finnhub's WebSocket trade feed (wss://ws.finnhub.io).
+ *
+ * Subscriptions are remembered and replayed after every reconnect. Reconnects back off exponentially, and the
+ * backoff only starts over once a connection has stayed up for finnhub.stream.stable-ms, so a feed that accepts
+ * connections and drops them straight away isn't hammered every second or two. Messages are trade batches
+ * ({"type":"trade","data":[{"s":..,"p":..,"v":..,"t":..}]}) and pings, which need no answer. Outbound frames are
+ * chained because the JDK WebSocket allows only one send in flight.
+ */
+@Component
+public class FinnhubStreamProvider implements MarketDataProvider {
+
+    @Value("${finnhub.api.key}")
+    private String apiKey;
+
+    @Value("${finnhub.stream.url:wss://ws.finnhub.io}")
+    private String url;
+
+    @Value("${finnhub.stream.reconnect-max-ms:60000}")
+    private long reconnectMaxMs;
+
+    @Value("${finnhub.stream.stable-ms:60000}")
+    private long stableMs;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+    private volatile TradeListener listener;
+    private volatile WebSocket socket;
+    private volatile boolean running;
+    // Attempt that opened the current connection, and when
+    private volatile int connectedAttempt;
+    private volatile long connectedAt;
+    private CompletableFuture<?> sends = CompletableFuture.completedFuture(null);
+
+    @Override
+    public String getName() {
+        return "finnhub";
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    public void start(TradeListener listener) {
+        this.listener = listener;
+        running = true;
+        connect(0);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        WebSocket current = socket;
+        socket = null;
+        if (current != null) {
+            current.sendClose(WebSocket.NORMAL_CLOSURE, "shutdown");
+        }
+    }
+
+    @Override
+    public void subscribe(String symbol) {
+        if (subscribed.add(symbol)) {
+            send(socket, "subscribe", symbol);
+        }
+    }
+
+    @Override
+    public void unsubscribe(String symbol) {
+        if (subscribed.remove(symbol)) {
+            send(socket, "unsubscribe", symbol);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket != null;
+    }
+
+    private void connect(int attempt) {
+        if (!running) {
+            return;
+        }
+        URI uri = URI.create(url + "?token=" + URLEncoder.encode(apiKey, StandardCharsets.UTF_8));
+        client.newWebSocketBuilder()
+                .buildAsync(uri, new Handler())
+                .whenComplete((webSocket, error) -> {
+                    if (error != null) {
+                        System.err.println("Finnhub stream connect failed: " + error.getMessage());
+                        reconnect(attempt + 1);
+                        return;
+                    }
+                    System.out.println("Finnhub stream connected, subscribing to " + subscribed.size() + " symbols");
+                    connectedAttempt = attempt;
+                    connectedAt = System.currentTimeMillis();
+                    socket = webSocket;
+                    for (String symbol : subscribed) {
+                        send(webSocket, "subscribe", symbol);
+                    }
+                });
+    }
+
+    private void reconnect(int attempt) {
+        if (!running) {
+            return;
+        }
+        // Jittered exponential backoff so a Finnhub restart isn't met by every client at once
+        long ceiling = Math.min(reconnectMaxMs, 1000L << Math.min(attempt, 16));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling / 2, ceiling + 1);
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> connect(attempt));
+    }
+
+    private synchronized void send(WebSocket webSocket, String type, String symbol) {
+        if (webSocket == null) {
+            // Not connected: the symbol is sent with the others on (re)connect
+            return;
+        }
+        String message = objectMapper.createObjectNode().put("type", type).put("symbol", symbol).toString();
+        sends = sends.handle((ignored, error) -> null)
+                .thenCompose(ignored -> webSocket.sendText(message, true));
+    }
+
+    private void onMessage(String text) {
+        try {
+            JsonNode json = objectMapper.readTree(text);
+            if (!"trade".equals(json.path("type").asText())) {
+                return;
+            }
+            TradeListener target = listener;
+            for (JsonNode trade : json.path("data")) {
+                target.onTrade(trade.path("s").asText(), trade.path("p").asDouble(),
+                        trade.path("v").asLong(), trade.path("t").asLong());
+            }
+        } catch (Exception e) {
+            System.err.println("Unreadable Finnhub stream message: " + e.getMessage());
+        }
+    }
+
+    private class Handler implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                onMessage(text);
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            System.err.println("Finnhub stream closed (" + statusCode + " " + reason + ")");
+            dropped(webSocket);
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            System.err.println("Finnhub stream error: " + error.getMessage());
+            dropped(webSocket);
+        }
+
+        private void dropped(WebSocket webSocket) {
+            if (socket == webSocket) {
+                socket = null;
+            }
+            boolean stable = System.currentTimeMillis() - connectedAt >= stableMs;
+            reconnect(stable ? 1 : connectedAttempt + 1);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.foresight.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Exchange rates as a precomputed cross-rate matrix.
+ *
+ * The configured {@link FxRateSource} (fx.source: local or finnhub) is polled every fx.refresh-ms, and each poll,
+ * or a single rate pushed through {@link #onRate}, builds a new immutable {@link Matrix} holding the rate between
+ * every pair of currencies. Converting is then an array read, so valuing a portfolio needs no lookups per holding.
+ * Listeners hear which currencies moved, so only the portfolios exposed to them are revalued.
+ */
+@Service
+public class FxRateService {
+
+    // Minor units some exchanges quote in, per unit of the major currency
+    private static final Map<String, String> MINOR_UNITS = Map.of("GBX", "GBP", "ILA", "ILS", "ZAC", "ZAR");
+
+    @Autowired
+    private List<FxRateSource> sources;
+
+    @Value("${fx.source:local}")
+    private String sourceName;
+
+    private volatile Matrix matrix;
+    private volatile long updatedAt;
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Rates between every pair of a fixed set of currencies
+     */
+    public static final class Matrix {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final double[] perUsd;
+        private final double[] cross;
+        private final int size;
+
+        Matrix(Map<String, Double> ratesPerUsd) {
+            Map<String, Double> rates = new HashMap<>(ratesPerUsd);
+            rates.put("USD", 1.0);
+            MINOR_UNITS.forEach((minor, major) -> {
+                if (rates.containsKey(major)) {
+                    rates.putIfAbsent(minor, rates.get(major) * 100);
+                }
+            });
+            String[] codes = rates.keySet().toArray(new String[0]);
+            Arrays.sort(codes);
+            size = codes.length;
+            perUsd = new double[size];
+            for (int i = 0; i < size; i++) {
+                indexes.put(codes[i], i);
+                perUsd[i] = rates.get(codes[i]);
+            }
+            cross = new double[size * size];
+            for (int from = 0; from < size; from++) {
+                for (int to = 0; to < size; to++) {
+                    cross[from * size + to] = perUsd[to] / perUsd[from];
+                }
+            }
+        }
+
+        /**
+         * @throws IllegalArgumentException for a currency without a rate, rather than adding it up as if it were
+         *                                  the other one
+         */
+        public int index(String currency) {
+            Integer index = indexes.get(currency);
+            if (index == null) {
+                throw new IllegalArgumentException("No exchange rate for " + currency);
+            }
+            return index;
+        }
+
+        public boolean has(String currency) {
+            return indexes.containsKey(currency);
+        }
+
+        /**
+         * Units of {@code to} per unit of {@code from}
+         */
+        public double rate(int from, int to) {
+            return cross[from * size + to];
+        }
+
+        public double rate(String from, String to) {
+            return rate(index(from), index(to));
+        }
+
+        public BigDecimal convert(BigDecimal amount, int from, int to) {
+            if (amount == null || from == to) {
+                return amount;
+            }
+            return amount.multiply(BigDecimal.valueOf(cross[from * size + to])).setScale(2, RoundingMode.HALF_UP);
+        }
+
+        public Set<String> getCurrencies() {
+            return indexes.keySet();
+        }
+
+        double perUsd(String currency) {
+            Integer index = indexes.get(currency);
+            return index == null ? Double.NaN : perUsd[index];
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            apply(source().getRatesPerUsd());
+        } catch (RuntimeException e) {
+            // Approximate rates beat adding up currencies as if they were one
+            System.err.println("FX source " + sourceName + " failed, starting on local rates: " + e.getMessage());
+            apply(sources.stream().filter(s -> s.getName().equals("local")).findFirst()
+                    .orElseThrow(() -> e).getRatesPerUsd());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${fx.refresh-ms:3600000}", initialDelayString = "${fx.refresh-ms:3600000}")
+    public void refresh() {
+        try {
+            apply(source().getRatesPerUsd());
+        } catch (RuntimeException e) {
+            refreshFailures.incrementAndGet();
+            System.err.println("FX refresh failed, keeping the previous rates: " + e.getMessage());
+        }
+    }
+
+    /**
+     * A single rate update, e.g. from a streaming feed
+     */
+    public synchronized void onRate(String currency, double unitsPerUsd) {
+        if (unitsPerUsd <= 0) {
+            return;
+        }
+        Matrix current = matrix;
+        Map<String, Double> rates = new HashMap<>();
+        for (String code : current.getCurrencies()) {
+            // Derived minor units are rebuilt from their major currency
+            if (!MINOR_UNITS.containsKey(code)) {
+                rates.put(code, current.perUsd(code));
+            }
+        }
+        rates.put(normalize(currency), unitsPerUsd);
+        apply(rates);
+    }
+
+    public Matrix getMatrix() {
+        return matrix;
+    }
+
+    /**
+     * Called with the currencies whose rate changed, after the new matrix is in place
+     */
+    public void addListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    public boolean isKnown(String currency) {
+        return matrix.has(currency);
+    }
+
+    /**
+     * Upper-cases an ISO code, keeping minor units apart (GBp, pence, becomes GBX); blank means USD
+     */
+    public static String normalize(String currency) {
+        if (currency == null || currency.isBlank()) {
+            return "USD";
+        }
+        String code = currency.trim();
+        switch (code) {
+            case "GBp":
+                return "GBX";
+            case "ZAc":
+                return "ZAC";
+            default:
+                return code.toUpperCase();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("source", sourceName);
+        stats.put("currencies", matrix.size);
+        stats.put("updatedAt", updatedAt);
+        stats.put("refreshFailures", refreshFailures.get());
+        return stats;
+    }
+
+    private synchronized void apply(Map<String, Double> ratesPerUsd) {
+        Matrix previous = matrix;
+        Map<String, Double> rates = new HashMap<>(ratesPerUsd);
+        if (previous != null) {
+            // A currency the source stops quoting keeps its last rate, so stocks and users priced in it stay valuable
+            for (String code : previous.getCurrencies()) {
+                if (!MINOR_UNITS.containsKey(code)) {
+                    rates.putIfAbsent(code, previous.perUsd(code));
+                }
+            }
+        }
+        Matrix next = new Matrix(rates);
+        Set<String> changed = new HashSet<>();
+        for (String code : next.getCurrencies()) {
+            if (previous == null || Double.compare(previous.perUsd(code), next.perUsd(code)) != 0) {
+                changed.add(code);
+            }
+        }
+        matrix = next;
+        updatedAt = System.currentTimeMillis();
+        if (previous != null && !changed.isEmpty()) {
+            for (Consumer<Set<String>> listener : listeners) {
+                listener.accept(changed);
+            }
+        }
+    }
+
+    private FxRateSource source() {
+        return sources.stream()
+                .filter(s -> s.getName().equalsIgnoreCase(sourceName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No FX rate source named " + sourceName));
+    }
+}
@@ -0,0 +1,19 @@
+package com.foresight.backend.service;
+
+import java.util.Map;
+
+/**
+ * A source of exchange rates. {@link FxRateService} polls whichever one fx.source names.
+ */
+public interface FxRateSource {
+
+    /**
+     * Name used to select the source in configuration (e.g. fx.source=finnhub)
+     */
+    String getName();
+
+    /**
+     * Units of each currency per US dollar, keyed by ISO code
+     */
+    Map<String, Double> getRatesPerUsd();
+}
@@ -0,0 +1,224 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.model.User;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the holdings projection of the trade ledger.
+ *
+ * Each write is an absolute checkpoint of a lot book (shares, cost basis, realized gain) tagged with the id of the
+ * last trade it includes. A checkpoint never replaces a row holding a newer sequence, so a slow writer can't roll
+ * a holding back (an equal sequence is rewritten, which lets a rebuild repair a row). On PostgreSQL this is one INSERT ... ON CONFLICT DO UPDATE ... WHERE per holding, batched
+ * for rebuilds. Other databases (H2 in dev/tests) lock the user's rows and apply the same rule through JPA.
+ * Callers run inside the transaction that appended the trades.
+ */
+@Service
+public class HoldingUpsertService {
+
+    private static final String UPSERT_SQL =
+            "INSERT INTO portfolio_holdings AS ph (user_id, stock_id, quantity, average_buy_price, total_invested, "
+                    + "current_value, profit_loss, profit_loss_percentage, realized_profit_loss, ledger_sequence, "
+                    + "created_at, updated_at, version) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0) "
+                    + "ON CONFLICT (user_id, stock_id) DO UPDATE SET "
+                    + "quantity = EXCLUDED.quantity, "
+                    + "average_buy_price = EXCLUDED.average_buy_price, "
+                    + "total_invested = EXCLUDED.total_invested, "
+                    + "current_value = EXCLUDED.current_value, "
+                    + "profit_loss = EXCLUDED.profit_loss, "
+                    + "profit_loss_percentage = EXCLUDED.profit_loss_percentage, "
+                    + "realized_profit_loss = EXCLUDED.realized_profit_loss, "
+                    + "ledger_sequence = EXCLUDED.ledger_sequence, "
+                    + "updated_at = EXCLUDED.updated_at, "
+                    + "version = ph.version + 1 "
+                    + "WHERE ph.ledger_sequence <= EXCLUDED.ledger_sequence";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Value("${portfolio.upsert.batch-size:1000}")
+    private int batchSize;
+
+    private volatile Boolean postgres;
+
+    /**
+     * State of one position after the trade with id {@code sequence}
+     */
+    public static class Checkpoint {
+        private final Stock stock;
+        private final int quantity;
+        private final BigDecimal costBasis;
+        private final BigDecimal realizedGain;
+        private final long sequence;
+
+        public Checkpoint(Stock stock, LotBook book) {
+            this.stock = stock;
+            this.quantity = book.getQuantity();
+            this.costBasis = book.getCostBasis();
+            this.realizedGain = book.getRealizedGain();
+            this.sequence = book.getSequence();
+        }
+
+        public Stock getStock() {
+            return stock;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getCostBasis() {
+            return costBasis;
+        }
+
+        public BigDecimal getRealizedGain() {
+            return realizedGain;
+        }
+    }
+
+    /**
+     * @return number of holdings inserted or updated (stale checkpoints are skipped)
+     */
+    public int write(User user, List<Checkpoint> checkpoints) {
+        if (checkpoints.isEmpty()) {
+            return 0;
+        }
+        if (isPostgres()) {
+            LocalDateTime now = LocalDateTime.now();
+            int written = 0;
+            for (int[] batch : jdbcTemplate.batchUpdate(UPSERT_SQL, checkpoints, batchSize,
+                    (statement, checkpoint) -> bind(statement, user, checkpoint, now))) {
+                for (int count : batch) {
+                    // Drivers may report SUCCESS_NO_INFO (-2) instead of a count
+                    written += count == 0 ? 0 : 1;
+                }
+            }
+            return written;
+        }
+        return writeLocked(user, checkpoints);
+    }
+
+    private void bind(PreparedStatement statement, User user, Checkpoint checkpoint, LocalDateTime now) throws SQLException {
+        PortfolioHolding values = new PortfolioHolding();
+        apply(values, checkpoint);
+
+        statement.setLong(1, user.getId());
+        statement.setLong(2, checkpoint.stock.getId());
+        statement.setInt(3, values.getQuantity());
+        statement.setBigDecimal(4, values.getAverageBuyPrice());
+        statement.setBigDecimal(5, values.getTotalInvested());
+        setNullable(statement, 6, values.getCurrentValue());
+        setNullable(statement, 7, values.getProfitLoss());
+        setNullable(statement, 8, values.getProfitLossPercentage());
+        statement.setBigDecimal(9, values.getRealizedProfitLoss());
+        statement.setLong(10, checkpoint.sequence);
+        statement.setTimestamp(11, Timestamp.valueOf(now));
+        statement.setTimestamp(12, Timestamp.valueOf(now));
+    }
+
+    private static void setNullable(PreparedStatement statement, int index, BigDecimal value) throws SQLException {
+        if (value != null) {
+            statement.setBigDecimal(index, value);
+        } else {
+            statement.setNull(index, Types.NUMERIC);
+        }
+    }
+
+    private int writeLocked(User user, List<Checkpoint> checkpoints) {
+        Map<Long, PortfolioHolding> existing = new HashMap<>();
+        if (checkpoints.size() == 1) {
+            // Single trade: lock just that row
+            Long stockId = checkpoints.get(0).stock.getId();
+            portfolioHoldingRepository.findByUserIdAndStockIdForUpdate(user.getId(), stockId)
+                    .ifPresent(holding -> existing.put(stockId, holding));
+        } else {
+            for (PortfolioHolding holding : portfolioHoldingRepository.findByUserIdForUpdate(user.getId())) {
+                existing.put(holding.getStock().getId(), holding);
+            }
+        }
+
+        List<PortfolioHolding> changed = new ArrayList<>(checkpoints.size());
+        for (Checkpoint checkpoint : checkpoints) {
+            PortfolioHolding holding = existing.get(checkpoint.stock.getId());
+            if (holding == null) {
+                holding = new PortfolioHolding();
+                holding.setUser(user);
+                holding.setStock(checkpoint.stock);
+            } else if (holding.getLedgerSequence() > checkpoint.sequence) {
+                continue;
+            }
+            apply(holding, checkpoint);
+            changed.add(holding);
+        }
+
+        portfolioHoldingRepository.saveAll(changed);
+        portfolioHoldingRepository.flush();
+        return changed.size();
+    }
+
+    private static void apply(PortfolioHolding holding, Checkpoint checkpoint) {
+        holding.setQuantity(checkpoint.quantity);
+        holding.setTotalInvested(checkpoint.costBasis);
+        holding.setAverageBuyPrice(checkpoint.quantity > 0
+                ? checkpoint.costBasis.divide(BigDecimal.valueOf(checkpoint.quantity), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO);
+        holding.setRealizedProfitLoss(checkpoint.realizedGain);
+        holding.setLedgerSequence(checkpoint.sequence);
+
+        BigDecimal currentPrice = checkpoint.stock.getCurrentPrice();
+        if (currentPrice != null) {
+            BigDecimal currentValue = currentPrice.multiply(BigDecimal.valueOf(checkpoint.quantity));
+            BigDecimal profitLoss = currentValue.subtract(checkpoint.costBasis);
+            holding.setCurrentValue(currentValue);
+            holding.setProfitLoss(profitLoss);
+            holding.setProfitLossPercentage(percentage(profitLoss, checkpoint.costBasis));
+        } else {
+            holding.setCurrentValue(null);
+            holding.setProfitLoss(null);
+            holding.setProfitLossPercentage(null);
+        }
+    }
+
+    private boolean isPostgres() {
+        Boolean current = postgres;
+        if (current == null) {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            current = "PostgreSQL".equalsIgnoreCase(product);
+            postgres = current;
+        }
+        return current;
+    }
+
+    private static BigDecimal percentage(BigDecimal profitLoss, BigDecimal invested) {
+        return invested.compareTo(BigDecimal.ZERO) > 0
+                ? profitLoss.divide(invested, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                : BigDecimal.ZERO;
+    }
+}
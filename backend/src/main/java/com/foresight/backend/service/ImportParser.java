@@ -0,0 +1,29 @@
+package com.foresight.backend.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streaming parser for a brokerage export format. Rows are handed to the handler as they are read,
+ * so memory use doesn't depend on file size.
+ */
+public interface ImportParser {
+
+    void parse(InputStream input, Handler handler) throws IOException;
+
+    interface Handler {
+
+        void onRecord(ImportRecord record);
+
+        /**
+         * Row that couldn't be understood; parsing continues
+         */
+        void onError(long line, String message);
+
+        /**
+         * Maps a security id used in earlier records to its ticker (OFX lists securities after the trades)
+         */
+        default void onSecurity(String securityId, String ticker) {
+        }
+    }
+}
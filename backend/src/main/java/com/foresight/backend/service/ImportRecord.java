@@ -0,0 +1,65 @@
+package com.foresight.backend.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * One parsed row of a brokerage file. Quantities and amounts are always positive; the type gives the direction.
+ */
+public class ImportRecord {
+
+    public enum Type { BUY, SELL, DEPOSIT, OTHER }
+
+    private final long line;
+    private final Type type;
+    private final LocalDateTime date;
+    private final String symbol;
+    private final BigDecimal quantity;
+    private final BigDecimal amount;
+    private final String description;
+
+    public ImportRecord(long line, Type type, LocalDateTime date, String symbol, BigDecimal quantity,
+                        BigDecimal amount, String description) {
+        this.line = line;
+        this.type = type;
+        this.date = date;
+        this.symbol = symbol;
+        this.quantity = quantity;
+        this.amount = amount;
+        this.description = description;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public LocalDateTime getDate() {
+        return date;
+    }
+
+    /**
+     * Ticker, or for OFX the security id until it is resolved through {@link ImportParser.Handler#onSecurity}
+     */
+    public String getSymbol() {
+        return symbol;
+    }
+
+    public BigDecimal getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Cash value of the row: cost of a buy (including fees), proceeds of a sell, or the deposit amount
+     */
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,677 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.foresight.backend.dto.ImportJob;
+import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.model.Trade;
+import com.foresight.backend.model.User;
+import com.foresight.backend.repository.StockRepository;
+import com.foresight.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports a brokerage transaction export (CSV or OFX), or a JSON trade list, for one user.
+ *
+ * The upload is spooled to disk and read twice as a stream. The first pass validates rows, writes deposits in JDBC
+ * batches and collects the symbols traded. Symbols the database hasn't seen are then created in one go, with
+ * Finnhub lookups limited to what the shared rate limiter allows; the rest get their price from the regular
+ * refresh. The second pass appends the buys and sells to the trade ledger in batches, and the user's holdings are
+ * rebuilt from the ledger once at the end. Memory depends on the number of distinct symbols, not on file size
+ * (except for newest-first files, whose trades are held until they can be appended oldest first).
+ * Progress is published on /topic/imports/{jobId}.
+ *
+ * Every import is registered in the imports table under a hash of the file, so the same file can't be imported
+ * twice, and every row it writes carries its id: an import that fails part way deletes its trades and deposits
+ * again and rebuilds the user's holdings without them. The ledger is replayed in the order trades were appended,
+ * so trades dated before the latest one already recorded for a stock are rejected rather than slotted in behind it.
+ */
+@Service
+public class ImportService {
+
+    private static final String INSERT_DEPOSIT_SQL =
+            "INSERT INTO deposits (user_id, amount, deposit_date, description, created_at, import_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final int[] DEPOSIT_TYPES =
+            { Types.BIGINT, Types.NUMERIC, Types.TIMESTAMP, Types.VARCHAR, Types.TIMESTAMP, Types.VARCHAR };
+
+    private static final String INSERT_IMPORT_SQL =
+            "INSERT INTO imports (id, user_id, import_key, created_at) VALUES (?, ?, ?, ?)";
+
+    private static final String DELETE_DEPOSITS_SQL = "DELETE FROM deposits WHERE import_id = ?";
+
+    private static final String DELETE_IMPORT_SQL = "DELETE FROM imports WHERE id = ?";
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private PortfolioStreamService portfolioStreamService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    @Qualifier("importExecutor")
+    private AsyncTaskExecutor executor;
+
+    @Value("${import.dir:data/imports}")
+    private String importDir;
+
+    @Value("${import.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${import.progress-every:5000}")
+    private int progressEvery;
+
+    // Finnhub calls one import may spend on new symbols, and how long to wait for each permit
+    @Value("${import.enrichment.max-calls:40}")
+    private int maxEnrichmentCalls;
+
+    @Value("${import.enrichment.wait-ms:2000}")
+    private long enrichmentWaitMs;
+
+    // Lookups block on Finnhub; they get a small pool of their own rather than a share of the fan-out pool
+    @Value("${import.enrichment.threads:4}")
+    private int enrichmentThreads;
+
+    // Finished jobs stay queryable this long
+    @Value("${import.job-ttl-ms:3600000}")
+    private long jobTtlMs;
+
+    private final Map<String, ImportJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * Spools the upload to disk and starts processing it in the background.
+     *
+     * @param format "csv" or "ofx"; when null it is taken from the file name or the first bytes of the file
+     * @throws IllegalStateException when the same file has already been imported for this user
+     */
+    public ImportJob startImport(Long userId, String fileName, String format, InputStream body) throws IOException {
+        Upload upload = spool(userId, fileName, format, body);
+        register(upload, upload.hash);
+        executor.execute(() -> runImport(upload.job, upload.user, upload.file));
+        return upload.job;
+    }
+
+    /**
+     * Runs an import on the calling thread and returns the finished job
+     *
+     * @param format "csv", "ofx" or "json"
+     * @param importKey caller's idempotency key; a second import with the same key is refused. Null to allow repeats.
+     * @throws IllegalStateException when an import with this key has already run for this user
+     */
+    public ImportJob importNow(Long userId, String format, InputStream body, String importKey) throws IOException {
+        Upload upload = spool(userId, null, format, body);
+        register(upload, importKey);
+        runImport(upload.job, upload.user, upload.file);
+        return upload.job;
+    }
+
+    public ImportJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Forgets finished jobs once they are older than import.job-ttl-ms
+     */
+    @Scheduled(fixedDelayString = "${import.job-ttl-ms:3600000}")
+    public void pruneJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(jobTtlMs));
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    private Upload spool(Long userId, String fileName, String format, InputStream body) throws IOException {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        String jobId = UUID.randomUUID().toString();
+        Path dir = Paths.get(importDir);
+        Files.createDirectories(dir);
+        Path file = dir.resolve(jobId + ".upload");
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        Files.copy(new DigestInputStream(body, digest), file);
+
+        String resolvedFormat;
+        try {
+            resolvedFormat = detectFormat(format, fileName, file);
+        } catch (IllegalArgumentException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        ImportJob job = new ImportJob();
+        job.setJobId(jobId);
+        job.setUserId(userId);
+        job.setFileName(fileName);
+        job.setFormat(resolvedFormat);
+        job.setStatus("RUNNING");
+        job.setPhase("UPLOADED");
+        job.setErrors(Collections.synchronizedList(new ArrayList<>()));
+        job.setStartedAt(LocalDateTime.now());
+        return new Upload(job, user, file, HexFormat.of().formatHex(digest.digest()));
+    }
+
+    private void register(Upload upload, String importKey) throws IOException {
+        try {
+            jdbcTemplate.update(INSERT_IMPORT_SQL, upload.job.getJobId(), upload.user.getId(), importKey,
+                    Timestamp.valueOf(LocalDateTime.now()));
+        } catch (DataIntegrityViolationException e) {
+            Files.deleteIfExists(upload.file);
+            throw new IllegalStateException("This file has already been imported");
+        }
+        jobs.put(upload.job.getJobId(), upload.job);
+    }
+
+    private void runImport(ImportJob job, User user, Path file) {
+        try {
+            ImportParser parser = switch (job.getFormat()) {
+                case "ofx" -> new OfxImportParser();
+                case "json" -> new JsonImportParser();
+                default -> new CsvImportParser();
+            };
+            Scan scan = scan(job, user, file, parser);
+
+            setPhase(job, "ENRICHING");
+            Map<String, Stock> stocks = resolveStocks(job, new HashSet<>(scan.symbols.values()));
+
+            setPhase(job, "RECORDING");
+            recordTrades(job, user, file, parser, scan, stocks);
+
+            if (job.getBuysRecorded() + job.getSellsRecorded() > 0) {
+                setPhase(job, "REBUILDING");
+                job.setHoldingsUpserted(ledgerService.rebuildUser(user.getId()).getHoldingsWritten());
+                dividendIncomeService.refreshUser(user.getId());
+            }
+            if (job.getBuysRecorded() + job.getSellsRecorded() + job.getDepositsWritten() > 0) {
+                portfolioStreamService.onHoldingsChanged(user.getId());
+                readModelCache.onUserChanged(user.getId());
+                readYourWrites.onUserWrite(user.getId());
+                portfolioStateEngine.reload(user.getId());
+            }
+
+            job.setStatus("COMPLETED");
+            setPhase(job, "DONE");
+        } catch (Exception e) {
+            System.err.println("Import " + job.getJobId() + " failed: " + e.getMessage());
+            job.setStatus("FAILED");
+            job.setError(e.getMessage());
+            rollBack(job, user);
+        } finally {
+            if ("RUNNING".equals(job.getStatus())) {
+                job.setStatus("FAILED");
+            }
+            job.setFinishedAt(LocalDateTime.now());
+            publish(job);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                System.err.println("Could not delete import upload " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes everything a failed import wrote, so it can be fixed and uploaded again
+     */
+    private void rollBack(ImportJob job, User user) {
+        try {
+            int deposits = new TransactionTemplate(transactionManager).execute(status -> {
+                jdbcTemplate.update(DELETE_IMPORT_SQL, job.getJobId());
+                return jdbcTemplate.update(DELETE_DEPOSITS_SQL, job.getJobId());
+            });
+            int trades = ledgerService.rollBackImport(user.getId(), job.getJobId());
+            if (trades > 0) {
+                dividendIncomeService.refreshUser(user.getId());
+            }
+            if (trades + deposits > 0) {
+                portfolioStreamService.onHoldingsChanged(user.getId());
+                readModelCache.onUserChanged(user.getId());
+                readYourWrites.onUserWrite(user.getId());
+                portfolioStateEngine.reload(user.getId());
+            }
+            setPhase(job, "ROLLED_BACK");
+        } catch (RuntimeException e) {
+            System.err.println("Could not roll back import " + job.getJobId() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * First pass: validates rows, writes deposits in batches and collects the symbols traded
+     */
+    private Scan scan(ImportJob job, User user, Path file, ImportParser parser) throws IOException {
+        setPhase(job, "PARSING");
+        Scan scan = new Scan();
+        Map<String, String> tickers = new HashMap<>();
+        List<Object[]> deposits = new ArrayList<>(batchSize);
+
+        ImportParser.Handler handler = new ImportParser.Handler() {
+            private LocalDateTime lastTradeDate;
+
+            @Override
+            public void onRecord(ImportRecord record) {
+                countRow(job);
+                switch (record.getType()) {
+                    case BUY, SELL -> {
+                        if (!isWholeShares(record)) {
+                            reject(job, record.getLine(), "fractional quantity " + record.getQuantity().toPlainString());
+                            return;
+                        }
+                        scan.symbols.put(record.getSymbol(), record.getSymbol());
+                        if (record.getDate() != null && lastTradeDate != null) {
+                            scan.dateOrder += Integer.signum(record.getDate().compareTo(lastTradeDate));
+                        }
+                        if (record.getDate() != null) {
+                            lastTradeDate = record.getDate();
+                        }
+                    }
+                    case DEPOSIT -> {
+                        LocalDateTime date = record.getDate() != null ? record.getDate() : LocalDateTime.now();
+                        deposits.add(new Object[] { user.getId(), record.getAmount(), Timestamp.valueOf(date),
+                                truncate(record.getDescription(), 255), Timestamp.valueOf(LocalDateTime.now()),
+                                job.getJobId() });
+                        if (deposits.size() >= batchSize) {
+                            writeDeposits(job, deposits);
+                        }
+                    }
+                    default -> {
+                        // dividends, fees, interest: not tracked
+                    }
+                }
+            }
+
+            @Override
+            public void onError(long line, String message) {
+                countRow(job);
+                reject(job, line, message);
+            }
+
+            @Override
+            public void onSecurity(String securityId, String ticker) {
+                tickers.put(securityId, ticker);
+            }
+        };
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            parser.parse(input, handler);
+        }
+        writeDeposits(job, deposits);
+
+        // OFX trades name the security by CUSIP; map them onto the ticker from the security list
+        scan.symbols.replaceAll((raw, symbol) -> tickers.getOrDefault(raw, raw).toUpperCase(Locale.ROOT));
+        job.setSymbols(new HashSet<>(scan.symbols.values()).size());
+        publish(job);
+        return scan;
+    }
+
+    /**
+     * Second pass: appends the trades to the ledger in file order (oldest first), rejecting sells of shares that
+     * wouldn't be held at that point and trades older than the ledger already holds for their stock
+     */
+    private void recordTrades(ImportJob job, User user, Path file, ImportParser parser, Scan scan,
+                              Map<String, Stock> stocks) throws IOException {
+        Map<Long, Integer> held = new HashMap<>(ledgerService.getHeldQuantities(user.getId()));
+        Map<Long, LocalDateTime> recordedUntil = ledgerService.getLastTradeDates(user.getId());
+        List<LedgerService.Entry> batch = new ArrayList<>(batchSize);
+        // Most brokers export newest first; those trades are buffered and replayed oldest first
+        List<ImportRecord> newestFirst = scan.dateOrder < 0 ? new ArrayList<>() : null;
+
+        Consumer<ImportRecord> append = trade -> {
+            Stock stock = stocks.get(scan.symbols.get(trade.getSymbol()));
+            if (stock == null) {
+                reject(job, trade.getLine(), "could not create stock " + scan.symbols.get(trade.getSymbol()));
+                return;
+            }
+            LocalDateTime latest = recordedUntil.get(stock.getId());
+            if (latest != null && trade.getDate() != null && trade.getDate().isBefore(latest)) {
+                reject(job, trade.getLine(), stock.getSymbol() + " trade of " + trade.getDate().toLocalDate()
+                        + " predates trades already recorded (up to " + latest.toLocalDate() + ")");
+                return;
+            }
+            int quantity = trade.getQuantity().intValueExact();
+            int position = held.getOrDefault(stock.getId(), 0);
+            Trade.Side side;
+            if (trade.getType() == ImportRecord.Type.SELL) {
+                if (quantity > position) {
+                    reject(job, trade.getLine(), "sells " + quantity + " " + stock.getSymbol() + " but only "
+                            + position + " held");
+                    return;
+                }
+                side = Trade.Side.SELL;
+                held.put(stock.getId(), position - quantity);
+                job.setSellsRecorded(job.getSellsRecorded() + 1);
+            } else {
+                side = Trade.Side.BUY;
+                held.put(stock.getId(), position + quantity);
+                job.setBuysRecorded(job.getBuysRecorded() + 1);
+            }
+            batch.add(new LedgerService.Entry(stock, side, quantity, trade.getAmount(), trade.getDate()));
+            if (batch.size() >= batchSize) {
+                ledgerService.appendTrades(user, batch, job.getJobId());
+                batch.clear();
+            }
+        };
+
+        ImportParser.Handler handler = new ImportParser.Handler() {
+            @Override
+            public void onRecord(ImportRecord trade) {
+                if ((trade.getType() == ImportRecord.Type.BUY || trade.getType() == ImportRecord.Type.SELL)
+                        && isWholeShares(trade)) {
+                    if (newestFirst != null) {
+                        newestFirst.add(trade);
+                    } else {
+                        append.accept(trade);
+                    }
+                }
+            }
+
+            @Override
+            public void onError(long line, String message) {
+                // already reported by the first pass
+            }
+        };
+
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(file), 64 * 1024)) {
+            parser.parse(input, handler);
+        }
+        if (newestFirst != null) {
+            for (int i = newestFirst.size() - 1; i >= 0; i--) {
+                append.accept(newestFirst.get(i));
+            }
+        }
+        ledgerService.appendTrades(user, batch, job.getJobId());
+        publish(job);
+    }
+
+    private static boolean isWholeShares(ImportRecord record) {
+        // Holdings are whole shares
+        return record.getQuantity().stripTrailingZeros().scale() <= 0
+                && record.getQuantity().compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) <= 0;
+    }
+
+    private void writeDeposits(ImportJob job, List<Object[]> deposits) {
+        if (deposits.isEmpty()) {
+            return;
+        }
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_DEPOSIT_SQL, deposits, DEPOSIT_TYPES));
+        job.setDepositsWritten(job.getDepositsWritten() + deposits.size());
+        deposits.clear();
+    }
+
+    /**
+     * Looks every symbol up in chunks and creates the missing ones, enriching as many as the rate budget allows
+     */
+    private Map<String, Stock> resolveStocks(ImportJob job, Set<String> symbols) {
+        Map<String, Stock> stocks = new HashMap<>();
+        List<String> chunk = new ArrayList<>(batchSize);
+        for (String symbol : symbols) {
+            chunk.add(symbol);
+            if (chunk.size() == batchSize) {
+                stockRepository.findBySymbolIn(chunk).forEach(stock -> stocks.put(stock.getSymbol(), stock));
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            stockRepository.findBySymbolIn(chunk).forEach(stock -> stocks.put(stock.getSymbol(), stock));
+        }
+
+        List<String> missing = new ArrayList<>();
+        for (String symbol : symbols) {
+            if (!stocks.containsKey(symbol)) {
+                missing.add(symbol);
+            }
+        }
+        if (missing.isEmpty()) {
+            return stocks;
+        }
+
+        AtomicInteger budget = new AtomicInteger(maxEnrichmentCalls);
+        AtomicInteger enriched = new AtomicInteger();
+        List<Stock> created = new ArrayList<>(missing.size());
+        ExecutorService lookupPool = Executors.newFixedThreadPool(Math.max(1, Math.min(enrichmentThreads, missing.size())));
+        try {
+            List<CompletableFuture<Stock>> lookups = new ArrayList<>(missing.size());
+            for (String symbol : missing) {
+                lookups.add(CompletableFuture.supplyAsync(() -> newStock(symbol, budget, enriched), lookupPool));
+            }
+            for (CompletableFuture<Stock> lookup : lookups) {
+                created.add(lookup.join());
+            }
+        } finally {
+            lookupPool.shutdown();
+        }
+        job.setSymbolsEnriched(enriched.get());
+        for (Stock stock : created) {
+            if (!fxRateService.isKnown(stock.getCurrency())) {
+                throw new IllegalArgumentException("No exchange rate for " + stock.getCurrency() + ", the currency "
+                        + stock.getSymbol() + " is quoted in");
+            }
+        }
+
+        try {
+            stockRepository.saveAll(created).forEach(stock -> stocks.put(stock.getSymbol(), stock));
+        } catch (DataIntegrityViolationException e) {
+            // Another import or buy created some of these meanwhile; go one by one and reuse theirs
+            for (Stock stock : created) {
+                stocks.put(stock.getSymbol(), saveOrFind(stock));
+            }
+        }
+        job.setSymbolsCreated(created.size());
+        return stocks;
+    }
+
+    private Stock newStock(String symbol, AtomicInteger budget, AtomicInteger enriched) {
+        Stock stock = new Stock();
+        stock.setSymbol(symbol);
+        stock.setCompanyName(symbol);
+        // Profile first (name), then quote (price) if there is budget left for both
+        if (takePermit(budget)) {
+            try {
+                JsonNode profile = finnhubService.getCompanyProfile(symbol);
+                if (profile != null && profile.hasNonNull("name")) {
+                    stock.setCompanyName(profile.get("name").asText());
+                }
+                if (profile != null && profile.hasNonNull("currency")) {
+                    stock.setCurrency(FxRateService.normalize(profile.get("currency").asText()));
+                }
+                if (profile != null && profile.hasNonNull("finnhubIndustry")) {
+                    stock.setSector(profile.get("finnhubIndustry").asText());
+                }
+                if (takePermit(budget)) {
+                    StockPriceUpdate quote = finnhubService.getStockQuote(symbol);
+                    stock.setCurrentPrice(quote.getCurrentPrice());
+                }
+                enriched.incrementAndGet();
+            } catch (RuntimeException e) {
+                System.err.println("Import enrichment failed for " + symbol + ": " + e.getMessage());
+            }
+        }
+        return stock;
+    }
+
+    private boolean takePermit(AtomicInteger budget) {
+        if (budget.getAndDecrement() <= 0) {
+            return false;
+        }
+        try {
+            return finnhubService.getRateLimiter().tryAcquire(enrichmentWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Stock saveOrFind(Stock stock) {
+        try {
+            return stockRepository.save(stock);
+        } catch (DataIntegrityViolationException e) {
+            return stockRepository.findBySymbol(stock.getSymbol()).orElse(null);
+        }
+    }
+
+    private void countRow(ImportJob job) {
+        job.setRowsRead(job.getRowsRead() + 1);
+        if (job.getRowsRead() % progressEvery == 0) {
+            publish(job);
+        }
+    }
+
+    private static void reject(ImportJob job, long line, String message) {
+        job.setRowsRejected(job.getRowsRejected() + 1);
+        if (job.getErrors().size() < MAX_REPORTED_ERRORS) {
+            String where = "json".equals(job.getFormat()) ? "row " : "line ";
+            job.getErrors().add(line > 0 ? where + line + ": " + message : message);
+        }
+    }
+
+    private void setPhase(ImportJob job, String phase) {
+        job.setPhase(phase);
+        publish(job);
+    }
+
+    private void publish(ImportJob job) {
+        messagingTemplate.convertAndSend("/topic/imports/" + job.getJobId(), job);
+    }
+
+    private static String detectFormat(String format, String fileName, Path file) throws IOException {
+        if (format != null && !format.isBlank()) {
+            String normalized = format.trim().toLowerCase(Locale.ROOT);
+            if (!normalized.equals("csv") && !normalized.equals("ofx") && !normalized.equals("json")) {
+                throw new IllegalArgumentException("Unsupported import format: " + format);
+            }
+            return normalized;
+        }
+        if (fileName != null) {
+            String name = fileName.toLowerCase(Locale.ROOT);
+            if (name.endsWith(".ofx") || name.endsWith(".qfx")) {
+                return "ofx";
+            }
+            if (name.endsWith(".csv")) {
+                return "csv";
+            }
+            if (name.endsWith(".json")) {
+                return "json";
+            }
+        }
+        byte[] head = new byte[512];
+        int read;
+        try (InputStream input = Files.newInputStream(file)) {
+            read = input.readNBytes(head, 0, head.length);
+        }
+        String start = new String(head, 0, read, StandardCharsets.ISO_8859_1).toUpperCase(Locale.ROOT);
+        if (start.contains("OFXHEADER") || start.contains("<OFX")) {
+            return "ofx";
+        }
+        return start.stripLeading().startsWith("[") ? "json" : "csv";
+    }
+
+    private static String truncate(String value, int length) {
+        return value != null && value.length() > length ? value.substring(0, length) : value;
+    }
+
+    // A spooled upload and the job that will process it
+    private static class Upload {
+        private final ImportJob job;
+        private final User user;
+        private final Path file;
+        // SHA-256 of the file, hex
+        private final String hash;
+
+        Upload(ImportJob job, User user, Path file, String hash) {
+            this.job = job;
+            this.user = user;
+            this.file = file;
+            this.hash = hash;
+        }
+    }
+
+    // What the first pass learned about the file
+    private static class Scan {
+        // symbol (or OFX security id) as written in the file -> ticker
+        private final Map<String, String> symbols = new HashMap<>();
+        // > 0 when trade dates mostly ascend, < 0 when the file is newest first
+        private long dateOrder;
+    }
+}
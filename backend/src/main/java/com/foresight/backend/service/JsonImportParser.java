@@ -0,0 +1,95 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Locale;
+
+/**
+ * Trade lists posted as JSON: an array of {symbol, quantity, price} buys, the body of /api/portfolio/import.
+ * Elements are read one at a time with Jackson's streaming parser; the line reported for each is its position in
+ * the array.
+ */
+public class JsonImportParser implements ImportParser {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    @Override
+    public void parse(InputStream input, Handler handler) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(input)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IOException("Expected a JSON array of trades");
+            }
+            long row = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                row++;
+                if (token != JsonToken.START_OBJECT) {
+                    parser.skipChildren();
+                    handler.onError(row, "not a trade object");
+                    continue;
+                }
+
+                String symbol = null;
+                String quantity = null;
+                String price = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+                    // Null for objects and arrays, which are skipped whole
+                    String value = parser.getValueAsString();
+                    parser.skipChildren();
+                    switch (field) {
+                        case "symbol" -> symbol = value;
+                        case "quantity" -> quantity = value;
+                        case "price" -> price = value;
+                        default -> {
+                        }
+                    }
+                }
+
+                ImportRecord record;
+                try {
+                    record = toRecord(row, symbol, quantity, price);
+                } catch (RuntimeException e) {
+                    handler.onError(row, e.getMessage());
+                    continue;
+                }
+                handler.onRecord(record);
+            }
+        }
+    }
+
+    private static ImportRecord toRecord(long row, String symbol, String quantityText, String priceText) {
+        if (symbol == null || symbol.isBlank()) {
+            throw new IllegalArgumentException("trade without a symbol");
+        }
+        BigDecimal quantity = number(quantityText);
+        if (quantity == null || quantity.signum() <= 0) {
+            throw new IllegalArgumentException("quantity must be positive");
+        }
+        BigDecimal price = number(priceText);
+        if (price == null || price.signum() <= 0) {
+            throw new IllegalArgumentException("price must be positive");
+        }
+        BigDecimal amount = price.multiply(quantity).setScale(2, RoundingMode.HALF_UP);
+        return new ImportRecord(row, ImportRecord.Type.BUY, null, symbol.trim().toUpperCase(Locale.ROOT), quantity,
+                amount, null);
+    }
+
+    private static BigDecimal number(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        try {
+            return new BigDecimal(text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("not a number: " + text);
+        }
+    }
+}
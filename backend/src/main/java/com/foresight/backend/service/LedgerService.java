@@ -0,0 +1,503 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.LedgerRebuildResponse;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.model.Trade;
+import com.foresight.backend.model.User;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import com.foresight.backend.repository.StockRepository;
+import com.foresight.backend.repository.TradeRepository;
+import com.foresight.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The trade ledger and the lot books derived from it.
+ *
+ * Every buy and sell is appended to the trades table. Each (user, stock) has an in-memory {@link LotBook} that is
+ * loaded by replaying that position's trades the first time it is touched and then updated trade by trade, so a
+ * trade costs O(1) amortized regardless of history length. After each trade the book is checkpointed into
+ * portfolio_holdings, which is now just a projection of the ledger. Trades for one position are serialized on its
+ * book's lock; different positions proceed in parallel. Other instances append to the same ledger, so before each
+ * trade the book picks up any trades it hasn't seen and is replayed whole if it no longer matches.
+ *
+ * A full rebuild reads a user's ledger in (stock, id) order straight off the index and replays each stock on the
+ * fan-out executor while the next one is still being read.
+ */
+@Service
+public class LedgerService {
+
+    private static final String INSERT_TRADE_SQL =
+            "INSERT INTO trades (user_id, stock_id, side, quantity, amount, trade_date, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_IMPORTED_TRADE_SQL =
+            "INSERT INTO trades (user_id, stock_id, side, quantity, amount, trade_date, created_at, import_id) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String LAST_TRADE_DATES_SQL =
+            "SELECT stock_id, MAX(trade_date) FROM trades WHERE user_id = ? GROUP BY stock_id";
+
+    private static final String IMPORTED_STOCKS_SQL = "SELECT DISTINCT stock_id FROM trades WHERE import_id = ?";
+
+    private static final String DELETE_IMPORTED_TRADES_SQL = "DELETE FROM trades WHERE import_id = ?";
+
+    private static final String RESET_SEQUENCE_SQL =
+            "UPDATE portfolio_holdings SET ledger_sequence = 0 WHERE user_id = ? AND stock_id = ?";
+
+    private static final String DELETE_EMPTY_HOLDING_SQL =
+            "DELETE FROM portfolio_holdings WHERE user_id = ? AND stock_id = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM trades WHERE user_id = ? AND stock_id = ?)";
+
+    private static final String REPLAY_USER_SQL =
+            "SELECT id, stock_id, side, quantity, amount FROM trades WHERE user_id = ? ORDER BY stock_id, id";
+
+    private static final String REPLAY_POSITION_SQL =
+            "SELECT id, stock_id, side, quantity, amount FROM trades WHERE user_id = ? AND stock_id = ? AND id > ? ORDER BY id";
+
+    private static final String COUNT_POSITION_SQL =
+            "SELECT COUNT(*) FROM trades WHERE user_id = ? AND stock_id = ? AND id <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private HoldingUpsertService holdingUpsertService;
+
+    @Autowired
+    private TradeRepository tradeRepository;
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor executor;
+
+    @Value("${portfolio.cost-basis:FIFO}")
+    private LotBook.Method method;
+
+    @Value("${portfolio.ledger.fetch-size:5000}")
+    private int fetchSize;
+
+    @Value("${portfolio.ledger.batch-size:1000}")
+    private int batchSize;
+
+    private final Map<String, LotBook> books = new ConcurrentHashMap<>();
+
+    /**
+     * A trade to append in bulk
+     */
+    public static class Entry {
+        private final Stock stock;
+        private final Trade.Side side;
+        private final int quantity;
+        private final BigDecimal amount;
+        private final LocalDateTime tradeDate;
+
+        public Entry(Stock stock, Trade.Side side, int quantity, BigDecimal amount, LocalDateTime tradeDate) {
+            this.stock = stock;
+            this.side = side;
+            this.quantity = quantity;
+            this.amount = amount;
+            this.tradeDate = tradeDate;
+        }
+    }
+
+    // One ledger row as needed for replay
+    private static class LedgerRow {
+        private final long id;
+        private final long stockId;
+        private final boolean sell;
+        private final int quantity;
+        private final BigDecimal amount;
+
+        LedgerRow(ResultSet rs) throws SQLException {
+            id = rs.getLong(1);
+            stockId = rs.getLong(2);
+            sell = Trade.Side.SELL.name().equals(rs.getString(3));
+            quantity = rs.getInt(4);
+            amount = rs.getBigDecimal(5);
+        }
+    }
+
+    /**
+     * Appends one trade and updates the position's lot book and holding.
+     *
+     * @param amount total cost of a buy or proceeds of a sell
+     * @throws IllegalArgumentException when selling more shares than are held
+     */
+    public PortfolioHolding recordTrade(User user, Stock stock, Trade.Side side, int quantity, BigDecimal amount,
+                                        LocalDateTime tradeDate) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        String key = key(user.getId(), stock.getId());
+        while (true) {
+            LotBook book = book(user.getId(), stock.getId());
+            ReentrantLock lock = book.getLock();
+            lock.lock();
+            try {
+                if (book.isRetired()) {
+                    // Replaced by a rebuild while we waited for the lock
+                    continue;
+                }
+                LotBook current = complete(user.getId(), stock.getId(), book);
+                if (current != book) {
+                    // Trades were removed elsewhere; start over on the replayed book
+                    book.retire();
+                    books.replace(key, book, current);
+                    continue;
+                }
+                if (side == Trade.Side.SELL && quantity > book.getQuantity()) {
+                    throw new IllegalArgumentException("Cannot sell " + quantity + " shares of " + stock.getSymbol()
+                            + ", only " + book.getQuantity() + " held");
+                }
+                try {
+                    new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                        long tradeId = insertTrade(user, stock, side, quantity, amount, tradeDate);
+                        apply(book, tradeId, side == Trade.Side.SELL, quantity, amount);
+                        HoldingUpsertService.Checkpoint checkpoint = new HoldingUpsertService.Checkpoint(stock, book);
+                        holdingUpsertService.write(user, List.of(checkpoint));
+                        portfolioStateEngine.onPositionChanged(user.getId(), checkpoint);
+                        priceAlertService.onPositionChanged(user.getId(), stock.getId());
+                    });
+                } catch (RuntimeException e) {
+                    // The book may already include a trade that rolled back; reload it from the ledger next time
+                    book.retire();
+                    books.remove(key, book);
+                    throw e;
+                }
+            } finally {
+                lock.unlock();
+            }
+            return portfolioHoldingRepository.findByUserAndStock(user, stock)
+                    .orElseThrow(() -> new RuntimeException("Holding not found after trade"));
+        }
+    }
+
+    /**
+     * Appends trades in JDBC batches without touching the lot books; call {@link #rebuildUser} afterwards
+     *
+     * @param importId the import writing them, so a failed import can delete its rows again
+     */
+    public void appendTrades(User user, List<Entry> entries, String importId) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_IMPORTED_TRADE_SQL, entries, batchSize, (statement, entry) -> {
+                    statement.setLong(1, user.getId());
+                    statement.setLong(2, entry.stock.getId());
+                    statement.setString(3, entry.side.name());
+                    statement.setInt(4, entry.quantity);
+                    statement.setBigDecimal(5, entry.amount);
+                    statement.setTimestamp(6, entry.tradeDate != null ? Timestamp.valueOf(entry.tradeDate) : now);
+                    statement.setTimestamp(7, now);
+                    statement.setString(8, importId);
+                }));
+    }
+
+    /**
+     * Replays the user's whole ledger, replaces their lot books and rewrites their holdings
+     */
+    public LedgerRebuildResponse rebuildUser(Long userId) {
+        long started = System.currentTimeMillis();
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+        ReplayDispatcher dispatcher = new ReplayDispatcher();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            // Inside a transaction so PostgreSQL honours the fetch size and streams the rows
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(REPLAY_USER_SQL);
+                statement.setFetchSize(fetchSize);
+                statement.setLong(1, userId);
+                return statement;
+            }, dispatcher);
+            dispatcher.flush();
+        });
+        Map<Long, CompletableFuture<LotBook>> replays = dispatcher.replays;
+
+        Map<Long, Stock> stocks = new HashMap<>();
+        for (Stock stock : stockRepository.findAllById(replays.keySet())) {
+            stocks.put(stock.getId(), stock);
+        }
+
+        List<HoldingUpsertService.Checkpoint> checkpoints = new ArrayList<>(replays.size());
+        for (Map.Entry<Long, CompletableFuture<LotBook>> replay : replays.entrySet()) {
+            LotBook book = install(userId, replay.getKey(), replay.getValue().join());
+            book.getLock().lock();
+            try {
+                checkpoints.add(new HoldingUpsertService.Checkpoint(stocks.get(replay.getKey()), book));
+            } finally {
+                book.getLock().unlock();
+            }
+        }
+        int written = new TransactionTemplate(transactionManager).execute(status ->
+                holdingUpsertService.write(user, checkpoints));
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
+        portfolioStateEngine.reload(userId);
+        priceAlertService.onHoldingsRebuilt(userId);
+
+        return new LedgerRebuildResponse(userId, dispatcher.trades, replays.size(), written, method.name(),
+                System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Deletes the trades an import appended and rebuilds the user's holdings without them
+     *
+     * @return number of trades deleted
+     */
+    public int rollBackImport(Long userId, String importId) {
+        List<Long> stockIds = jdbcTemplate.queryForList(IMPORTED_STOCKS_SQL, Long.class, importId);
+        if (stockIds.isEmpty()) {
+            return 0;
+        }
+        int deleted = new TransactionTemplate(transactionManager).execute(status -> {
+            for (Long stockId : stockIds) {
+                // The rebuilt checkpoint has an older sequence than the one the import left; let it through
+                jdbcTemplate.update(RESET_SEQUENCE_SQL, userId, stockId);
+            }
+            int removed = jdbcTemplate.update(DELETE_IMPORTED_TRADES_SQL, importId);
+            for (Long stockId : stockIds) {
+                jdbcTemplate.update(DELETE_EMPTY_HOLDING_SQL, userId, stockId, userId, stockId);
+            }
+            return removed;
+        });
+        for (Long stockId : stockIds) {
+            evict(userId, stockId);
+        }
+        rebuildUser(userId);
+        return deleted;
+    }
+
+    /**
+     * Deletes a position's trades (removing a holding outright rather than selling it)
+     */
+    public void removePosition(Long userId, Long stockId) {
+        tradeRepository.deleteByUserIdAndStockId(userId, stockId);
+        portfolioStateEngine.reload(userId);
+        priceAlertService.onPositionChanged(userId, stockId);
+        AfterCommit.run(() -> evict(userId, stockId));
+    }
+
+    public List<Trade> getRecentTrades(Long userId, int limit) {
+        return tradeRepository.findRecentByUserId(userId, PageRequest.of(0, limit));
+    }
+
+    /**
+     * Shares currently held per stock id, as seen by the lot books
+     */
+    public Map<Long, Integer> getHeldQuantities(Long userId) {
+        Map<Long, Integer> held = new HashMap<>();
+        for (PortfolioHolding holding : portfolioHoldingRepository.findByUserId(userId)) {
+            held.put(holding.getStock().getId(), book(userId, holding.getStock().getId()).getQuantity());
+        }
+        return held;
+    }
+
+    /**
+     * Date of the latest trade per stock id. Replay goes in ledger (id) order, so an import may not add trades that
+     * predate these.
+     */
+    public Map<Long, LocalDateTime> getLastTradeDates(Long userId) {
+        Map<Long, LocalDateTime> dates = new HashMap<>();
+        jdbcTemplate.query(LAST_TRADE_DATES_SQL, (RowCallbackHandler) rs ->
+                dates.put(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime()), userId);
+        return dates;
+    }
+
+    /**
+     * Rows arrive grouped by stock; each finished stock is replayed on a worker while the next one is read
+     */
+    private class ReplayDispatcher implements RowCallbackHandler {
+        private final Map<Long, CompletableFuture<LotBook>> replays = new LinkedHashMap<>();
+        private List<LedgerRow> rows = new ArrayList<>();
+        private long trades;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            LedgerRow row = new LedgerRow(rs);
+            trades++;
+            if (!rows.isEmpty() && rows.get(0).stockId != row.stockId) {
+                flush();
+            }
+            rows.add(row);
+        }
+
+        void flush() {
+            if (!rows.isEmpty()) {
+                List<LedgerRow> stockRows = rows;
+                replays.put(stockRows.get(0).stockId, CompletableFuture.supplyAsync(() -> replay(stockRows), executor));
+                rows = new ArrayList<>();
+            }
+        }
+    }
+
+    private LotBook replay(List<LedgerRow> rows) {
+        LotBook book = new LotBook(method);
+        for (LedgerRow row : rows) {
+            apply(book, row.id, row.sell, row.quantity, row.amount);
+        }
+        return book;
+    }
+
+    private static void apply(LotBook book, long tradeId, boolean sell, int quantity, BigDecimal amount) {
+        if (sell) {
+            book.sell(tradeId, quantity, amount);
+        } else {
+            book.buy(tradeId, quantity, amount);
+        }
+    }
+
+    private LotBook book(long userId, long stockId) {
+        String key = key(userId, stockId);
+        LotBook book = books.get(key);
+        if (book == null) {
+            LotBook loaded = new LotBook(method);
+            catchUp(userId, stockId, loaded);
+            book = books.putIfAbsent(key, loaded);
+            if (book == null) {
+                book = loaded;
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Swaps a freshly replayed book in, first applying any trades recorded since its replay read the ledger
+     */
+    private LotBook install(long userId, long stockId, LotBook fresh) {
+        String key = key(userId, stockId);
+        while (true) {
+            LotBook current = books.get(key);
+            if (current == null) {
+                LotBook complete = complete(userId, stockId, fresh);
+                if (books.putIfAbsent(key, complete) == null) {
+                    return complete;
+                }
+                continue;
+            }
+            current.getLock().lock();
+            try {
+                if (current.isRetired()) {
+                    continue;
+                }
+                LotBook complete = complete(userId, stockId, fresh);
+                current.retire();
+                books.put(key, complete);
+                return complete;
+            } finally {
+                current.getLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Catches a book up and checks it has every trade up to its sequence. Ids are taken at insert but become
+     * visible at commit, so a replay can miss a single buy that was still committing when a later import batch had
+     * already landed, and trades can be deleted (a removed position, a rolled-back import) on any instance; catching
+     * up by id would never notice either, so the position is replayed again.
+     */
+    private LotBook complete(long userId, long stockId, LotBook fresh) {
+        catchUp(userId, stockId, fresh);
+        Long recorded = jdbcTemplate.queryForObject(COUNT_POSITION_SQL, Long.class, userId, stockId,
+                fresh.getSequence());
+        if (recorded != null && recorded == fresh.getTrades()) {
+            return fresh;
+        }
+        LotBook replayed = new LotBook(method);
+        catchUp(userId, stockId, replayed);
+        return replayed;
+    }
+
+    private void catchUp(long userId, long stockId, LotBook book) {
+        jdbcTemplate.query(REPLAY_POSITION_SQL, rs -> {
+            LedgerRow row = new LedgerRow(rs);
+            apply(book, row.id, row.sell, row.quantity, row.amount);
+        }, userId, stockId, book.getSequence());
+    }
+
+    private void evict(long userId, long stockId) {
+        LotBook book = books.remove(key(userId, stockId));
+        if (book != null) {
+            book.getLock().lock();
+            try {
+                book.retire();
+            } finally {
+                book.getLock().unlock();
+            }
+        }
+    }
+
+    private long insertTrade(User user, Stock stock, Trade.Side side, int quantity, BigDecimal amount,
+                             LocalDateTime tradeDate) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_TRADE_SQL, new String[] { "id" });
+            statement.setLong(1, user.getId());
+            statement.setLong(2, stock.getId());
+            statement.setString(3, side.name());
+            statement.setInt(4, quantity);
+            statement.setBigDecimal(5, amount);
+            statement.setTimestamp(6, tradeDate != null ? Timestamp.valueOf(tradeDate) : now);
+            statement.setTimestamp(7, now);
+            return statement;
+        }, keyHolder);
+        return keyHolder.getKey().longValue();
+    }
+
+    private static String key(long userId, long stockId) {
+        return userId + ":" + stockId;
+    }
+}
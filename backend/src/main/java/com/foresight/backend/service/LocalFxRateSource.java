@@ -0,0 +1,71 @@
+package com.foresight.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stand-in rates for development and tests, needing no API access.
+ *
+ * Without fx.local.file a fixed table of approximate rates is served. With it, the file is read on every poll, one
+ * {@code CODE,unitsPerUsd} per line (# for comments) on top of that table, so editing it moves rates while the
+ * app runs.
+ */
+@Component
+public class LocalFxRateSource implements FxRateSource {
+
+    private static final Map<String, Double> DEFAULT_RATES = Map.ofEntries(
+            Map.entry("USD", 1.0),
+            Map.entry("EUR", 0.92),
+            Map.entry("GBP", 0.79),
+            Map.entry("CAD", 1.36),
+            Map.entry("CHF", 0.88),
+            Map.entry("JPY", 150.0),
+            Map.entry("AUD", 1.52),
+            Map.entry("HKD", 7.82),
+            Map.entry("SEK", 10.5),
+            Map.entry("NOK", 10.6),
+            Map.entry("DKK", 6.87),
+            Map.entry("CNY", 7.2),
+            Map.entry("INR", 83.0),
+            Map.entry("ILS", 3.7),
+            Map.entry("ZAR", 18.5));
+
+    @Value("${fx.local.file:}")
+    private String file;
+
+    @Override
+    public String getName() {
+        return "local";
+    }
+
+    @Override
+    public Map<String, Double> getRatesPerUsd() {
+        Map<String, Double> rates = new HashMap<>(DEFAULT_RATES);
+        if (file.isBlank()) {
+            return rates;
+        }
+        try {
+            List<String> lines = Files.readAllLines(Path.of(file), StandardCharsets.UTF_8);
+            for (String line : lines) {
+                line = line.trim();
+                int comma = line.indexOf(',');
+                if (line.isEmpty() || line.startsWith("#") || comma < 0) {
+                    continue;
+                }
+                rates.put(line.substring(0, comma).trim().toUpperCase(), Double.parseDouble(line.substring(comma + 1).trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read " + file, e);
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,142 @@
+package com.foresight.backend.service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Open lots of one user's position in one stock, in purchase order.
+ *
+ * A buy appends a lot; a sell consumes lots from the front (FIFO) or the back (LIFO). Every lot is added once and
+ * removed at most once, and a sell touches at most one lot without removing it, so each trade costs O(1) amortized.
+ * Running totals (shares, remaining cost basis, realized gain) are kept alongside so nothing is re-summed.
+ *
+ * Not thread-safe: callers hold the book's lock. It is a ReentrantLock rather than the book's monitor because it is
+ * held across the trade's database transaction, and a virtual thread blocked inside synchronized pins its carrier.
+ */
+public class LotBook {
+
+    public enum Method { FIFO, LIFO }
+
+    private static class Lot {
+        private int quantity;
+        private BigDecimal cost;
+
+        Lot(int quantity, BigDecimal cost) {
+            this.quantity = quantity;
+            this.cost = cost;
+        }
+    }
+
+    private final Method method;
+    private final ArrayDeque<Lot> lots = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private int quantity;
+    private BigDecimal costBasis = BigDecimal.ZERO;
+    private BigDecimal realizedGain = BigDecimal.ZERO;
+    private long sequence;
+    private long trades;
+    // Set when a rebuild has replaced this book; holders must fetch the new one
+    private boolean retired;
+
+    public LotBook(Method method) {
+        this.method = method;
+    }
+
+    public void buy(long tradeId, int shares, BigDecimal cost) {
+        lots.addLast(new Lot(shares, cost));
+        quantity += shares;
+        costBasis = costBasis.add(cost);
+        sequence = tradeId;
+        trades++;
+    }
+
+    /**
+     * @return gain realized by this sale (proceeds minus the cost of the lots consumed)
+     */
+    public BigDecimal sell(long tradeId, int shares, BigDecimal proceeds) {
+        if (shares > quantity) {
+            throw new IllegalArgumentException("Cannot sell " + shares + " shares, only " + quantity + " held");
+        }
+        int remaining = shares;
+        BigDecimal cost = BigDecimal.ZERO;
+        while (remaining > 0) {
+            Lot lot = method == Method.FIFO ? lots.peekFirst() : lots.peekLast();
+            if (lot.quantity <= remaining) {
+                // Whole lot: take its exact remaining cost so rounding never accumulates
+                cost = cost.add(lot.cost);
+                remaining -= lot.quantity;
+                if (method == Method.FIFO) {
+                    lots.pollFirst();
+                } else {
+                    lots.pollLast();
+                }
+            } else {
+                BigDecimal part = lot.cost.multiply(BigDecimal.valueOf(remaining))
+                        .divide(BigDecimal.valueOf(lot.quantity), 2, RoundingMode.HALF_UP);
+                lot.cost = lot.cost.subtract(part);
+                lot.quantity -= remaining;
+                cost = cost.add(part);
+                remaining = 0;
+            }
+        }
+
+        BigDecimal gain = proceeds.subtract(cost);
+        quantity -= shares;
+        costBasis = quantity == 0 ? BigDecimal.ZERO : costBasis.subtract(cost);
+        realizedGain = realizedGain.add(gain);
+        sequence = tradeId;
+        trades++;
+        return gain;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    /**
+     * Cost of the shares still held
+     */
+    public BigDecimal getCostBasis() {
+        return costBasis;
+    }
+
+    public BigDecimal getRealizedGain() {
+        return realizedGain;
+    }
+
+    public int getOpenLots() {
+        return lots.size();
+    }
+
+    /**
+     * Id of the last trade applied
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Number of trades applied
+     */
+    public long getTrades() {
+        return trades;
+    }
+
+    ReentrantLock getLock() {
+        return lock;
+    }
+
+    boolean isRetired() {
+        return retired;
+    }
+
+    void retire() {
+        retired = true;
+    }
+}
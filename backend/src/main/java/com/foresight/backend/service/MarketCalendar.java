@@ -0,0 +1,261 @@
+package com.foresight.backend.service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.Month;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Regular trading sessions by exchange, keyed by the Finnhub symbol suffix (none for US listings, .L for London,
+ * .TO for Toronto, ...). Symbols with an exchange prefix such as BINANCE:BTCUSDT trade around the clock.
+ *
+ * NYSE and LSE holidays and early closes are computed from their rules (NYSE shuts at 13:00 on July 3, the day
+ * after Thanksgiving and Christmas Eve; LSE at 12:30 on Christmas Eve and New Year's Eve). Other exchanges only
+ * close at weekends here, and lunch breaks are ignored, which only costs a few polls.
+ */
+public final class MarketCalendar {
+
+    private enum Holidays { NONE, US, UK }
+
+    private static final LocalTime US_EARLY_CLOSE = LocalTime.of(13, 0);
+    private static final LocalTime UK_EARLY_CLOSE = LocalTime.of(12, 30);
+
+    public static final class Exchange {
+        private final String name;
+        private final ZoneId zone;
+        private final LocalTime open;
+        private final LocalTime close;
+        private final Holidays holidays;
+        private final Map<Integer, Set<LocalDate>> holidaysByYear = new ConcurrentHashMap<>();
+
+        private Exchange(String name, String zone, String open, String close, Holidays holidays) {
+            this.name = name;
+            this.zone = zone != null ? ZoneId.of(zone) : null;
+            this.open = open != null ? LocalTime.parse(open) : null;
+            this.close = close != null ? LocalTime.parse(close) : null;
+            this.holidays = holidays;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Where the exchange's trading days start and end; UTC for venues that never close
+         */
+        public ZoneId getZone() {
+            return zone != null ? zone : ZoneOffset.UTC;
+        }
+
+        public boolean isAlwaysOpen() {
+            return zone == null;
+        }
+
+        public boolean isTradingDay(LocalDate day) {
+            if (isAlwaysOpen()) {
+                return true;
+            }
+            DayOfWeek dayOfWeek = day.getDayOfWeek();
+            if (dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY) {
+                return false;
+            }
+            return !holidaysByYear.computeIfAbsent(day.getYear(), this::holidaysFor).contains(day);
+        }
+
+        public boolean isOpen(Instant now) {
+            if (isAlwaysOpen()) {
+                return true;
+            }
+            ZonedDateTime local = now.atZone(zone);
+            LocalTime time = local.toLocalTime();
+            LocalDate day = local.toLocalDate();
+            return isTradingDay(day) && !time.isBefore(open) && time.isBefore(closeOn(day));
+        }
+
+        /**
+         * End of the session on a trading day: the regular close, or the early close ahead of some holidays
+         */
+        public LocalTime closeOn(LocalDate day) {
+            if (isAlwaysOpen() || !isTradingDay(day)) {
+                return close;
+            }
+            int dayOfMonth = day.getDayOfMonth();
+            if (holidays == Holidays.US) {
+                boolean early = (day.getMonth() == Month.JULY && dayOfMonth == 3)
+                        || day.equals(nth(day.getYear(), Month.NOVEMBER, DayOfWeek.THURSDAY, 4).plusDays(1))
+                        || (day.getMonth() == Month.DECEMBER && dayOfMonth == 24);
+                return early ? US_EARLY_CLOSE : close;
+            }
+            if (holidays == Holidays.UK) {
+                boolean early = day.getMonth() == Month.DECEMBER && (dayOfMonth == 24 || dayOfMonth == 31);
+                return early ? UK_EARLY_CLOSE : close;
+            }
+            return close;
+        }
+
+        /**
+         * Start of the next session, or now if a session is in progress
+         */
+        public Instant nextOpen(Instant now) {
+            if (isOpen(now)) {
+                return now;
+            }
+            ZonedDateTime local = now.atZone(zone);
+            LocalDate day = local.toLocalDate();
+            if (!local.toLocalTime().isBefore(open)) {
+                day = day.plusDays(1);
+            }
+            // Longest closure is a few days (e.g. Christmas to Boxing Day over a weekend); the bound is just a guard
+            for (int i = 0; i < 14 && !isTradingDay(day); i++) {
+                day = day.plusDays(1);
+            }
+            return day.atTime(open).atZone(zone).toInstant();
+        }
+
+        /**
+         * End of the most recent session that has finished, or null for markets that never close
+         */
+        public Instant lastClose(Instant now) {
+            if (isAlwaysOpen()) {
+                return null;
+            }
+            ZonedDateTime local = now.atZone(zone);
+            LocalDate day = local.toLocalDate();
+            if (local.toLocalTime().isBefore(closeOn(day))) {
+                day = day.minusDays(1);
+            }
+            for (int i = 0; i < 14 && !isTradingDay(day); i++) {
+                day = day.minusDays(1);
+            }
+            return day.atTime(closeOn(day)).atZone(zone).toInstant();
+        }
+
+        private Set<LocalDate> holidaysFor(int year) {
+            Set<LocalDate> days = new HashSet<>();
+            if (holidays == Holidays.US) {
+                // NYSE does not move New Year's Day back into the previous year when it falls on a Saturday
+                LocalDate newYear = LocalDate.of(year, 1, 1);
+                if (newYear.getDayOfWeek() != DayOfWeek.SATURDAY) {
+                    days.add(observedUs(newYear));
+                }
+                days.add(nth(year, Month.JANUARY, DayOfWeek.MONDAY, 3));
+                days.add(nth(year, Month.FEBRUARY, DayOfWeek.MONDAY, 3));
+                days.add(easter(year).minusDays(2));
+                days.add(LocalDate.of(year, 5, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+                if (year >= 2022) {
+                    days.add(observedUs(LocalDate.of(year, 6, 19)));
+                }
+                days.add(observedUs(LocalDate.of(year, 7, 4)));
+                days.add(nth(year, Month.SEPTEMBER, DayOfWeek.MONDAY, 1));
+                days.add(nth(year, Month.NOVEMBER, DayOfWeek.THURSDAY, 4));
+                days.add(observedUs(LocalDate.of(year, 12, 25)));
+            } else if (holidays == Holidays.UK) {
+                days.add(nextWeekday(LocalDate.of(year, 1, 1)));
+                LocalDate easter = easter(year);
+                days.add(easter.minusDays(2));
+                days.add(easter.plusDays(1));
+                days.add(nth(year, Month.MAY, DayOfWeek.MONDAY, 1));
+                days.add(LocalDate.of(year, 5, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+                days.add(LocalDate.of(year, 8, 31).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)));
+                // Christmas and Boxing Day each move to the next free weekday
+                LocalDate christmas = nextWeekday(LocalDate.of(year, 12, 25));
+                days.add(christmas);
+                days.add(nextWeekday(christmas.plusDays(1)));
+            }
+            return days;
+        }
+    }
+
+    // US listings carry no suffix on Finnhub
+    private static final Exchange US = new Exchange("US", "America/New_York", "09:30", "16:00", Holidays.US);
+    private static final Exchange ALWAYS_OPEN = new Exchange("24/7", null, null, null, Holidays.NONE);
+
+    private static final Map<String, Exchange> BY_SUFFIX = Map.ofEntries(
+            Map.entry("L", new Exchange("LSE", "Europe/London", "08:00", "16:30", Holidays.UK)),
+            Map.entry("TO", new Exchange("TSX", "America/Toronto", "09:30", "16:00", Holidays.NONE)),
+            Map.entry("V", new Exchange("TSXV", "America/Toronto", "09:30", "16:00", Holidays.NONE)),
+            Map.entry("DE", new Exchange("XETRA", "Europe/Berlin", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("F", new Exchange("FRA", "Europe/Berlin", "08:00", "20:00", Holidays.NONE)),
+            Map.entry("PA", new Exchange("EPA", "Europe/Paris", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("AS", new Exchange("AMS", "Europe/Amsterdam", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("BR", new Exchange("EBR", "Europe/Brussels", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("MI", new Exchange("BIT", "Europe/Rome", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("MC", new Exchange("BME", "Europe/Madrid", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("SW", new Exchange("SIX", "Europe/Zurich", "09:00", "17:30", Holidays.NONE)),
+            Map.entry("HK", new Exchange("HKEX", "Asia/Hong_Kong", "09:30", "16:00", Holidays.NONE)),
+            Map.entry("T", new Exchange("TSE", "Asia/Tokyo", "09:00", "15:30", Holidays.NONE)),
+            Map.entry("SS", new Exchange("SSE", "Asia/Shanghai", "09:30", "15:00", Holidays.NONE)),
+            Map.entry("SZ", new Exchange("SZSE", "Asia/Shanghai", "09:30", "15:00", Holidays.NONE)),
+            Map.entry("KS", new Exchange("KRX", "Asia/Seoul", "09:00", "15:30", Holidays.NONE)),
+            Map.entry("NS", new Exchange("NSE", "Asia/Kolkata", "09:15", "15:30", Holidays.NONE)),
+            Map.entry("BO", new Exchange("BSE", "Asia/Kolkata", "09:15", "15:30", Holidays.NONE)),
+            Map.entry("AX", new Exchange("ASX", "Australia/Sydney", "10:00", "16:00", Holidays.NONE)),
+            Map.entry("SA", new Exchange("B3", "America/Sao_Paulo", "10:00", "17:00", Holidays.NONE))
+    );
+
+    private MarketCalendar() {
+    }
+
+    public static Exchange forSymbol(String symbol) {
+        if (symbol.indexOf(':') >= 0) {
+            return ALWAYS_OPEN;
+        }
+        int dot = symbol.lastIndexOf('.');
+        if (dot < 0) {
+            return US;
+        }
+        // Unknown suffixes (e.g. class shares like BRK.B) fall back to the US session
+        return BY_SUFFIX.getOrDefault(symbol.substring(dot + 1).toUpperCase(Locale.ROOT), US);
+    }
+
+    // Saturday holidays are observed on Friday, Sunday ones on Monday
+    private static LocalDate observedUs(LocalDate day) {
+        if (day.getDayOfWeek() == DayOfWeek.SATURDAY) {
+            return day.minusDays(1);
+        }
+        if (day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            return day.plusDays(1);
+        }
+        return day;
+    }
+
+    private static LocalDate nextWeekday(LocalDate day) {
+        DayOfWeek dayOfWeek = day.getDayOfWeek();
+        return dayOfWeek == DayOfWeek.SATURDAY || dayOfWeek == DayOfWeek.SUNDAY
+                ? day.with(TemporalAdjusters.next(DayOfWeek.MONDAY))
+                : day;
+    }
+
+    private static LocalDate nth(int year, Month month, DayOfWeek dayOfWeek, int n) {
+        return LocalDate.of(year, month, 1).with(TemporalAdjusters.dayOfWeekInMonth(n, dayOfWeek));
+    }
+
+    // Anonymous Gregorian algorithm
+    private static LocalDate easter(int year) {
+        int a = year % 19;
+        int b = year / 100;
+        int c = year % 100;
+        int d = b / 4;
+        int e = b % 4;
+        int f = (b + 8) / 25;
+        int g = (b - f + 1) / 3;
+        int h = (19 * a + b - d - g + 15) % 30;
+        int i = c / 4;
+        int k = c % 4;
+        int l = (32 + 2 * e + 2 * i - h - k) % 7;
+        int m = (a + 11 * h + 22 * l) / 451;
+        int month = (h + l - 7 * m + 114) / 31;
+        int day = (h + l - 7 * m + 114) % 31 + 1;
+        return LocalDate.of(year, month, day);
+    }
+}
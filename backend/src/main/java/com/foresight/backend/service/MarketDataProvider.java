@@ -0,0 +1,54 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.StockPriceUpdate;
+
+/**
+ * A source of market prices.
+ *
+ * Request/response providers answer {@link #getQuote}; streaming providers push trades for the symbols they are
+ * subscribed to once started. {@link MarketDataStreamService} runs whichever streaming provider is configured and
+ * decides what it is subscribed to.
+ */
+public interface MarketDataProvider {
+
+    /**
+     * Receives trades from a streaming provider, possibly from the provider's own I/O thread
+     */
+    @FunctionalInterface
+    interface TradeListener {
+        void onTrade(String symbol, double price, long volume, long timestampMs);
+    }
+
+    /**
+     * Name used to select the provider in configuration (e.g. marketdata.stream.provider=finnhub)
+     */
+    String getName();
+
+    default StockPriceUpdate getQuote(String symbol) {
+        throw new UnsupportedOperationException(getName() + " does not serve quotes on request");
+    }
+
+    default boolean supportsStreaming() {
+        return false;
+    }
+
+    /**
+     * Connects (reconnecting as needed until {@link #stop}) and starts delivering trades to the listener
+     */
+    default void start(TradeListener listener) {
+        throw new UnsupportedOperationException(getName() + " does not stream");
+    }
+
+    default void stop() {
+    }
+
+    default void subscribe(String symbol) {
+    }
+
+    default void unsubscribe(String symbol) {
+    }
+
+    default boolean isConnected() {
+        return false;
+    }
+}
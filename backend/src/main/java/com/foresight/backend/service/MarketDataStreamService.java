@@ -0,0 +1,215 @@
+package com.foresight.backend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push-based price ingestion from the streaming {@link MarketDataProvider} named by marketdata.stream.provider
+ * (finnhub, replay, or none to rely on polling alone).
+ *
+ * The provider is subscribed to the symbols people are watching, most-watched first up to the feed's symbol limit,
+ * and the subscription set follows them as they change. Trades can arrive far faster than anyone needs to see
+ * them, so only the last trade per symbol is kept and published on each flush through
+ * {@link StockPriceService#onStreamPrice}. Polling carries on underneath for everything the stream doesn't cover
+ * or while it is down. With marketdata.stream.record-file set, every trade is also appended in the replay format.
+ */
+@Service
+public class MarketDataStreamService {
+
+    @Autowired
+    private List<MarketDataProvider> providers;
+
+    @Autowired
+    private StockPriceService stockPriceService;
+
+    @Autowired
+    private StockSubscriptionTracker subscriptionTracker;
+
+    @Autowired
+    private PortfolioStreamService portfolioStreamService;
+
+    @Value("${marketdata.stream.provider:none}")
+    private String providerName;
+
+    // Finnhub's free plan allows 50 symbols per connection
+    @Value("${marketdata.stream.max-symbols:50}")
+    private int maxSymbols;
+
+    @Value("${marketdata.stream.record-file:}")
+    private String recordFile;
+
+    private volatile MarketDataProvider provider;
+    private final Set<String> subscribed = new HashSet<>();
+    private final Map<String, Double> latest = new ConcurrentHashMap<>();
+    private final AtomicLong tradesReceived = new AtomicLong();
+    private final AtomicLong updatesPublished = new AtomicLong();
+    private final Object recorderLock = new Object();
+    private volatile BufferedWriter recorder;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (providerName.isBlank() || providerName.equalsIgnoreCase("none")) {
+            return;
+        }
+        MarketDataProvider selected = providers.stream()
+                .filter(p -> p.supportsStreaming() && p.getName().equalsIgnoreCase(providerName))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("No streaming market data provider named " + providerName));
+        if (!recordFile.isBlank()) {
+            try {
+                recorder = Files.newBufferedWriter(Path.of(recordFile), StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                System.err.println("Not recording market data, cannot open " + recordFile + ": " + e.getMessage());
+            }
+        }
+        selected.start(this::onTrade);
+        provider = selected;
+        System.out.println("Streaming market data from " + selected.getName());
+        syncSubscriptions();
+    }
+
+    @PreDestroy
+    public void stop() {
+        MarketDataProvider current = provider;
+        provider = null;
+        if (current != null) {
+            current.stop();
+        }
+        synchronized (recorderLock) {
+            if (recorder != null) {
+                try {
+                    recorder.close();
+                } catch (IOException e) {
+                    System.err.println("Failed to close " + recordFile + ": " + e.getMessage());
+                }
+                recorder = null;
+            }
+        }
+    }
+
+    private void onTrade(String symbol, double price, long volume, long timestampMs) {
+        tradesReceived.incrementAndGet();
+        // Trades within a batch arrive in time order, so the last one written is the latest price
+        latest.put(symbol, price);
+        if (recorder != null) {
+            record(symbol, price, volume, timestampMs);
+        }
+    }
+
+    private void record(String symbol, double price, long volume, long timestampMs) {
+        synchronized (recorderLock) {
+            if (recorder == null) {
+                return;
+            }
+            try {
+                recorder.write(timestampMs + "," + symbol + "," + price + "," + volume);
+                recorder.newLine();
+            } catch (IOException e) {
+                System.err.println("Stopped recording market data: " + e.getMessage());
+                recorder = null;
+            }
+        }
+    }
+
+    /**
+     * Publishes the latest trade of every symbol that traded since the previous flush
+     */
+    @Scheduled(fixedDelayString = "${marketdata.stream.flush-ms:250}")
+    public void flush() {
+        if (provider == null || latest.isEmpty()) {
+            return;
+        }
+        for (String symbol : new ArrayList<>(latest.keySet())) {
+            Double price = latest.remove(symbol);
+            if (price != null) {
+                stockPriceService.onStreamPrice(symbol, BigDecimal.valueOf(price));
+                updatesPublished.incrementAndGet();
+            }
+        }
+        synchronized (recorderLock) {
+            if (recorder != null) {
+                try {
+                    recorder.flush();
+                } catch (IOException e) {
+                    System.err.println("Stopped recording market data: " + e.getMessage());
+                    recorder = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Points the subscriptions at the currently most-watched symbols
+     */
+    @Scheduled(fixedDelayString = "${marketdata.stream.sync-ms:5000}")
+    public synchronized void syncSubscriptions() {
+        MarketDataProvider current = provider;
+        if (current == null) {
+            return;
+        }
+        Map<String, Integer> watchers = new LinkedHashMap<>();
+        for (String symbol : subscriptionTracker.getWatchedSymbols()) {
+            watchers.merge(symbol, subscriptionTracker.getSubscriberCount(symbol), Integer::sum);
+        }
+        for (String symbol : portfolioStreamService.getStreamedSymbols()) {
+            int count = portfolioStreamService.getSubscriberCount(symbol);
+            if (count > 0) {
+                watchers.merge(symbol, count, Integer::sum);
+            }
+        }
+
+        Set<String> wanted = new HashSet<>();
+        watchers.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(maxSymbols)
+                .forEach(e -> wanted.add(e.getKey()));
+
+        for (String symbol : new ArrayList<>(subscribed)) {
+            if (!wanted.contains(symbol)) {
+                current.unsubscribe(symbol);
+                subscribed.remove(symbol);
+            }
+        }
+        for (String symbol : wanted) {
+            if (subscribed.add(symbol)) {
+                current.subscribe(symbol);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        MarketDataProvider current = provider;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("provider", current != null ? current.getName() : "none");
+        stats.put("connected", current != null && current.isConnected());
+        synchronized (this) {
+            stats.put("subscribedSymbols", subscribed.size());
+        }
+        stats.put("tradesReceived", tradesReceived.get());
+        stats.put("updatesPublished", updatesPublished.get());
+        return stats;
+    }
+}
@@ -0,0 +1,177 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.ProjectionBand;
+import com.foresight.backend.dto.ProjectionResponse;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Forward projection of a user's portfolio value using {@link MonteCarloSimulator}, driven by the shared
+ * {@link RiskModel}. Results are cached by portfolio composition, so users with identical holdings (and the
+ * same user refreshing the page) share a single simulation per trading day.
+ */
+@Service
+public class MonteCarloService {
+
+    public static final int MAX_PATHS = 100_000;
+    public static final int MAX_HORIZON_DAYS = 1260;
+
+    private static final int CHECKPOINT_INTERVAL = 21;
+    private static final int CACHE_SIZE = 1000;
+    private static final double[] PERCENTILES = { 5, 25, 50, 75, 95 };
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    private RiskService riskService;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    private final Map<String, ProjectionResponse> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, ProjectionResponse> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
+    public ProjectionResponse getProjection(Long userId, int horizonDays, int paths) {
+        List<PortfolioHolding> holdings = new ArrayList<>(portfolioHoldingRepository.findByUserId(userId));
+        holdings.sort(Comparator.comparing(h -> h.getStock().getSymbol()));
+
+        List<String> symbols = new ArrayList<>();
+        for (PortfolioHolding holding : holdings) {
+            symbols.add(holding.getStock().getSymbol());
+        }
+        RiskModel riskModel = riskService.getRiskModel(symbols);
+        String baseCurrency = portfolioStateEngine.getState(userId).getBaseCurrency();
+
+        // Cache key: sorted composition, base currency, simulation parameters and the model's trading day
+        StringBuilder key = new StringBuilder();
+        for (PortfolioHolding holding : holdings) {
+            key.append(holding.getStock().getSymbol()).append(':').append(holding.getQuantity()).append('|');
+        }
+        key.append(baseCurrency).append('|').append(horizonDays).append('|').append(paths).append('|').append(riskModel.getTradingDay());
+
+        ProjectionResponse cached = cache.get(key.toString());
+        if (cached != null) {
+            return new ProjectionResponse(userId, cached.getCurrency(), cached.getHorizonDays(), cached.getPaths(), cached.getInitialValue(),
+                    cached.getBands(), cached.getExcludedSymbols(), cached.getAsOf());
+        }
+
+        ProjectionResponse projection = simulate(userId, holdings, riskModel, baseCurrency, horizonDays, paths,
+                key.toString().hashCode());
+        cache.put(key.toString(), projection);
+        return projection;
+    }
+
+    private ProjectionResponse simulate(Long userId, List<PortfolioHolding> holdings, RiskModel riskModel,
+                                        String baseCurrency, int horizonDays, int paths, long seed) {
+        // Prices and dividends in the base currency at today's rates; the rates themselves aren't simulated
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        int base = rates.index(baseCurrency);
+
+        List<Integer> indices = new ArrayList<>();
+        List<PortfolioHolding> simulated = new ArrayList<>();
+        List<String> excludedSymbols = new ArrayList<>();
+        double fixedValue = 0.0;
+
+        for (PortfolioHolding holding : holdings) {
+            Stock stock = holding.getStock();
+            int index = riskModel.indexOf(stock.getSymbol());
+            if (stock.getCurrentPrice() == null) {
+                excludedSymbols.add(stock.getSymbol());
+            } else if (index < 0) {
+                // No return history - carry the position at today's value
+                excludedSymbols.add(stock.getSymbol());
+                fixedValue += stock.getCurrentPrice().doubleValue() * holding.getQuantity()
+                        * rates.rate(rates.index(stock.getCurrency()), base);
+            } else {
+                indices.add(index);
+                simulated.add(holding);
+            }
+        }
+
+        int assets = simulated.size();
+        int[] modelIndices = new int[assets];
+        double[] prices = new double[assets];
+        double[] quantities = new double[assets];
+        double[] drift = new double[assets];
+        double[] dividends = new double[assets];
+        for (int i = 0; i < assets; i++) {
+            Stock stock = simulated.get(i).getStock();
+            double rate = rates.rate(rates.index(stock.getCurrency()), base);
+            modelIndices[i] = indices.get(i);
+            prices[i] = stock.getCurrentPrice().doubleValue() * rate;
+            quantities[i] = simulated.get(i).getQuantity();
+            drift[i] = riskModel.mean(modelIndices[i]);
+            dividends[i] = stock.getAnnualDividend() != null ? stock.getAnnualDividend().doubleValue() * rate : 0.0;
+        }
+
+        MonteCarloSimulator simulator = new MonteCarloSimulator(
+                prices, quantities, drift, riskModel.subCovariance(modelIndices), dividends, fixedValue);
+        if (simulator.getJitter() > 0) {
+            System.out.println("Covariance for user " + userId + " needed a diagonal jitter of " + simulator.getJitter());
+        }
+
+        int[] checkpoints = checkpoints(horizonDays);
+        long started = System.currentTimeMillis();
+        float[][] values = simulator.simulate(paths, checkpoints, seed);
+        double[][] bands = MonteCarloSimulator.percentiles(values, PERCENTILES);
+        System.out.println("Simulated " + paths + " paths x " + horizonDays + " days for user " + userId
+                + " in " + (System.currentTimeMillis() - started) + "ms");
+
+        List<ProjectionBand> projectionBands = new ArrayList<>(checkpoints.length);
+        for (int c = 0; c < checkpoints.length; c++) {
+            projectionBands.add(new ProjectionBand(
+                    checkpoints[c],
+                    money(bands[c][0]),
+                    money(bands[c][1]),
+                    money(bands[c][2]),
+                    money(bands[c][3]),
+                    money(bands[c][4])
+            ));
+        }
+
+        return new ProjectionResponse(
+                userId,
+                baseCurrency,
+                horizonDays,
+                paths,
+                money(simulator.initialValue()),
+                projectionBands,
+                excludedSymbols,
+                riskModel.getTradingDay()
+        );
+    }
+
+    private int[] checkpoints(int horizonDays) {
+        int count = (horizonDays + CHECKPOINT_INTERVAL - 1) / CHECKPOINT_INTERVAL;
+        int[] checkpoints = new int[count];
+        for (int c = 0; c < count; c++) {
+            checkpoints[c] = Math.min(horizonDays, (c + 1) * CHECKPOINT_INTERVAL);
+        }
+        return checkpoints;
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,189 @@
+package com.foresight.backend.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Correlated geometric Brownian motion over a portfolio, with price-proportional dividends accrued as cash.
+ *
+ * Paths are split into chunks that run in parallel, each with its own split of the random generator and its own
+ * scratch arrays, so the inner time-step loop only touches primitive arrays and never allocates.
+ */
+public final class MonteCarloSimulator {
+
+    private static final int PATHS_PER_CHUNK = 512;
+    private static final int TRADING_DAYS_PER_YEAR = 252;
+    // Largest diagonal jitter, relative to the largest variance, that factorization may add
+    private static final double MAX_RELATIVE_JITTER = 1e-6;
+
+    private final int assets;
+    private final double[] initialPrices;
+    private final double[] quantities;
+    private final double[] drift;
+    private final double[] cholesky;
+    private final double jitter;
+    private final double[] dailyDividendYield;
+    private final double fixedValue;
+
+    /**
+     * @param initialPrices      current price per asset
+     * @param quantities         shares held per asset
+     * @param drift              mean daily log return per asset
+     * @param covariance         daily log-return covariance, row-major assets x assets
+     * @param annualDividends    annual dividend per share per asset
+     * @param fixedValue         value of positions not simulated (held constant)
+     * @throws IllegalArgumentException if the covariance is further from positive definite than the jitter allows
+     */
+    public MonteCarloSimulator(double[] initialPrices, double[] quantities, double[] drift, double[] covariance,
+                               double[] annualDividends, double fixedValue) {
+        this.assets = initialPrices.length;
+        this.initialPrices = initialPrices.clone();
+        this.quantities = quantities.clone();
+        this.drift = drift.clone();
+
+        // A matrix that is only positive semi-definite (e.g. perfectly correlated share classes) gets a small
+        // diagonal jitter, growing tenfold per attempt up to MAX_RELATIVE_JITTER of the largest variance
+        double largestVariance = 0.0;
+        for (int i = 0; i < assets; i++) {
+            largestVariance = Math.max(largestVariance, covariance[i * assets + i]);
+        }
+        double scale = largestVariance > 0 ? largestVariance : 1e-12;
+        double added = 0.0;
+        double[] factor = cholesky(covariance, assets, added);
+        while (factor == null) {
+            added = added == 0.0 ? scale * 1e-12 : added * 10;
+            if (added > scale * MAX_RELATIVE_JITTER) {
+                throw new IllegalArgumentException("Covariance matrix is not positive semi-definite");
+            }
+            factor = cholesky(covariance, assets, added);
+        }
+        this.cholesky = factor;
+        this.jitter = added;
+        this.fixedValue = fixedValue;
+        this.dailyDividendYield = new double[assets];
+        for (int i = 0; i < assets; i++) {
+            dailyDividendYield[i] = initialPrices[i] > 0 ? annualDividends[i] / initialPrices[i] / TRADING_DAYS_PER_YEAR : 0.0;
+        }
+    }
+
+    /**
+     * Diagonal jitter added to the covariance to factor it; 0 when it was positive definite as given
+     */
+    public double getJitter() {
+        return jitter;
+    }
+
+    public double initialValue() {
+        double value = fixedValue;
+        for (int i = 0; i < assets; i++) {
+            value += quantities[i] * initialPrices[i];
+        }
+        return value;
+    }
+
+    /**
+     * Simulates the given number of paths and records the portfolio value at each checkpoint (in trading days).
+     *
+     * @return values[checkpoint][path]
+     */
+    public float[][] simulate(int paths, int[] checkpoints, long seed) {
+        float[][] values = new float[checkpoints.length][paths];
+        int chunks = (paths + PATHS_PER_CHUNK - 1) / PATHS_PER_CHUNK;
+
+        // Split generators up front so results are reproducible for a seed regardless of scheduling
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] generators = new SplittableRandom[chunks];
+        for (int c = 0; c < chunks; c++) {
+            generators[c] = root.split();
+        }
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int from = chunk * PATHS_PER_CHUNK;
+            int to = Math.min(paths, from + PATHS_PER_CHUNK);
+            runChunk(generators[chunk], from, to, checkpoints, values);
+        });
+        return values;
+    }
+
+    private void runChunk(SplittableRandom random, int from, int to, int[] checkpoints, float[][] values) {
+        double[] logPrices = new double[assets];
+        double[] shocks = new double[assets];
+        int horizon = checkpoints[checkpoints.length - 1];
+
+        for (int path = from; path < to; path++) {
+            for (int i = 0; i < assets; i++) {
+                logPrices[i] = Math.log(initialPrices[i]);
+            }
+            double cash = 0.0;
+            int nextCheckpoint = 0;
+
+            for (int day = 1; day <= horizon; day++) {
+                for (int i = 0; i < assets; i++) {
+                    shocks[i] = random.nextGaussian();
+                }
+
+                double marketValue = 0.0;
+                // Correlate the independent shocks with the lower-triangular factor
+                for (int i = 0; i < assets; i++) {
+                    int row = i * assets;
+                    double correlated = 0.0;
+                    for (int k = 0; k <= i; k++) {
+                        correlated += cholesky[row + k] * shocks[k];
+                    }
+                    logPrices[i] += drift[i] + correlated;
+
+                    double positionValue = quantities[i] * Math.exp(logPrices[i]);
+                    cash += positionValue * dailyDividendYield[i];
+                    marketValue += positionValue;
+                }
+
+                if (day == checkpoints[nextCheckpoint]) {
+                    values[nextCheckpoint][path] = (float) (marketValue + cash + fixedValue);
+                    nextCheckpoint++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Percentile of each checkpoint column, e.g. percentiles(values, {5, 50, 95})[checkpoint][p]
+     */
+    public static double[][] percentiles(float[][] values, double[] percentiles) {
+        double[][] result = new double[values.length][percentiles.length];
+        for (int c = 0; c < values.length; c++) {
+            float[] sorted = values[c].clone();
+            Arrays.sort(sorted);
+            for (int p = 0; p < percentiles.length; p++) {
+                int index = (int) Math.round(percentiles[p] / 100.0 * (sorted.length - 1));
+                result[c][p] = sorted[index];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Lower-triangular factor of the matrix plus the given diagonal jitter, or null if that isn't numerically
+     * positive definite
+     */
+    static double[] cholesky(double[] matrix, int n, double jitter) {
+        double[] factor = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double sum = matrix[i * n + j] + (i == j ? jitter : 0.0);
+                for (int k = 0; k < j; k++) {
+                    sum -= factor[i * n + k] * factor[j * n + k];
+                }
+                if (i == j) {
+                    if (sum <= 0.0) {
+                        return null;
+                    }
+                    factor[i * n + i] = Math.sqrt(sum);
+                } else {
+                    factor[i * n + j] = sum / factor[j * n + j];
+                }
+            }
+        }
+        return factor;
+    }
+}
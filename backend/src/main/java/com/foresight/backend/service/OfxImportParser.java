@@ -0,0 +1,158 @@
+package com.foresight.backend.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * OFX investment statements, both the SGML (OFX 1.x, unclosed leaf tags) and XML (OFX 2.x) dialects.
+ *
+ * The file is scanned tag by tag without building a tree: leaf values are collected while inside a transaction
+ * aggregate and turned into a record when the aggregate closes. Trades refer to securities by CUSIP/ISIN; the
+ * SECLIST that maps them to tickers comes at the end of the file and is reported through
+ * {@link ImportParser.Handler#onSecurity}.
+ */
+public class OfxImportParser implements ImportParser {
+
+    private static final Set<String> BUY_AGGREGATES = Set.of("BUYSTOCK", "BUYMF", "BUYOTHER", "BUYDEBT", "REINVEST");
+    private static final Set<String> SELL_AGGREGATES = Set.of("SELLSTOCK", "SELLMF", "SELLOTHER", "SELLDEBT");
+    private static final Set<String> SECURITY_AGGREGATES = Set.of("STOCKINFO", "MFINFO", "OTHERINFO", "DEBTINFO");
+    private static final Set<String> LEAVES = Set.of("DTTRADE", "DTPOSTED", "UNIQUEID", "UNITS", "UNITPRICE",
+            "TOTAL", "TRNAMT", "MEMO", "NAME", "TICKER", "TRNTYPE");
+
+    private static final DateTimeFormatter OFX_DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    @Override
+    public void parse(InputStream input, Handler handler) throws IOException {
+        // OFX 1.x headers declare CHARSET:1252 more often than not; Latin-1 decodes every byte either way
+        Reader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.ISO_8859_1), 64 * 1024);
+
+        String aggregate = null;
+        boolean inSecurity = false;
+        Map<String, String> values = new HashMap<>();
+        long count = 0;
+
+        StringBuilder token = new StringBuilder();
+        int c = reader.read();
+        while (c != -1) {
+            if (c != '<') {
+                c = reader.read();
+                continue;
+            }
+
+            token.setLength(0);
+            c = reader.read();
+            while (c != -1 && c != '>') {
+                token.append((char) c);
+                c = reader.read();
+            }
+            String tag = token.toString().trim().toUpperCase(Locale.ROOT);
+            boolean closing = tag.startsWith("/");
+            if (closing) {
+                tag = tag.substring(1);
+            }
+
+            // Leaf value runs to the next tag (SGML leaves are never closed)
+            token.setLength(0);
+            c = reader.read();
+            while (c != -1 && c != '<') {
+                token.append((char) c);
+                c = reader.read();
+            }
+            if (closing) {
+                if (tag.equals(aggregate)) {
+                    count++;
+                    emit(count, aggregate, values, handler);
+                    aggregate = null;
+                    values.clear();
+                } else if (inSecurity && SECURITY_AGGREGATES.contains(tag)) {
+                    String securityId = values.get("UNIQUEID");
+                    String ticker = values.get("TICKER");
+                    if (securityId != null && ticker != null) {
+                        handler.onSecurity(securityId, ticker.toUpperCase(Locale.ROOT));
+                    }
+                    inSecurity = false;
+                    values.clear();
+                }
+                continue;
+            }
+
+            if (aggregate == null && !inSecurity) {
+                if (BUY_AGGREGATES.contains(tag) || SELL_AGGREGATES.contains(tag) || tag.equals("STMTTRN")) {
+                    aggregate = tag;
+                    values.clear();
+                } else if (SECURITY_AGGREGATES.contains(tag)) {
+                    inSecurity = true;
+                    values.clear();
+                }
+            } else if (LEAVES.contains(tag)) {
+                String value = token.toString().trim();
+                if (!value.isEmpty()) {
+                    values.putIfAbsent(tag, value);
+                }
+            }
+        }
+    }
+
+    private static void emit(long index, String aggregate, Map<String, String> values, Handler handler) {
+        ImportRecord record;
+        try {
+            LocalDateTime date = date(values.getOrDefault("DTTRADE", values.get("DTPOSTED")));
+            String memo = values.getOrDefault("MEMO", values.get("NAME"));
+
+            if (aggregate.equals("STMTTRN")) {
+                // Bank-side cash transaction: only money coming in counts as a deposit
+                BigDecimal amount = CsvImportParser.number(values.get("TRNAMT"));
+                if (amount == null || amount.signum() <= 0) {
+                    return;
+                }
+                record = new ImportRecord(index, ImportRecord.Type.DEPOSIT, date, null, null, amount, memo);
+            } else {
+                record = trade(index, aggregate, values, date, memo);
+            }
+        } catch (RuntimeException e) {
+            handler.onError(index, e.getMessage());
+            return;
+        }
+        handler.onRecord(record);
+    }
+
+    private static ImportRecord trade(long index, String aggregate, Map<String, String> values, LocalDateTime date,
+                                      String memo) {
+        String securityId = values.get("UNIQUEID");
+        BigDecimal units = CsvImportParser.number(values.get("UNITS"));
+        BigDecimal total = CsvImportParser.number(values.get("TOTAL"));
+        BigDecimal unitPrice = CsvImportParser.number(values.get("UNITPRICE"));
+        if (securityId == null || units == null || units.signum() == 0) {
+            throw new IllegalArgumentException(aggregate + " without a security or units");
+        }
+        units = units.abs();
+        BigDecimal amount = total != null && total.signum() != 0
+                ? total.abs()
+                : unitPrice != null ? unitPrice.multiply(units) : null;
+        if (amount == null) {
+            throw new IllegalArgumentException(aggregate + " without a price or total");
+        }
+        ImportRecord.Type type = SELL_AGGREGATES.contains(aggregate) ? ImportRecord.Type.SELL : ImportRecord.Type.BUY;
+        return new ImportRecord(index, type, date, securityId, units, amount, memo);
+    }
+
+    // OFX dates are YYYYMMDD[HHMMSS[.XXX]][[gmt offset:tz]]; only the day matters here
+    private static LocalDateTime date(String value) {
+        if (value == null || value.length() < 8) {
+            return null;
+        }
+        return LocalDate.parse(value.substring(0, 8), OFX_DATE).atStartOfDay();
+    }
+}
@@ -1,24 +1,40 @@
 package com.foresight.backend.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.foresight.backend.dto.ImportJob;
 import com.foresight.backend.dto.PortfolioResponse;
 import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.dto.TradeImportRequest;
+import com.foresight.backend.dto.TradeImportResponse;
+import com.foresight.backend.dto.TradeImportRow;
 import com.foresight.backend.model.PortfolioHolding;
 import com.foresight.backend.model.Stock;
+import com.foresight.backend.model.Trade;
 import com.foresight.backend.model.User;
 import com.foresight.backend.repository.PortfolioHoldingRepository;
 import com.foresight.backend.repository.StockRepository;
 import com.foresight.backend.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Service
 public class PortfolioService {
@@ -35,11 +51,48 @@ public class PortfolioService {
     @Autowired
     private FinnhubService finnhubService;
 
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private PortfolioStreamService portfolioStreamService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor fanOutExecutor;
+
+    @Value("${portfolio.import.max-trades:50000}")
+    private int maxImportTrades;
+
+    @Transactional(readOnly = true)
     public List<PortfolioHolding> getUserPortfolio(Long userId) {
         return portfolioHoldingRepository.findByUserId(userId);
     }
 
-    @Transactional
     public PortfolioHolding addStockToPortfolio(Long userId, String symbol, Integer quantity, BigDecimal buyPrice) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
@@ -48,55 +101,134 @@ public class PortfolioService {
         Stock stock = stockRepository.findBySymbol(symbol)
                 .orElseGet(() -> createNewStock(symbol));
 
-        // Check if user already has this stock
-        Optional<PortfolioHolding> existingHolding = portfolioHoldingRepository.findByUserAndStock(user, stock);
-
-        if (existingHolding.isPresent()) {
-            // Update existing holding
-            PortfolioHolding holding = existingHolding.get();
-            BigDecimal totalInvested = holding.getTotalInvested().add(buyPrice.multiply(BigDecimal.valueOf(quantity)));
-            Integer totalQuantity = holding.getQuantity() + quantity;
-            BigDecimal avgBuyPrice = totalInvested.divide(BigDecimal.valueOf(totalQuantity), 2, RoundingMode.HALF_UP);
-
-            holding.setQuantity(totalQuantity);
-            holding.setAverageBuyPrice(avgBuyPrice);
-            holding.setTotalInvested(totalInvested);
-
-            updateHoldingValues(holding, stock.getCurrentPrice());
-            return portfolioHoldingRepository.save(holding);
-        } else {
-            // Create new holding
-            PortfolioHolding holding = new PortfolioHolding();
-            holding.setUser(user);
-            holding.setStock(stock);
-            holding.setQuantity(quantity);
-            holding.setAverageBuyPrice(buyPrice);
-            holding.setTotalInvested(buyPrice.multiply(BigDecimal.valueOf(quantity)));
-
-            updateHoldingValues(holding, stock.getCurrentPrice());
-            return portfolioHoldingRepository.save(holding);
+        // Appended to the ledger; the holding is the position's new checkpoint
+        PortfolioHolding saved = ledgerService.recordTrade(user, stock, Trade.Side.BUY, quantity,
+                buyPrice.multiply(BigDecimal.valueOf(quantity)), LocalDateTime.now());
+        dividendIncomeService.refreshUser(userId);
+        portfolioStreamService.onHoldingsChanged(userId);
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
+        return saved;
+    }
+
+    /**
+     * Sells shares out of the position's lots (FIFO or LIFO per portfolio.cost-basis) and books the realized gain
+     */
+    public PortfolioHolding sellStock(Long userId, String symbol, Integer quantity, BigDecimal sellPrice) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        Stock stock = stockRepository.findBySymbol(symbol)
+                .orElseThrow(() -> new IllegalArgumentException("No holding of " + symbol));
+        if (quantity == null || sellPrice == null || sellPrice.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Quantity and a positive sell price are required");
         }
+
+        PortfolioHolding saved = ledgerService.recordTrade(user, stock, Trade.Side.SELL, quantity,
+                sellPrice.multiply(BigDecimal.valueOf(quantity)), LocalDateTime.now());
+        dividendIncomeService.refreshUser(userId);
+        portfolioStreamService.onHoldingsChanged(userId);
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
+        return saved;
+    }
+
+    /**
+     * Imports a trade list (buys) through the same pipeline as file uploads and waits for it to finish.
+     * Rows that can't be applied are reported back rather than failing the whole import.
+     *
+     * @throws IllegalStateException when the request's idempotency key has already been imported
+     */
+    public TradeImportResponse importTrades(TradeImportRequest request) {
+        List<TradeImportRow> trades = request.getTrades() != null ? request.getTrades() : List.of();
+        if (trades.size() > maxImportTrades) {
+            throw new IllegalArgumentException("At most " + maxImportTrades + " trades can be imported at once");
+        }
+
+        ImportJob job;
+        try {
+            job = importService.importNow(request.getUserId(), "json",
+                    new ByteArrayInputStream(objectMapper.writeValueAsBytes(trades)), request.getIdempotencyKey());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not import trades: " + e.getMessage(), e);
+        }
+        if (!"COMPLETED".equals(job.getStatus())) {
+            throw new RuntimeException("Import failed: " + job.getError());
+        }
+
+        return new TradeImportResponse(
+                request.getUserId(),
+                trades.size(),
+                (int) job.getBuysRecorded(),
+                job.getHoldingsUpserted(),
+                job.getSymbolsCreated(),
+                new ArrayList<>(job.getErrors()),
+                Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis()
+        );
     }
 
     public PortfolioResponse getPortfolioAnalysis(Long userId) {
+        // Loaded so the prices fetched below reach this user's state
+        String baseCurrency = portfolioStateEngine.getState(userId).getBaseCurrency();
         List<PortfolioHolding> holdings = portfolioHoldingRepository.findByUserId(userId);
+        return analyze(holdings, fetchQuotes(holdings), baseCurrency);
+    }
+
+    /**
+     * Starts a quote fetch for each distinct symbol held, concurrently rather than one holding at a time
+     */
+    public Map<String, CompletableFuture<StockPriceUpdate>> fetchQuotes(List<PortfolioHolding> holdings) {
+        Map<String, CompletableFuture<StockPriceUpdate>> quotes = new HashMap<>();
+        for (PortfolioHolding holding : holdings) {
+            String symbol = holding.getStock().getSymbol();
+            quotes.computeIfAbsent(symbol, s -> CompletableFuture.supplyAsync(() -> finnhubService.getStockQuote(s), fanOutExecutor));
+        }
+        return quotes;
+    }
+
+    /**
+     * Values already loaded holdings at the given quotes, with totals in the base currency
+     *
+     * @param quotes from fetchQuotes over the same holdings
+     */
+    public PortfolioResponse analyze(List<PortfolioHolding> holdings, Map<String, CompletableFuture<StockPriceUpdate>> quotes,
+                                     String baseCurrency) {
+        // Totals are in the user's base currency; one rate snapshot for the whole valuation
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        int base = rates.index(baseCurrency);
 
         BigDecimal totalInvested = BigDecimal.ZERO;
         BigDecimal totalCurrentValue = BigDecimal.ZERO;
-        BigDecimal totalDividendYield = BigDecimal.ZERO;
-        int stockCount = holdings.size();
+        BigDecimal weightedDividendYield = BigDecimal.ZERO;
 
+        List<String> staleSymbols = new ArrayList<>();
         for (PortfolioHolding holding : holdings) {
+            String symbol = holding.getStock().getSymbol();
+            StockPriceUpdate priceUpdate;
+            try {
+                priceUpdate = quotes.get(symbol).join();
+            } catch (CompletionException e) {
+                // No price anywhere (live or stored): value at cost rather than fail the whole portfolio
+                priceUpdate = null;
+            }
+            if ((priceUpdate == null || priceUpdate.isStale()) && !staleSymbols.contains(symbol)) {
+                staleSymbols.add(symbol);
+            }
+
             // Update current values with latest stock price
-            StockPriceUpdate priceUpdate = finnhubService.getStockQuote(holding.getStock().getSymbol());
-            updateHoldingValues(holding, priceUpdate.getCurrentPrice());
-            portfolioHoldingRepository.save(holding);
+            updateHoldingValues(holding, priceUpdate != null ? priceUpdate.getCurrentPrice() : holding.getAverageBuyPrice());
+            if (priceUpdate != null && !priceUpdate.isStale()) {
+                // Stored by the state engine's write-behind rather than a save per holding per read
+                portfolioStateEngine.onPriceUpdate(symbol, priceUpdate.getCurrentPrice());
+            }
 
-            totalInvested = totalInvested.add(holding.getTotalInvested());
-            totalCurrentValue = totalCurrentValue.add(holding.getCurrentValue());
+            int currency = rates.index(holding.getStock().getCurrency());
+            BigDecimal currentValue = rates.convert(holding.getCurrentValue(), currency, base);
+            totalInvested = totalInvested.add(rates.convert(holding.getTotalInvested(), currency, base));
+            totalCurrentValue = totalCurrentValue.add(currentValue);
 
+            // Weight each stock's yield by its current value in the portfolio
             if (holding.getStock().getDividendYield() != null) {
-                totalDividendYield = totalDividendYield.add(holding.getStock().getDividendYield());
+                weightedDividendYield = weightedDividendYield.add(holding.getStock().getDividendYield().multiply(currentValue));
             }
         }
 
@@ -105,8 +237,8 @@ public class PortfolioService {
                 ? totalProfitLoss.divide(totalInvested, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
                 : BigDecimal.ZERO;
 
-        BigDecimal avgDividendYield = stockCount > 0
-                ? totalDividendYield.divide(BigDecimal.valueOf(stockCount), 2, RoundingMode.HALF_UP)
+        BigDecimal avgDividendYield = totalCurrentValue.compareTo(BigDecimal.ZERO) > 0
+                ? weightedDividendYield.divide(totalCurrentValue, 2, RoundingMode.HALF_UP)
                 : BigDecimal.ZERO;
 
         return new PortfolioResponse(
@@ -115,7 +247,9 @@ public class PortfolioService {
                 totalCurrentValue,
                 totalProfitLoss,
                 totalProfitLossPercentage,
-                avgDividendYield
+                avgDividendYield,
+                staleSymbols,
+                baseCurrency
         );
     }
 
@@ -126,17 +260,24 @@ public class PortfolioService {
                 .orElseThrow(() -> new RuntimeException("Holding not found"));
 
         Long stockId = holding.getStock().getId();
+        Long userId = holding.getUser().getId();
 
-        // Delete the holding
+        // Removing (unlike selling) forgets the position: its trades go with the holding
+        ledgerService.removePosition(userId, stockId);
         portfolioHoldingRepository.deleteById(holdingId);
 
         // Check if any other holdings reference this stock
         Long remainingHoldings = portfolioHoldingRepository.countByStockId(stockId);
 
-        // If no other holdings reference this stock, delete it
-        if (remainingHoldings == 0) {
+        // If no other holdings (or alerts) reference this stock, delete it
+        if (remainingHoldings == 0 && !priceAlertService.hasAlerts(stockId)) {
             stockRepository.deleteById(stockId);
         }
+
+        dividendIncomeService.refreshUser(userId);
+        portfolioStreamService.onHoldingsChanged(userId);
+        readModelCache.onUserChanged(userId);
+        readYourWrites.onUserWrite(userId);
     }
 
     private Stock createNewStock(String symbol) {
@@ -158,6 +299,16 @@ public class PortfolioService {
             }
             stock.setCompanyName(companyName);
             stock.setCurrentPrice(quote.getCurrentPrice());
+            if (profile != null && profile.hasNonNull("currency")) {
+                stock.setCurrency(FxRateService.normalize(profile.get("currency").asText()));
+            }
+            if (!fxRateService.isKnown(stock.getCurrency())) {
+                throw new IllegalArgumentException("No exchange rate for " + stock.getCurrency() + ", the currency "
+                        + symbol + " is quoted in");
+            }
+            if (profile != null && profile.hasNonNull("finnhubIndustry")) {
+                stock.setSector(profile.get("finnhubIndustry").asText());
+            }
 
             // Fetch and populate dividend data
             populateDividendData(stock, symbol);
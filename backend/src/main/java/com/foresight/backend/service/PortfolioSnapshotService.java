@@ -0,0 +1,341 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.PerformancePoint;
+import com.foresight.backend.dto.PerformanceResponse;
+import com.foresight.backend.dto.SnapshotRunResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-of-day portfolio snapshots and the performance queries answered from them.
+ *
+ * After the close every user's portfolio is valued into one portfolio_snapshots row. Users are processed in id
+ * ranges by a few workers on the fan-out executor; each range costs one grouped aggregate over the holdings, one
+ * lookup of the users' previous snapshots and one batched insert, so the job scales linearly with the user count.
+ *
+ * Cash flows are not stored separately: buys raise the cost basis and sells lower it by the cost of the shares sold
+ * while adding their gain to the realized total, so (change in cost basis) - (change in realized gain) is exactly
+ * the money put in minus the proceeds taken out. Each day's return excludes that flow and is chained into
+ * twr_index, which makes the time-weighted return over any range a ratio of two rows.
+ *
+ * Figures are in the user's base currency, each currency's sums converted through one rate matrix per range. Like
+ * the live totals, the cost basis is converted at the current rate, so a rate move shows up in it as a flow.
+ */
+@Service
+public class PortfolioSnapshotService {
+
+    // Closed positions stay in the sum so their realized gain is not mistaken for a withdrawal. One row per user
+    // and quote currency, converted into the base currency before the user's rows are added up.
+    private static final String VALUE_SQL =
+            "SELECT h.user_id, u.base_currency, s.currency, SUM(h.quantity * COALESCE(s.current_price, h.average_buy_price)), " +
+            "SUM(h.total_invested), SUM(h.realized_profit_loss) " +
+            "FROM portfolio_holdings h JOIN stocks s ON s.id = h.stock_id JOIN users u ON u.id = h.user_id " +
+            "WHERE h.user_id >= ? AND h.user_id < ? GROUP BY h.user_id, u.base_currency, s.currency";
+
+    // Driven from users so each lookup is a backward seek on the primary key, however long the history is
+    private static final String PREVIOUS_SQL =
+            "SELECT p.user_id, p.market_value, p.cost_basis, p.realized_gain, p.twr_index " +
+            "FROM users u JOIN portfolio_snapshots p ON p.user_id = u.id AND p.snapshot_date = " +
+            "(SELECT MAX(q.snapshot_date) FROM portfolio_snapshots q WHERE q.user_id = u.id AND q.snapshot_date < ?) " +
+            "WHERE u.id >= ? AND u.id < ?";
+
+    private static final String DELETE_SQL =
+            "DELETE FROM portfolio_snapshots WHERE user_id >= ? AND user_id < ? AND snapshot_date = ?";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO portfolio_snapshots (user_id, snapshot_date, market_value, cost_basis, realized_gain, twr_index) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String RANGE_SQL =
+            "SELECT snapshot_date, market_value, cost_basis, realized_gain, twr_index FROM portfolio_snapshots " +
+            "WHERE user_id = ? AND snapshot_date >= ? AND snapshot_date <= ? ORDER BY snapshot_date";
+
+    private static final String BASELINE_SQL =
+            "SELECT snapshot_date, market_value, cost_basis, realized_gain, twr_index FROM portfolio_snapshots " +
+            "WHERE user_id = ? AND snapshot_date < ? ORDER BY snapshot_date DESC LIMIT 1";
+
+    private static final MathContext PRECISION = MathContext.DECIMAL64;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor executor;
+
+    @Value("${snapshot.batch-size:5000}")
+    private int batchSize;
+
+    @Value("${snapshot.parallelism:4}")
+    private int parallelism;
+
+    @Value("${snapshot.zone:America/New_York}")
+    private String zone;
+
+    // Snapshots follow the trading days of the exchange this symbol is listed on
+    @Value("${snapshot.calendar-symbol:SPY}")
+    private String calendarSymbol;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private static class Snapshot {
+        private final LocalDate date;
+        private final BigDecimal marketValue;
+        private final BigDecimal costBasis;
+        private final BigDecimal realizedGain;
+        private final BigDecimal twrIndex;
+
+        Snapshot(LocalDate date, BigDecimal marketValue, BigDecimal costBasis, BigDecimal realizedGain,
+                 BigDecimal twrIndex) {
+            this.date = date;
+            this.marketValue = marketValue;
+            this.costBasis = costBasis;
+            this.realizedGain = realizedGain;
+            this.twrIndex = twrIndex;
+        }
+
+        // Before a user's first snapshot: nothing invested, index at 1
+        static final Snapshot EMPTY = new Snapshot(null, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ONE);
+
+        // Column 1 is either the date or the user id; the figures follow in columns 2-5
+        static Snapshot read(ResultSet rs, boolean dated) throws SQLException {
+            LocalDate date = dated ? rs.getDate(1).toLocalDate() : null;
+            return new Snapshot(date, rs.getBigDecimal(2), rs.getBigDecimal(3), rs.getBigDecimal(4),
+                    rs.getBigDecimal(5));
+        }
+    }
+
+    @Scheduled(cron = "${snapshot.cron:0 30 16 * * MON-FRI}", zone = "${snapshot.zone:America/New_York}")
+    public void takeDailySnapshots() {
+        LocalDate today = LocalDate.now(ZoneId.of(zone));
+        if (!MarketCalendar.forSymbol(calendarSymbol).isTradingDay(today)) {
+            // Nothing traded, so a row would only repeat the previous close
+            System.out.println("Skipping portfolio snapshots for " + today + ": not a trading day");
+            return;
+        }
+        try {
+            SnapshotRunResponse run = takeSnapshots(null);
+            System.out.println("Wrote " + run.getSnapshotsWritten() + " portfolio snapshots for "
+                    + run.getSnapshotDate() + " in " + run.getElapsedMs() + "ms");
+        } catch (Exception e) {
+            System.err.println("Failed to take portfolio snapshots: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Values every user's portfolio as of now and stores it under the given date, replacing any earlier run for
+     * that date. The previous snapshot is taken to be the latest one before the date.
+     *
+     * @param snapshotDate defaults to today in the exchange's time zone
+     */
+    public SnapshotRunResponse takeSnapshots(LocalDate snapshotDate) {
+        LocalDate date = snapshotDate != null ? snapshotDate : LocalDate.now(ZoneId.of(zone));
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A snapshot run is already in progress");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            long[] ids = jdbcTemplate.queryForObject("SELECT MIN(id), MAX(id) FROM users",
+                    (rs, n) -> rs.getObject(1) == null ? null : new long[]{rs.getLong(1), rs.getLong(2)});
+            if (ids == null) {
+                return new SnapshotRunResponse(date, 0, 0, System.currentTimeMillis() - start);
+            }
+
+            // Workers claim the next id range until the span is covered, so a slow range never idles the others
+            AtomicLong next = new AtomicLong(ids[0]);
+            AtomicLong written = new AtomicLong();
+            AtomicLong batches = new AtomicLong();
+            TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+            List<CompletableFuture<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, parallelism); i++) {
+                workers.add(CompletableFuture.runAsync(() -> {
+                    long claimed;
+                    while ((claimed = next.getAndAdd(batchSize)) <= ids[1]) {
+                        long from = claimed;
+                        long to = from + batchSize;
+                        Integer count = transactionTemplate.execute(status -> snapshotRange(date, from, to));
+                        written.addAndGet(count);
+                        batches.incrementAndGet();
+                    }
+                }, executor));
+            }
+            CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+
+            return new SnapshotRunResponse(date, written.get(), batches.get(), System.currentTimeMillis() - start);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private int snapshotRange(LocalDate date, long from, long to) {
+        Date day = Date.valueOf(date);
+        Map<Long, Snapshot> previous = new HashMap<>();
+        jdbcTemplate.query(PREVIOUS_SQL, rs -> {
+            previous.put(rs.getLong(1), Snapshot.read(rs, false));
+        }, day, from, to);
+
+        // Market value, cost basis and realized gain per user, in their base currency
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        Map<Long, BigDecimal[]> totals = new HashMap<>();
+        jdbcTemplate.query(VALUE_SQL, rs -> {
+            int base = rates.index(rs.getString(2));
+            int currency = rates.index(rs.getString(3));
+            BigDecimal[] sums = totals.computeIfAbsent(rs.getLong(1),
+                    id -> new BigDecimal[]{BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO});
+            for (int i = 0; i < sums.length; i++) {
+                sums[i] = sums[i].add(rates.convert(rs.getBigDecimal(4 + i), currency, base));
+            }
+        }, from, to);
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Map.Entry<Long, BigDecimal[]> user : totals.entrySet()) {
+            BigDecimal[] sums = user.getValue();
+            Snapshot prev = previous.remove(user.getKey());
+            if (prev == null) {
+                prev = Snapshot.EMPTY;
+            }
+            rows.add(row(user.getKey(), day, sums[0].setScale(2, RoundingMode.HALF_UP), sums[1], sums[2], prev));
+        }
+
+        // Users whose positions were all removed since their last snapshot: record the empty portfolio once and
+        // carry the index over, since a removal is a correction rather than a trade at a known price
+        for (Map.Entry<Long, Snapshot> gone : previous.entrySet()) {
+            Snapshot prev = gone.getValue();
+            if (prev.marketValue.signum() != 0 || prev.costBasis.signum() != 0 || prev.realizedGain.signum() != 0) {
+                rows.add(new Object[]{gone.getKey(), day, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO,
+                        prev.twrIndex});
+            }
+        }
+
+        jdbcTemplate.update(DELETE_SQL, from, to, day);
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+        }
+        return rows.size();
+    }
+
+    private static Object[] row(long userId, Date day, BigDecimal value, BigDecimal costBasis, BigDecimal realized,
+                                Snapshot prev) {
+        BigDecimal flow = costBasis.subtract(prev.costBasis).subtract(realized.subtract(prev.realizedGain));
+        // Flows are treated as arriving at the start of the day, so they earn that day's return
+        BigDecimal invested = prev.marketValue.add(flow);
+        BigDecimal growth = BigDecimal.ONE;
+        if (invested.signum() > 0) {
+            growth = value.divide(invested, PRECISION).max(BigDecimal.ZERO);
+        }
+        BigDecimal index = prev.twrIndex.multiply(growth, PRECISION).setScale(10, RoundingMode.HALF_UP);
+        return new Object[]{userId, day, value, costBasis, realized, index};
+    }
+
+    /**
+     * Time-weighted return and daily values over a range ending today.
+     *
+     * @param range one of 1M, 3M, 6M, YTD, 1Y, 3Y, 5Y or MAX
+     */
+    @Transactional(readOnly = true)
+    public PerformanceResponse getPerformance(Long userId, String range) {
+        LocalDate end = LocalDate.now(ZoneId.of(zone));
+        LocalDate start = rangeStart(range, end);
+
+        List<Snapshot> snapshots = jdbcTemplate.query(RANGE_SQL, (rs, n) -> Snapshot.read(rs, true),
+                userId, Date.valueOf(start), Date.valueOf(end));
+        // The return over the range is measured from the close just before it
+        List<Snapshot> baseline = jdbcTemplate.query(BASELINE_SQL, (rs, n) -> Snapshot.read(rs, true),
+                userId, Date.valueOf(start));
+        Snapshot base = baseline.isEmpty() ? Snapshot.EMPTY : baseline.get(0);
+
+        List<PerformancePoint> points = new ArrayList<>(snapshots.size());
+        for (Snapshot snapshot : snapshots) {
+            points.add(new PerformancePoint(snapshot.date, snapshot.marketValue, snapshot.costBasis,
+                    percent(snapshot.twrIndex, base.twrIndex)));
+        }
+
+        PerformanceResponse response = new PerformanceResponse();
+        response.setUserId(userId);
+        response.setRange(range.toUpperCase());
+        response.setPoints(points);
+        if (snapshots.isEmpty()) {
+            response.setStartDate(start);
+            response.setEndDate(end);
+            return response;
+        }
+
+        Snapshot last = snapshots.get(snapshots.size() - 1);
+        LocalDate from = base.date != null ? base.date : snapshots.get(0).date;
+        BigDecimal netFlows = last.costBasis.subtract(base.costBasis)
+                .subtract(last.realizedGain.subtract(base.realizedGain));
+
+        response.setStartDate(from);
+        response.setEndDate(last.date);
+        response.setStartValue(base.marketValue);
+        response.setEndValue(last.marketValue);
+        response.setNetFlows(netFlows);
+        response.setInvestmentGain(last.marketValue.subtract(base.marketValue).subtract(netFlows));
+        response.setTimeWeightedReturn(percent(last.twrIndex, base.twrIndex));
+
+        long days = ChronoUnit.DAYS.between(from, last.date);
+        if (days > 365 && base.twrIndex.signum() > 0) {
+            double growth = last.twrIndex.doubleValue() / base.twrIndex.doubleValue();
+            double annualized = Math.pow(growth, 365.0 / days) - 1;
+            response.setAnnualizedReturn(BigDecimal.valueOf(annualized * 100).setScale(4, RoundingMode.HALF_UP));
+        }
+        return response;
+    }
+
+    private static BigDecimal percent(BigDecimal index, BigDecimal base) {
+        if (base.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+        return index.divide(base, PRECISION).subtract(BigDecimal.ONE).multiply(HUNDRED)
+                .setScale(4, RoundingMode.HALF_UP);
+    }
+
+    private static LocalDate rangeStart(String range, LocalDate end) {
+        if (range == null) {
+            throw new IllegalArgumentException("Range is required");
+        }
+        switch (range.toUpperCase()) {
+            case "1M": return end.minusMonths(1);
+            case "3M": return end.minusMonths(3);
+            case "6M": return end.minusMonths(6);
+            case "YTD": return end.withDayOfYear(1);
+            case "1Y": return end.minusYears(1);
+            case "3Y": return end.minusYears(3);
+            case "5Y": return end.minusYears(5);
+            case "MAX": return LocalDate.of(1970, 1, 1);
+            default: throw new IllegalArgumentException("Unknown range: " + range);
+        }
+    }
+}
@@ -0,0 +1,717 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.model.Account;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * In-memory portfolio state, partitioned by user across shards that each have a single writer thread.
+ *
+ * Commands for a user (a trade's new position checkpoint, a deposit, a price tick, a reload) are queued on the
+ * user's shard through a lock-free queue and applied one at a time by the shard's thread, so shard state needs no
+ * locks. Price ticks go to every shard, each updating only its own holders of the symbol. After every change the
+ * user's state is published as an immutable {@link PortfolioState} that readers on any thread use without waiting.
+ * A user is loaded from the database on first read. The queries run on the reading thread, so a slow load never
+ * stalls the shard, and the result is handed to the shard to install. If a command for the user reached the shard
+ * while the queries were running, the result may predate it and the load is retried. Users that haven't been read
+ * for portfolio.engine.idle-ms are dropped and reloaded on their next read. Totals are converted into the user's base currency from a precomputed rate matrix; when rates move,
+ * only the users holding or reporting in a currency that moved are republished.
+ *
+ * The trade ledger stays the synchronous source of truth. The engine owns the values derived from prices and
+ * deposits (holding market values, account totals), which used to be written back on every read. They go to a
+ * write-behind journal holding the latest state per user, flushed to the database in batches and put back for the
+ * next flush if a write fails.
+ */
+@Service
+public class PortfolioStateEngine {
+
+    private static final String LOAD_POSITIONS_SQL =
+            "SELECT h.stock_id, s.symbol, h.quantity, h.total_invested, h.realized_profit_loss, h.ledger_sequence, " +
+            "s.current_price, s.currency FROM portfolio_holdings h JOIN stocks s ON s.id = h.stock_id WHERE h.user_id = ?";
+
+    private static final String LOAD_DEPOSITS_SQL = "SELECT COALESCE(SUM(amount), 0) FROM deposits WHERE user_id = ?";
+
+    private static final String LOAD_USER_SQL =
+            "SELECT u.base_currency, a.id FROM users u LEFT JOIN accounts a ON a.user_id = u.id WHERE u.id = ?";
+
+    private static final String ACCOUNT_ID_SQL = "SELECT id FROM accounts WHERE user_id = ?";
+
+    // A trade recorded after the state was taken owns the row; its checkpoint brings its own values
+    private static final String UPDATE_HOLDING_SQL =
+            "UPDATE portfolio_holdings SET current_value = ?, profit_loss = ?, profit_loss_percentage = ?, " +
+            "updated_at = ?, version = version + 1 WHERE user_id = ? AND stock_id = ? AND ledger_sequence = ?";
+
+    private static final String UPDATE_ACCOUNT_SQL =
+            "UPDATE accounts SET current_value = ?, total_deposits = ?, total_profit_loss = ?, last_updated = ? " +
+            "WHERE user_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    // 0 for one per core
+    @Value("${portfolio.engine.shards:0}")
+    private int shardCount;
+
+    @Value("${portfolio.engine.load-timeout-ms:5000}")
+    private long loadTimeoutMs;
+
+    // Loads overtaken by a command this many times in a row fall back to loading on the shard
+    @Value("${portfolio.engine.load-attempts:3}")
+    private int loadAttempts;
+
+    @Value("${portfolio.engine.idle-ms:1800000}")
+    private long idleMs;
+
+    private Shard[] shards;
+    private volatile boolean running;
+    private final Map<Long, PortfolioState> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, Long> lastReads = new ConcurrentHashMap<>();
+    // Write-behind journal: latest unwritten state per user
+    private final Map<Long, PortfolioState> journal = new ConcurrentHashMap<>();
+    private final AtomicLong commandsApplied = new AtomicLong();
+    private final AtomicLong usersFlushed = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+    private final AtomicLong loadRetries = new AtomicLong();
+    private final AtomicLong usersEvicted = new AtomicLong();
+    // Not the monitor: it is held across the flush's transaction, and a virtual thread blocked inside synchronized
+    // pins its carrier
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * One position as of the published state
+     */
+    public static class PositionState {
+        private final long stockId;
+        private final String symbol;
+        private final String currency;
+        private final int quantity;
+        private final BigDecimal costBasis;
+        private final BigDecimal realizedGain;
+        // Latest known price, null until there is one
+        private final BigDecimal price;
+        private final long sequence;
+
+        PositionState(long stockId, String symbol, String currency, int quantity, BigDecimal costBasis,
+                      BigDecimal realizedGain, BigDecimal price, long sequence) {
+            this.stockId = stockId;
+            this.symbol = symbol;
+            this.currency = currency;
+            this.quantity = quantity;
+            this.costBasis = costBasis;
+            this.realizedGain = realizedGain;
+            this.price = price;
+            this.sequence = sequence;
+        }
+
+        PositionState withPrice(BigDecimal newPrice) {
+            return new PositionState(stockId, symbol, currency, quantity, costBasis, realizedGain, newPrice, sequence);
+        }
+
+        public long getStockId() {
+            return stockId;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getCostBasis() {
+            return costBasis;
+        }
+
+        public BigDecimal getRealizedGain() {
+            return realizedGain;
+        }
+
+        public BigDecimal getPrice() {
+            return price;
+        }
+
+        /**
+         * Market value in the position's own currency, or the cost basis while no price is known
+         */
+        public BigDecimal getCurrentValue() {
+            return price != null ? price.multiply(BigDecimal.valueOf(quantity)) : costBasis;
+        }
+    }
+
+    /**
+     * Immutable view of a user's portfolio; a new one is published on every change. Totals are in the user's base
+     * currency, converted at the rates current when it was published.
+     */
+    public static class PortfolioState {
+        private final long userId;
+        private final long version;
+        private final String baseCurrency;
+        // Null while the user has no account row
+        private final Long accountId;
+        private final List<PositionState> positions;
+        private final BigDecimal totalInvested;
+        private final BigDecimal totalCurrentValue;
+        private final BigDecimal totalDeposits;
+
+        PortfolioState(long userId, long version, String baseCurrency, Long accountId, List<PositionState> positions,
+                       BigDecimal totalDeposits, FxRateService.Matrix rates) {
+            this.userId = userId;
+            this.version = version;
+            this.baseCurrency = baseCurrency;
+            this.accountId = accountId;
+            this.positions = Collections.unmodifiableList(positions);
+            this.totalDeposits = totalDeposits;
+            int base = rates.index(baseCurrency);
+            BigDecimal invested = BigDecimal.ZERO;
+            BigDecimal value = BigDecimal.ZERO;
+            for (PositionState position : positions) {
+                int currency = rates.index(position.currency);
+                invested = invested.add(rates.convert(position.costBasis, currency, base));
+                value = value.add(rates.convert(position.getCurrentValue(), currency, base));
+            }
+            this.totalInvested = invested;
+            this.totalCurrentValue = value;
+        }
+
+        public long getUserId() {
+            return userId;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getBaseCurrency() {
+            return baseCurrency;
+        }
+
+        public List<PositionState> getPositions() {
+            return positions;
+        }
+
+        public BigDecimal getTotalInvested() {
+            return totalInvested;
+        }
+
+        public BigDecimal getTotalCurrentValue() {
+            return totalCurrentValue;
+        }
+
+        public BigDecimal getTotalDeposits() {
+            return totalDeposits;
+        }
+    }
+
+    // Shard-owned, only touched by the shard's thread
+    private static class UserBook {
+        private final Map<Long, PositionState> positions = new LinkedHashMap<>();
+        private BigDecimal deposits = BigDecimal.ZERO;
+        private String baseCurrency = "USD";
+        private Long accountId;
+        private long version;
+
+        boolean isExposedTo(Set<String> currencies) {
+            if (currencies.contains(baseCurrency)) {
+                return true;
+            }
+            for (PositionState position : positions.values()) {
+                if (currencies.contains(position.currency)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private final class Shard implements Runnable {
+        private final ConcurrentLinkedQueue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private final Map<Long, UserBook> users = new HashMap<>();
+        private final Map<String, Set<Long>> holders = new HashMap<>();
+        // Latest price seen per symbol, applied to users installed after the tick
+        private final Map<String, BigDecimal> prices = new HashMap<>();
+        // Users being loaded off the shard, with the number of their commands that arrived meanwhile
+        private final Map<Long, Long> loading = new HashMap<>();
+        private final Thread thread;
+        private volatile boolean sleeping;
+
+        Shard(int index) {
+            thread = new Thread(this, "portfolio-shard-" + index);
+            thread.setDaemon(true);
+        }
+
+        void submit(Runnable command) {
+            queue.offer(command);
+            // Checked after the offer: either the thread sees the command before parking or we see it asleep
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running || !queue.isEmpty()) {
+                Runnable command = queue.poll();
+                if (command == null) {
+                    sleeping = true;
+                    if (queue.isEmpty() && running) {
+                        LockSupport.park(this);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                try {
+                    command.run();
+                } catch (RuntimeException e) {
+                    System.err.println(thread.getName() + " command failed: " + e.getMessage());
+                }
+                commandsApplied.incrementAndGet();
+            }
+        }
+
+        /**
+         * Starts an off-shard load, returning the count to hand back to install, or -1 if the user is loaded
+         */
+        long beginLoad(long userId) {
+            if (users.containsKey(userId)) {
+                return -1;
+            }
+            return loading.computeIfAbsent(userId, id -> 0L);
+        }
+
+        /**
+         * Installs a book read off the shard, or returns null if a command for the user arrived since beginLoad
+         */
+        PortfolioState install(long userId, UserBook loaded, long seen) {
+            if (users.containsKey(userId)) {
+                return snapshots.get(userId);
+            }
+            if (!Objects.equals(loading.get(userId), seen)) {
+                return null;
+            }
+            loading.remove(userId);
+            for (PositionState position : new ArrayList<>(loaded.positions.values())) {
+                BigDecimal price = prices.get(position.symbol);
+                if (price != null) {
+                    loaded.positions.put(position.stockId, position.withPrice(price));
+                }
+            }
+            users.put(userId, loaded);
+            for (PositionState position : loaded.positions.values()) {
+                holders.computeIfAbsent(position.symbol, s -> new HashSet<>()).add(userId);
+            }
+            publish(userId, loaded, false);
+            return snapshots.get(userId);
+        }
+
+        // A command for a user who isn't loaded may have missed an off-shard load in progress
+        private void missed(long userId) {
+            loading.computeIfPresent(userId, (id, count) -> count + 1);
+        }
+
+        void evictIdle(long cutoff) {
+            for (Long userId : new ArrayList<>(users.keySet())) {
+                Long lastRead = lastReads.get(userId);
+                if (lastRead == null || lastRead < cutoff) {
+                    unload(userId);
+                    lastReads.remove(userId);
+                    usersEvicted.incrementAndGet();
+                }
+            }
+        }
+
+        void unload(long userId) {
+            UserBook book = users.remove(userId);
+            snapshots.remove(userId);
+            if (book == null) {
+                missed(userId);
+                return;
+            }
+            for (PositionState position : book.positions.values()) {
+                Set<Long> ids = holders.get(position.symbol);
+                if (ids != null) {
+                    ids.remove(userId);
+                    if (ids.isEmpty()) {
+                        holders.remove(position.symbol);
+                    }
+                }
+            }
+        }
+
+        void applyPrice(String symbol, BigDecimal price) {
+            prices.put(symbol, price);
+            Set<Long> ids = holders.get(symbol);
+            if (ids == null) {
+                return;
+            }
+            for (Long userId : ids) {
+                UserBook book = users.get(userId);
+                boolean changed = false;
+                for (PositionState position : book.positions.values()) {
+                    if (position.symbol.equals(symbol)
+                            && (position.price == null || position.price.compareTo(price) != 0)) {
+                        book.positions.put(position.stockId, position.withPrice(price));
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    publish(userId, book, true);
+                }
+            }
+        }
+
+        void applyCheckpoint(long userId, HoldingUpsertService.Checkpoint checkpoint) {
+            UserBook book = users.get(userId);
+            if (book == null) {
+                // Not loaded: the next load reads the committed holding
+                missed(userId);
+                return;
+            }
+            long stockId = checkpoint.getStock().getId();
+            PositionState current = book.positions.get(stockId);
+            if (current != null && current.sequence > checkpoint.getSequence()) {
+                return;
+            }
+            BigDecimal price = current != null && current.price != null ? current.price : checkpoint.getStock().getCurrentPrice();
+            String symbol = checkpoint.getStock().getSymbol();
+            book.positions.put(stockId, new PositionState(stockId, symbol, checkpoint.getStock().getCurrency(),
+                    checkpoint.getQuantity(), checkpoint.getCostBasis(), checkpoint.getRealizedGain(), price,
+                    checkpoint.getSequence()));
+            holders.computeIfAbsent(symbol, s -> new HashSet<>()).add(userId);
+            publish(userId, book, true);
+        }
+
+        void applyRates(Set<String> currencies) {
+            for (Map.Entry<Long, UserBook> user : users.entrySet()) {
+                if (user.getValue().isExposedTo(currencies)) {
+                    publish(user.getKey(), user.getValue(), true);
+                }
+            }
+        }
+
+        void applyDeposit(long userId, BigDecimal amount) {
+            UserBook book = users.get(userId);
+            if (book != null) {
+                book.deposits = book.deposits.add(amount);
+                publish(userId, book, true);
+            } else {
+                missed(userId);
+            }
+        }
+
+        private void publish(long userId, UserBook book, boolean journaled) {
+            PortfolioState state = new PortfolioState(userId, ++book.version, book.baseCurrency, book.accountId,
+                    new ArrayList<>(book.positions.values()), book.deposits, fxRateService.getMatrix());
+            snapshots.put(userId, state);
+            if (journaled) {
+                journal.put(userId, state);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        int count = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors();
+        running = true;
+        shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+            shards[i].thread.start();
+        }
+        // Rate changes revalue only the loaded users holding (or reporting in) a currency that moved
+        fxRateService.addListener(currencies -> {
+            for (Shard shard : shards) {
+                shard.submit(() -> shard.applyRates(currencies));
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+        for (Shard shard : shards) {
+            shard.thread.join(5000);
+        }
+        flush();
+    }
+
+    /**
+     * The user's current state, loading it first if this node hasn't seen the user yet
+     */
+    public PortfolioState getState(Long userId) {
+        lastReads.put(userId, System.currentTimeMillis());
+        PortfolioState state = snapshots.get(userId);
+        if (state != null) {
+            return state;
+        }
+        Shard shard = shard(userId);
+        for (int attempt = 0; attempt < loadAttempts; attempt++) {
+            long seen = call(shard, userId, () -> shard.beginLoad(userId));
+            if (seen >= 0) {
+                UserBook loaded = read(userId);
+                state = call(shard, userId, () -> shard.install(userId, loaded, seen));
+            } else {
+                state = snapshots.get(userId);
+            }
+            if (state != null) {
+                return state;
+            }
+            loadRetries.incrementAndGet();
+        }
+        // Still overtaken: load on the shard, where no command can land in between
+        return call(shard, userId, () -> {
+            long seen = shard.beginLoad(userId);
+            return seen >= 0 ? shard.install(userId, read(userId), seen) : snapshots.get(userId);
+        });
+    }
+
+    /**
+     * The user's state if loaded, otherwise one read from the database for this call only, so a batch job over
+     * every user doesn't leave them all loaded
+     */
+    public PortfolioState peekState(Long userId) {
+        PortfolioState state = snapshots.get(userId);
+        if (state != null) {
+            return state;
+        }
+        UserBook book = read(userId);
+        return new PortfolioState(userId, 0, book.baseCurrency, book.accountId,
+                new ArrayList<>(book.positions.values()), book.deposits, fxRateService.getMatrix());
+    }
+
+    /**
+     * A trade's position checkpoint, once its transaction has committed
+     */
+    public void onPositionChanged(Long userId, HoldingUpsertService.Checkpoint checkpoint) {
+        Shard shard = shard(userId);
+        // Inside a write transaction, wait for the commit so the engine never runs ahead of the database
+        AfterCommit.run(() -> shard.submit(() -> shard.applyCheckpoint(userId, checkpoint)));
+    }
+
+    public void onDeposit(Long userId, BigDecimal amount) {
+        Shard shard = shard(userId);
+        AfterCommit.run(() -> shard.submit(() -> shard.applyDeposit(userId, amount)));
+    }
+
+    /**
+     * Applies a price to every loaded user holding the symbol, on all shards
+     */
+    public void onPriceUpdate(String symbol, BigDecimal price) {
+        if (price == null || price.signum() <= 0) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.submit(() -> shard.applyPrice(symbol, price));
+        }
+    }
+
+    /**
+     * Drops the user's state so the next read reloads it, e.g. after a ledger rebuild or a bulk import
+     */
+    public void reload(Long userId) {
+        Shard shard = shard(userId);
+        AfterCommit.run(() -> shard.submit(() -> shard.unload(userId)));
+    }
+
+    /**
+     * Drops users that haven't been read for portfolio.engine.idle-ms; journaled states are still flushed
+     */
+    @Scheduled(fixedDelayString = "${portfolio.engine.evict-interval-ms:60000}")
+    public void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleMs;
+        for (Shard shard : shards) {
+            shard.submit(() -> shard.evictIdle(cutoff));
+        }
+    }
+
+    /**
+     * Writes the journaled states: holding market values and account totals, in one batch per statement
+     */
+    @Scheduled(fixedDelayString = "${portfolio.engine.flush-ms:2000}")
+    public void flush() {
+        flushLock.lock();
+        try {
+            flushJournal();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void flushJournal() {
+        if (journal.isEmpty()) {
+            return;
+        }
+        List<PortfolioState> states = new ArrayList<>();
+        for (Long userId : journal.keySet()) {
+            PortfolioState state = journal.remove(userId);
+            if (state != null) {
+                states.add(state);
+            }
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> holdings = new ArrayList<>();
+        List<Object[]> accounts = new ArrayList<>(states.size());
+        for (PortfolioState state : states) {
+            for (PositionState position : state.positions) {
+                if (position.price == null) {
+                    continue;
+                }
+                BigDecimal value = position.getCurrentValue();
+                BigDecimal profitLoss = value.subtract(position.costBasis);
+                BigDecimal percentage = position.costBasis.signum() > 0
+                        ? profitLoss.divide(position.costBasis, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                        : BigDecimal.ZERO;
+                holdings.add(new Object[] { value, profitLoss, percentage, now, state.userId, position.stockId,
+                        position.sequence });
+            }
+            accounts.add(new Object[] { state.totalCurrentValue, state.totalDeposits,
+                    state.totalCurrentValue.subtract(state.totalDeposits), now, state.userId });
+        }
+
+        int[] accountsWritten;
+        try {
+            accountsWritten = new TransactionTemplate(transactionManager).execute(status -> {
+                jdbcTemplate.batchUpdate(UPDATE_HOLDING_SQL, holdings);
+                return jdbcTemplate.batchUpdate(UPDATE_ACCOUNT_SQL, accounts);
+            });
+        } catch (RuntimeException e) {
+            // Back into the journal unless a newer state has been journaled meanwhile
+            for (PortfolioState state : states) {
+                journal.putIfAbsent(state.userId, state);
+            }
+            flushFailures.incrementAndGet();
+            System.err.println("Portfolio write-behind failed, will retry: " + e.getMessage());
+            return;
+        }
+
+        // Written with SQL, so the cached copies of the written account rows are out of date
+        for (int i = 0; i < states.size(); i++) {
+            PortfolioState state = states.get(i);
+            if (accountsWritten[i] != 0) {
+                evictAccount(state);
+            }
+            readModelCache.onUserChanged(state.userId);
+        }
+        usersFlushed.addAndGet(states.size());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shards.length);
+        stats.put("usersLoaded", snapshots.size());
+        stats.put("loadRetries", loadRetries.get());
+        stats.put("usersEvicted", usersEvicted.get());
+        int queued = 0;
+        for (Shard shard : shards) {
+            queued += shard.queue.size();
+        }
+        stats.put("queuedCommands", queued);
+        stats.put("commandsApplied", commandsApplied.get());
+        stats.put("journaledUsers", journal.size());
+        stats.put("usersFlushed", usersFlushed.get());
+        stats.put("flushFailures", flushFailures.get());
+        return stats;
+    }
+
+    private void evictAccount(PortfolioState state) {
+        Long accountId = state.accountId;
+        if (accountId == null) {
+            // Created after the user was loaded
+            accountId = jdbcTemplate.queryForList(ACCOUNT_ID_SQL, Long.class, state.userId).stream()
+                    .findFirst().orElse(null);
+        }
+        if (accountId != null) {
+            cacheStatsService.evictEntity(Account.class, accountId);
+        }
+    }
+
+    private UserBook read(long userId) {
+        UserBook loaded = new UserBook();
+        jdbcTemplate.query(LOAD_POSITIONS_SQL, rs -> {
+            PositionState position = new PositionState(rs.getLong(1), rs.getString(2), rs.getString(8),
+                    rs.getInt(3), rs.getBigDecimal(4), rs.getBigDecimal(5), rs.getBigDecimal(7), rs.getLong(6));
+            loaded.positions.put(position.stockId, position);
+        }, userId);
+        loaded.deposits = jdbcTemplate.queryForObject(LOAD_DEPOSITS_SQL, BigDecimal.class, userId);
+        jdbcTemplate.query(LOAD_USER_SQL, rs -> {
+            loaded.baseCurrency = rs.getString(1);
+            loaded.accountId = rs.getObject(2, Long.class);
+        }, userId);
+        return loaded;
+    }
+
+    // Runs the command on the shard's thread and waits for its result
+    private <T> T call(Shard shard, Long userId, Supplier<T> command) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        shard.submit(() -> {
+            try {
+                result.complete(command.get());
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        try {
+            return result.get(loadTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted loading portfolio state for user " + userId, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new RuntimeException("Failed to load portfolio state for user " + userId, e);
+        }
+    }
+
+    private Shard shard(long userId) {
+        return shards[(int) Math.floorMod(userId, (long) shards.length)];
+    }
+}
@@ -0,0 +1,332 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.HoldingValue;
+import com.foresight.backend.dto.PortfolioStreamEvent;
+import com.foresight.backend.dto.PortfolioTotals;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-Sent Events stream of a user's portfolio: an initial snapshot followed by per-holding and total deltas.
+ *
+ * Connections are async servlet requests, so an idle dashboard holds no thread. Prices come from the shared
+ * refresh tick rather than per-connection quote calls. Each connection keeps at most one pending price per
+ * symbol (newer ticks overwrite older ones) and only one send in flight, so a slow client gets fewer,
+ * coalesced updates instead of an ever-growing queue. Sends run on their own executor, and a client that hasn't
+ * taken a send within portfolio.stream.send-timeout-ms is disconnected.
+ */
+@Service
+public class PortfolioStreamService {
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    @Qualifier("streamExecutor")
+    private AsyncTaskExecutor sendExecutor;
+
+    @Value("${portfolio.stream.send-timeout-ms:10000}")
+    private long sendTimeoutMs;
+
+    @Value("${portfolio.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${portfolio.stream.heartbeat-ms:25000}")
+    private long heartbeatMs;
+
+    private final Map<Long, Set<Subscription>> subscriptionsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscription>> subscriptionsBySymbol = new ConcurrentHashMap<>();
+
+    public SseEmitter subscribe(Long userId) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscription subscription = new Subscription(userId, emitter);
+
+        emitter.onCompletion(() -> unsubscribe(subscription));
+        emitter.onTimeout(() -> unsubscribe(subscription));
+        emitter.onError(e -> unsubscribe(subscription));
+
+        subscriptionsByUser.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(subscription);
+        dispatch(subscription);
+        return emitter;
+    }
+
+    /**
+     * Called on every price tick; only records the latest price for connections holding the symbol
+     */
+    public void onPriceUpdate(String symbol, BigDecimal price) {
+        Set<Subscription> subscriptions = subscriptionsBySymbol.get(symbol);
+        if (subscriptions == null || price == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.pendingPrices.put(symbol, price);
+        }
+    }
+
+    /**
+     * Called when a user's holdings are added or removed - their streams resend a full snapshot
+     */
+    public void onHoldingsChanged(Long userId) {
+        // Inside a write transaction, wait for the commit so the snapshot reload sees the change
+        AfterCommit.run(() -> requestSnapshot(userId));
+    }
+
+    private void requestSnapshot(Long userId) {
+        Set<Subscription> subscriptions = subscriptionsByUser.get(userId);
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.snapshotRequested.set(true);
+            dispatch(subscription);
+        }
+    }
+
+    public int getActiveConnections() {
+        int count = 0;
+        for (Set<Subscription> subscriptions : subscriptionsByUser.values()) {
+            count += subscriptions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Symbols held by at least one open stream
+     */
+    public Set<String> getStreamedSymbols() {
+        return subscriptionsBySymbol.keySet();
+    }
+
+    /**
+     * Open streams whose portfolio holds the symbol
+     */
+    public int getSubscriberCount(String symbol) {
+        Set<Subscription> subscriptions = subscriptionsBySymbol.get(symbol);
+        return subscriptions != null ? subscriptions.size() : 0;
+    }
+
+    /**
+     * Flushes coalesced deltas (and heartbeats) to every connection with something to say
+     */
+    @Scheduled(fixedDelayString = "${portfolio.stream.flush-interval-ms:1000}")
+    public void flush() {
+        long now = System.currentTimeMillis();
+        for (Set<Subscription> subscriptions : subscriptionsByUser.values()) {
+            for (Subscription subscription : subscriptions) {
+                long sendStartedAt = subscription.sendStartedAt;
+                if (sendStartedAt > 0 && now - sendStartedAt > sendTimeoutMs) {
+                    // Stuck writing to a client that stopped reading: closing the response frees the send
+                    System.err.println("Dropping portfolio stream for user " + subscription.userId
+                            + ": send blocked for " + (now - sendStartedAt) + "ms");
+                    unsubscribe(subscription);
+                    subscription.emitter.completeWithError(new IOException("Send timed out"));
+                    continue;
+                }
+                if (!subscription.pendingPrices.isEmpty()
+                        || subscription.snapshotRequested.get()
+                        || now - subscription.lastSentAt >= heartbeatMs) {
+                    dispatch(subscription);
+                }
+            }
+        }
+    }
+
+    private void dispatch(Subscription subscription) {
+        // One send per connection at a time; anything arriving meanwhile is picked up by the next flush
+        if (subscription.closed || !subscription.sending.compareAndSet(false, true)) {
+            return;
+        }
+        sendExecutor.execute(() -> {
+            subscription.sendStartedAt = System.currentTimeMillis();
+            try {
+                if (!subscription.closed) {
+                    subscription.drain();
+                }
+            } catch (Exception e) {
+                unsubscribe(subscription);
+                subscription.emitter.completeWithError(e);
+            } finally {
+                subscription.sendStartedAt = 0;
+                subscription.sending.set(false);
+            }
+        });
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        // Marked first: a snapshot still registering symbols checks this afterwards and takes them back out
+        subscription.closed = true;
+        Set<Subscription> userSubscriptions = subscriptionsByUser.get(subscription.userId);
+        if (userSubscriptions != null) {
+            userSubscriptions.remove(subscription);
+        }
+        for (String symbol : subscription.positions.keySet()) {
+            Set<Subscription> symbolSubscriptions = subscriptionsBySymbol.get(symbol);
+            if (symbolSubscriptions != null) {
+                symbolSubscriptions.remove(subscription);
+            }
+        }
+    }
+
+    private final class Subscription {
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final Map<String, BigDecimal> pendingPrices = new ConcurrentHashMap<>();
+        private final AtomicBoolean snapshotRequested = new AtomicBoolean(true);
+        private final AtomicBoolean sending = new AtomicBoolean(false);
+        // Only touched by the thread currently draining this subscription
+        private volatile Map<String, Position> positions = new HashMap<>();
+        // Currency the totals are sent in, taken from the holdings at each snapshot
+        private volatile String baseCurrency = "USD";
+        private volatile long lastSentAt = System.currentTimeMillis();
+        // When the send in flight started, 0 when idle
+        private volatile long sendStartedAt;
+        private volatile boolean closed;
+
+        private Subscription(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        private void drain() throws IOException {
+            if (snapshotRequested.getAndSet(false)) {
+                sendSnapshot();
+                return;
+            }
+
+            List<HoldingValue> changed = new ArrayList<>();
+            for (Map.Entry<String, BigDecimal> entry : pendingPrices.entrySet()) {
+                String symbol = entry.getKey();
+                BigDecimal price = entry.getValue();
+                pendingPrices.remove(symbol, price);
+
+                Position position = positions.get(symbol);
+                if (position != null && (position.price == null || position.price.compareTo(price) != 0)) {
+                    position.price = price;
+                    changed.add(position.toValue());
+                }
+            }
+
+            if (!changed.isEmpty()) {
+                send("delta", new PortfolioStreamEvent(changed, totals(), LocalDateTime.now()));
+            } else if (System.currentTimeMillis() - lastSentAt >= heartbeatMs) {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+                lastSentAt = System.currentTimeMillis();
+            }
+        }
+
+        private void sendSnapshot() throws IOException {
+            Map<String, Position> loaded = new HashMap<>();
+            for (PortfolioHolding holding : portfolioHoldingRepository.findByUserId(userId)) {
+                loaded.put(holding.getStock().getSymbol(), new Position(holding));
+                baseCurrency = holding.getUser().getBaseCurrency();
+            }
+
+            for (String symbol : positions.keySet()) {
+                if (!loaded.containsKey(symbol)) {
+                    Set<Subscription> symbolSubscriptions = subscriptionsBySymbol.get(symbol);
+                    if (symbolSubscriptions != null) {
+                        symbolSubscriptions.remove(this);
+                    }
+                }
+            }
+            // Published before registering, so an unsubscribe from here on removes the new symbols too
+            positions = loaded;
+            for (String symbol : loaded.keySet()) {
+                subscriptionsBySymbol.computeIfAbsent(symbol, s -> ConcurrentHashMap.newKeySet()).add(this);
+            }
+            if (closed) {
+                // Unsubscribed while loading: don't leave this connection registered for ticks
+                for (String symbol : loaded.keySet()) {
+                    Set<Subscription> symbolSubscriptions = subscriptionsBySymbol.get(symbol);
+                    if (symbolSubscriptions != null) {
+                        symbolSubscriptions.remove(this);
+                    }
+                }
+                return;
+            }
+            pendingPrices.clear();
+
+            List<HoldingValue> holdings = new ArrayList<>();
+            for (Position position : loaded.values()) {
+                holdings.add(position.toValue());
+            }
+            send("snapshot", new PortfolioStreamEvent(holdings, totals(), LocalDateTime.now()));
+        }
+
+        private void send(String eventName, PortfolioStreamEvent event) throws IOException {
+            emitter.send(SseEmitter.event().name(eventName).data(event));
+            lastSentAt = System.currentTimeMillis();
+        }
+
+        private PortfolioTotals totals() {
+            FxRateService.Matrix rates = fxRateService.getMatrix();
+            int base = rates.index(baseCurrency);
+            BigDecimal totalInvested = BigDecimal.ZERO;
+            BigDecimal totalCurrentValue = BigDecimal.ZERO;
+            for (Position position : positions.values()) {
+                int currency = rates.index(position.currency);
+                totalInvested = totalInvested.add(rates.convert(position.totalInvested, currency, base));
+                totalCurrentValue = totalCurrentValue.add(rates.convert(position.currentValue(), currency, base));
+            }
+
+            BigDecimal totalProfitLoss = totalCurrentValue.subtract(totalInvested);
+            BigDecimal totalProfitLossPercentage = totalInvested.compareTo(BigDecimal.ZERO) > 0
+                    ? totalProfitLoss.divide(totalInvested, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                    : BigDecimal.ZERO;
+            return new PortfolioTotals(totalInvested, totalCurrentValue, totalProfitLoss, totalProfitLossPercentage);
+        }
+    }
+
+    private static final class Position {
+        private final Long holdingId;
+        private final String symbol;
+        private final String currency;
+        private final Integer quantity;
+        private final BigDecimal totalInvested;
+        private BigDecimal price;
+
+        private Position(PortfolioHolding holding) {
+            this.holdingId = holding.getId();
+            this.symbol = holding.getStock().getSymbol();
+            this.currency = holding.getStock().getCurrency();
+            this.quantity = holding.getQuantity();
+            this.totalInvested = holding.getTotalInvested();
+            this.price = holding.getStock().getCurrentPrice();
+        }
+
+        private BigDecimal currentValue() {
+            return price != null ? price.multiply(BigDecimal.valueOf(quantity)) : BigDecimal.ZERO;
+        }
+
+        private HoldingValue toValue() {
+            BigDecimal currentValue = currentValue();
+            BigDecimal profitLoss = currentValue.subtract(totalInvested);
+            BigDecimal profitLossPercentage = totalInvested.compareTo(BigDecimal.ZERO) > 0
+                    ? profitLoss.divide(totalInvested, 4, RoundingMode.HALF_UP).multiply(BigDecimal.valueOf(100))
+                    : BigDecimal.ZERO;
+            return new HoldingValue(holdingId, symbol, quantity, price, currentValue, profitLoss, profitLossPercentage);
+        }
+    }
+}
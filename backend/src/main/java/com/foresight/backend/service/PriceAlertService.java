@@ -0,0 +1,430 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.AlertNotification;
+import com.foresight.backend.dto.PriceAlertItem;
+import com.foresight.backend.dto.PriceAlertRequest;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.StockRepository;
+import com.foresight.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Price and P&L alerts, checked on every price tick.
+ *
+ * Each symbol's alerts live in an {@link AlertIndex}, so a tick costs a binary search plus the alerts it actually
+ * triggers, however many alerts there are. A P&L threshold is turned into the price that reaches it from the
+ * holding's average cost, and moved whenever a trade changes that cost. An alert fires once when the price
+ * crosses its level and is rearmed only after the price has moved back by its hysteresis, so a price hovering
+ * around a level doesn't fire it over and over. Firings are delivered in batches on /queue/alerts/{userId}, and
+ * the armed flags are written back with them so a restart carries on where it stopped.
+ */
+@Service
+public class PriceAlertService {
+
+    public enum Kind {
+        PRICE_ABOVE, PRICE_BELOW, PNL_ABOVE, PNL_BELOW;
+
+        boolean isAbove() {
+            return this == PRICE_ABOVE || this == PNL_ABOVE;
+        }
+
+        boolean isPnl() {
+            return this == PNL_ABOVE || this == PNL_BELOW;
+        }
+    }
+
+    private static final String ALERT_SQL =
+            "SELECT a.id, a.user_id, s.symbol, a.kind, a.threshold, a.hysteresis_pct, a.armed, a.last_triggered_at, " +
+            "a.last_triggered_price, a.created_at, h.quantity, h.total_invested, s.current_price " +
+            "FROM price_alerts a JOIN stocks s ON s.id = a.stock_id " +
+            "LEFT JOIN portfolio_holdings h ON h.user_id = a.user_id AND h.stock_id = a.stock_id";
+
+    private static final String PNL_KINDS = " AND a.kind IN ('PNL_ABOVE', 'PNL_BELOW')";
+
+    private static final String INSERT_SQL =
+            "INSERT INTO price_alerts (user_id, stock_id, kind, threshold, hysteresis_pct, armed, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, TRUE, ?)";
+
+    private static final String NOTIFY_SQL =
+            "SELECT a.id, a.user_id, s.symbol, a.kind, a.threshold FROM price_alerts a " +
+            "JOIN stocks s ON s.id = a.stock_id WHERE a.id IN ";
+
+    private static final String ARMED_SQL = "UPDATE price_alerts SET armed = ? WHERE id = ?";
+
+    private static final String TRIGGERED_SQL =
+            "UPDATE price_alerts SET last_triggered_at = ?, last_triggered_price = ? WHERE id = ?";
+
+    private static final int NOTIFY_CHUNK = 500;
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Value("${alerts.hysteresis-pct:1.0}")
+    private BigDecimal defaultHysteresisPct;
+
+    // Below this a price jittering around the threshold fires and rearms the alert on alternate ticks
+    @Value("${alerts.min-hysteresis-pct:0.1}")
+    private BigDecimal minHysteresisPct;
+
+    @Value("${alerts.load.fetch-size:1000}")
+    private int fetchSize;
+
+    private final Map<String, AlertIndex> indexes = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Fired> fired = new ConcurrentLinkedQueue<>();
+    // Armed flags changed since the last delivery, latest per alert
+    private final Map<Long, Boolean> armedChanges = new ConcurrentHashMap<>();
+    // Held while notifying and writing, so not the monitor, which would pin a virtual thread's carrier
+    private final ReentrantLock deliverLock = new ReentrantLock();
+
+    private static class Fired {
+        private final long alertId;
+        private final BigDecimal price;
+        private final LocalDateTime at;
+
+        Fired(long alertId, BigDecimal price, LocalDateTime at) {
+            this.alertId = alertId;
+            this.price = price;
+            this.at = at;
+        }
+    }
+
+    // Called under the index's lock, so it only queues
+    private final AlertIndex.Listener listener = new AlertIndex.Listener() {
+        @Override
+        public void onFired(long alertId, double price) {
+            fired.add(new Fired(alertId, BigDecimal.valueOf(price), LocalDateTime.now()));
+            armedChanges.put(alertId, false);
+        }
+
+        @Override
+        public void onRearmed(long alertId) {
+            armedChanges.put(alertId, true);
+        }
+    };
+
+    /**
+     * Indexes every stored alert with its stored armed flag
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.currentTimeMillis();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        int[] placed = new int[1];
+        transaction.executeWithoutResult(status -> {
+            // Inside a transaction so PostgreSQL honours the fetch size and streams the rows
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(ALERT_SQL);
+                statement.setFetchSize(fetchSize);
+                return statement;
+            }, rs -> {
+                if (place(rs, false) != null) {
+                    placed[0]++;
+                }
+            });
+        });
+        if (placed[0] > 0) {
+            System.out.println("Indexed " + placed[0] + " price alerts in " + (System.currentTimeMillis() - started) + "ms");
+        }
+    }
+
+    public PriceAlertItem createAlert(PriceAlertRequest request) {
+        if (request.getUserId() == null || !userRepository.existsById(request.getUserId())) {
+            throw new IllegalArgumentException("Unknown user");
+        }
+        if (request.getSymbol() == null || request.getKind() == null || request.getThreshold() == null) {
+            throw new IllegalArgumentException("symbol, kind and threshold are required");
+        }
+        Kind kind = Kind.valueOf(request.getKind().toUpperCase());
+        BigDecimal threshold = request.getThreshold();
+        if (kind.isPnl() ? threshold.compareTo(HUNDRED.negate()) <= 0 : threshold.signum() <= 0) {
+            throw new IllegalArgumentException(kind.isPnl() ? "P&L threshold must be above -100%" : "Price must be positive");
+        }
+        BigDecimal hysteresis = request.getHysteresisPct() != null ? request.getHysteresisPct() : defaultHysteresisPct;
+        if (hysteresis.compareTo(minHysteresisPct) < 0 || hysteresis.compareTo(BigDecimal.valueOf(50)) > 0) {
+            throw new IllegalArgumentException("hysteresisPct must be between " + minHysteresisPct.toPlainString() + " and 50");
+        }
+        Stock stock = stockRepository.findBySymbol(request.getSymbol().toUpperCase())
+                .orElseThrow(() -> new IllegalArgumentException("Unknown symbol " + request.getSymbol()));
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(INSERT_SQL, new String[] { "id" });
+            statement.setLong(1, request.getUserId());
+            statement.setLong(2, stock.getId());
+            statement.setString(3, kind.name());
+            statement.setBigDecimal(4, threshold);
+            statement.setBigDecimal(5, hysteresis);
+            statement.setTimestamp(6, Timestamp.valueOf(LocalDateTime.now()));
+            return statement;
+        }, keyHolder);
+        long id = keyHolder.getKey().longValue();
+        readYourWrites.onUserWrite(request.getUserId());
+
+        List<PriceAlertItem> created = jdbcTemplate.query(ALERT_SQL + " WHERE a.id = ?", (rs, row) -> {
+            // Armed unless the price is already past the level, so only a crossing fires it
+            Boolean armed = place(rs, true);
+            PriceAlertItem item = item(rs);
+            item.setArmed(armed == null || armed);
+            return item;
+        }, id);
+        return created.get(0);
+    }
+
+    @Transactional(readOnly = true)
+    public List<PriceAlertItem> getAlerts(Long userId) {
+        return jdbcTemplate.query(ALERT_SQL + " WHERE a.user_id = ? ORDER BY a.id", (rs, row) -> item(rs), userId);
+    }
+
+    /**
+     * @return false when the user has no such alert
+     */
+    public boolean deleteAlert(Long userId, Long alertId) {
+        List<String> symbols = jdbcTemplate.queryForList(
+                "SELECT s.symbol FROM price_alerts a JOIN stocks s ON s.id = a.stock_id WHERE a.id = ? AND a.user_id = ?",
+                String.class, alertId, userId);
+        if (symbols.isEmpty()) {
+            return false;
+        }
+        jdbcTemplate.update("DELETE FROM price_alerts WHERE id = ?", alertId);
+        readYourWrites.onUserWrite(userId);
+        unplace(symbols.get(0), alertId);
+        armedChanges.remove(alertId);
+        return true;
+    }
+
+    public boolean hasAlerts(Long stockId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM price_alerts WHERE stock_id = ? LIMIT 1", Long.class, stockId)
+                .isEmpty();
+    }
+
+    /**
+     * Fires and rearms the symbol's alerts for a new price
+     */
+    public void onPriceUpdate(String symbol, BigDecimal price) {
+        AlertIndex index = indexes.get(symbol);
+        if (index == null || price == null || price.signum() <= 0) {
+            return;
+        }
+        synchronized (index) {
+            index.onPrice(price.doubleValue(), listener);
+        }
+    }
+
+    /**
+     * Moves the P&L alerts on a position to its new average cost, once the trade has committed
+     */
+    public void onPositionChanged(Long userId, Long stockId) {
+        AfterCommit.run(() -> replace(ALERT_SQL + " WHERE a.user_id = ? AND a.stock_id = ?" + PNL_KINDS, userId, stockId));
+    }
+
+    /**
+     * Moves all the user's P&L alerts after their holdings have been rewritten
+     */
+    public void onHoldingsRebuilt(Long userId) {
+        AfterCommit.run(() -> replace(ALERT_SQL + " WHERE a.user_id = ?" + PNL_KINDS, userId));
+    }
+
+    /**
+     * Sends the alerts fired since the last run and stores the armed flags that changed
+     */
+    @Scheduled(fixedDelayString = "${alerts.flush-ms:250}")
+    public void deliver() {
+        deliverLock.lock();
+        try {
+            deliverFired();
+        } finally {
+            deliverLock.unlock();
+        }
+    }
+
+    private void deliverFired() {
+        List<Fired> batch = new ArrayList<>();
+        for (Fired next; (next = fired.poll()) != null; ) {
+            batch.add(next);
+        }
+        List<Object[]> armedRows = new ArrayList<>();
+        for (Long alertId : armedChanges.keySet()) {
+            Boolean armed = armedChanges.remove(alertId);
+            if (armed != null) {
+                armedRows.add(new Object[] { armed, alertId });
+            }
+        }
+        if (batch.isEmpty() && armedRows.isEmpty()) {
+            return;
+        }
+
+        for (int from = 0; from < batch.size(); from += NOTIFY_CHUNK) {
+            notify(batch.subList(from, Math.min(batch.size(), from + NOTIFY_CHUNK)));
+        }
+
+        List<Object[]> triggeredRows = new ArrayList<>(batch.size());
+        for (Fired event : batch) {
+            triggeredRows.add(new Object[] { Timestamp.valueOf(event.at), event.price, event.alertId });
+        }
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(ARMED_SQL, armedRows);
+                jdbcTemplate.batchUpdate(TRIGGERED_SQL, triggeredRows);
+            });
+        } catch (RuntimeException e) {
+            // Keep the flags for the next run unless a newer change has come in
+            for (Object[] row : armedRows) {
+                armedChanges.putIfAbsent((Long) row[1], (Boolean) row[0]);
+            }
+            System.err.println("Failed to store alert states: " + e.getMessage());
+        }
+    }
+
+    public int getIndexedCount() {
+        int count = 0;
+        for (AlertIndex index : indexes.values()) {
+            synchronized (index) {
+                count += index.size();
+            }
+        }
+        return count;
+    }
+
+    private void notify(List<Fired> events) {
+        Map<Long, AlertNotification> notifications = new HashMap<>();
+        Map<Long, Long> owners = new HashMap<>();
+        String placeholders = String.join(", ", Collections.nCopies(events.size(), "?"));
+        Object[] ids = events.stream().map(event -> event.alertId).toArray();
+        // Symbol, kind and threshold per alert; price and time are filled in per firing
+        jdbcTemplate.query(NOTIFY_SQL + "(" + placeholders + ")", rs -> {
+            long alertId = rs.getLong(1);
+            owners.put(alertId, rs.getLong(2));
+            notifications.put(alertId, new AlertNotification(alertId, rs.getString(3), rs.getString(4),
+                    rs.getBigDecimal(5), null, null));
+        }, ids);
+
+        for (Fired event : events) {
+            AlertNotification alert = notifications.get(event.alertId);
+            if (alert == null) {
+                // Deleted since it fired
+                continue;
+            }
+            messagingTemplate.convertAndSend("/queue/alerts/" + owners.get(event.alertId),
+                    new AlertNotification(event.alertId, alert.getSymbol(), alert.getKind(), alert.getThreshold(),
+                            event.price, event.at));
+        }
+    }
+
+    private void replace(String sql, Object... args) {
+        jdbcTemplate.query(sql, rs -> {
+            unplace(rs.getString(3), rs.getLong(1));
+            place(rs, true);
+        }, args);
+    }
+
+    private void unplace(String symbol, long alertId) {
+        AlertIndex index = indexes.get(symbol);
+        if (index != null) {
+            synchronized (index) {
+                index.remove(alertId);
+            }
+        }
+    }
+
+    /**
+     * Adds an {@link #ALERT_SQL} row to its symbol's index
+     *
+     * @param recomputeArmed arm it from the current price instead of the stored flag
+     * @return whether it was placed armed, or null when it can't be placed (a P&L alert without a position)
+     */
+    private Boolean place(ResultSet rs, boolean recomputeArmed) throws SQLException {
+        long id = rs.getLong(1);
+        String symbol = rs.getString(3);
+        Kind kind = Kind.valueOf(rs.getString(4));
+        BigDecimal threshold = rs.getBigDecimal(5);
+        BigDecimal hysteresis = rs.getBigDecimal(6).divide(HUNDRED);
+
+        BigDecimal level = threshold;
+        if (kind.isPnl()) {
+            int quantity = rs.getInt(11);
+            BigDecimal invested = rs.getBigDecimal(12);
+            if (quantity <= 0 || invested == null || invested.signum() <= 0) {
+                return null;
+            }
+            // The price at which the holding's P&L is threshold percent of its cost
+            level = invested.multiply(BigDecimal.ONE.add(threshold.divide(HUNDRED)))
+                    .divide(BigDecimal.valueOf(quantity), MathContext.DECIMAL64);
+        }
+        BigDecimal rearm = kind.isAbove()
+                ? level.multiply(BigDecimal.ONE.subtract(hysteresis))
+                : level.multiply(BigDecimal.ONE.add(hysteresis));
+
+        AlertIndex index = indexes.computeIfAbsent(symbol, s -> new AlertIndex());
+        synchronized (index) {
+            boolean armed = rs.getBoolean(7);
+            if (recomputeArmed) {
+                double price = index.getLastPrice();
+                if (Double.isNaN(price) && rs.getBigDecimal(13) != null) {
+                    price = rs.getBigDecimal(13).doubleValue();
+                }
+                armed = Double.isNaN(price) || (kind.isAbove() ? price < level.doubleValue() : price > level.doubleValue());
+                if (armed != rs.getBoolean(7)) {
+                    armedChanges.put(id, armed);
+                }
+            }
+            index.add(id, level.doubleValue(), rearm.doubleValue(), kind.isAbove(), armed);
+            return armed;
+        }
+    }
+
+    private PriceAlertItem item(ResultSet rs) throws SQLException {
+        long id = rs.getLong(1);
+        // The stored flag may be behind a change not yet written
+        Boolean armed = armedChanges.get(id);
+        Timestamp triggeredAt = rs.getTimestamp(8);
+        return new PriceAlertItem(id, rs.getString(3), rs.getString(4), rs.getBigDecimal(5), rs.getBigDecimal(6),
+                armed != null ? armed : rs.getBoolean(7),
+                triggeredAt != null ? triggeredAt.toLocalDateTime() : null,
+                rs.getBigDecimal(9), rs.getTimestamp(10).toLocalDateTime());
+    }
+}
@@ -0,0 +1,69 @@
+package com.foresight.backend.service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket: up to {@code capacity} calls in a burst, refilled continuously at {@code permitsPerMinute}.
+ * Used to keep bulk work (e.g. import enrichment) inside the Finnhub plan's per-minute quota.
+ */
+public final class RateLimiter {
+
+    private final double capacity;
+    private final double permitsPerNano;
+    private double available;
+    private long lastRefill;
+
+    public RateLimiter(int permitsPerMinute, int capacity) {
+        this.capacity = capacity;
+        this.permitsPerNano = permitsPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        this.available = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes a permit if one is free right now
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (available >= 1.0) {
+            available -= 1.0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Waits up to the timeout for a permit; returns false if none became free in time
+     */
+    public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            long waitNanos;
+            synchronized (this) {
+                refill();
+                if (available >= 1.0) {
+                    available -= 1.0;
+                    return true;
+                }
+                waitNanos = (long) Math.ceil((1.0 - available) / permitsPerNano);
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || waitNanos > remaining) {
+                return false;
+            }
+            // Sleep outside the lock so other callers (and virtual threads) aren't blocked on the monitor
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    public synchronized double getAvailablePermits() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        available = Math.min(capacity, available + (now - lastRefill) * permitsPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,203 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Versioned, pre-serialized read models for the per-user views the dashboard keeps polling (account, holdings,
+ * analysis).
+ *
+ * Each user has a version that moves whenever something those views show changes: a trade, a deposit, a rebuilt
+ * ledger, stored holding values, or a new price for a symbol they hold. The version is the ETag, so a conditional
+ * request for unchanged data is answered from memory without a query. A view is rendered to JSON once per version
+ * and the same bytes (plus a gzipped copy for large ones) are served until the version moves again. ETags carry a
+ * per-process epoch, so none issued before a restart can match.
+ */
+@Service
+public class ReadModelCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${readmodel.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${readmodel.gzip.min-bytes:2048}")
+    private int gzipMinBytes;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> symbolsByUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<Long>> usersBySymbol = new ConcurrentHashMap<>();
+    private final Map<String, BigDecimal> lastPrices = new ConcurrentHashMap<>();
+    // Least recently used first
+    private final LinkedHashMap<String, View> views = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * One rendered view at one version
+     */
+    public class View {
+        private final long version;
+        private final String etag;
+        private final byte[] json;
+        private volatile byte[] gzipped;
+
+        View(long version, String etag, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.json = json;
+        }
+
+        // Null when the view must not be revalidated against (e.g. it was built from stale prices)
+        public String getEtag() {
+            return etag;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public boolean isCompressible() {
+            return json.length >= gzipMinBytes;
+        }
+
+        public byte[] getGzipped() {
+            byte[] compressed = gzipped;
+            if (compressed == null) {
+                compressed = gzip(json);
+                gzipped = compressed;
+            }
+            return compressed;
+        }
+    }
+
+    public String currentEtag(Long userId) {
+        return etag(userId, version(userId));
+    }
+
+    /**
+     * The view at the user's current version, rendering and caching it if the cached copy is older
+     *
+     * @param cacheable whether a freshly built model may be cached and given an ETag; null for always
+     */
+    public <T> View render(String name, Long userId, Supplier<T> model, Predicate<T> cacheable) {
+        // Read before building, so a change landing mid-build leaves this copy behind the new version
+        long version = version(userId);
+        String key = name + ":" + userId;
+        synchronized (views) {
+            View cached = views.get(key);
+            if (cached != null && cached.version == version) {
+                return cached;
+            }
+        }
+
+        T value = model.get();
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Failed to serialize " + name + " for user " + userId, e);
+        }
+        if (cacheable != null && !cacheable.test(value)) {
+            return new View(version, null, json);
+        }
+
+        View view = new View(version, etag(userId, version), json);
+        synchronized (views) {
+            View cached = views.get(key);
+            if (cached == null || cached.version < version) {
+                views.put(key, view);
+                if (views.size() > maxEntries) {
+                    views.remove(views.keySet().iterator().next());
+                }
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Moves the user's version, after the surrounding transaction commits if there is one
+     */
+    public void onUserChanged(Long userId) {
+        AfterCommit.run(() -> bump(userId));
+    }
+
+    /**
+     * Records which symbols the user's views show, so their prices move the user's version
+     */
+    public void trackSymbols(Long userId, Collection<String> symbols) {
+        Set<String> current = new HashSet<>(symbols);
+        Set<String> previous = symbolsByUser.put(userId, current);
+        if (previous != null) {
+            for (String symbol : previous) {
+                if (!current.contains(symbol)) {
+                    usersBySymbol.computeIfPresent(symbol, (s, users) -> {
+                        users.remove(userId);
+                        return users.isEmpty() ? null : users;
+                    });
+                }
+            }
+        }
+        for (String symbol : current) {
+            usersBySymbol.computeIfAbsent(symbol, s -> ConcurrentHashMap.newKeySet()).add(userId);
+        }
+    }
+
+    /**
+     * Called on every price tick; moves the version of each user showing the symbol if the price changed
+     */
+    public void onPriceUpdate(String symbol, BigDecimal price) {
+        Set<Long> users = usersBySymbol.get(symbol);
+        if (users == null || price == null) {
+            return;
+        }
+        BigDecimal previous = lastPrices.put(symbol, price);
+        if (previous != null && previous.compareTo(price) == 0) {
+            return;
+        }
+        for (Long userId : users) {
+            bump(userId);
+        }
+    }
+
+    private long version(Long userId) {
+        AtomicLong version = versions.get(userId);
+        return version != null ? version.get() : 0;
+    }
+
+    private void bump(Long userId) {
+        versions.computeIfAbsent(userId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    private String etag(Long userId, long version) {
+        return "\"" + epoch + "-" + userId + "-" + version + "\"";
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
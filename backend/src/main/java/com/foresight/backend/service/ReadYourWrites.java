@@ -0,0 +1,56 @@
+package com.foresight.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * When each user last changed their own data, so their next reads can avoid replicas that haven't caught up.
+ *
+ * Only tracked when read replicas are configured (datasource.replica.urls). A replica serves a user's reads once
+ * the heartbeat it holds is newer than the user's last write; see ReplicaRoutingDataSource.
+ */
+@Service
+public class ReadYourWrites {
+
+    @Value("${datasource.replica.urls:}")
+    private String replicaUrls;
+
+    @Value("${datasource.replica.max-lag-ms:5000}")
+    private long maxLagMs;
+
+    private final Map<Long, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * Records a write by the user; inside a transaction, once it has committed
+     */
+    public void onUserWrite(Long userId) {
+        if (userId == null || replicaUrls.isBlank()) {
+            return;
+        }
+        // The heartbeat that proves a replica has the write must be stamped after the write commits
+        AfterCommit.run(() -> lastWrites.put(userId, System.currentTimeMillis()));
+    }
+
+    /**
+     * @return epoch millis of the user's last committed write, or 0 if none is tracked
+     */
+    public long getLastWrite(Long userId) {
+        Long writtenAt = lastWrites.get(userId);
+        return writtenAt != null ? writtenAt : 0;
+    }
+
+    public int getTrackedUsers() {
+        return lastWrites.size();
+    }
+
+    // A usable replica is at most max-lag behind as of its last check, so a write twice that old is on all of them
+    @Scheduled(fixedDelayString = "${datasource.replica.max-lag-ms:5000}")
+    public void prune() {
+        long cutoff = System.currentTimeMillis() - 2 * maxLagMs;
+        lastWrites.values().removeIf(writtenAt -> writtenAt < cutoff);
+    }
+}
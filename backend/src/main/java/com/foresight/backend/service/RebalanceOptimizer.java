@@ -0,0 +1,285 @@
+package com.foresight.backend.service;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Whole-share trades that bring a portfolio's allocation groups back within tolerance of their target weights.
+ *
+ * Positions belong to a group (a symbol or a sector target) or to none, in which case they are left as they are.
+ * Only groups that have drifted out of their band trade, and they trade back to the target itself, so a group
+ * inside its band costs no trades at all. A group over target sells from its largest positions first, usually
+ * one trade; a group under target buys a single position, its largest that one share of fits the budget. Sales are
+ * booked before buys, so their proceeds fund them. When the cash can't cover every shortfall, each group's budget
+ * is scaled down alike.
+ *
+ * Buys are rounded down to whole shares, then the leftover cash is handed out a share at a time to the group
+ * furthest below target (a largest-remainder pass on a heap), as long as the share brings it closer. So the whole
+ * plan costs O(n log n) in positions, however large the share counts are.
+ */
+public final class RebalanceOptimizer {
+
+    private RebalanceOptimizer() {
+    }
+
+    public static final class Result {
+        private final int[] trades;
+        private final double totalValue;
+        private final double cashAfter;
+        private final double[] weightsBefore;
+        private final double[] weightsAfter;
+        private final double[] targets;
+        private final boolean targetsScaled;
+        private final boolean cashShort;
+        private final boolean[] unreachable;
+
+        Result(int[] trades, double totalValue, double cashAfter, double[] weightsBefore, double[] weightsAfter,
+               double[] targets, boolean targetsScaled, boolean cashShort, boolean[] unreachable) {
+            this.trades = trades;
+            this.totalValue = totalValue;
+            this.cashAfter = cashAfter;
+            this.weightsBefore = weightsBefore;
+            this.weightsAfter = weightsAfter;
+            this.targets = targets;
+            this.targetsScaled = targetsScaled;
+            this.cashShort = cashShort;
+            this.unreachable = unreachable;
+        }
+
+        /**
+         * Shares to trade per position: positive to buy, negative to sell
+         */
+        public int[] getTrades() {
+            return trades;
+        }
+
+        public double getTotalValue() {
+            return totalValue;
+        }
+
+        public double getCashAfter() {
+            return cashAfter;
+        }
+
+        public double[] getWeightsBefore() {
+            return weightsBefore;
+        }
+
+        public double[] getWeightsAfter() {
+            return weightsAfter;
+        }
+
+        /**
+         * Targets actually aimed for, after any scaling
+         */
+        public double[] getTargets() {
+            return targets;
+        }
+
+        /**
+         * Whether the targets and the untargeted positions came to more than the whole portfolio
+         */
+        public boolean isTargetsScaled() {
+            return targetsScaled;
+        }
+
+        /**
+         * Whether buys were scaled down for lack of cash
+         */
+        public boolean isCashShort() {
+            return cashShort;
+        }
+
+        /**
+         * Groups under target with no position to buy
+         */
+        public boolean[] getUnreachable() {
+            return unreachable;
+        }
+    }
+
+    /**
+     * @param prices     per position, in the currency the weights are measured in
+     * @param quantities shares held per position
+     * @param groups     group per position, or -1 to leave the position alone
+     * @param targets    target weight per group, as a fraction of positions plus cash
+     * @param tolerances drift allowed per group before it trades, as a fraction
+     * @param cash       cash available to buy with
+     */
+    public static Result optimize(double[] prices, int[] quantities, int[] groups, double[] targets,
+                                  double[] tolerances, double cash) {
+        int n = prices.length;
+        int groupCount = targets.length;
+        int[] trades = new int[n];
+
+        double totalValue = Math.max(cash, 0);
+        double untargeted = 0;
+        double[] groupValues = new double[groupCount];
+        int[] memberCounts = new int[groupCount + 1];
+        for (int i = 0; i < n; i++) {
+            double value = prices[i] * quantities[i];
+            totalValue += value;
+            if (groups[i] < 0) {
+                untargeted += value;
+            } else {
+                groupValues[groups[i]] += value;
+                memberCounts[groups[i] + 1]++;
+            }
+        }
+
+        double[] weightsBefore = new double[groupCount];
+        double[] aims = targets.clone();
+        if (totalValue <= 0) {
+            return new Result(trades, 0, Math.max(cash, 0), weightsBefore, weightsBefore.clone(), aims, false, false,
+                    new boolean[groupCount]);
+        }
+        for (int g = 0; g < groupCount; g++) {
+            weightsBefore[g] = groupValues[g] / totalValue;
+        }
+
+        // Positions without a target keep their share; the targets have to fit in what is left
+        double targetSum = 0;
+        for (double target : targets) {
+            targetSum += target;
+        }
+        double room = Math.max(0, 1 - untargeted / totalValue);
+        boolean targetsScaled = targetSum > room + 1e-9;
+        if (targetsScaled) {
+            for (int g = 0; g < groupCount; g++) {
+                aims[g] = targets[g] * room / targetSum;
+            }
+        }
+
+        // Members of each group, by descending value
+        for (int g = 0; g < groupCount; g++) {
+            memberCounts[g + 1] += memberCounts[g];
+        }
+        int[] members = new int[memberCounts[groupCount]];
+        int[] fill = Arrays.copyOf(memberCounts, groupCount);
+        for (int i = 0; i < n; i++) {
+            if (groups[i] >= 0) {
+                members[fill[groups[i]]++] = i;
+            }
+        }
+        for (int g = 0; g < groupCount; g++) {
+            sortByValueDescending(members, memberCounts[g], memberCounts[g + 1], prices, quantities);
+        }
+
+        double available = Math.max(cash, 0);
+        double[] after = groupValues.clone();
+
+        // Sales first: their proceeds are cash for the buys
+        for (int g = 0; g < groupCount; g++) {
+            double excess = groupValues[g] - aims[g] * totalValue;
+            if (excess <= tolerances[g] * totalValue) {
+                continue;
+            }
+            for (int m = memberCounts[g]; m < memberCounts[g + 1] && excess > 0; m++) {
+                int i = members[m];
+                if (excess < prices[i] / 2) {
+                    // A share of this one overshoots more than it helps; a cheaper one further down may not
+                    continue;
+                }
+                int shares = (int) Math.min(quantities[i], Math.round(excess / prices[i]));
+                trades[i] -= shares;
+                excess -= shares * prices[i];
+                available += shares * prices[i];
+                after[g] -= shares * prices[i];
+            }
+        }
+
+        double[] shortfalls = new double[groupCount];
+        boolean[] unreachable = new boolean[groupCount];
+        double totalShortfall = 0;
+        for (int g = 0; g < groupCount; g++) {
+            double shortfall = aims[g] * totalValue - groupValues[g];
+            if (shortfall <= tolerances[g] * totalValue) {
+                continue;
+            }
+            if (memberCounts[g] == memberCounts[g + 1]) {
+                unreachable[g] = true;
+                continue;
+            }
+            shortfalls[g] = shortfall;
+            totalShortfall += shortfall;
+        }
+        double scale = totalShortfall > available ? available / totalShortfall : 1;
+        boolean cashShort = scale < 1;
+
+        // One buyer per group: the largest member one share of fits the budget, else the cheapest
+        int[] buyers = new int[groupCount];
+        double[] remaining = new double[groupCount];
+        PriorityQueue<Integer> furthestBelow = new PriorityQueue<>(
+                (a, b) -> Double.compare(remaining[b], remaining[a]));
+        for (int g = 0; g < groupCount; g++) {
+            if (shortfalls[g] <= 0) {
+                continue;
+            }
+            double budget = shortfalls[g] * scale;
+            int buyer = -1;
+            for (int m = memberCounts[g]; m < memberCounts[g + 1]; m++) {
+                int i = members[m];
+                if (prices[i] <= budget) {
+                    buyer = i;
+                    break;
+                }
+                if (buyer < 0 || prices[i] < prices[buyer]) {
+                    buyer = i;
+                }
+            }
+            int shares = (int) Math.floor(budget / prices[buyer]);
+            trades[buyer] += shares;
+            available -= shares * prices[buyer];
+            after[g] += shares * prices[buyer];
+            buyers[g] = buyer;
+            remaining[g] = shortfalls[g] - shares * prices[buyer];
+            furthestBelow.add(g);
+        }
+
+        // Leftover cash, a share at a time, while a share brings its group closer to target
+        while (!furthestBelow.isEmpty()) {
+            int g = furthestBelow.poll();
+            double price = prices[buyers[g]];
+            if (price > available + 1e-9 || remaining[g] < price / 2) {
+                continue;
+            }
+            trades[buyers[g]]++;
+            available -= price;
+            after[g] += price;
+            remaining[g] -= price;
+            furthestBelow.add(g);
+        }
+
+        double[] weightsAfter = new double[groupCount];
+        for (int g = 0; g < groupCount; g++) {
+            weightsAfter[g] = after[g] / totalValue;
+        }
+        return new Result(trades, totalValue, Math.max(available, 0), weightsBefore, weightsAfter, aims,
+                targetsScaled, cashShort, unreachable);
+    }
+
+    // Insertion sort for the usual handful of positions, a full sort for a large sector
+    private static void sortByValueDescending(int[] members, int from, int to, double[] prices, int[] quantities) {
+        if (to - from > 16) {
+            Integer[] boxed = new Integer[to - from];
+            for (int i = from; i < to; i++) {
+                boxed[i - from] = members[i];
+            }
+            Arrays.sort(boxed, (a, b) -> Double.compare(prices[b] * quantities[b], prices[a] * quantities[a]));
+            for (int i = from; i < to; i++) {
+                members[i] = boxed[i - from];
+            }
+            return;
+        }
+        for (int i = from + 1; i < to; i++) {
+            int member = members[i];
+            double value = prices[member] * quantities[member];
+            int j = i - 1;
+            while (j >= from && prices[members[j]] * quantities[members[j]] < value) {
+                members[j + 1] = members[j];
+                j--;
+            }
+            members[j + 1] = member;
+        }
+    }
+}
@@ -0,0 +1,553 @@
+package com.foresight.backend.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.foresight.backend.dto.AllocationDrift;
+import com.foresight.backend.dto.AllocationTarget;
+import com.foresight.backend.dto.RebalancePlan;
+import com.foresight.backend.dto.RebalanceRunResponse;
+import com.foresight.backend.dto.RebalanceTrade;
+import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Target allocations and the trades that restore them.
+ *
+ * Targets are weights per symbol or per sector, in percent of the whole portfolio (holdings plus cash). A symbol
+ * target takes precedence over its sector's; holdings without either are left alone. Plans value holdings at
+ * quotes from FinnhubService (its cache answers repeat lookups), in the user's base currency, and take the cash
+ * available to be deposits less the cost of what is held plus realized gains. The trades themselves come from
+ * {@link RebalanceOptimizer}.
+ *
+ * After the close every user with targets is evaluated by parallel workers (rebalance.cron), a page of users at a
+ * time. Users the engine hasn't loaded are read for the run only rather than loaded into it. Each symbol is quoted
+ * once for the whole run, through the shared Finnhub budget, and users with trades to make are sent their plan on
+ * /queue/rebalance/{userId}.
+ */
+@Service
+public class RebalanceService {
+
+    private static final String TARGETS_SQL =
+            "SELECT user_id, target_type, target_key, weight_pct, tolerance_pct FROM allocation_targets " +
+            "WHERE user_id = ? ORDER BY id";
+
+    private static final String USERS_PAGE_SQL =
+            "SELECT DISTINCT user_id FROM allocation_targets WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+    private static final String PAGE_TARGETS_SQL =
+            "SELECT user_id, target_type, target_key, weight_pct, tolerance_pct FROM allocation_targets " +
+            "WHERE user_id >= ? AND user_id <= ? ORDER BY user_id, id";
+
+    private static final String INSERT_TARGET_SQL =
+            "INSERT INTO allocation_targets (user_id, target_type, target_key, weight_pct, tolerance_pct) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String STOCKS_SQL = "SELECT id, symbol, currency, sector, current_price FROM stocks WHERE symbol IN ";
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private CacheStatsService cacheStatsService;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private SimpMessagingTemplate messagingTemplate;
+
+    @Autowired
+    @Qualifier("fanOutExecutor")
+    private AsyncTaskExecutor fanOutExecutor;
+
+    @Value("${rebalance.tolerance-pct:5.0}")
+    private BigDecimal defaultTolerancePct;
+
+    @Value("${rebalance.parallelism:4}")
+    private int parallelism;
+
+    @Value("${rebalance.page-size:500}")
+    private int pageSize;
+
+    // How long a run waits for a Finnhub permit per symbol before pricing it from the stored row
+    @Value("${rebalance.quote-wait-ms:2000}")
+    private long quoteWaitMs;
+
+    // Profile lookups per plan or run for holdings whose sector isn't known yet
+    @Value("${rebalance.sector-lookups:50}")
+    private int sectorLookups;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public enum TargetType {
+        SYMBOL, SECTOR
+    }
+
+    // What the plan needs of a stock beyond the engine's position
+    private static class StockInfo {
+        private final long id;
+        private final String symbol;
+        private final String currency;
+        private volatile String sector;
+        private final BigDecimal storedPrice;
+
+        StockInfo(ResultSet rs) throws SQLException {
+            this.id = rs.getLong(1);
+            this.symbol = rs.getString(2);
+            this.currency = rs.getString(3);
+            this.sector = rs.getString(4);
+            this.storedPrice = rs.getBigDecimal(5);
+        }
+    }
+
+    /**
+     * Replaces the user's targets
+     *
+     * @throws IllegalArgumentException for an unknown type, a duplicate, or weights over 100%
+     */
+    @Transactional
+    public List<AllocationTarget> setTargets(Long userId, List<AllocationTarget> targets) {
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found");
+        }
+        List<AllocationTarget> normalized = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        BigDecimal total = BigDecimal.ZERO;
+        for (AllocationTarget target : targets) {
+            if (target.getType() == null || target.getKey() == null || target.getKey().isBlank()
+                    || target.getKey().length() > 100 || target.getWeightPct() == null) {
+                throw new IllegalArgumentException("Each target needs a type, key and weightPct");
+            }
+            TargetType type = TargetType.valueOf(target.getType().toUpperCase());
+            // Symbols are stored as traded; sectors keep the profile's wording and match case-insensitively
+            String key = type == TargetType.SYMBOL ? target.getKey().trim().toUpperCase() : target.getKey().trim();
+            if (!seen.add(type + ":" + key.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Duplicate target " + type + " " + key);
+            }
+            BigDecimal tolerance = target.getTolerancePct() != null ? target.getTolerancePct() : defaultTolerancePct;
+            if (target.getWeightPct().signum() < 0 || tolerance.signum() < 0 || tolerance.compareTo(BigDecimal.valueOf(50)) > 0) {
+                throw new IllegalArgumentException("weightPct can't be negative and tolerancePct must be between 0 and 50");
+            }
+            total = total.add(target.getWeightPct());
+            normalized.add(new AllocationTarget(type.name(), key, target.getWeightPct(), tolerance));
+        }
+        if (total.compareTo(HUNDRED) > 0) {
+            throw new IllegalArgumentException("Target weights add up to " + total + "%, more than 100%");
+        }
+
+        jdbcTemplate.update("DELETE FROM allocation_targets WHERE user_id = ?", userId);
+        if (!normalized.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_TARGET_SQL, normalized, normalized.size(), (statement, target) -> {
+                statement.setLong(1, userId);
+                statement.setString(2, target.getType());
+                statement.setString(3, target.getKey());
+                statement.setBigDecimal(4, target.getWeightPct());
+                statement.setBigDecimal(5, target.getTolerancePct());
+            });
+        }
+        readYourWrites.onUserWrite(userId);
+        return normalized;
+    }
+
+    @Transactional(readOnly = true)
+    public List<AllocationTarget> getTargets(Long userId) {
+        return jdbcTemplate.query(TARGETS_SQL, (rs, row) -> target(rs), userId);
+    }
+
+    /**
+     * Trades that bring the user's portfolio back within tolerance of their targets, at current quotes
+     *
+     * @throws IllegalArgumentException when the user has no targets
+     */
+    public RebalancePlan getPlan(Long userId) {
+        List<AllocationTarget> targets = getTargets(userId);
+        if (targets.isEmpty()) {
+            throw new IllegalArgumentException("No allocation targets set");
+        }
+        PortfolioStateEngine.PortfolioState state = portfolioStateEngine.getState(userId);
+
+        Set<String> symbols = symbols(state, targets);
+        Map<String, StockInfo> stocks = loadStocks(symbols);
+        if (hasSectorTargets(targets)) {
+            resolveSectors(stocks.values());
+        }
+        Map<String, BigDecimal> prices = quote(symbols);
+        return plan(state, targets, stocks, prices, fxRateService.getMatrix());
+    }
+
+    @Scheduled(cron = "${rebalance.cron:0 45 16 * * MON-FRI}", zone = "${snapshot.zone:America/New_York}")
+    public void evaluateAllUsers() {
+        try {
+            RebalanceRunResponse run = runAll();
+            System.out.println("Evaluated rebalancing for " + run.getUsersEvaluated() + " users, "
+                    + run.getUsersNeedingTrades() + " need trades, in " + run.getElapsedMs() + "ms");
+        } catch (Exception e) {
+            System.err.println("Failed to evaluate rebalancing: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Plans every user with targets, sending each plan that has trades to the user
+     */
+    public RebalanceRunResponse runAll() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A rebalance run is already in progress");
+        }
+        try {
+            long start = System.currentTimeMillis();
+            // Each stock and each quote once for the whole run, shared by the pages
+            Map<String, StockInfo> stocks = new ConcurrentHashMap<>();
+            Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+            Set<String> seen = new HashSet<>();
+            int evaluated = 0;
+            AtomicInteger needingTrades = new AtomicInteger();
+            AtomicLong trades = new AtomicLong();
+
+            long afterUserId = 0;
+            while (true) {
+                List<Long> users = jdbcTemplate.queryForList(USERS_PAGE_SQL, Long.class, afterUserId, pageSize);
+                if (users.isEmpty()) {
+                    break;
+                }
+                afterUserId = users.get(users.size() - 1);
+                Map<Long, List<AllocationTarget>> targetsByUser = new HashMap<>();
+                jdbcTemplate.query(PAGE_TARGETS_SQL, rs -> {
+                    targetsByUser.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(target(rs));
+                }, users.get(0), afterUserId);
+
+                // States first, to learn which symbols the page needs that earlier pages didn't
+                Map<Long, PortfolioStateEngine.PortfolioState> states = new ConcurrentHashMap<>();
+                Set<String> symbols = ConcurrentHashMap.newKeySet();
+                inParallel(users, userId -> {
+                    PortfolioStateEngine.PortfolioState state = portfolioStateEngine.peekState(userId);
+                    states.put(userId, state);
+                    symbols.addAll(symbols(state, targetsByUser.get(userId)));
+                });
+                symbols.removeAll(seen);
+                seen.addAll(symbols);
+                if (!symbols.isEmpty()) {
+                    Map<String, StockInfo> loaded = loadStocks(symbols);
+                    if (targetsByUser.values().stream().anyMatch(RebalanceService::hasSectorTargets)) {
+                        resolveSectors(loaded.values());
+                    }
+                    stocks.putAll(loaded);
+                    prices.putAll(quote(symbols));
+                }
+
+                FxRateService.Matrix rates = fxRateService.getMatrix();
+                inParallel(users, userId -> {
+                    RebalancePlan plan = plan(states.get(userId), targetsByUser.get(userId), stocks, prices, rates);
+                    if (!plan.getTrades().isEmpty()) {
+                        needingTrades.incrementAndGet();
+                        trades.addAndGet(plan.getTrades().size());
+                        messagingTemplate.convertAndSend("/queue/rebalance/" + userId, plan);
+                    }
+                });
+                evaluated += users.size();
+            }
+
+            return new RebalanceRunResponse(evaluated, needingTrades.get(), trades.get(), seen.size(),
+                    System.currentTimeMillis() - start);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private RebalancePlan plan(PortfolioStateEngine.PortfolioState state, List<AllocationTarget> targets,
+                               Map<String, StockInfo> stocks, Map<String, BigDecimal> prices,
+                               FxRateService.Matrix rates) {
+        String baseCurrency = state.getBaseCurrency();
+        int base = rates.index(baseCurrency);
+        List<String> warnings = new ArrayList<>();
+
+        Map<String, Integer> symbolGroups = new HashMap<>();
+        Map<String, Integer> sectorGroups = new HashMap<>();
+        double[] weights = new double[targets.size()];
+        double[] tolerances = new double[targets.size()];
+        for (int g = 0; g < targets.size(); g++) {
+            AllocationTarget target = targets.get(g);
+            if (TargetType.SYMBOL.name().equals(target.getType())) {
+                symbolGroups.put(target.getKey(), g);
+            } else {
+                sectorGroups.put(target.getKey().toLowerCase(Locale.ROOT), g);
+            }
+            weights[g] = target.getWeightPct().doubleValue() / 100;
+            tolerances[g] = target.getTolerancePct().doubleValue() / 100;
+        }
+
+        // Cash: deposits, less what the holdings cost, plus what sales realized
+        BigDecimal cash = state.getTotalDeposits().subtract(state.getTotalInvested());
+        List<String> lineSymbols = new ArrayList<>();
+        List<String> lineCurrencies = new ArrayList<>();
+        List<BigDecimal> linePrices = new ArrayList<>();
+        List<Integer> lineQuantities = new ArrayList<>();
+        Set<String> held = new HashSet<>();
+        for (PortfolioStateEngine.PositionState position : state.getPositions()) {
+            cash = cash.add(rates.convert(position.getRealizedGain(), rates.index(position.getCurrency()), base));
+            if (position.getQuantity() <= 0) {
+                continue;
+            }
+            held.add(position.getSymbol());
+            BigDecimal price = prices.getOrDefault(position.getSymbol(), position.getPrice());
+            if (price == null || price.signum() <= 0) {
+                warnings.add("No price for " + position.getSymbol() + "; it is left out of the plan");
+                continue;
+            }
+            lineSymbols.add(position.getSymbol());
+            lineCurrencies.add(position.getCurrency());
+            linePrices.add(price);
+            lineQuantities.add(position.getQuantity());
+        }
+        // Symbols targeted but not held yet can be bought
+        for (String symbol : symbolGroups.keySet()) {
+            if (held.contains(symbol)) {
+                continue;
+            }
+            StockInfo stock = stocks.get(symbol);
+            BigDecimal price = prices.getOrDefault(symbol, stock != null ? stock.storedPrice : null);
+            if (price == null || price.signum() <= 0) {
+                warnings.add("No price for " + symbol + "; it can't be bought");
+                continue;
+            }
+            lineSymbols.add(symbol);
+            lineCurrencies.add(stock != null ? stock.currency : "USD");
+            linePrices.add(price);
+            lineQuantities.add(0);
+        }
+
+        int n = lineSymbols.size();
+        double[] basePrices = new double[n];
+        int[] quantities = new int[n];
+        int[] groups = new int[n];
+        int unclassified = 0;
+        for (int i = 0; i < n; i++) {
+            String symbol = lineSymbols.get(i);
+            basePrices[i] = linePrices.get(i).doubleValue() * rates.rate(rates.index(lineCurrencies.get(i)), base);
+            quantities[i] = lineQuantities.get(i);
+            Integer group = symbolGroups.get(symbol);
+            if (group == null && !sectorGroups.isEmpty()) {
+                StockInfo stock = stocks.get(symbol);
+                if (stock == null || stock.sector == null) {
+                    unclassified++;
+                } else {
+                    group = sectorGroups.get(stock.sector.toLowerCase(Locale.ROOT));
+                }
+            }
+            groups[i] = group != null ? group : -1;
+        }
+        if (unclassified > 0) {
+            warnings.add(unclassified + " holdings have no known sector and are left as they are");
+        }
+
+        RebalanceOptimizer.Result result = RebalanceOptimizer.optimize(basePrices, quantities, groups, weights,
+                tolerances, Math.max(cash.doubleValue(), 0));
+
+        List<RebalanceTrade> trades = new ArrayList<>();
+        int[] shares = result.getTrades();
+        for (int i = 0; i < n; i++) {
+            if (shares[i] != 0) {
+                trades.add(new RebalanceTrade(lineSymbols.get(i), shares[i] > 0 ? "BUY" : "SELL", Math.abs(shares[i]),
+                        linePrices.get(i), lineCurrencies.get(i), money(Math.abs(shares[i]) * basePrices[i])));
+            }
+        }
+        // Sales first, as they fund the buys
+        trades.sort(Comparator.comparing(RebalanceTrade::getSide).reversed()
+                .thenComparing(RebalanceTrade::getValue, Comparator.reverseOrder()));
+
+        List<AllocationDrift> allocations = new ArrayList<>();
+        boolean withinTolerance = true;
+        for (int g = 0; g < targets.size(); g++) {
+            AllocationTarget target = targets.get(g);
+            double aim = result.getTargets()[g];
+            double planned = result.getWeightsAfter()[g];
+            if (Math.abs(planned - aim) > tolerances[g] + 1e-9) {
+                withinTolerance = false;
+            }
+            if (result.getUnreachable()[g]) {
+                warnings.add("Nothing held in sector " + target.getKey() + " to buy; add a symbol target for it");
+            }
+            allocations.add(new AllocationDrift(target.getType(), target.getKey(), percent(aim),
+                    target.getTolerancePct(), percent(result.getWeightsBefore()[g]), percent(planned)));
+        }
+        if (result.isTargetsScaled()) {
+            warnings.add("Holdings without a target leave less room than the targets ask for; targets were scaled down");
+        }
+        if (result.isCashShort()) {
+            warnings.add("Not enough cash to reach every target; buys were scaled down");
+        }
+
+        return new RebalancePlan(state.getUserId(), baseCurrency, money(result.getTotalValue()),
+                money(Math.max(cash.doubleValue(), 0)), money(result.getCashAfter()), withinTolerance, trades,
+                allocations, warnings);
+    }
+
+    // Held symbols plus symbol targets
+    private static Set<String> symbols(PortfolioStateEngine.PortfolioState state, List<AllocationTarget> targets) {
+        Set<String> symbols = new HashSet<>();
+        for (PortfolioStateEngine.PositionState position : state.getPositions()) {
+            if (position.getQuantity() > 0) {
+                symbols.add(position.getSymbol());
+            }
+        }
+        for (AllocationTarget target : targets) {
+            if (TargetType.SYMBOL.name().equals(target.getType())) {
+                symbols.add(target.getKey());
+            }
+        }
+        return symbols;
+    }
+
+    private static boolean hasSectorTargets(List<AllocationTarget> targets) {
+        return targets.stream().anyMatch(target -> TargetType.SECTOR.name().equals(target.getType()));
+    }
+
+    private Map<String, StockInfo> loadStocks(Collection<String> symbols) {
+        Map<String, StockInfo> stocks = new HashMap<>();
+        List<String> all = new ArrayList<>(symbols);
+        for (int from = 0; from < all.size(); from += 500) {
+            List<String> chunk = all.subList(from, Math.min(from + 500, all.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            jdbcTemplate.query(STOCKS_SQL + "(" + placeholders + ")", rs -> {
+                StockInfo stock = new StockInfo(rs);
+                stocks.put(stock.symbol, stock);
+            }, chunk.toArray());
+        }
+        return stocks;
+    }
+
+    // Stocks added before sectors were recorded get theirs from the company profile, once
+    private void resolveSectors(Collection<StockInfo> stocks) {
+        int lookups = 0;
+        for (StockInfo stock : stocks) {
+            if (stock.sector != null) {
+                continue;
+            }
+            if (lookups++ >= sectorLookups) {
+                break;
+            }
+            try {
+                JsonNode profile = finnhubService.getCompanyProfile(stock.symbol);
+                if (profile != null && profile.hasNonNull("finnhubIndustry")
+                        && !profile.get("finnhubIndustry").asText().isBlank()) {
+                    stock.sector = profile.get("finnhubIndustry").asText();
+                    jdbcTemplate.update("UPDATE stocks SET sector = ? WHERE id = ?", stock.sector, stock.id);
+                    // Written with SQL, so the cached row is out of date; its symbol mapping is not
+                    cacheStatsService.evictEntity(Stock.class, stock.id);
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to look up the sector of " + stock.symbol + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * One quote per symbol. Fresh cached quotes are used as they are; the rest are fetched by the run's workers, each
+     * upstream call taking a permit from Finnhub's shared rate limiter, so a run never bursts past the quota that
+     * interactive reads also draw on. Symbols left without a quote fall back to the last known price.
+     */
+    private Map<String, BigDecimal> quote(Collection<String> symbols) {
+        Map<String, BigDecimal> prices = new ConcurrentHashMap<>();
+        List<String> upstream = new ArrayList<>();
+        for (String symbol : symbols) {
+            StockPriceUpdate cached = finnhubService.getFreshQuote(symbol);
+            if (cached != null && cached.getCurrentPrice() != null) {
+                prices.put(symbol, cached.getCurrentPrice());
+            } else {
+                upstream.add(symbol);
+            }
+        }
+        inParallel(upstream, symbol -> {
+            try {
+                if (!finnhubService.getRateLimiter().tryAcquire(quoteWaitMs, TimeUnit.MILLISECONDS)) {
+                    // Priced from the position or the stored stock row instead
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            StockPriceUpdate update = finnhubService.getStockQuote(symbol);
+            if (update != null && update.getCurrentPrice() != null) {
+                prices.put(symbol, update.getCurrentPrice());
+            }
+        });
+        return prices;
+    }
+
+    // Workers claim the next user (or symbol) until all are done, as in the snapshot job
+    private <T> void inParallel(List<T> items, Consumer<T> work) {
+        AtomicInteger next = new AtomicInteger();
+        List<CompletableFuture<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < Math.max(1, Math.min(parallelism, items.size())); i++) {
+            workers.add(CompletableFuture.runAsync(() -> {
+                int claimed;
+                while ((claimed = next.getAndIncrement()) < items.size()) {
+                    T item = items.get(claimed);
+                    try {
+                        work.accept(item);
+                    } catch (RuntimeException e) {
+                        System.err.println("Rebalancing failed for " + item + ": " + e.getMessage());
+                    }
+                }
+            }, fanOutExecutor));
+        }
+        CompletableFuture.allOf(workers.toArray(new CompletableFuture[0])).join();
+    }
+
+    private static AllocationTarget target(ResultSet rs) throws SQLException {
+        return new AllocationTarget(rs.getString(2), rs.getString(3), rs.getBigDecimal(4), rs.getBigDecimal(5));
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal percent(double fraction) {
+        return BigDecimal.valueOf(fraction * 100).setScale(2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,149 @@
+package com.foresight.backend.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams recorded ticks from a file as if they came from a live feed, for offline testing and benchmarking.
+ *
+ * One tick per line: {@code timestampMs,symbol,price,volume} (the format {@link MarketDataStreamService} records
+ * in); blank lines and lines starting with # are skipped. Ticks are paced by their recorded timestamps divided by
+ * {@code marketdata.replay.speed}; a speed of 0 replays as fast as possible. Only subscribed symbols are delivered,
+ * as with a real feed.
+ */
+@Component
+public class ReplayMarketDataProvider implements MarketDataProvider {
+
+    @Value("${marketdata.replay.file:}")
+    private String file;
+
+    @Value("${marketdata.replay.speed:1.0}")
+    private double speed;
+
+    @Value("${marketdata.replay.loop:true}")
+    private boolean loop;
+
+    private final Set<String> subscribed = ConcurrentHashMap.newKeySet();
+    private volatile Thread thread;
+    private volatile boolean running;
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public boolean supportsStreaming() {
+        return true;
+    }
+
+    @Override
+    public void start(TradeListener listener) {
+        if (file.isBlank()) {
+            throw new IllegalStateException("marketdata.replay.file is not set");
+        }
+        running = true;
+        Thread replayThread = new Thread(() -> {
+            try {
+                do {
+                    try (Reader reader = Files.newBufferedReader(Path.of(file), StandardCharsets.UTF_8)) {
+                        long ticks = replay(reader, speed, subscribed, listener);
+                        System.out.println("Replayed " + ticks + " ticks from " + file);
+                    }
+                } while (loop && running);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                System.err.println("Failed to replay " + file + ": " + e.getMessage());
+            } finally {
+                running = false;
+            }
+        }, "market-data-replay");
+        replayThread.setDaemon(true);
+        thread = replayThread;
+        replayThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        Thread current = thread;
+        if (current != null) {
+            current.interrupt();
+        }
+    }
+
+    @Override
+    public void subscribe(String symbol) {
+        subscribed.add(symbol);
+    }
+
+    @Override
+    public void unsubscribe(String symbol) {
+        subscribed.remove(symbol);
+    }
+
+    @Override
+    public boolean isConnected() {
+        return running;
+    }
+
+    /**
+     * Delivers the ticks read from {@code input} to the listener, paced by their timestamps
+     *
+     * @param symbols symbols to deliver, or null for all of them
+     * @return number of ticks delivered
+     */
+    public static long replay(Reader input, double speed, Set<String> symbols, TradeListener listener)
+            throws IOException, InterruptedException {
+        BufferedReader reader = input instanceof BufferedReader ? (BufferedReader) input : new BufferedReader(input);
+        long delivered = 0;
+        long firstTick = Long.MIN_VALUE;
+        long startNanos = System.nanoTime();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int first = line.indexOf(',');
+            int second = line.indexOf(',', first + 1);
+            int third = line.indexOf(',', second + 1);
+            if (first < 0 || second < 0) {
+                continue;
+            }
+            long timestamp = Long.parseLong(line.substring(0, first));
+            String symbol = line.substring(first + 1, second);
+            if (symbols != null && !symbols.contains(symbol)) {
+                continue;
+            }
+            double price = Double.parseDouble(third < 0 ? line.substring(second + 1) : line.substring(second + 1, third));
+            long volume = third < 0 ? 0 : Long.parseLong(line.substring(third + 1).trim());
+
+            if (speed > 0) {
+                if (firstTick == Long.MIN_VALUE) {
+                    firstTick = timestamp;
+                }
+                long dueNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(timestamp - firstTick) / speed);
+                long waitNanos = dueNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                }
+            } else if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            listener.onTrade(symbol, price, volume, timestamp);
+            delivered++;
+        }
+        return delivered;
+    }
+}
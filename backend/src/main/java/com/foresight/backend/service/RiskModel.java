@@ -0,0 +1,298 @@
+package com.foresight.backend.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable daily-return model for a set of symbols: aligned return vectors, their means and
+ * the full covariance matrix. Built once per trading day and shared by every per-user risk request.
+ *
+ * A symbol may lack returns on some days (listed later, or not trading that day); those days are NaN in its
+ * input vector. Each mean is over the symbol's own days, and each covariance over the days both symbols have,
+ * rather than treating missing days as zero returns, which would pull variances towards zero.
+ */
+public final class RiskModel {
+
+    private static final int BLOCK_SIZE = 32;
+
+    private final LocalDate tradingDay;
+    private final int observations;
+    private final String[] symbols;
+    private final Map<String, Integer> index;
+    private final Set<String> excluded;
+    // Demeaned returns, zero on days the symbol has none, so a dot product only sums the days both symbols have
+    private final double[][] demeaned;
+    // Bit per observation: whether the symbol has a return that day
+    private final long[][] present;
+    private final double[] means;
+    private final double[] covariance;
+
+    private RiskModel(LocalDate tradingDay, int observations, String[] symbols, Set<String> excluded,
+                      double[][] demeaned, long[][] present, double[] means, double[] covariance) {
+        this.tradingDay = tradingDay;
+        this.observations = observations;
+        this.symbols = symbols;
+        this.excluded = excluded;
+        this.demeaned = demeaned;
+        this.present = present;
+        this.means = means;
+        this.covariance = covariance;
+
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < symbols.length; i++) {
+            positions.put(symbols[i], i);
+        }
+        this.index = Collections.unmodifiableMap(positions);
+    }
+
+    /**
+     * Builds the model from raw return vectors, all of the same length, with NaN on days a symbol has no return
+     */
+    public static RiskModel build(LocalDate tradingDay, List<String> symbols, List<double[]> returns, Set<String> excluded) {
+        int n = symbols.size();
+        int t = n > 0 ? returns.get(0).length : 0;
+        double[] means = new double[n];
+        double[][] demeaned = new double[n][];
+        long[][] present = new long[n][];
+
+        for (int i = 0; i < n; i++) {
+            present[i] = presence(returns.get(i));
+            means[i] = mean(returns.get(i));
+            demeaned[i] = demean(returns.get(i), means[i]);
+        }
+
+        return new RiskModel(tradingDay, t, symbols.toArray(new String[0]), Set.copyOf(excluded),
+                demeaned, present, means, blockedCovariance(demeaned, present));
+    }
+
+    /**
+     * Returns a new model with extra symbols added. Only the new rows and columns of the covariance matrix
+     * are computed; existing entries are copied across.
+     */
+    public RiskModel withSymbols(List<String> newSymbols, List<double[]> newReturns, Set<String> newlyExcluded) {
+        int n = symbols.length;
+        int added = newSymbols.size();
+        int total = n + added;
+
+        String[] allSymbols = Arrays.copyOf(symbols, total);
+        double[][] allDemeaned = Arrays.copyOf(demeaned, total);
+        long[][] allPresent = Arrays.copyOf(present, total);
+        double[] allMeans = Arrays.copyOf(means, total);
+        double[] allCovariance = new double[total * total];
+
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(covariance, i * n, allCovariance, i * total, n);
+        }
+        for (int k = 0; k < added; k++) {
+            allSymbols[n + k] = newSymbols.get(k);
+            allPresent[n + k] = presence(newReturns.get(k));
+            allMeans[n + k] = mean(newReturns.get(k));
+            allDemeaned[n + k] = demean(newReturns.get(k), allMeans[n + k]);
+        }
+
+        // New rows against every symbol (existing and new), in parallel
+        IntStream.range(n, total).parallel().forEach(i -> {
+            for (int j = 0; j <= i; j++) {
+                double value = covariance(allDemeaned, allPresent, i, j);
+                allCovariance[i * total + j] = value;
+                allCovariance[j * total + i] = value;
+            }
+        });
+
+        Set<String> allExcluded = new HashSet<>(excluded);
+        allExcluded.addAll(newlyExcluded);
+        return new RiskModel(tradingDay, observations, allSymbols, Set.copyOf(allExcluded), allDemeaned, allPresent,
+                allMeans, allCovariance);
+    }
+
+    public LocalDate getTradingDay() {
+        return tradingDay;
+    }
+
+    public int getObservations() {
+        return observations;
+    }
+
+    public int size() {
+        return symbols.length;
+    }
+
+    public boolean contains(String symbol) {
+        return index.containsKey(symbol);
+    }
+
+    public boolean isExcluded(String symbol) {
+        return excluded.contains(symbol);
+    }
+
+    /**
+     * Position of the symbol in the model, or -1 if it is not covered
+     */
+    public int indexOf(String symbol) {
+        Integer position = index.get(symbol);
+        return position != null ? position : -1;
+    }
+
+    public double mean(int i) {
+        return means[i];
+    }
+
+    public double covariance(int i, int j) {
+        return covariance[i * symbols.length + j];
+    }
+
+    /**
+     * Raw (not demeaned) return of symbol i on observation t; its mean return on a day it has none
+     */
+    public double returnAt(int i, int t) {
+        return demeaned[i][t] + means[i];
+    }
+
+    /**
+     * w' * Sigma * w over the given symbol indices
+     */
+    public double quadraticForm(int[] indices, double[] weights) {
+        int n = symbols.length;
+        double variance = 0.0;
+        for (int a = 0; a < indices.length; a++) {
+            int row = indices[a] * n;
+            double rowSum = 0.0;
+            for (int b = 0; b < indices.length; b++) {
+                rowSum += covariance[row + indices[b]] * weights[b];
+            }
+            variance += weights[a] * rowSum;
+        }
+        return variance;
+    }
+
+    /**
+     * Sample variance of the weighted sum of the symbols' daily returns (see {@link #returnAt}). Unlike the
+     * quadratic form, never negative: pairwise overlaps can leave the covariance matrix indefinite.
+     */
+    public double returnVariance(int[] indices, double[] weights) {
+        if (observations < 2) {
+            return 0.0;
+        }
+        double[] series = new double[observations];
+        for (int a = 0; a < indices.length; a++) {
+            double[] row = demeaned[indices[a]];
+            for (int t = 0; t < observations; t++) {
+                series[t] += weights[a] * row[t];
+            }
+        }
+        double mean = 0.0;
+        for (double value : series) {
+            mean += value;
+        }
+        mean /= observations;
+        double sum = 0.0;
+        for (double value : series) {
+            sum += (value - mean) * (value - mean);
+        }
+        return sum / (observations - 1);
+    }
+
+    /**
+     * Dense covariance sub-matrix (row-major) for the given symbol indices
+     */
+    public double[] subCovariance(int[] indices) {
+        int n = symbols.length;
+        int m = indices.length;
+        double[] sub = new double[m * m];
+        for (int a = 0; a < m; a++) {
+            for (int b = 0; b < m; b++) {
+                sub[a * m + b] = covariance[indices[a] * n + indices[b]];
+            }
+        }
+        return sub;
+    }
+
+    // Upper-triangular tiles are computed in parallel and mirrored into the lower triangle
+    private static double[] blockedCovariance(double[][] demeaned, long[][] present) {
+        int n = demeaned.length;
+        double[] covariance = new double[n * n];
+
+        int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        IntStream.range(0, blocks * blocks).parallel().forEach(tile -> {
+            int blockRow = tile / blocks;
+            int blockCol = tile % blocks;
+            if (blockCol < blockRow) {
+                return;
+            }
+
+            int rowEnd = Math.min(n, (blockRow + 1) * BLOCK_SIZE);
+            int colEnd = Math.min(n, (blockCol + 1) * BLOCK_SIZE);
+            for (int i = blockRow * BLOCK_SIZE; i < rowEnd; i++) {
+                for (int j = Math.max(i, blockCol * BLOCK_SIZE); j < colEnd; j++) {
+                    double value = covariance(demeaned, present, i, j);
+                    covariance[i * n + j] = value;
+                    covariance[j * n + i] = value;
+                }
+            }
+        });
+        return covariance;
+    }
+
+    // Sample covariance over the days both symbols have returns; zero when they share fewer than two
+    private static double covariance(double[][] demeaned, long[][] present, int i, int j) {
+        int overlap = 0;
+        long[] a = present[i];
+        long[] b = present[j];
+        for (int w = 0; w < a.length; w++) {
+            overlap += Long.bitCount(a[w] & b[w]);
+        }
+        return overlap > 1 ? dot(demeaned[i], demeaned[j]) / (overlap - 1) : 0.0;
+    }
+
+    private static long[] presence(double[] values) {
+        long[] bits = new long[(values.length + 63) >>> 6];
+        for (int t = 0; t < values.length; t++) {
+            if (!Double.isNaN(values[t])) {
+                bits[t >>> 6] |= 1L << t;
+            }
+        }
+        return bits;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double s0 = 0.0, s1 = 0.0, s2 = 0.0, s3 = 0.0;
+        int t = 0;
+        for (; t + 3 < a.length; t += 4) {
+            s0 += a[t] * b[t];
+            s1 += a[t + 1] * b[t + 1];
+            s2 += a[t + 2] * b[t + 2];
+            s3 += a[t + 3] * b[t + 3];
+        }
+        for (; t < a.length; t++) {
+            s0 += a[t] * b[t];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private static double mean(double[] values) {
+        double sum = 0.0;
+        int count = 0;
+        for (double value : values) {
+            if (!Double.isNaN(value)) {
+                sum += value;
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 0.0;
+    }
+
+    private static double[] demean(double[] values, double mean) {
+        double[] result = new double[values.length];
+        for (int t = 0; t < values.length; t++) {
+            result[t] = Double.isNaN(values[t]) ? 0.0 : values[t] - mean;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,368 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.RiskResponse;
+import com.foresight.backend.model.PortfolioHolding;
+import com.foresight.backend.model.Stock;
+import com.foresight.backend.repository.PortfolioHoldingRepository;
+import com.foresight.backend.repository.StockRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Portfolio risk figures (volatility, beta, 1-day VaR) from daily returns in the candle cache.
+ *
+ * The covariance matrix across all tracked symbols is built once per trading day. Per-user requests only
+ * evaluate a quadratic form over their holdings; symbols added during the day extend the matrix by a row
+ * and column instead of rebuilding it.
+ */
+@Service
+public class RiskService {
+
+    private static final ZoneId MARKET_ZONE = ZoneId.of("America/New_York");
+    private static final int MIN_OBSERVATIONS = 20;
+    private static final double Z_95 = 1.6448536269514722;
+    private static final double Z_99 = 2.3263478740408408;
+
+    @Autowired
+    private CandleCacheService candleCacheService;
+
+    @Autowired
+    private PortfolioHoldingRepository portfolioHoldingRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Value("${risk.benchmark-symbol:SPY}")
+    private String benchmarkSymbol;
+
+    @Value("${risk.lookback-days:252}")
+    private int lookbackDays;
+
+    @Value("${risk.failure-ttl-ms:60000}")
+    private long failureTtlMs;
+
+    private volatile RiskModel model;
+    private volatile long[] benchmarkTimestamps;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // The last failed build, answered from here for a while rather than rebuilding under the lock on every request
+    private volatile RuntimeException buildFailure;
+    private volatile long buildFailedAt;
+
+    /**
+     * Pre-builds the day's model after the US close so user requests never pay for it
+     */
+    @Scheduled(cron = "0 30 22 * * MON-FRI", zone = "America/New_York")
+    public void rebuildRiskModel() {
+        lock.lock();
+        try {
+            model = build(currentTradingDay());
+        } catch (Exception e) {
+            System.err.println("Failed to rebuild risk model: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Today's model, guaranteed to contain (or explicitly exclude) every requested symbol
+     */
+    public RiskModel getRiskModel(Collection<String> symbols) {
+        LocalDate tradingDay = currentTradingDay();
+        RiskModel current = model;
+
+        if (current == null || !current.getTradingDay().equals(tradingDay)) {
+            throwIfRecentlyFailed();
+            lock.lock();
+            try {
+                current = model;
+                if (current == null || !current.getTradingDay().equals(tradingDay)) {
+                    throwIfRecentlyFailed();
+                    current = build(tradingDay);
+                    model = current;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        if (hasMissing(current, symbols)) {
+            lock.lock();
+            try {
+                current = model;
+                List<String> missing = new ArrayList<>();
+                for (String symbol : symbols) {
+                    if (!current.contains(symbol) && !current.isExcluded(symbol) && !missing.contains(symbol)) {
+                        missing.add(symbol);
+                    }
+                }
+                if (!missing.isEmpty()) {
+                    List<String> added = new ArrayList<>();
+                    List<double[]> returns = new ArrayList<>();
+                    Set<String> excluded = new HashSet<>();
+                    loadReturns(missing, benchmarkTimestamps, added, returns, excluded);
+                    current = current.withSymbols(added, returns, excluded);
+                    model = current;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return current;
+    }
+
+    public RiskResponse getPortfolioRisk(Long userId) {
+        List<PortfolioHolding> holdings = portfolioHoldingRepository.findByUserId(userId);
+        List<String> symbols = new ArrayList<>();
+        for (PortfolioHolding holding : holdings) {
+            symbols.add(holding.getStock().getSymbol());
+        }
+
+        RiskModel riskModel = getRiskModel(symbols);
+
+        // Positions valued in the user's base currency, so weights don't mix currencies
+        String baseCurrency = portfolioStateEngine.getState(userId).getBaseCurrency();
+        FxRateService.Matrix rates = fxRateService.getMatrix();
+        int base = rates.index(baseCurrency);
+
+        // Value weights over the symbols the model covers
+        int[] indices = new int[holdings.size()];
+        double[] values = new double[holdings.size()];
+        List<String> excludedSymbols = new ArrayList<>();
+        double portfolioValue = 0.0;
+        int covered = 0;
+
+        for (PortfolioHolding holding : holdings) {
+            Stock stock = holding.getStock();
+            int index = riskModel.indexOf(stock.getSymbol());
+            if (index < 0 || stock.getCurrentPrice() == null) {
+                excludedSymbols.add(stock.getSymbol());
+                continue;
+            }
+            indices[covered] = index;
+            values[covered] = stock.getCurrentPrice().doubleValue() * holding.getQuantity()
+                    * rates.rate(rates.index(stock.getCurrency()), base);
+            portfolioValue += values[covered];
+            covered++;
+        }
+
+        indices = Arrays.copyOf(indices, covered);
+        double[] weights = new double[covered];
+        for (int i = 0; i < covered; i++) {
+            weights[i] = portfolioValue > 0 ? values[i] / portfolioValue : 0.0;
+        }
+
+        double variance = riskModel.quadraticForm(indices, weights);
+        if (variance < 0) {
+            // The pairwise covariances don't form a valid matrix for these holdings; rather than report zero
+            // volatility, measure the portfolio's own return series
+            System.err.println("Warning: Negative portfolio variance " + variance + " for user " + userId
+                    + ", using the variance of its daily returns");
+            variance = riskModel.returnVariance(indices, weights);
+        }
+        double dailyVolatility = Math.sqrt(variance);
+
+        // Beta = cov(portfolio, benchmark) / var(benchmark)
+        double beta = 0.0;
+        int benchmark = riskModel.indexOf(benchmarkSymbol);
+        if (benchmark >= 0 && riskModel.covariance(benchmark, benchmark) > 0) {
+            double covarianceWithMarket = 0.0;
+            for (int i = 0; i < covered; i++) {
+                covarianceWithMarket += weights[i] * riskModel.covariance(indices[i], benchmark);
+            }
+            beta = covarianceWithMarket / riskModel.covariance(benchmark, benchmark);
+        }
+
+        // Historical VaR: 5th percentile of the portfolio's daily returns over the lookback window
+        int observations = riskModel.getObservations();
+        double[] portfolioReturns = new double[observations];
+        for (int t = 0; t < observations; t++) {
+            double r = 0.0;
+            for (int i = 0; i < covered; i++) {
+                r += weights[i] * riskModel.returnAt(indices[i], t);
+            }
+            portfolioReturns[t] = r;
+        }
+        Arrays.sort(portfolioReturns);
+        double historicalQuantile = observations > 0 ? portfolioReturns[(int) Math.floor(0.05 * (observations - 1))] : 0.0;
+
+        return new RiskResponse(
+                userId,
+                baseCurrency,
+                money(portfolioValue),
+                ratio(dailyVolatility),
+                ratio(dailyVolatility * Math.sqrt(252)),
+                ratio(beta),
+                money(Z_95 * dailyVolatility * portfolioValue),
+                money(Z_99 * dailyVolatility * portfolioValue),
+                money(Math.max(0.0, -historicalQuantile) * portfolioValue),
+                observations,
+                riskModel.getTradingDay(),
+                excludedSymbols
+        );
+    }
+
+    private boolean hasMissing(RiskModel current, Collection<String> symbols) {
+        for (String symbol : symbols) {
+            if (!current.contains(symbol) && !current.isExcluded(symbol)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void throwIfRecentlyFailed() {
+        RuntimeException failure = buildFailure;
+        if (failure != null && System.currentTimeMillis() - buildFailedAt < failureTtlMs) {
+            throw new RuntimeException("Risk model unavailable: " + failure.getMessage(), failure);
+        }
+    }
+
+    // Called with the lock held; remembers a failure so waiting requests don't each retry it
+    private RiskModel build(LocalDate tradingDay) {
+        try {
+            RiskModel built = buildModel(tradingDay);
+            buildFailure = null;
+            return built;
+        } catch (RuntimeException e) {
+            buildFailure = e;
+            buildFailedAt = System.currentTimeMillis();
+            throw e;
+        }
+    }
+
+    private RiskModel buildModel(LocalDate tradingDay) {
+        long[] timestamps = loadBenchmarkTimestamps();
+        benchmarkTimestamps = timestamps;
+
+        Set<String> universe = new LinkedHashSet<>();
+        universe.add(benchmarkSymbol);
+        for (Stock stock : stockRepository.findAll()) {
+            universe.add(stock.getSymbol());
+        }
+
+        List<String> symbols = new ArrayList<>();
+        List<double[]> returns = new ArrayList<>();
+        Set<String> excluded = new HashSet<>();
+        loadReturns(new ArrayList<>(universe), timestamps, symbols, returns, excluded);
+
+        long started = System.currentTimeMillis();
+        RiskModel built = RiskModel.build(tradingDay, symbols, returns, excluded);
+        System.out.println("Built risk model for " + built.size() + " symbols over " + built.getObservations()
+                + " days in " + (System.currentTimeMillis() - started) + "ms");
+        return built;
+    }
+
+    private long[] loadBenchmarkTimestamps() {
+        ByteBuffer segment = candleCacheService.getSegment(benchmarkSymbol, "D", historyStart(), nowEpochSecond());
+        int count = segment.limit() / CandleCacheService.RECORD_SIZE;
+        if (count < MIN_OBSERVATIONS + 1) {
+            throw new RuntimeException("Not enough price history for benchmark " + benchmarkSymbol);
+        }
+
+        int start = Math.max(0, count - (lookbackDays + 1));
+        long[] timestamps = new long[count - start];
+        for (int i = start; i < count; i++) {
+            timestamps[i - start] = segment.getLong(i * CandleCacheService.RECORD_SIZE);
+        }
+        return timestamps;
+    }
+
+    /**
+     * Daily log returns on the benchmark's trading days. A day counts for a symbol only when it has bars on both
+     * that day and the benchmark's previous day; other days are NaN rather than filled in, so a series that starts
+     * later or skips days isn't padded with zero returns.
+     */
+    private void loadReturns(List<String> symbols, long[] timestamps, List<String> loaded, List<double[]> returns, Set<String> excluded) {
+        for (String symbol : symbols) {
+            ByteBuffer segment;
+            try {
+                segment = candleCacheService.getSegment(symbol, "D", historyStart(), nowEpochSecond());
+            } catch (Exception e) {
+                System.err.println("Warning: No price history for " + symbol + ": " + e.getMessage());
+                excluded.add(symbol);
+                continue;
+            }
+
+            // Closes matched to the benchmark's days by date, since exchanges stamp their daily bars differently
+            int count = segment.limit() / CandleCacheService.RECORD_SIZE;
+            double[] aligned = new double[timestamps.length];
+            int record = 0;
+            for (int t = 0; t < timestamps.length; t++) {
+                long day = Math.floorDiv(timestamps[t], 86_400L);
+                while (record < count && Math.floorDiv(segment.getLong(record * CandleCacheService.RECORD_SIZE), 86_400L) < day) {
+                    record++;
+                }
+                aligned[t] = record < count && Math.floorDiv(segment.getLong(record * CandleCacheService.RECORD_SIZE), 86_400L) == day
+                        ? segment.getDouble(record * CandleCacheService.RECORD_SIZE + 32)
+                        : Double.NaN;
+            }
+
+            double[] logReturns = new double[timestamps.length - 1];
+            int observed = 0;
+            for (int t = 1; t < aligned.length; t++) {
+                // NaN compares false, so a missing close on either day leaves the return missing
+                if (aligned[t - 1] > 0 && aligned[t] > 0) {
+                    logReturns[t - 1] = Math.log(aligned[t] / aligned[t - 1]);
+                    observed++;
+                } else {
+                    logReturns[t - 1] = Double.NaN;
+                }
+            }
+            if (observed < MIN_OBSERVATIONS) {
+                excluded.add(symbol);
+                continue;
+            }
+            loaded.add(symbol);
+            returns.add(logReturns);
+        }
+    }
+
+    private long historyStart() {
+        // Calendar days covering the lookback window of trading days, plus slack for holidays
+        return nowEpochSecond() - (long) (lookbackDays * 7 / 5 + 14) * 86_400L;
+    }
+
+    private long nowEpochSecond() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private LocalDate currentTradingDay() {
+        LocalDate day = LocalDate.now(MARKET_ZONE);
+        while (day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY) {
+            day = day.minusDays(1);
+        }
+        return day;
+    }
+
+    private static BigDecimal money(double value) {
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private static BigDecimal ratio(double value) {
+        return BigDecimal.valueOf(value).setScale(6, RoundingMode.HALF_UP);
+    }
+}
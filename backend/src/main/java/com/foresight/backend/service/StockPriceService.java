@@ -1,15 +1,37 @@
 package com.foresight.backend.service;
 
+import com.foresight.backend.dto.RefreshSnapshot;
 import com.foresight.backend.dto.StockPriceUpdate;
 import com.foresight.backend.model.Stock;
 import com.foresight.backend.repository.StockRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Keeps stock prices fresh and broadcasts them to WebSocket clients.
+ *
+ * Each symbol has its own refresh interval while its exchange is open: shorter the more people are watching it
+ * (STOMP topic subscribers plus portfolio streams holding it) and the more it has been moving, longer for quiet
+ * symbols nobody is looking at. Once the exchange closes a symbol is refreshed one more time to pick up the
+ * closing price and then left alone until the next session opens. Refreshes draw on their own per-minute budget,
+ * leaving the rest of the Finnhub quota to on-demand quotes; when the budget runs short the most overdue symbols
+ * go first.
+ */
 @Service
 public class StockPriceService {
 
@@ -22,27 +44,99 @@ public class StockPriceService {
     @Autowired
     private SimpMessagingTemplate messagingTemplate;
 
+    @Autowired
+    private DividendIncomeService dividendIncomeService;
+
+    @Autowired
+    private PortfolioStreamService portfolioStreamService;
+
+    @Autowired
+    private StockSubscriptionTracker subscriptionTracker;
+
+    @Autowired
+    private ReadModelCache readModelCache;
+
+    @Autowired
+    private PortfolioStateEngine portfolioStateEngine;
+
+    @Autowired
+    private PriceAlertService priceAlertService;
+
+    // Interval for a symbol nobody watches that moves at the reference rate
+    @Value("${stocks.refresh.base-interval-ms:60000}")
+    private long baseIntervalMs;
+
+    @Value("${stocks.refresh.min-interval-ms:10000}")
+    private long minIntervalMs;
+
+    @Value("${stocks.refresh.max-interval-ms:300000}")
+    private long maxIntervalMs;
+
+    // Typical move per sqrt(minute), about 2% over a US session
+    @Value("${stocks.refresh.reference-move:0.001}")
+    private double referenceMove;
+
+    // Wait after the close before taking the closing price, so the quote has settled
+    @Value("${stocks.refresh.close-settle-ms:120000}")
+    private long closeSettleMs;
+
+    @Value("${stocks.refresh.symbol-reload-ms:60000}")
+    private long symbolReloadMs;
+
+    private final RateLimiter refreshBudget;
+    private final Map<String, RefreshState> states = new ConcurrentHashMap<>();
+    private volatile long symbolsLoadedAt;
+
+    public StockPriceService(@Value("${stocks.refresh.calls-per-minute:30}") int callsPerMinute) {
+        this.refreshBudget = new RateLimiter(callsPerMinute, Math.max(1, callsPerMinute / 6));
+    }
+
+    private static class RefreshState {
+        private final String symbol;
+        private final MarketCalendar.Exchange exchange;
+        private long nextDueMs;
+        private long lastRefreshMs;
+        private BigDecimal lastPrice;
+        // From the last REST quote (price - change); streamed trades carry no change of their own
+        private BigDecimal previousClose;
+        private long lastPersistMs;
+        // Exponentially weighted size of recent moves, per sqrt(minute) so it doesn't depend on the interval
+        private double move = Double.NaN;
+        private int failures;
+
+        RefreshState(String symbol) {
+            this.symbol = symbol;
+            this.exchange = MarketCalendar.forSymbol(symbol);
+        }
+    }
+
     /**
-     * Fetches real-time stock prices every 10 seconds and broadcasts to WebSocket clients
-     * Respects Finnhub rate limit of 60 calls/min (we'll update ~5 stocks per call)
+     * Refreshes whichever symbols are due, most overdue first, as far as the refresh budget allows
      */
-    @Scheduled(fixedRate = 10000)
+    @Scheduled(fixedDelayString = "${stocks.refresh.tick-ms:1000}")
     public void updateStockPrices() {
-        List<Stock> stocks = stockRepository.findAll();
-
-        for (Stock stock : stocks) {
-            try {
-                StockPriceUpdate update = finnhubService.getStockQuote(stock.getSymbol());
+        long now = System.currentTimeMillis();
+        if (now - symbolsLoadedAt >= symbolReloadMs) {
+            loadSymbols(now);
+        }
 
-                // Update stock entity in database
-                stock.setCurrentPrice(update.getCurrentPrice());
-                stockRepository.save(stock);
+        List<RefreshState> due = new ArrayList<>();
+        for (RefreshState state : states.values()) {
+            synchronized (state) {
+                pullForward(state, now);
+                if (state.nextDueMs <= now) {
+                    due.add(state);
+                }
+            }
+        }
+        due.sort(Comparator.comparingLong(state -> state.nextDueMs));
 
-                // Broadcast to WebSocket subscribers
-                messagingTemplate.convertAndSend("/topic/stocks/" + stock.getSymbol(), update);
-            } catch (Exception e) {
-                System.err.println("Failed to update price for " + stock.getSymbol() + ": " + e.getMessage());
+        for (RefreshState state : due) {
+            if (!refreshBudget.tryAcquire()) {
+                // Out of budget for now; whatever is left stays due and keeps its place in the queue
+                break;
             }
+            refresh(state);
         }
     }
 
@@ -52,6 +146,217 @@ public class StockPriceService {
     public StockPriceUpdate fetchAndBroadcastStockPrice(String symbol) {
         StockPriceUpdate update = finnhubService.getStockQuote(symbol);
         messagingTemplate.convertAndSend("/topic/stocks/" + symbol, update);
+        // Counts as this symbol's refresh, so the scheduler doesn't fetch it again straight away
+        RefreshState state = states.get(symbol);
+        if (state != null && !update.isStale()) {
+            synchronized (state) {
+                observe(state, update.getCurrentPrice(), System.currentTimeMillis());
+                state.previousClose = previousClose(update);
+            }
+        }
         return update;
     }
+
+    /**
+     * Publishes a price from the trade stream through the same path as a polled one. A streamed symbol's next poll
+     * keeps moving back, so polling only resumes if the stream goes quiet. The database is written at most once
+     * per minimum refresh interval, since listeners get every update from memory.
+     */
+    public void onStreamPrice(String symbol, BigDecimal price) {
+        if (price == null || price.signum() <= 0) {
+            return;
+        }
+        RefreshState state = states.get(symbol);
+        if (state == null) {
+            // Watched but not a stored stock (or not loaded yet): nothing to persist, just pass the price on
+            messagingTemplate.convertAndSend("/topic/stocks/" + symbol, new StockPriceUpdate(symbol, price,
+                    BigDecimal.ZERO, BigDecimal.ZERO, LocalDateTime.now(), false));
+            return;
+        }
+        long now = System.currentTimeMillis();
+        BigDecimal change = BigDecimal.ZERO;
+        BigDecimal changePercent = BigDecimal.ZERO;
+        boolean persist;
+        boolean changeKnown;
+        synchronized (state) {
+            observe(state, price, now);
+            changeKnown = state.previousClose != null && state.previousClose.signum() > 0;
+            if (changeKnown) {
+                change = price.subtract(state.previousClose);
+                changePercent = change.multiply(BigDecimal.valueOf(100))
+                        .divide(state.previousClose, 4, RoundingMode.HALF_UP);
+            }
+            persist = now - state.lastPersistMs >= minIntervalMs;
+            if (persist) {
+                state.lastPersistMs = now;
+            }
+        }
+
+        StockPriceUpdate update = new StockPriceUpdate(symbol, price, change, changePercent, LocalDateTime.now(), false);
+        if (changeKnown) {
+            // Quote reads can use it; without a change it would pass for an unchanged day
+            finnhubService.onStreamQuote(update);
+        }
+        if (persist) {
+            stockRepository.findBySymbol(symbol).ifPresent(stock -> {
+                stock.setCurrentPrice(price);
+                stockRepository.save(stock);
+            });
+        }
+        publish(symbol, price);
+        messagingTemplate.convertAndSend("/topic/stocks/" + symbol, update);
+    }
+
+    /**
+     * Refresh bookkeeping of every symbol that has been refreshed, for the warm-state snapshot
+     */
+    public List<RefreshSnapshot> getRefreshSnapshots() {
+        List<RefreshSnapshot> snapshots = new ArrayList<>(states.size());
+        for (RefreshState state : states.values()) {
+            synchronized (state) {
+                if (state.lastRefreshMs > 0) {
+                    snapshots.add(new RefreshSnapshot(state.symbol, state.lastRefreshMs, state.lastPrice,
+                            state.previousClose, state.move));
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Picks a symbol's schedule up where an earlier run left it, so a restart doesn't refresh every symbol at once
+     * (or at all while its market is closed and the closing price is already known). Symbols no longer stored are
+     * dropped again on the next symbol reload.
+     */
+    public void restoreRefreshState(RefreshSnapshot snapshot) {
+        states.computeIfAbsent(snapshot.getSymbol(), symbol -> {
+            RefreshState state = new RefreshState(symbol);
+            state.lastRefreshMs = snapshot.getLastRefreshMs();
+            state.lastPersistMs = snapshot.getLastRefreshMs();
+            state.lastPrice = snapshot.getLastPrice();
+            state.previousClose = snapshot.getPreviousClose();
+            state.move = snapshot.getMove();
+            // Due as it would have been had the process kept running
+            state.nextDueMs = nextDue(state, state.lastRefreshMs);
+            return state;
+        });
+    }
+
+    private static BigDecimal previousClose(StockPriceUpdate update) {
+        return update.getChange() != null ? update.getCurrentPrice().subtract(update.getChange()) : null;
+    }
+
+    private void refresh(RefreshState state) {
+        String symbol = state.symbol;
+        try {
+            StockPriceUpdate update = finnhubService.getStockQuote(symbol);
+            if (update.isStale()) {
+                // Finnhub is down or slow (and already logged by its circuit); try again after a back-off
+                synchronized (state) {
+                    backOff(state);
+                }
+                return;
+            }
+
+            // Update stock entity in database
+            stockRepository.findBySymbol(symbol).ifPresent(stock -> {
+                stock.setCurrentPrice(update.getCurrentPrice());
+                stockRepository.save(stock);
+            });
+            publish(symbol, update.getCurrentPrice());
+
+            // Broadcast to WebSocket subscribers
+            messagingTemplate.convertAndSend("/topic/stocks/" + symbol, update);
+
+            synchronized (state) {
+                observe(state, update.getCurrentPrice(), System.currentTimeMillis());
+                state.previousClose = previousClose(update);
+                state.lastPersistMs = state.lastRefreshMs;
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to update price for " + symbol + ": " + e.getMessage());
+            synchronized (state) {
+                backOff(state);
+            }
+        }
+    }
+
+    // Hands a new price to everything that values holdings or watches price levels
+    private void publish(String symbol, BigDecimal price) {
+        dividendIncomeService.onPriceUpdate(symbol, price);
+        portfolioStreamService.onPriceUpdate(symbol, price);
+        readModelCache.onPriceUpdate(symbol, price);
+        portfolioStateEngine.onPriceUpdate(symbol, price);
+        priceAlertService.onPriceUpdate(symbol, price);
+    }
+
+    // Back off on repeated failures, but never past the longest interval
+    private void backOff(RefreshState state) {
+        state.failures = Math.min(state.failures + 1, 10);
+        long backoff = Math.min(maxIntervalMs, interval(state) << (state.failures - 1));
+        state.nextDueMs = System.currentTimeMillis() + backoff;
+    }
+
+    private void observe(RefreshState state, BigDecimal price, long now) {
+        if (state.lastPrice != null && state.lastPrice.signum() > 0 && price != null && now > state.lastRefreshMs) {
+            double minutes = Math.max(1.0 / 60, (now - state.lastRefreshMs) / 60000.0);
+            double move = Math.abs(price.doubleValue() / state.lastPrice.doubleValue() - 1) / Math.sqrt(minutes);
+            state.move = Double.isNaN(state.move) ? move : 0.8 * state.move + 0.2 * move;
+        }
+        state.lastPrice = price;
+        state.lastRefreshMs = now;
+        state.failures = 0;
+        state.nextDueMs = nextDue(state, now);
+    }
+
+    private long nextDue(RefreshState state, long now) {
+        Instant instant = Instant.ofEpochMilli(now);
+        if (state.exchange.isOpen(instant)) {
+            return now + interval(state);
+        }
+        // Closed: one refresh once the closing price has settled, then nothing until the next open
+        long settled = state.exchange.lastClose(instant).toEpochMilli() + closeSettleMs;
+        if (state.lastRefreshMs < settled) {
+            return Math.max(now, settled);
+        }
+        return state.exchange.nextOpen(instant).toEpochMilli();
+    }
+
+    private long interval(RefreshState state) {
+        int watchers = subscriptionTracker.getSubscriberCount(state.symbol)
+                + portfolioStreamService.getSubscriberCount(state.symbol);
+        double volatility = Double.isNaN(state.move) || referenceMove <= 0
+                ? 1.0
+                : Math.max(0.5, Math.min(4.0, state.move / referenceMove));
+        long interval = (long) (baseIntervalMs / ((1 + watchers) * volatility));
+        return Math.max(minIntervalMs, Math.min(maxIntervalMs, interval));
+    }
+
+    // A new watcher shouldn't wait out an interval chosen while nobody was looking
+    private void pullForward(RefreshState state, long now) {
+        if (state.lastRefreshMs == 0 || state.failures > 0 || !state.exchange.isOpen(Instant.ofEpochMilli(now))) {
+            return;
+        }
+        long due = state.lastRefreshMs + interval(state);
+        if (due < state.nextDueMs) {
+            state.nextDueMs = due;
+        }
+    }
+
+    private void loadSymbols(long now) {
+        Set<String> symbols = new HashSet<>();
+        for (Stock stock : stockRepository.findAll()) {
+            symbols.add(stock.getSymbol());
+        }
+        // New symbols are due immediately; the first refresh after startup also fills in prices while closed
+        for (String symbol : symbols) {
+            states.computeIfAbsent(symbol, s -> {
+                RefreshState state = new RefreshState(s);
+                state.nextDueMs = now;
+                return state;
+            });
+        }
+        states.keySet().retainAll(symbols);
+        symbolsLoadedAt = now;
+    }
 }
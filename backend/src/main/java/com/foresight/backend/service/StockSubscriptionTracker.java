@@ -0,0 +1,73 @@
+package com.foresight.backend.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts STOMP subscriptions to /topic/stocks/{symbol} so the price refresh can favour symbols people are watching
+ */
+@Component
+public class StockSubscriptionTracker {
+
+    private static final String PREFIX = "/topic/stocks/";
+
+    // "sessionId:subscriptionId" -> symbol, so unsubscribes and disconnects (which carry no destination) can be undone
+    private final Map<String, String> symbolsBySubscription = new ConcurrentHashMap<>();
+    private final Map<String, Integer> counts = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        String destination = headers.getDestination();
+        if (destination == null || !destination.startsWith(PREFIX)) {
+            return;
+        }
+        String symbol = destination.substring(PREFIX.length());
+        if (symbolsBySubscription.putIfAbsent(headers.getSessionId() + ":" + headers.getSubscriptionId(), symbol) == null) {
+            counts.merge(symbol, 1, Integer::sum);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor headers = StompHeaderAccessor.wrap(event.getMessage());
+        release(symbolsBySubscription.remove(headers.getSessionId() + ":" + headers.getSubscriptionId()));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String prefix = event.getSessionId() + ":";
+        for (String key : symbolsBySubscription.keySet()) {
+            if (key.startsWith(prefix)) {
+                release(symbolsBySubscription.remove(key));
+            }
+        }
+    }
+
+    /**
+     * Symbols with at least one subscriber
+     */
+    public Set<String> getWatchedSymbols() {
+        return counts.keySet();
+    }
+
+    public int getSubscriberCount(String symbol) {
+        return counts.getOrDefault(symbol, 0);
+    }
+
+    private void release(String symbol) {
+        if (symbol == null) {
+            return;
+        }
+        // Dropping the entry at zero keeps the map to symbols currently watched
+        counts.computeIfPresent(symbol, (s, count) -> count > 1 ? count - 1 : null);
+    }
+}
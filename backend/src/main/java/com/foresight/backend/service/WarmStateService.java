@@ -0,0 +1,267 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.RefreshSnapshot;
+import com.foresight.backend.dto.StockPriceUpdate;
+import com.foresight.backend.repository.StockRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Carries the in-memory price state across restarts, so a node answers quote reads from memory as soon as it is up
+ * and picks up each symbol's refresh schedule where it left off instead of polling everything at once.
+ *
+ * The snapshot is written on shutdown (and every warmstate.save-interval-ms, in case the process is killed) and
+ * read back through a read-only memory mapping while the services are being created, before the first scheduled
+ * refresh. Restored quotes are served as stale and refreshed lazily on first read. Symbol metadata is not copied
+ * into the file, since the stocks table is its source of truth: once the application is ready the snapshot's symbols
+ * are loaded in a few batched queries, which fills the second-level stock and natural-id regions before the first
+ * requests would otherwise miss them one symbol at a time.
+ *
+ * File layout (little endian):
+ *   header  - magic (int), version (int), writtenAt (long), records (int)
+ *   records - symbol length (short) and UTF-8 bytes, flags (byte), then
+ *             with the QUOTE flag: price, change, changePercent (double), quote time (long, epoch millis)
+ *             with the REFRESH flag: lastRefreshMs (long), lastPrice, previousClose, move (double)
+ * Missing decimals are stored as NaN.
+ */
+@Service
+public class WarmStateService {
+
+    private static final int MAGIC = 0x5741524D; // "WARM"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 20;
+    private static final byte QUOTE = 1;
+    private static final byte REFRESH = 2;
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @Autowired
+    private StockPriceService stockPriceService;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Value("${warmstate.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmstate.file:data/warm-state.bin}")
+    private String file;
+
+    // An older snapshot says too little about today's prices to be worth serving
+    @Value("${warmstate.max-age-ms:604800000}")
+    private long maxAgeMs;
+
+    @Value("${warmstate.metadata-batch-size:500}")
+    private int metadataBatchSize;
+
+    private final List<String> restoredSymbols = new ArrayList<>();
+    // Held across the file writes, so not the monitor, which would pin a virtual thread's carrier
+    private final ReentrantLock saveLock = new ReentrantLock();
+
+    @PostConstruct
+    public void restore() {
+        if (!enabled) {
+            return;
+        }
+        Path path = Paths.get(file);
+        if (!Files.exists(path)) {
+            return;
+        }
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapping.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapping.limit() < HEADER_SIZE || mapping.getInt() != MAGIC || mapping.getInt() != VERSION) {
+                System.err.println("Ignoring unrecognised warm-state snapshot " + file);
+                return;
+            }
+            long writtenAt = mapping.getLong();
+            if (System.currentTimeMillis() - writtenAt > maxAgeMs) {
+                System.out.println("Warm-state snapshot " + file + " is too old, starting cold");
+                return;
+            }
+            int records = mapping.getInt();
+            for (int i = 0; i < records; i++) {
+                readRecord(mapping);
+            }
+            System.out.println("Restored warm state for " + records + " symbols from " + file + " in "
+                    + (System.nanoTime() - started) / 1_000_000 + "ms");
+        } catch (IOException | RuntimeException e) {
+            // A damaged snapshot only costs the warm start
+            System.err.println("Failed to restore warm state from " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads the restored symbols' stock rows into the second-level cache in batches
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmMetadata() {
+        if (restoredSymbols.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        int loaded = 0;
+        try {
+            for (int from = 0; from < restoredSymbols.size(); from += metadataBatchSize) {
+                List<String> batch = restoredSymbols.subList(from, Math.min(from + metadataBatchSize, restoredSymbols.size()));
+                loaded += stockRepository.findBySymbolIn(batch).size();
+            }
+        } catch (RuntimeException e) {
+            // Only the warm cache is lost; lookups fall through to the database as usual
+            System.err.println("Failed to warm stock metadata: " + e.getMessage());
+        }
+        System.out.println("Warmed metadata for " + loaded + " stocks in " + (System.nanoTime() - started) / 1_000_000 + "ms");
+        restoredSymbols.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled) {
+            save();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${warmstate.save-interval-ms:300000}",
+            fixedDelayString = "${warmstate.save-interval-ms:300000}")
+    public void periodicSave() {
+        if (enabled) {
+            save();
+        }
+    }
+
+    /**
+     * Writes the current quotes and refresh schedules to the snapshot file, replacing it atomically
+     */
+    public int save() {
+        saveLock.lock();
+        try {
+            return writeSnapshot();
+        } finally {
+            saveLock.unlock();
+        }
+    }
+
+    private int writeSnapshot() {
+        Map<String, StockPriceUpdate> quotes = finnhubService.getCachedQuotes();
+        Map<String, RefreshSnapshot> refreshes = new HashMap<>();
+        for (RefreshSnapshot snapshot : stockPriceService.getRefreshSnapshots()) {
+            refreshes.put(snapshot.getSymbol(), snapshot);
+        }
+        TreeSet<String> symbols = new TreeSet<>(quotes.keySet());
+        symbols.addAll(refreshes.keySet());
+        if (symbols.isEmpty()) {
+            return 0;
+        }
+
+        // Upper bound per record: length, up to 3 bytes per char, flags, quote and refresh fields
+        int capacity = HEADER_SIZE;
+        for (String symbol : symbols) {
+            capacity += 2 + symbol.length() * 3 + 1 + 32 + 32;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis()).putInt(symbols.size());
+        for (String symbol : symbols) {
+            writeRecord(buffer, symbol, quotes.get(symbol), refreshes.get(symbol));
+        }
+        buffer.flip();
+
+        Path path = Paths.get(file);
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to write warm state to " + file + ": " + e.getMessage());
+            return 0;
+        }
+        return symbols.size();
+    }
+
+    private static void writeRecord(ByteBuffer buffer, String symbol, StockPriceUpdate quote, RefreshSnapshot refresh) {
+        byte[] name = symbol.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) name.length).put(name);
+        buffer.put((byte) ((quote != null ? QUOTE : 0) | (refresh != null ? REFRESH : 0)));
+        if (quote != null) {
+            LocalDateTime timestamp = quote.getTimestamp() != null ? quote.getTimestamp() : LocalDateTime.now();
+            buffer.putDouble(toDouble(quote.getCurrentPrice()))
+                    .putDouble(toDouble(quote.getChange()))
+                    .putDouble(toDouble(quote.getChangePercent()))
+                    .putLong(timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        if (refresh != null) {
+            buffer.putLong(refresh.getLastRefreshMs())
+                    .putDouble(toDouble(refresh.getLastPrice()))
+                    .putDouble(toDouble(refresh.getPreviousClose()))
+                    .putDouble(refresh.getMove());
+        }
+    }
+
+    private void readRecord(ByteBuffer buffer) {
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        String symbol = new String(name, StandardCharsets.UTF_8);
+        restoredSymbols.add(symbol);
+        byte flags = buffer.get();
+        if ((flags & QUOTE) != 0) {
+            BigDecimal price = toDecimal(buffer.getDouble());
+            BigDecimal change = toDecimal(buffer.getDouble());
+            BigDecimal changePercent = toDecimal(buffer.getDouble());
+            LocalDateTime timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault());
+            if (price != null) {
+                finnhubService.restoreQuote(new StockPriceUpdate(symbol, price, change, changePercent, timestamp, false));
+            }
+        }
+        if ((flags & REFRESH) != 0) {
+            long lastRefreshMs = buffer.getLong();
+            BigDecimal lastPrice = toDecimal(buffer.getDouble());
+            BigDecimal previousClose = toDecimal(buffer.getDouble());
+            double move = buffer.getDouble();
+            stockPriceService.restoreRefreshState(new RefreshSnapshot(symbol, lastRefreshMs, lastPrice, previousClose, move));
+        }
+    }
+
+    private static double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : Double.NaN;
+    }
+
+    private static BigDecimal toDecimal(double value) {
+        // valueOf gives the shortest decimal that round-trips, so 187.13 comes back as 187.13
+        return Double.isNaN(value) ? null : BigDecimal.valueOf(value);
+    }
+}
@@ -0,0 +1,14 @@
+-- Target allocations for rebalancing. A target is a symbol or a sector (stocks.sector, the profile's industry),
+-- with its weight and the drift allowed before it is traded back, both in percent of the whole portfolio.
+ALTER TABLE stocks ADD COLUMN sector VARCHAR(100);
+
+CREATE TABLE allocation_targets (
+    id            BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id       BIGINT NOT NULL,
+    target_type   VARCHAR(8) NOT NULL,
+    target_key    VARCHAR(100) NOT NULL,
+    weight_pct    NUMERIC(7, 4) NOT NULL,
+    tolerance_pct NUMERIC(7, 4) NOT NULL,
+    CONSTRAINT fk_allocation_targets_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT uq_allocation_targets UNIQUE (user_id, target_type, target_key)
+);
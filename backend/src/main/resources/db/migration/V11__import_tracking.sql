@@ -0,0 +1,17 @@
+-- Bulk imports. import_key is a hash of the uploaded file (or a caller's idempotency key), so the same file can't
+-- be imported twice; a failed import deletes its row again along with everything it wrote.
+CREATE TABLE imports (
+    id         VARCHAR(36) PRIMARY KEY,
+    user_id    BIGINT NOT NULL,
+    import_key VARCHAR(64),
+    created_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_imports_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT uk_imports_user_key UNIQUE (user_id, import_key)
+);
+
+-- Rows written by an import carry its id so a failed one can be rolled back
+ALTER TABLE trades ADD COLUMN import_id VARCHAR(36);
+ALTER TABLE deposits ADD COLUMN import_id VARCHAR(36);
+
+CREATE INDEX idx_trades_import ON trades (import_id);
+CREATE INDEX idx_deposits_import ON deposits (import_id);
@@ -0,0 +1,66 @@
+-- Baseline: the schema as previously generated by Hibernate from the entities.
+-- Existing databases created that way are baselined at this version and start from V2.
+
+CREATE TABLE users (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    supabase_id VARCHAR(255) NOT NULL,
+    email       VARCHAR(255) NOT NULL,
+    first_name  VARCHAR(255) NOT NULL,
+    last_name   VARCHAR(255) NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL,
+    updated_at  TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_users_supabase_id UNIQUE (supabase_id),
+    CONSTRAINT uk_users_email UNIQUE (email)
+);
+
+CREATE TABLE stocks (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    symbol             VARCHAR(255) NOT NULL,
+    company_name       VARCHAR(255) NOT NULL,
+    current_price      NUMERIC(10, 2),
+    dividend_yield     NUMERIC(10, 4),
+    annual_dividend    NUMERIC(10, 2),
+    next_dividend_date TIMESTAMP(6),
+    next_earnings_date TIMESTAMP(6),
+    last_updated       TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_stocks_symbol UNIQUE (symbol)
+);
+
+CREATE TABLE accounts (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id           BIGINT NOT NULL,
+    total_deposits    NUMERIC(15, 2) NOT NULL,
+    current_value     NUMERIC(15, 2) NOT NULL,
+    total_profit_loss NUMERIC(15, 2) NOT NULL,
+    daily_profit_loss NUMERIC(15, 2) NOT NULL,
+    last_updated      TIMESTAMP(6) NOT NULL,
+    created_at        TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_accounts_user_id UNIQUE (user_id),
+    CONSTRAINT fk_accounts_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE deposits (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id      BIGINT NOT NULL,
+    amount       NUMERIC(15, 2) NOT NULL,
+    deposit_date TIMESTAMP(6) NOT NULL,
+    description  VARCHAR(255),
+    created_at   TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_deposits_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
+
+CREATE TABLE portfolio_holdings (
+    id                     BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id                BIGINT NOT NULL,
+    stock_id               BIGINT NOT NULL,
+    quantity               INTEGER NOT NULL,
+    average_buy_price      NUMERIC(10, 2) NOT NULL,
+    total_invested         NUMERIC(15, 2) NOT NULL,
+    current_value          NUMERIC(15, 2),
+    profit_loss            NUMERIC(15, 2),
+    profit_loss_percentage NUMERIC(10, 4),
+    created_at             TIMESTAMP(6) NOT NULL,
+    updated_at             TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_portfolio_holdings_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_portfolio_holdings_stock FOREIGN KEY (stock_id) REFERENCES stocks (id)
+);
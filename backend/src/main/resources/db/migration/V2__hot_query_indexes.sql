@@ -0,0 +1,25 @@
+-- Indexes for the repository queries that otherwise scan.
+
+-- One row per (user, stock); merges duplicates a race may already have created before adding the constraint.
+-- Serves findByUserId, findByUserAndStock and the per-user SUM queries via its leading user_id column.
+UPDATE portfolio_holdings h
+SET quantity = (SELECT SUM(d.quantity) FROM portfolio_holdings d
+                WHERE d.user_id = h.user_id AND d.stock_id = h.stock_id),
+    total_invested = (SELECT SUM(d.total_invested) FROM portfolio_holdings d
+                      WHERE d.user_id = h.user_id AND d.stock_id = h.stock_id),
+    average_buy_price = (SELECT ROUND(SUM(d.total_invested) / SUM(d.quantity), 2) FROM portfolio_holdings d
+                         WHERE d.user_id = h.user_id AND d.stock_id = h.stock_id)
+WHERE h.id IN (SELECT MIN(id) FROM portfolio_holdings
+               GROUP BY user_id, stock_id HAVING COUNT(*) > 1);
+
+DELETE FROM portfolio_holdings
+WHERE id NOT IN (SELECT MIN(id) FROM portfolio_holdings GROUP BY user_id, stock_id);
+
+ALTER TABLE portfolio_holdings
+    ADD CONSTRAINT uk_portfolio_holdings_user_stock UNIQUE (user_id, stock_id);
+
+-- countByStockId (and the stock foreign key)
+CREATE INDEX idx_portfolio_holdings_stock_id ON portfolio_holdings (stock_id);
+
+-- findByUserIdOrderByDepositDateDesc and getTotalDepositsByUserId; id makes the order total
+CREATE INDEX idx_deposits_user_date ON deposits (user_id, deposit_date, id);
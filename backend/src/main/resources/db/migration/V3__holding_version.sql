@@ -0,0 +1,2 @@
+-- Optimistic locking for holdings; the PostgreSQL upsert increments it too
+ALTER TABLE portfolio_holdings ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
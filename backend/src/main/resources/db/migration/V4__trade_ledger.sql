@@ -0,0 +1,34 @@
+-- Append-only trade ledger; portfolio_holdings becomes a projection of it
+CREATE TABLE trades (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id    BIGINT NOT NULL,
+    stock_id   BIGINT NOT NULL,
+    side       VARCHAR(4) NOT NULL,
+    quantity   INTEGER NOT NULL,
+    amount     NUMERIC(15, 2) NOT NULL,
+    trade_date TIMESTAMP(6) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT fk_trades_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_trades_stock FOREIGN KEY (stock_id) REFERENCES stocks (id),
+    CONSTRAINT ck_trades_side CHECK (side IN ('BUY', 'SELL')),
+    CONSTRAINT ck_trades_quantity CHECK (quantity > 0)
+);
+
+-- Replay reads one user's trades grouped by stock in ledger order
+CREATE INDEX idx_trades_user_stock ON trades (user_id, stock_id, id);
+
+-- Realized gains survive a position being sold down to zero; ledger_sequence is the last trade the row reflects
+ALTER TABLE portfolio_holdings ADD COLUMN realized_profit_loss NUMERIC(15, 2) DEFAULT 0 NOT NULL;
+ALTER TABLE portfolio_holdings ADD COLUMN ledger_sequence BIGINT DEFAULT 0 NOT NULL;
+
+-- Existing holdings have no trade history: open each with a single buy at its recorded cost
+INSERT INTO trades (user_id, stock_id, side, quantity, amount, trade_date, created_at)
+SELECT user_id, stock_id, 'BUY', quantity, total_invested, created_at, CURRENT_TIMESTAMP
+FROM portfolio_holdings
+WHERE quantity > 0
+ORDER BY id;
+
+UPDATE portfolio_holdings
+SET ledger_sequence = COALESCE((SELECT MAX(t.id) FROM trades t
+                                WHERE t.user_id = portfolio_holdings.user_id
+                                  AND t.stock_id = portfolio_holdings.stock_id), 0);
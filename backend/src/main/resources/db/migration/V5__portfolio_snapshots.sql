@@ -0,0 +1,13 @@
+-- One row per user per day, written by the end-of-day snapshot job.
+-- twr_index chains each day's time-weighted return (starts at 1), so the return over any range is
+-- index(end) / index(start) - 1 without walking the days in between.
+CREATE TABLE portfolio_snapshots (
+    user_id       BIGINT NOT NULL,
+    snapshot_date DATE NOT NULL,
+    market_value  NUMERIC(15, 2) NOT NULL,
+    cost_basis    NUMERIC(15, 2) NOT NULL,
+    realized_gain NUMERIC(15, 2) NOT NULL,
+    twr_index     NUMERIC(20, 10) NOT NULL,
+    CONSTRAINT pk_portfolio_snapshots PRIMARY KEY (user_id, snapshot_date),
+    CONSTRAINT fk_portfolio_snapshots_user FOREIGN KEY (user_id) REFERENCES users (id)
+);
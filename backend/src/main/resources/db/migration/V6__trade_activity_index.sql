@@ -0,0 +1,2 @@
+-- Activity history pages through a user's trades newest first, seeking on (trade_date, id)
+CREATE INDEX idx_trades_user_date ON trades (user_id, trade_date, id);
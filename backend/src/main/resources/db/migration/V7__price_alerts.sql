@@ -0,0 +1,19 @@
+-- Price and P&L alerts. Thresholds are prices for PRICE_* alerts and P&L percentages of the holding for PNL_*.
+-- armed is false between firing and the price moving back past the threshold by hysteresis_pct.
+CREATE TABLE price_alerts (
+    id                   BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id              BIGINT NOT NULL,
+    stock_id             BIGINT NOT NULL,
+    kind                 VARCHAR(16) NOT NULL,
+    threshold            NUMERIC(15, 4) NOT NULL,
+    hysteresis_pct       NUMERIC(7, 4) NOT NULL,
+    armed                BOOLEAN NOT NULL,
+    last_triggered_at    TIMESTAMP,
+    last_triggered_price NUMERIC(15, 4),
+    created_at           TIMESTAMP NOT NULL,
+    CONSTRAINT fk_price_alerts_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_price_alerts_stock FOREIGN KEY (stock_id) REFERENCES stocks (id)
+);
+
+CREATE INDEX idx_price_alerts_user_stock ON price_alerts (user_id, stock_id);
+CREATE INDEX idx_price_alerts_stock ON price_alerts (stock_id);
@@ -0,0 +1,4 @@
+-- Quote currency per stock (from the company profile) and the currency each user's totals are shown in.
+-- Minor units are their own codes (GBX is pence), since that is how those exchanges quote.
+ALTER TABLE stocks ADD COLUMN currency VARCHAR(3) NOT NULL DEFAULT 'USD';
+ALTER TABLE users ADD COLUMN base_currency VARCHAR(3) NOT NULL DEFAULT 'USD';
@@ -0,0 +1,8 @@
+-- One row, stamped on the primary every datasource.replica.heartbeat-ms (epoch millis). The copy a replica holds
+-- shows how far behind the primary it is, and which commits it is known to have.
+CREATE TABLE replication_heartbeat (
+    id      INTEGER PRIMARY KEY,
+    beat_at BIGINT NOT NULL
+);
+
+INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, 0);
@@ -0,0 +1,87 @@
+package com.foresight.backend;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * With virtual threads, requests blocked on slow I/O shouldn't be limited by the Tomcat thread pool size
+ */
+@EnabledForJreRange(min = JRE.JAVA_21)
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {
+                "spring.threads.virtual.enabled=true",
+                "server.tomcat.threads.max=8"
+        })
+class VirtualThreadLoadTest {
+
+    private static final int REQUESTS = 400;
+    private static final long UPSTREAM_LATENCY_MS = 1000;
+
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void concurrentRequestsScaleBeyondPlatformThreadPool() {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/test/slow-upstream")).build();
+
+        long started = System.currentTimeMillis();
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < REQUESTS; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(200, response.join().statusCode());
+        }
+        long elapsed = System.currentTimeMillis() - started;
+
+        System.out.println(REQUESTS + " requests, max in flight " + maxInFlight.get() + ", took " + elapsed + "ms");
+        // 8 platform threads would need REQUESTS / 8 seconds; virtual threads overlap nearly all of them
+        assertTrue(maxInFlight.get() > 8 * 10, "max in flight was " + maxInFlight.get());
+        assertTrue(elapsed < UPSTREAM_LATENCY_MS * REQUESTS / 8 / 4, "took " + elapsed + "ms");
+    }
+
+    @TestConfiguration
+    static class SlowUpstreamConfig {
+
+        @RestController
+        static class SlowUpstreamController {
+
+            @GetMapping("/test/slow-upstream")
+            public String slowUpstream() throws InterruptedException {
+                int current = inFlight.incrementAndGet();
+                maxInFlight.accumulateAndGet(current, Math::max);
+                try {
+                    // Stands in for a blocking Finnhub call
+                    Thread.sleep(UPSTREAM_LATENCY_MS);
+                    return "ok";
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        }
+    }
+}
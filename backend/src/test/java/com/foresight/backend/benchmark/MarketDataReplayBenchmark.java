@@ -0,0 +1,52 @@
+package com.foresight.backend.benchmark;
+
+import com.foresight.backend.service.ReplayMarketDataProvider;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks replayed ticks per second through parsing and the last-price coalescing MarketDataStreamService does
+ * per trade, from an in-memory recording.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="MarketDataReplayBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MarketDataReplayBenchmark {
+
+    private static final int TICKS = 100_000;
+
+    @Param({ "50", "500" })
+    public int symbols;
+
+    private String recording;
+    private final Map<String, Double> latest = new ConcurrentHashMap<>();
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        StringBuilder lines = new StringBuilder(TICKS * 32);
+        long timestamp = 1_700_000_000_000L;
+        for (int i = 0; i < TICKS; i++) {
+            timestamp += random.nextInt(5);
+            lines.append(timestamp).append(",SYM").append(random.nextInt(symbols)).append(',')
+                    .append(100 + random.nextDouble() * 10).append(',').append(1 + random.nextInt(500)).append('\n');
+        }
+        recording = lines.toString();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public long replay() throws Exception {
+        return ReplayMarketDataProvider.replay(new StringReader(recording), 0, null,
+                (symbol, price, volume, timestampMs) -> latest.put(symbol, price));
+    }
+}
@@ -0,0 +1,61 @@
+package com.foresight.backend.benchmark;
+
+import com.foresight.backend.service.MonteCarloSimulator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks simulated paths per second for a one-year projection.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="MonteCarloBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MonteCarloBenchmark {
+
+    private static final int PATHS = 20_000;
+    private static final int[] CHECKPOINTS = { 21, 42, 63, 84, 105, 126, 147, 168, 189, 210, 231, 252 };
+
+    @Param({ "5", "25", "100" })
+    public int assets;
+
+    private MonteCarloSimulator simulator;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        double[] prices = new double[assets];
+        double[] quantities = new double[assets];
+        double[] drift = new double[assets];
+        double[] dividends = new double[assets];
+        double[] covariance = new double[assets * assets];
+
+        // Single-factor covariance: 1% daily idiosyncratic vol plus a common market factor
+        double[] loadings = new double[assets];
+        for (int i = 0; i < assets; i++) {
+            prices[i] = 20 + random.nextDouble() * 200;
+            quantities[i] = 1 + random.nextInt(100);
+            drift[i] = 0.0003;
+            dividends[i] = prices[i] * 0.02;
+            loadings[i] = 0.5 + random.nextDouble();
+        }
+        for (int i = 0; i < assets; i++) {
+            for (int j = 0; j < assets; j++) {
+                covariance[i * assets + j] = loadings[i] * loadings[j] * 1e-4 + (i == j ? 1e-4 : 0.0);
+            }
+        }
+
+        simulator = new MonteCarloSimulator(prices, quantities, drift, covariance, dividends, 0.0);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PATHS)
+    public float[][] simulateOneYear() {
+        return simulator.simulate(PATHS, CHECKPOINTS, 7L);
+    }
+}
@@ -0,0 +1,84 @@
+package com.foresight.backend.benchmark;
+
+import com.foresight.backend.service.AlertIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks price ticks per second against 1M active alerts spread over a number of symbols.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Djmh.args="PriceAlertBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class PriceAlertBenchmark {
+
+    private static final int ALERTS = 1_000_000;
+    private static final int TICKS = 4096;
+
+    @Param({ "10", "1000" })
+    public int symbols;
+
+    private AlertIndex[] indexes;
+    private double[] prices;
+    private int[] tickSymbols;
+    private double[] tickMoves;
+    private long fired;
+
+    private final AlertIndex.Listener listener = new AlertIndex.Listener() {
+        @Override
+        public void onFired(long alertId, double price) {
+            fired++;
+        }
+
+        @Override
+        public void onRearmed(long alertId) {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        indexes = new AlertIndex[symbols];
+        prices = new double[symbols];
+        for (int s = 0; s < symbols; s++) {
+            indexes[s] = new AlertIndex();
+            prices[s] = 100;
+        }
+        // Levels within 30% of the price, 1% hysteresis, half above and half below
+        for (long id = 1; id <= ALERTS; id++) {
+            int s = random.nextInt(symbols);
+            double level = 70 + random.nextDouble() * 60;
+            boolean above = random.nextBoolean();
+            double rearm = above ? level * 0.99 : level * 1.01;
+            boolean armed = above ? prices[s] < level : prices[s] > level;
+            indexes[s].add(id, level, rearm, above, armed);
+        }
+        for (AlertIndex index : indexes) {
+            index.onPrice(100, listener);
+        }
+        // Random walk of 0.2% steps
+        tickSymbols = new int[TICKS];
+        tickMoves = new double[TICKS];
+        for (int i = 0; i < TICKS; i++) {
+            tickSymbols[i] = random.nextInt(symbols);
+            tickMoves[i] = random.nextBoolean() ? 1.002 : 1 / 1.002;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public long tick() {
+        for (int i = 0; i < TICKS; i++) {
+            int s = tickSymbols[i];
+            prices[s] *= tickMoves[i];
+            indexes[s].onPrice(prices[s], listener);
+        }
+        return fired;
+    }
+}
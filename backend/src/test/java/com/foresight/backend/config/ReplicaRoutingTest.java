@@ -0,0 +1,118 @@
+package com.foresight.backend.config;
+
+import com.foresight.backend.service.ReadYourWrites;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Routing between two in-memory H2 databases standing in for a primary and its replica. Nothing replicates
+ * between them: a marker row exists only on the replica, so a query shows which one answered, and the test plays
+ * replication by copying heartbeat stamps over.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "datasource.replica.urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "datasource.replica.max-lag-ms=5000",
+        "datasource.replica.heartbeat-ms=3600000"
+})
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL =
+            "jdbc:h2:mem:routingprimary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:routingreplica;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+
+    private static final String MARKER_SQL = "SELECT COUNT(*) FROM users WHERE email = 'replica@example.com'";
+
+    private static final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    static {
+        // A real replica gets the schema from the primary; this one is migrated by hand before the context starts
+        Flyway.configure().dataSource(REPLICA_URL, "sa", "").load().migrate();
+        replica.update("INSERT INTO users (id, supabase_id, email, first_name, last_name, created_at, updated_at) "
+                + "VALUES (9001, 'sb-replica', 'replica@example.com', 'Replica', 'Only', now(), now())");
+    }
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Autowired
+    private ReadYourWrites readYourWrites;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void caughtUp() {
+        replicate(System.currentTimeMillis());
+    }
+
+    @AfterEach
+    void unbind() {
+        ReplicaRoutingDataSource.clearRequest();
+    }
+
+    @Test
+    void readOnlyWorkOfReadRequestsGoesToTheReplica() {
+        ReplicaRoutingDataSource.bindRequest(null, true);
+        assertEquals(1, count(true));
+        assertEquals(0, count(false));
+    }
+
+    @Test
+    void mutatingRequestsAndBackgroundWorkStayOnThePrimary() {
+        ReplicaRoutingDataSource.bindRequest(null, false);
+        assertEquals(0, count(true));
+
+        ReplicaRoutingDataSource.clearRequest();
+        assertEquals(0, count(true));
+    }
+
+    @Test
+    void laggingReplicaIsSkipped() {
+        replicate(System.currentTimeMillis() - 60_000);
+        ReplicaRoutingDataSource.bindRequest(null, true);
+        assertEquals(0, count(true));
+    }
+
+    @Test
+    void userReadsTheirOwnWriteUntilTheReplicaHasIt() throws InterruptedException {
+        readYourWrites.onUserWrite(42L);
+        ReplicaRoutingDataSource.bindRequest(42L, true);
+        assertEquals(0, count(true));
+
+        // Other users aren't held back by it
+        ReplicaRoutingDataSource.bindRequest(43L, true);
+        assertEquals(1, count(true));
+
+        Thread.sleep(2);
+        replicate(System.currentTimeMillis());
+        ReplicaRoutingDataSource.bindRequest(42L, true);
+        assertEquals(1, count(true));
+    }
+
+    // Stands in for the replica receiving the primary's heartbeat stamp, then lets the router measure it
+    private void replicate(long beatAt) {
+        replica.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", beatAt);
+        routingDataSource.heartbeat();
+    }
+
+    private int count(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template.execute(status -> jdbcTemplate.queryForObject(MARKER_SQL, Integer.class));
+    }
+}
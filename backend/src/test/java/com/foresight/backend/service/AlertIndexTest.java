@@ -0,0 +1,107 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlertIndexTest {
+
+    private final List<Long> fired = new ArrayList<>();
+    private final List<Long> rearmed = new ArrayList<>();
+
+    private final AlertIndex.Listener listener = new AlertIndex.Listener() {
+        @Override
+        public void onFired(long alertId, double price) {
+            fired.add(alertId);
+        }
+
+        @Override
+        public void onRearmed(long alertId) {
+            rearmed.add(alertId);
+        }
+    };
+
+    @Test
+    void firesOnlyTheAlertsThePriceCrosses() {
+        AlertIndex index = new AlertIndex();
+        index.add(1, 110, 108.9, true, true);
+        index.add(2, 120, 118.8, true, true);
+        index.add(3, 90, 90.9, false, true);
+
+        assertEquals(0, index.onPrice(105, listener));
+        assertEquals(1, index.onPrice(112, listener));
+        assertEquals(List.of(1L), fired);
+
+        assertEquals(1, index.onPrice(89, listener));
+        assertEquals(List.of(1L, 3L), fired);
+    }
+
+    @Test
+    void firesOnceUntilThePriceMovesBackByTheHysteresis() {
+        AlertIndex index = new AlertIndex();
+        index.add(1, 100, 99, true, true);
+
+        assertEquals(1, index.onPrice(100.5, listener));
+        // Hovering around the level, above the rearm level
+        assertEquals(0, index.onPrice(99.5, listener));
+        assertEquals(0, index.onPrice(100.5, listener));
+        assertTrue(rearmed.isEmpty());
+
+        index.onPrice(98.5, listener);
+        assertEquals(List.of(1L), rearmed);
+        assertEquals(1, index.onPrice(101, listener));
+        assertEquals(List.of(1L, 1L), fired);
+    }
+
+    @Test
+    void disarmedAlertWaitsForTheRearmLevelFirst() {
+        AlertIndex index = new AlertIndex();
+        index.add(1, 50, 50.5, false, false);
+
+        assertEquals(0, index.onPrice(49, listener));
+        index.onPrice(51, listener);
+        assertEquals(List.of(1L), rearmed);
+        assertEquals(1, index.onPrice(49.5, listener));
+    }
+
+    @Test
+    void removedAlertsNeverFire() {
+        AlertIndex index = new AlertIndex();
+        index.add(1, 110, 108.9, true, true);
+        index.add(2, 110, 108.9, true, true);
+
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+        assertFalse(index.remove(7));
+        assertEquals(1, index.size());
+
+        assertEquals(1, index.onPrice(111, listener));
+        assertEquals(List.of(2L), fired);
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void removingMostAlertsKeepsTheRestInOrder() {
+        AlertIndex index = new AlertIndex();
+        for (int i = 1; i <= 1000; i++) {
+            index.add(i, 100 + i, 99 + i, true, true);
+        }
+        index.onPrice(50, listener);
+        for (int i = 1; i <= 1000; i++) {
+            if (i % 10 != 0) {
+                assertTrue(index.remove(i));
+            }
+        }
+        assertEquals(100, index.size());
+
+        // Slots freed by the removals are reused
+        index.add(2000, 150.5, 149.5, true, true);
+        assertEquals(6, index.onPrice(155, listener));
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L, 2000L), fired);
+    }
+}
@@ -0,0 +1,103 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.StockPriceUpdate;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Quote revalidation against a slow local stand-in for Finnhub, with far more symbols in flight than the upstream
+ * pool has threads. Every read must still be answered, and the hedges must still go out.
+ */
+@SpringBootTest(properties = {
+        "foresight.upstream.pool-size=4",
+        "finnhub.resilience.hedge-delay-ms=50",
+        "finnhub.api.calls-per-minute=100000",
+        "finnhub.quote.budget-ms=30000",
+        "stocks.refresh.tick-ms=3600000"
+})
+class FinnhubServiceTest {
+
+    private static final int SYMBOLS = 40;
+
+    private static final HttpServer upstream = slowUpstream();
+
+    @Autowired
+    private FinnhubService finnhubService;
+
+    @DynamicPropertySource
+    static void upstreamUrl(DynamicPropertyRegistry registry) {
+        registry.add("finnhub.api.base-url",
+                () -> "http://localhost:" + upstream.getAddress().getPort() + "/api/v1");
+    }
+
+    @AfterAll
+    static void stopUpstream() {
+        upstream.stop(0);
+    }
+
+    @Test
+    void saturatedRevalidationStillAnswersAndHedges() throws Exception {
+        ExecutorService readers = Executors.newFixedThreadPool(SYMBOLS);
+        try {
+            List<Future<StockPriceUpdate>> reads = new ArrayList<>();
+            for (int i = 0; i < SYMBOLS; i++) {
+                String symbol = "SAT" + i;
+                reads.add(readers.submit(() -> finnhubService.getStockQuote(symbol)));
+            }
+            for (Future<StockPriceUpdate> read : reads) {
+                StockPriceUpdate quote = read.get(60, TimeUnit.SECONDS);
+                assertFalse(quote.isStale());
+            }
+        } finally {
+            readers.shutdownNow();
+        }
+
+        long hedges = (Long) finnhubService.getResilienceStats().get("hedges");
+        assertTrue(hedges > 0, "no hedges were sent");
+    }
+
+    // Answers every quote after 200 ms, well past the hedge delay
+    private static HttpServer slowUpstream() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.createContext("/api/v1/quote", exchange -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                byte[] body = "{\"c\":10.5,\"d\":0.5,\"dp\":5.0}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.ImportJob;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Imports run end to end against the test database: throughput of a large file, rollback of a failed one,
+ * refusal of a repeated one and of trades older than the ledger.
+ */
+@SpringBootTest
+class ImportServiceTest {
+
+    private static final String HEADER = "Date,Action,Symbol,Quantity,Price,Amount\n";
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importsOneHundredThousandRowsInSeconds() throws Exception {
+        long userId = user("bulk");
+        String[] symbols = new String[10];
+        for (int s = 0; s < symbols.length; s++) {
+            symbols[s] = stock("BULK" + s);
+        }
+
+        int rows = 100_000;
+        StringBuilder csv = new StringBuilder(HEADER);
+        LocalDate date = LocalDate.of(2015, 1, 2);
+        int buys = 0;
+        for (int i = 0; i < rows; i++) {
+            if (i % 40 == 39) {
+                date = date.plusDays(1);
+            }
+            if (i % 10 == 0) {
+                csv.append(date).append(",Deposit,,,,1000.00\n");
+            } else {
+                csv.append(date).append(",Buy,").append(symbols[i % symbols.length]).append(",1,25.00,25.00\n");
+                buys++;
+            }
+        }
+
+        long started = System.currentTimeMillis();
+        ImportJob job = importService.importNow(userId, "csv", body(csv), null);
+        long elapsed = System.currentTimeMillis() - started;
+        System.out.println("Imported " + rows + " rows in " + elapsed + " ms");
+
+        assertEquals("COMPLETED", job.getStatus(), job.getError());
+        assertEquals(rows, job.getRowsRead());
+        assertEquals(buys, job.getBuysRecorded());
+        assertEquals(rows - buys, job.getDepositsWritten());
+        assertEquals(buys, count("SELECT SUM(quantity) FROM portfolio_holdings WHERE user_id = ?", userId));
+        assertTrue(elapsed < 60_000, "took " + elapsed + " ms");
+    }
+
+    @Test
+    void failedImportDeletesWhatItWrote() throws Exception {
+        long userId = user("failing");
+        String symbol = stock("FAILS");
+
+        // The first batch of trades and the deposit are written before the overflowing amount aborts the import
+        StringBuilder csv = new StringBuilder(HEADER).append("2024-01-02,Deposit,,,,500.00\n");
+        for (int i = 0; i < 1500; i++) {
+            csv.append("2024-01-02,Buy,").append(symbol).append(",1,10.00,")
+                    .append(i == 1400 ? "100000000000000.00" : "10.00").append('\n');
+        }
+
+        ImportJob job = importService.importNow(userId, "csv", body(csv), "failing-import");
+
+        assertEquals("FAILED", job.getStatus());
+        assertEquals("ROLLED_BACK", job.getPhase());
+        assertEquals(0, count("SELECT COUNT(*) FROM trades WHERE user_id = ?", userId));
+        assertEquals(0, count("SELECT COUNT(*) FROM deposits WHERE user_id = ?", userId));
+        assertEquals(0, count("SELECT COUNT(*) FROM portfolio_holdings WHERE user_id = ?", userId));
+        // The key is released, so the corrected file can be imported under it
+        assertEquals(0, count("SELECT COUNT(*) FROM imports WHERE user_id = ?", userId));
+    }
+
+    @Test
+    void sameFileIsImportedOnce() throws Exception {
+        long userId = user("repeat");
+        String csv = HEADER + "2024-01-02,Buy," + stock("TWICE") + ",5,10.00,50.00\n";
+
+        ImportJob first = importService.startImport(userId, "trades.csv", null, body(csv));
+        for (int i = 0; i < 200 && "RUNNING".equals(importService.getJob(first.getJobId()).getStatus()); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals("COMPLETED", importService.getJob(first.getJobId()).getStatus());
+
+        assertThrows(IllegalStateException.class,
+                () -> importService.startImport(userId, "trades.csv", null, body(csv)));
+        assertEquals(5, count("SELECT SUM(quantity) FROM trades WHERE user_id = ?", userId));
+    }
+
+    @Test
+    void tradesOlderThanTheLedgerAreRejected() throws Exception {
+        long userId = user("history");
+        String symbol = stock("OLDER");
+
+        importService.importNow(userId, "csv", body(HEADER + "2024-03-01,Buy," + symbol + ",2,10.00,20.00\n"), null);
+        ImportJob job = importService.importNow(userId, "csv",
+                body(HEADER + "2023-06-01,Buy," + symbol + ",3,9.00,27.00\n"
+                        + "2024-03-05,Buy," + symbol + ",1,11.00,11.00\n"), null);
+
+        assertEquals("COMPLETED", job.getStatus());
+        assertEquals(1, job.getBuysRecorded());
+        assertEquals(1, job.getRowsRejected());
+        assertTrue(job.getErrors().get(0).contains("predates"), job.getErrors().toString());
+        assertEquals(3, count("SELECT SUM(quantity) FROM portfolio_holdings WHERE user_id = ?", userId));
+    }
+
+    private long user(String name) {
+        String email = name + "-import@example.com";
+        jdbcTemplate.update("INSERT INTO users (supabase_id, email, first_name, last_name, created_at, updated_at) "
+                + "VALUES (?, ?, 'Import', 'Test', now(), now())", "sb-" + name, email);
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+        assertNotNull(id);
+        return id;
+    }
+
+    private String stock(String symbol) {
+        jdbcTemplate.update("INSERT INTO stocks (symbol, company_name, current_price, last_updated) "
+                + "VALUES (?, ?, 10.00, now())", symbol, symbol + " Inc");
+        return symbol;
+    }
+
+    private long count(String sql, long userId) {
+        Long value = jdbcTemplate.queryForObject(sql, Long.class, userId);
+        return value != null ? value : 0;
+    }
+
+    private static InputStream body(CharSequence csv) {
+        return new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,95 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LotBookTest {
+
+    @Test
+    void fifoSellsTheOldestLotFirst() {
+        LotBook book = twoLots(LotBook.Method.FIFO);
+
+        BigDecimal gain = book.sell(3, 10, new BigDecimal("300.00"));
+
+        // The 10 @ 10.00 lot goes: cost 100, proceeds 300
+        assertEquals(new BigDecimal("200.00"), gain);
+        assertEquals(10, book.getQuantity());
+        assertEquals(new BigDecimal("200.00"), book.getCostBasis());
+        assertEquals(1, book.getOpenLots());
+        assertEquals(3, book.getSequence());
+    }
+
+    @Test
+    void lifoSellsTheNewestLotFirst() {
+        LotBook book = twoLots(LotBook.Method.LIFO);
+
+        BigDecimal gain = book.sell(3, 10, new BigDecimal("300.00"));
+
+        // The 10 @ 20.00 lot goes: cost 200, proceeds 300
+        assertEquals(new BigDecimal("100.00"), gain);
+        assertEquals(10, book.getQuantity());
+        assertEquals(new BigDecimal("100.00"), book.getCostBasis());
+        assertEquals(1, book.getOpenLots());
+    }
+
+    @Test
+    void partialSellTakesAProportionOfTheLotCost() {
+        LotBook book = new LotBook(LotBook.Method.FIFO);
+        book.buy(1, 3, new BigDecimal("100.00"));
+
+        BigDecimal gain = book.sell(2, 1, new BigDecimal("40.00"));
+
+        // A third of 100.00, rounded to the cent; the rest stays with the lot
+        assertEquals(new BigDecimal("6.67"), gain);
+        assertEquals(2, book.getQuantity());
+        assertEquals(new BigDecimal("66.67"), book.getCostBasis());
+        assertEquals(1, book.getOpenLots());
+
+        // Selling the rest takes exactly what is left, so rounding never accumulates
+        book.sell(3, 2, new BigDecimal("80.00"));
+        assertEquals(BigDecimal.ZERO, book.getCostBasis());
+        assertEquals(new BigDecimal("20.00"), book.getRealizedGain());
+    }
+
+    @Test
+    void sellAcrossSeveralLots() {
+        LotBook book = new LotBook(LotBook.Method.FIFO);
+        book.buy(1, 5, new BigDecimal("50.00"));
+        book.buy(2, 5, new BigDecimal("60.00"));
+        book.buy(3, 10, new BigDecimal("150.00"));
+
+        BigDecimal gain = book.sell(4, 12, new BigDecimal("240.00"));
+
+        // Both small lots (110.00) and 2 of the 10 @ 15.00 (30.00)
+        assertEquals(new BigDecimal("100.00"), gain);
+        assertEquals(8, book.getQuantity());
+        assertEquals(new BigDecimal("120.00"), book.getCostBasis());
+        assertEquals(1, book.getOpenLots());
+        assertEquals(4, book.getTrades());
+    }
+
+    @Test
+    void sellingMoreThanHeldIsRejected() {
+        LotBook book = twoLots(LotBook.Method.FIFO);
+
+        assertThrows(IllegalArgumentException.class, () -> book.sell(3, 21, new BigDecimal("1.00")));
+
+        // Nothing was consumed
+        assertEquals(20, book.getQuantity());
+        assertEquals(new BigDecimal("300.00"), book.getCostBasis());
+        assertEquals(2, book.getOpenLots());
+        assertEquals(2, book.getSequence());
+    }
+
+    // 10 shares at 10.00, then 10 at 20.00
+    private static LotBook twoLots(LotBook.Method method) {
+        LotBook book = new LotBook(method);
+        book.buy(1, 10, new BigDecimal("100.00"));
+        book.buy(2, 10, new BigDecimal("200.00"));
+        return book;
+    }
+}
@@ -0,0 +1,91 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarketCalendarTest {
+
+    private static final MarketCalendar.Exchange NYSE = MarketCalendar.forSymbol("AAPL");
+    private static final MarketCalendar.Exchange LSE = MarketCalendar.forSymbol("VOD.L");
+
+    @Test
+    void goodFridayClosesBothExchanges() {
+        LocalDate goodFriday = LocalDate.of(2024, 3, 29);
+        assertFalse(NYSE.isTradingDay(goodFriday));
+        assertFalse(LSE.isTradingDay(goodFriday));
+        // Easter Monday is a holiday in London only
+        assertTrue(NYSE.isTradingDay(LocalDate.of(2024, 4, 1)));
+        assertFalse(LSE.isTradingDay(LocalDate.of(2024, 4, 1)));
+    }
+
+    @Test
+    void sundayChristmasIsObservedOnMonday() {
+        LocalDate monday = LocalDate.of(2022, 12, 26);
+        assertFalse(NYSE.isTradingDay(monday));
+        assertFalse(LSE.isTradingDay(monday));
+        // London moves Boxing Day on to Tuesday as well
+        assertTrue(NYSE.isTradingDay(LocalDate.of(2022, 12, 27)));
+        assertFalse(LSE.isTradingDay(LocalDate.of(2022, 12, 27)));
+    }
+
+    @Test
+    void independenceDayMovesOffTheWeekend() {
+        // Sunday July 4th: observed on Monday
+        assertFalse(NYSE.isTradingDay(LocalDate.of(2021, 7, 5)));
+        assertTrue(NYSE.isTradingDay(LocalDate.of(2021, 7, 2)));
+        // Saturday July 4th: observed on Friday
+        assertFalse(NYSE.isTradingDay(LocalDate.of(2026, 7, 3)));
+        assertTrue(NYSE.isTradingDay(LocalDate.of(2026, 7, 6)));
+    }
+
+    @Test
+    void saturdayNewYearIsNotMovedIntoTheOldYear() {
+        assertTrue(NYSE.isTradingDay(LocalDate.of(2021, 12, 31)));
+        assertFalse(NYSE.isTradingDay(LocalDate.of(2022, 1, 1)));
+    }
+
+    @Test
+    void earlyClosesEndTheSessionEarly() {
+        // Day after Thanksgiving
+        assertTrue(NYSE.isOpen(at(2024, 11, 29, 12, 59, "America/New_York")));
+        assertFalse(NYSE.isOpen(at(2024, 11, 29, 13, 0, "America/New_York")));
+        assertEquals(at(2024, 11, 29, 13, 0, "America/New_York"),
+                NYSE.lastClose(at(2024, 11, 30, 10, 0, "America/New_York")));
+        // July 3rd on a weekday that isn't the holiday itself
+        assertFalse(NYSE.isOpen(at(2024, 7, 3, 14, 0, "America/New_York")));
+        // Christmas Eve and New Year's Eve in London
+        assertFalse(LSE.isOpen(at(2024, 12, 24, 13, 0, "Europe/London")));
+        assertTrue(LSE.isOpen(at(2024, 12, 31, 12, 0, "Europe/London")));
+        assertFalse(LSE.isOpen(at(2024, 12, 31, 12, 30, "Europe/London")));
+        // An ordinary day runs to the regular close
+        assertTrue(NYSE.isOpen(at(2024, 11, 27, 15, 59, "America/New_York")));
+    }
+
+    @Test
+    void nextOpenSkipsHolidaysAndWeekends() {
+        // Friday evening before the observed Monday holiday
+        assertEquals(at(2021, 7, 6, 9, 30, "America/New_York"),
+                NYSE.nextOpen(at(2021, 7, 2, 17, 0, "America/New_York")));
+    }
+
+    @Test
+    void prefixedSymbolsNeverClose() {
+        MarketCalendar.Exchange crypto = MarketCalendar.forSymbol("BINANCE:BTCUSDT");
+        assertTrue(crypto.isAlwaysOpen());
+        assertTrue(crypto.isTradingDay(LocalDate.of(2024, 12, 25)));
+        assertNull(crypto.lastClose(Instant.now()));
+    }
+
+    private static Instant at(int year, int month, int day, int hour, int minute, String zone) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.of(zone)).toInstant();
+    }
+}
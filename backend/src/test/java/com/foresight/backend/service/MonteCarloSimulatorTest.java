@@ -0,0 +1,92 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MonteCarloSimulatorTest {
+
+    private static final double[] COVARIANCE = { 4e-4, 1e-4, 1e-4, 2.25e-4 };
+    private static final double[] DRIFT = { 5e-4, -2e-4 };
+
+    @Test
+    void factorsAPositiveDefiniteMatrix() {
+        double[] factor = MonteCarloSimulator.cholesky(new double[] { 4, 2, 2, 3 }, 2, 0.0);
+
+        assertArrayEquals(new double[] { 2, 0, 1, Math.sqrt(2) }, factor, 1e-12);
+        assertEquals(0.0, simulator(new double[] { 1, 1 }, COVARIANCE).getJitter());
+    }
+
+    @Test
+    void jittersOnlyASemiDefiniteMatrixAndReportsIt() {
+        // Perfectly correlated: singular, but a valid covariance
+        MonteCarloSimulator singular = simulator(new double[] { 1, 1 }, new double[] { 1e-4, 1e-4, 1e-4, 1e-4 });
+        assertTrue(singular.getJitter() > 0);
+        assertTrue(singular.getJitter() <= 1e-10);
+
+        // Correlation above one needs far more than the cap allows
+        assertNull(MonteCarloSimulator.cholesky(new double[] { 1e-4, 2e-4, 2e-4, 1e-4 }, 2, 0.0));
+        assertThrows(IllegalArgumentException.class,
+                () -> simulator(new double[] { 1, 1 }, new double[] { 1e-4, 2e-4, 2e-4, 1e-4 }));
+    }
+
+    @Test
+    void simulatedReturnsHaveTheModelsMeanAndCovariance() {
+        int paths = 100_000;
+        // Same seed, one asset held at a time: the two runs draw the same shocks
+        float[][] first = simulator(new double[] { 1, 0 }, COVARIANCE).simulate(paths, new int[] { 1 }, 7);
+        float[][] second = simulator(new double[] { 0, 1 }, COVARIANCE).simulate(paths, new int[] { 1 }, 7);
+
+        double[] a = new double[paths];
+        double[] b = new double[paths];
+        double meanA = 0.0;
+        double meanB = 0.0;
+        for (int p = 0; p < paths; p++) {
+            a[p] = Math.log(first[0][p]);
+            b[p] = Math.log(second[0][p]);
+            meanA += a[p] / paths;
+            meanB += b[p] / paths;
+        }
+        double varA = 0.0;
+        double varB = 0.0;
+        double cov = 0.0;
+        for (int p = 0; p < paths; p++) {
+            varA += (a[p] - meanA) * (a[p] - meanA) / (paths - 1);
+            varB += (b[p] - meanB) * (b[p] - meanB) / (paths - 1);
+            cov += (a[p] - meanA) * (b[p] - meanB) / (paths - 1);
+        }
+
+        // Standard errors are about 6e-5 for the means and 2e-6 for the covariances
+        assertEquals(DRIFT[0], meanA, 3e-4);
+        assertEquals(DRIFT[1], meanB, 3e-4);
+        assertEquals(COVARIANCE[0], varA, 1e-5);
+        assertEquals(COVARIANCE[3], varB, 1e-5);
+        assertEquals(COVARIANCE[1], cov, 1e-5);
+    }
+
+    @Test
+    void sameSeedGivesTheSamePaths() {
+        MonteCarloSimulator simulator = simulator(new double[] { 10, 5 }, COVARIANCE);
+        int[] checkpoints = { 21, 42 };
+
+        float[][] once = simulator.simulate(2000, checkpoints, 42);
+        float[][] again = simulator.simulate(2000, checkpoints, 42);
+        float[][] other = simulator.simulate(2000, checkpoints, 43);
+
+        for (int c = 0; c < checkpoints.length; c++) {
+            assertArrayEquals(once[c], again[c]);
+        }
+        assertFalse(Arrays.equals(once[1], other[1]));
+    }
+
+    private static MonteCarloSimulator simulator(double[] quantities, double[] covariance) {
+        return new MonteCarloSimulator(new double[] { 1, 1 }, quantities, DRIFT, covariance, new double[] { 0, 0 }, 0);
+    }
+}
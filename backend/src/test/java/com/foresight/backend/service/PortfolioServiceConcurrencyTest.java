@@ -0,0 +1,97 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.TradeImportRequest;
+import com.foresight.backend.dto.TradeImportResponse;
+import com.foresight.backend.dto.TradeImportRow;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bulk imports rebuild the user's lot books while single buys update them in place. Running both against the same
+ * position at once must neither lose a trade nor count one twice.
+ */
+@SpringBootTest
+class PortfolioServiceConcurrencyTest {
+
+    private static final String SYMBOL = "CONCUR";
+
+    private static final int THREADS = 8;
+
+    private static final int ROUNDS = 10;
+
+    private static final int ROWS_PER_IMPORT = 3;
+
+    @Autowired
+    private PortfolioService portfolioService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void concurrentImportsAndBuysOfOnePositionAddUp() throws Exception {
+        jdbcTemplate.update("INSERT INTO users (supabase_id, email, first_name, last_name, created_at, updated_at) "
+                + "VALUES ('sb-concurrent', 'concurrent@example.com', 'Con', 'Current', now(), now())");
+        jdbcTemplate.update("INSERT INTO stocks (symbol, company_name, current_price, last_updated) "
+                + "VALUES (?, 'Concurrent Corp', 10.00, now())", SYMBOL);
+        Long userId = jdbcTemplate.queryForObject(
+                "SELECT id FROM users WHERE email = 'concurrent@example.com'", Long.class);
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                boolean importer = t % 2 == 0;
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < ROUNDS; round++) {
+                        if (importer) {
+                            List<TradeImportRow> rows = new ArrayList<>();
+                            for (int i = 0; i < ROWS_PER_IMPORT; i++) {
+                                rows.add(new TradeImportRow(SYMBOL, 1, BigDecimal.TEN));
+                            }
+                            TradeImportResponse response =
+                                    portfolioService.importTrades(new TradeImportRequest(userId, rows, null));
+                            assertTrue(response.getRejected().isEmpty(), response.getRejected().toString());
+                        } else {
+                            portfolioService.addStockToPortfolio(userId, SYMBOL, 1, BigDecimal.TEN);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        int expected = (THREADS / 2) * ROUNDS * ROWS_PER_IMPORT + (THREADS / 2) * ROUNDS;
+        Integer trades = jdbcTemplate.queryForObject(
+                "SELECT SUM(quantity) FROM trades WHERE user_id = ?", Integer.class, userId);
+        Integer holding = jdbcTemplate.queryForObject(
+                "SELECT ph.quantity FROM portfolio_holdings ph JOIN stocks s ON s.id = ph.stock_id "
+                        + "WHERE ph.user_id = ? AND s.symbol = ?", Integer.class, userId, SYMBOL);
+        assertEquals(expected, trades);
+        assertEquals(expected, holding);
+        assertEquals(expected, ledgerService.getHeldQuantities(userId).values().iterator().next());
+    }
+}
@@ -0,0 +1,94 @@
+package com.foresight.backend.service;
+
+import com.foresight.backend.dto.PerformanceResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Snapshots through a buy, a sell with a realized gain and a full removal, and the time-weighted returns read
+ * back from them. Holdings are written directly, as a trade would leave them.
+ */
+@SpringBootTest
+class PortfolioSnapshotServiceTest {
+
+    @Autowired
+    private PortfolioSnapshotService snapshotService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void timeWeightedReturnExcludesBuysSellsAndRemovals() {
+        long userId = user();
+        long stockId = stock("TWRS");
+        LocalDate today = LocalDate.now();
+
+        // Deposit and buy 10 @ 100: the flow is the whole value, no return
+        jdbcTemplate.update("INSERT INTO portfolio_holdings (user_id, stock_id, quantity, average_buy_price, "
+                + "total_invested, current_value, created_at, updated_at) VALUES (?, ?, 10, 100, 1000, 1000, now(), now())",
+                userId, stockId);
+        snapshot(today.minusDays(34), stockId, "100");
+        // Up 10%
+        snapshot(today.minusDays(33), stockId, "110");
+
+        // Buy 10 more @ 110, then up another 10%: the 1100 flow earns the day's return with the rest
+        holding(userId, stockId, 20, "2100", "0");
+        snapshot(today.minusDays(20), stockId, "121");
+
+        // Sell 10 @ 121 (average cost 1050, gain 160), then up 10%: proceeds of 1210 leave at the open
+        holding(userId, stockId, 10, "1050", "160");
+        snapshot(today.minusDays(19), stockId, "133.10");
+
+        // Position removed: one empty row carrying the index, then nothing
+        jdbcTemplate.update("DELETE FROM portfolio_holdings WHERE user_id = ?", userId);
+        snapshot(today.minusDays(18), stockId, "133.10");
+        snapshot(today.minusDays(17), stockId, "133.10");
+
+        List<BigDecimal> indexes = jdbcTemplate.queryForList("SELECT twr_index FROM portfolio_snapshots "
+                + "WHERE user_id = ? ORDER BY snapshot_date", BigDecimal.class, userId);
+        assertEquals(List.of(new BigDecimal("1.0000000000"), new BigDecimal("1.1000000000"),
+                new BigDecimal("1.2100000000"), new BigDecimal("1.3310000000"), new BigDecimal("1.3310000000")), indexes);
+
+        PerformanceResponse max = snapshotService.getPerformance(userId, "MAX");
+        assertEquals(new BigDecimal("33.1000"), max.getTimeWeightedReturn());
+        assertEquals(5, max.getPoints().size());
+
+        // Measured from the close before the range: day two, index 1.1
+        PerformanceResponse month = snapshotService.getPerformance(userId, "1M");
+        assertEquals(today.minusDays(33), month.getStartDate());
+        assertEquals(new BigDecimal("21.0000"), month.getTimeWeightedReturn());
+        assertEquals(3, month.getPoints().size());
+    }
+
+    private void snapshot(LocalDate day, long stockId, String price) {
+        jdbcTemplate.update("UPDATE stocks SET current_price = ? WHERE id = ?", new BigDecimal(price), stockId);
+        snapshotService.takeSnapshots(day);
+    }
+
+    private void holding(long userId, long stockId, int quantity, String invested, String realized) {
+        jdbcTemplate.update("UPDATE portfolio_holdings SET quantity = ?, total_invested = ?, realized_profit_loss = ? "
+                + "WHERE user_id = ? AND stock_id = ?", quantity, new BigDecimal(invested), new BigDecimal(realized),
+                userId, stockId);
+    }
+
+    private long user() {
+        jdbcTemplate.update("INSERT INTO users (supabase_id, email, first_name, last_name, created_at, updated_at) "
+                + "VALUES ('sb-twr', 'twr@example.com', 'Time', 'Weighted', now(), now())");
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'twr@example.com'", Long.class);
+    }
+
+    private long stock(String symbol) {
+        jdbcTemplate.update("INSERT INTO stocks (symbol, company_name, current_price, last_updated) "
+                + "VALUES (?, 'Snapshot Test', 100, now())", symbol);
+        return jdbcTemplate.queryForObject("SELECT id FROM stocks WHERE symbol = ?", Long.class, symbol);
+    }
+}
@@ -0,0 +1,93 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RebalanceOptimizerTest {
+
+    private static final double EPSILON = 1e-9;
+
+    @Test
+    void tradesOnlyOnceAGroupLeavesItsBand() {
+        double[] prices = { 10, 10 };
+        int[] groups = { 0, 1 };
+        double[] targets = { 0.5, 0.5 };
+        double[] tolerances = { 0.05, 0.05 };
+
+        // 52/48 is inside the 5% band
+        RebalanceOptimizer.Result inside = RebalanceOptimizer.optimize(prices, new int[] { 52, 48 }, groups, targets,
+                tolerances, 0);
+        assertArrayEquals(new int[] { 0, 0 }, inside.getTrades());
+
+        // 70/30 is not: back to the target itself, funded by the sale
+        RebalanceOptimizer.Result outside = RebalanceOptimizer.optimize(prices, new int[] { 70, 30 }, groups, targets,
+                tolerances, 0);
+        assertArrayEquals(new int[] { -20, 20 }, outside.getTrades());
+        assertEquals(0.7, outside.getWeightsBefore()[0], EPSILON);
+        assertEquals(0.5, outside.getWeightsAfter()[0], EPSILON);
+        assertEquals(0.5, outside.getWeightsAfter()[1], EPSILON);
+        assertEquals(0.0, outside.getCashAfter(), EPSILON);
+        assertFalse(outside.isCashShort());
+    }
+
+    @Test
+    void cashShortfallScalesEveryBuyAlike() {
+        // Two groups 100 short, the third over target but inside its wide band, so nothing is sold
+        double[] prices = { 10, 10, 10 };
+        int[] quantities = { 20, 20, 55 };
+        int[] groups = { 0, 1, 2 };
+        double[] targets = { 0.3, 0.3, 0.4 };
+        double[] tolerances = { 0.05, 0.05, 0.2 };
+
+        RebalanceOptimizer.Result result = RebalanceOptimizer.optimize(prices, quantities, groups, targets,
+                tolerances, 50);
+
+        // 50 of cash for 200 of shortfall: a quarter each, 2 shares, then the last 10 to one of them
+        int[] trades = result.getTrades();
+        assertTrue(result.isCashShort());
+        assertEquals(0, trades[2]);
+        assertEquals(5, trades[0] + trades[1]);
+        assertTrue(trades[0] >= 2 && trades[1] >= 2);
+        assertEquals(0.0, result.getCashAfter(), EPSILON);
+    }
+
+    @Test
+    void sectorOverTargetSellsItsLargestPositionFirst() {
+        // X and Y share a sector target of 30%; Z has its own of 70%
+        double[] prices = { 50, 20, 10 };
+        int[] quantities = { 10, 5, 40 };
+        int[] groups = { 0, 0, 1 };
+        double[] targets = { 0.3, 0.7 };
+        double[] tolerances = { 0.05, 0.05 };
+
+        RebalanceOptimizer.Result result = RebalanceOptimizer.optimize(prices, quantities, groups, targets,
+                tolerances, 0);
+
+        assertArrayEquals(new int[] { -6, 0, 30 }, result.getTrades());
+        assertEquals(0.6, result.getWeightsBefore()[0], EPSILON);
+        assertEquals(0.3, result.getWeightsAfter()[0], EPSILON);
+        assertEquals(0.7, result.getWeightsAfter()[1], EPSILON);
+    }
+
+    @Test
+    void targetsScaleIntoWhatUntargetedPositionsLeave() {
+        // Half the portfolio has no target, so 60/40 of the whole can't be met
+        double[] prices = { 10, 10, 10 };
+        int[] quantities = { 30, 20, 50 };
+        int[] groups = { 0, 1, -1 };
+        double[] targets = { 0.6, 0.4 };
+        double[] tolerances = { 0.01, 0.01 };
+
+        RebalanceOptimizer.Result result = RebalanceOptimizer.optimize(prices, quantities, groups, targets,
+                tolerances, 0);
+
+        assertTrue(result.isTargetsScaled());
+        assertEquals(0.3, result.getTargets()[0], EPSILON);
+        assertEquals(0.2, result.getTargets()[1], EPSILON);
+        assertArrayEquals(new int[] { 0, 0, 0 }, result.getTrades());
+    }
+}
@@ -0,0 +1,102 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+/**
+ * The streaming path run offline: a recording is replayed through MarketDataStreamService into
+ * StockPriceService, with only subscribed symbols getting through.
+ */
+@SpringBootTest(properties = {
+        "marketdata.stream.provider=replay",
+        "marketdata.replay.speed=100",
+        "marketdata.replay.loop=true",
+        "marketdata.stream.flush-ms=50",
+        "marketdata.stream.sync-ms=3600000"
+})
+class ReplayMarketDataProviderTest {
+
+    private static final String RECORDING = """
+            # timestampMs,symbol,price,volume
+            1700000000000,RPLY,101.5,10
+            1700000001000,SKIP,55.0,5
+            1700000002000,RPLY,102.25,20
+
+            1700000003000,RPLY,103.0,30
+            """;
+
+    private static final Path recordingFile = writeRecording();
+
+    @DynamicPropertySource
+    static void replayFile(DynamicPropertyRegistry registry) {
+        registry.add("marketdata.replay.file", recordingFile::toString);
+    }
+
+    @Autowired
+    private ReplayMarketDataProvider replayProvider;
+
+    @SpyBean
+    private StockPriceService stockPriceService;
+
+    @Test
+    void replayedTicksReachThePricePathForSubscribedSymbolsOnly() {
+        replayProvider.subscribe("RPLY");
+
+        verify(stockPriceService, timeout(10_000).atLeastOnce()).onStreamPrice(eq("RPLY"), any(BigDecimal.class));
+        verify(stockPriceService, never()).onStreamPrice(eq("SKIP"), any(BigDecimal.class));
+    }
+
+    @Test
+    void replayParsesAndFiltersTheRecording() throws Exception {
+        List<String> ticks = new ArrayList<>();
+        long delivered = ReplayMarketDataProvider.replay(new StringReader(RECORDING), 0, Set.of("RPLY"),
+                (symbol, price, volume, timestampMs) -> ticks.add(symbol + "@" + price + "x" + volume));
+
+        assertEquals(3, delivered);
+        assertEquals(List.of("RPLY@101.5x10", "RPLY@102.25x20", "RPLY@103.0x30"), ticks);
+    }
+
+    @Test
+    void replayIsPacedByTheRecordedTimestamps() throws Exception {
+        long started = System.nanoTime();
+        // 3 s of recording at 30x: about 100 ms
+        ReplayMarketDataProvider.replay(new StringReader(RECORDING), 30, null, (symbol, price, volume, ts) -> {
+        });
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        assertTrue(elapsedMs >= 90, "replayed in " + elapsedMs + " ms");
+    }
+
+    private static Path writeRecording() {
+        try {
+            Path file = Files.createTempFile("replay", ".csv");
+            file.toFile().deleteOnExit();
+            Files.writeString(file, RECORDING);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.foresight.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RiskModelTest {
+
+    private static final double EPSILON = 1e-12;
+    private static final double NaN = Double.NaN;
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 1);
+
+    @Test
+    void covarianceOfAlignedSeries() {
+        RiskModel model = RiskModel.build(DAY, List.of("A", "B"), List.of(
+                new double[] { 0.01, 0.02, -0.01, 0.00 },
+                new double[] { 0.02, 0.01, 0.00, -0.01 }), Set.of());
+
+        // Both means are 0.005; deviations (.005, .015, -.015, -.005) and (.015, .005, -.005, -.015)
+        assertEquals(0.005, model.mean(0), EPSILON);
+        assertEquals(0.0005 / 3, model.covariance(0, 0), EPSILON);
+        assertEquals(0.0005 / 3, model.covariance(1, 1), EPSILON);
+        assertEquals(0.0001, model.covariance(0, 1), EPSILON);
+        assertEquals(model.covariance(0, 1), model.covariance(1, 0), 0.0);
+    }
+
+    @Test
+    void betaAgainstTheBenchmark() {
+        double[] market = { 0.02, 0.01, 0.00, -0.01 };
+        double[] doubled = { 0.04, 0.02, 0.00, -0.02 };
+        RiskModel model = RiskModel.build(DAY, List.of("SPY", "A", "LEV"), List.of(
+                market,
+                new double[] { 0.01, 0.02, -0.01, 0.00 },
+                doubled), Set.of());
+
+        double marketVariance = model.covariance(0, 0);
+        assertEquals(0.6, model.covariance(1, 0) / marketVariance, EPSILON);
+        assertEquals(2.0, model.covariance(2, 0) / marketVariance, EPSILON);
+
+        // Half in each: beta is the weighted average
+        double portfolio = 0.5 * model.covariance(1, 0) + 0.5 * model.covariance(2, 0);
+        assertEquals(1.3, portfolio / marketVariance, EPSILON);
+    }
+
+    @Test
+    void misalignedDatesUseEachSymbolsOwnDays() {
+        RiskModel model = RiskModel.build(DAY, List.of("A", "B"), List.of(
+                new double[] { 0.01, NaN, 0.03, 0.01, NaN },
+                new double[] { NaN, 0.02, 0.01, 0.03, 0.02 }), Set.of());
+
+        // Means over their own days, not padded with zero returns
+        assertEquals(0.05 / 3, model.mean(0), EPSILON);
+        assertEquals(0.02, model.mean(1), EPSILON);
+        assertEquals(0.0004 / 3, model.covariance(0, 0), EPSILON);
+        assertEquals(0.0002 / 3, model.covariance(1, 1), EPSILON);
+        // Only days 2 and 3 are shared: (.0133 * -.01 + -.0067 * .01) / 1
+        assertEquals(-0.0002, model.covariance(0, 1), EPSILON);
+        // A missing day reads as the symbol's mean
+        assertEquals(model.mean(0), model.returnAt(0, 1), EPSILON);
+    }
+
+    @Test
+    void indefiniteMatrixStillHasANonNegativeReturnVariance() {
+        RiskModel model = RiskModel.build(DAY, List.of("A", "B"), List.of(
+                new double[] { 0.01, NaN, 0.03, 0.01, NaN },
+                new double[] { NaN, 0.02, 0.01, 0.03, 0.02 }), Set.of());
+        int[] indices = { 0, 1 };
+        double[] weights = { 1.0, 1.0 };
+
+        // The pairwise covariance is larger than both variances allow
+        assertTrue(model.quadraticForm(indices, weights) < 0);
+        // Daily sums (.03, .0367, .04, .04, .0367) around their mean .0367
+        assertEquals(0.0000666666666667 / 4, model.returnVariance(indices, weights), EPSILON);
+    }
+
+    @Test
+    void addedSymbolsMatchAFullBuild() {
+        double[] a = { 0.01, 0.02, -0.01, 0.00, 0.015 };
+        double[] b = { 0.02, NaN, 0.00, -0.01, 0.005 };
+        double[] c = { -0.01, 0.01, 0.02, NaN, 0.00 };
+        RiskModel full = RiskModel.build(DAY, List.of("A", "B", "C"), List.of(a, b, c), Set.of());
+        RiskModel extended = RiskModel.build(DAY, List.of("A"), List.of(a), Set.of())
+                .withSymbols(List.of("B", "C"), List.of(b, c), Set.of("D"));
+
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                assertEquals(full.covariance(i, j), extended.covariance(i, j), EPSILON);
+            }
+        }
+        assertEquals(2, extended.indexOf("C"));
+        assertTrue(extended.isExcluded("D"));
+        assertFalse(extended.contains("D"));
+    }
+}
@@ -1,10 +1,10 @@
 import React from 'react';
 import { useTheme } from '../../context/ThemeContext';
 
-const DividendSummary = ({ portfolioAnalysis }) => {
+const DividendSummary = ({ dividendIncome }) => {
   const { isDarkMode } = useTheme();
 
-  if (!portfolioAnalysis) {
+  if (!dividendIncome) {
     return (
       <div className={`rounded-lg p-5 shadow-md min-h-[200px] flex items-center justify-center ${isDarkMode ? 'bg-navy-800' : 'bg-white'}`}>
         <div className="animate-spin rounded-full h-8 w-8 border-b-2 border-blue-500"></div>
@@ -12,18 +12,11 @@ const DividendSummary = ({ portfolioAnalysis }) => {
     );
   }
 
-  const calculateDividendInfo = () => {
-    const avgYield = parseFloat(portfolioAnalysis.averageDividendYield || 0);
-    const totalValue = parseFloat(portfolioAnalysis.totalCurrentValue || 0);
-
-    const annualDividend = (avgYield / 100) * totalValue;
-    const monthlyDividend = annualDividend / 12;
-    const dailyDividend = annualDividend / 365;
-
-    return { avgYield, annualDividend, monthlyDividend, dailyDividend };
-  };
-
-  const { avgYield, annualDividend, monthlyDividend, dailyDividend } = calculateDividendInfo();
+  // Income is projected server side from annual dividend x quantity
+  const avgYield = parseFloat(dividendIncome.valueWeightedYield || 0);
+  const annualDividend = parseFloat(dividendIncome.annualIncome || 0);
+  const monthlyDividend = parseFloat(dividendIncome.monthlyIncome || 0);
+  const dailyDividend = parseFloat(dividendIncome.dailyIncome || 0);
 
   const formatCurrency = (value) => {
     return `£${value.toFixed(2)}`;
@@ -1,41 +1,12 @@
 import React from 'react';
 import { useTheme } from '../../context/ThemeContext';
 
-const UpcomingEvents = ({ portfolio }) => {
+// events: the next dividend and earnings dates, soonest first, as the dashboard endpoint returns them
+const UpcomingEvents = ({ events }) => {
   const { isDarkMode } = useTheme();
 
-  const getUpcomingEvents = () => {
-    const events = [];
-
-    portfolio.forEach((holding) => {
-      const stock = holding.stock;
-
-      if (stock.nextDividendDate) {
-        events.push({
-          type: 'dividend',
-          symbol: stock.symbol,
-          date: new Date(stock.nextDividendDate),
-        });
-      }
-
-      if (stock.nextEarningsDate) {
-        events.push({
-          type: 'earnings',
-          symbol: stock.symbol,
-          date: new Date(stock.nextEarningsDate),
-        });
-      }
-    });
-
-    // Sort by date and take the 5 closest events
-    return events
-      .filter((event) => event.date >= new Date())
-      .sort((a, b) => a.date - b.date)
-      .slice(0, 5);
-  };
-
   const formatDate = (date) => {
-    return date.toLocaleDateString('en-GB', {
+    return new Date(date).toLocaleDateString('en-GB', {
       day: 'numeric',
       month: 'short',
     });
@@ -49,8 +20,6 @@ const UpcomingEvents = ({ portfolio }) => {
     return type === 'dividend' ? 'text-green-500' : 'text-blue-500';
   };
 
-  const events = getUpcomingEvents();
-
   return (
     <div className={`rounded-lg p-5 shadow-md min-h-[200px] ${isDarkMode ? 'bg-navy-800' : 'bg-white'}`}>
       <h2 className={`text-xl font-bold mb-4 ${isDarkMode ? 'text-gray-100' : 'text-gray-800'}`}>
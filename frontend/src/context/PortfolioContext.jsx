@@ -1,5 +1,5 @@
 import React, { createContext, useState, useContext, useCallback } from 'react';
-import { portfolioAPI } from '../services/api';
+import { portfolioAPI, dashboardAPI } from '../services/api';
 
 const PortfolioContext = createContext();
 
@@ -23,6 +23,24 @@ export const PortfolioProvider = ({ children }) => {
     }
   }, []);
 
+  // Loads the whole dashboard in one request, keeping its portfolio analysis here like fetchPortfolioAnalysis does
+  const fetchDashboard = useCallback(async (userId) => {
+    setLoading(true);
+    setError(null);
+    try {
+      const response = await dashboardAPI.getDashboard(userId);
+      setPortfolioAnalysis(response.data.portfolio);
+      setPortfolio(response.data.portfolio.holdings);
+      return response.data;
+    } catch (err) {
+      setError(err.message);
+      console.error('Error fetching dashboard:', err);
+      throw err;
+    } finally {
+      setLoading(false);
+    }
+  }, []);
+
   const fetchPortfolioAnalysis = useCallback(async (userId) => {
     setLoading(true);
     setError(null);
@@ -79,6 +97,7 @@ export const PortfolioProvider = ({ children }) => {
     error,
     fetchPortfolio,
     fetchPortfolioAnalysis,
+    fetchDashboard,
     addStock,
     removeStock,
   };
@@ -1,6 +1,5 @@
 import React, { useEffect, useState } from 'react';
 import { usePortfolio } from '../context/PortfolioContext';
-import { useAccountData } from '../hooks/useAccountData';
 import { useTheme } from '../context/ThemeContext';
 import AccountSummary from '../components/dashboard/AccountSummary';
 import DividendSummary from '../components/dashboard/DividendSummary';
@@ -11,22 +10,25 @@ import PortfolioTable from '../components/dashboard/PortfolioTable';
 const Dashboard = () => {
   const [isLoading, setIsLoading] = useState(true);
   const [error, setError] = useState(null);
+  const [accountData, setAccountData] = useState(null);
+  const [dividendIncome, setDividendIncome] = useState(null);
+  const [events, setEvents] = useState([]);
   const { isDarkMode } = useTheme();
 
   // Using userId = 1 for demo purposes
   const userId = 1;
 
-  const { portfolioAnalysis, fetchPortfolioAnalysis, error: portfolioError } = usePortfolio();
-  const { accountData, refresh: refreshAccount, error: accountError } = useAccountData(userId);
+  const { portfolioAnalysis, fetchDashboard, error: portfolioError } = usePortfolio();
 
   useEffect(() => {
     const loadData = async () => {
       try {
         setIsLoading(true);
-        await Promise.all([
-          fetchPortfolioAnalysis(userId),
-          refreshAccount()
-        ]);
+        // One request for every widget
+        const dashboard = await fetchDashboard(userId);
+        setAccountData(dashboard.account);
+        setDividendIncome(dashboard.dividends);
+        setEvents(dashboard.events);
         setIsLoading(false);
       } catch (err) {
         console.error('Error loading dashboard data:', err);
@@ -46,11 +48,11 @@ const Dashboard = () => {
     );
   }
 
-  if (error || portfolioError || accountError) {
+  if (error || portfolioError) {
     return (
       <div className={`min-h-screen flex flex-col items-center justify-center ${isDarkMode ? 'bg-navy-900' : 'bg-gray-100'}`}>
         <p className="text-red-500 text-lg font-bold mb-2">Error loading dashboard</p>
-        <p className={`${isDarkMode ? 'text-gray-400' : 'text-gray-600'}`}>{error || portfolioError || accountError}</p>
+        <p className={`${isDarkMode ? 'text-gray-400' : 'text-gray-600'}`}>{error || portfolioError}</p>
       </div>
     );
   }
@@ -60,8 +62,8 @@ const Dashboard = () => {
       {/* Top Row - 3 cards */}
       <div className="grid grid-cols-1 md:grid-cols-3 gap-4 md:gap-6 mb-4 md:mb-6">
         <AccountSummary accountData={accountData} />
-        <DividendSummary portfolioAnalysis={portfolioAnalysis} />
-        <UpcomingEvents portfolio={portfolioAnalysis?.holdings || []} />
+        <DividendSummary dividendIncome={dividendIncome} />
+        <UpcomingEvents events={events} />
       </div>
 
       {/* Bottom Row - 2 cards */}